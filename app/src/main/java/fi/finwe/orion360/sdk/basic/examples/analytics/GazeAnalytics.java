@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.analytics;
+
+import java.io.File;
+import java.util.concurrent.Future;
+
+import fi.finwe.math.QuatF;
+import fi.finwe.math.Vec3F;
+import fi.finwe.orion360.OrionSensorFusion;
+import fi.finwe.orion360.OrionVideoView;
+import fi.finwe.orion360.sdk.basic.examples.math.MutableQuatF;
+import fi.finwe.orion360.sdk.basic.examples.math.MutableVec3F;
+import fi.finwe.orion360.sdk.basic.examples.playback.PlaybackClock;
+import fi.finwe.orion360.sdk.basic.examples.playback.VideoViewClock;
+
+/**
+ * Collects a gaze heatmap of a video view, see {@link GazeCollector} and {@link GazeHeatmap}.
+ * <p/>
+ * Listens to the orientation changes of the view, and records the gaze direction with the
+ * current video position. The work done in the sensor callback is a quaternion rotation
+ * and a few array writes; binning and disk writes happen in a background thread.
+ * <p/>
+ * The sensor callback does not read the position from the player, which would be a slow call
+ * at sensor rate from the wrong thread. Instead, the view's shared {@link PlaybackClock} ticks
+ * the position to a field in the UI thread, often enough for the heatmap's position buckets.
+ * Call {@link #start()} and {@link #stop()} from the UI thread.
+ */
+public class GazeAnalytics implements OrionSensorFusion.Listener {
+
+    /** Tag for logging. */
+    public static final String TAG = GazeAnalytics.class.getSimpleName();
+
+    /** Number of heatmap columns; 5 degree cells. */
+    public static final int DEFAULT_WIDTH = 72;
+
+    /** Number of heatmap rows; 5 degree cells. */
+    public static final int DEFAULT_HEIGHT = 36;
+
+    /** Duration of a video position bucket, in milliseconds. */
+    public static final int DEFAULT_BUCKET_MS = 5000;
+
+    /** Interval for updating the video position from the clock, in milliseconds. */
+    private static final int POSITION_TICK_MS = 250;
+
+    /** The video view. */
+    private final OrionVideoView mOrionVideoView;
+
+    /** The playback clock of the video view. */
+    private final PlaybackClock mClock;
+
+    /** The latest video position from the clock, in milliseconds. */
+    private volatile int mPositionMs = 0;
+
+    /** Copies the video position from the clock, in the UI thread. */
+    private final PlaybackClock.Listener mPositionTicker = new PlaybackClock.Listener() {
+        @Override
+        public void onPosition(PlaybackClock clock, int positionMs) {
+            mPositionMs = positionMs;
+        }
+    };
+
+    /** The collector. */
+    private final GazeCollector mCollector;
+
+    /** Scratch quaternion for the inverse orientation, reused in every sensor callback. */
+    private final MutableQuatF mInverseOrientation = new MutableQuatF();
+
+    /** Scratch vector for the gaze direction, reused in every sensor callback. */
+    private final MutableVec3F mGazeDirection = new MutableVec3F();
+
+
+    /**
+     * Constructor.
+     *
+     * @param view The video view.
+     * @param file The heatmap file, typically one per video. Sessions accumulate to it.
+     */
+    public GazeAnalytics(OrionVideoView view, File file) {
+        mOrionVideoView = view;
+        mClock = VideoViewClock.get(view);
+        mCollector = new GazeCollector(DEFAULT_WIDTH, DEFAULT_HEIGHT, DEFAULT_BUCKET_MS, file);
+    }
+
+    /**
+     * Start collecting.
+     */
+    public void start() {
+        mCollector.start();
+        mPositionMs = mClock.getPosition();
+        mClock.addTicker(POSITION_TICK_MS, mPositionTicker);
+        mOrionVideoView.registerOrientationChangeListener(this);
+    }
+
+    /**
+     * Stop collecting, and write the collected samples to the file in the background.
+     *
+     * @return a future for the final flush, or null if not started.
+     */
+    public Future<Long> stop() {
+        mOrionVideoView.unregisterOrientationChangeListener(this);
+        mClock.removeListener(mPositionTicker);
+        return mCollector.stop();
+    }
+
+    /**
+     * Write the samples collected so far to the file in the background.
+     *
+     * @return a future for the flush.
+     */
+    public Future<Long> flush() {
+        return mCollector.flush();
+    }
+
+    /**
+     * Get the number of samples dropped because the background thread fell behind.
+     *
+     * @return the number of dropped samples.
+     */
+    public long getDroppedCount() {
+        return mCollector.getDroppedCount();
+    }
+
+    @Override
+    public void onDeviceOrientationChanged(QuatF orientation) {
+        mInverseOrientation.set(orientation).conjugate();
+        mGazeDirection.set(Vec3F.AXIS_FRONT).rotate(mInverseOrientation);
+        mCollector.record(mPositionMs, mGazeDirection.x, mGazeDirection.y, mGazeDirection.z);
+    }
+
+    @Override
+    public void onDeviceDisplayRotationChanged(int rotationDegrees) {}
+}
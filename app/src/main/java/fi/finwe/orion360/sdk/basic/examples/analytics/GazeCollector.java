@@ -0,0 +1,234 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.analytics;
+
+import fi.finwe.orion360.sdk.basic.examples.sensor.SampleRingBuffer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects gaze samples into a {@link GazeHeatmap} file, with minimal work on the sensor path.
+ * <p/>
+ * The sensor thread only puts the raw gaze vector and video position to a lock-free
+ * {@link SampleRingBuffer}. A low priority background thread drains the buffer periodically
+ * and bins the samples to an in-memory heatmap. A flush merges the in-memory counts into the
+ * heatmap file on disk and clears them, so the file accumulates all sessions of a video and
+ * memory use stays bounded. The file is replaced atomically via a temporary file, so a crash
+ * during a flush does not lose earlier sessions.
+ * <p/>
+ * {@link #record} must be called from one thread only (the sensor thread); the other methods
+ * may be called from any thread.
+ * <p/>
+ * This class has no Android dependencies and can be tested on a desktop JVM.
+ */
+public class GazeCollector {
+
+    /** Interval for draining the ring buffer, in milliseconds. */
+    private static final long DRAIN_INTERVAL_MS = 1000;
+
+    /** Capacity of the ring buffer, in samples; several drain intervals at sensor rate. */
+    private static final int RING_CAPACITY = 1024;
+
+    /** The heatmap file. */
+    private final File mFile;
+
+    /** Samples from the sensor thread, waiting to be binned. */
+    private final SampleRingBuffer mRing = new SampleRingBuffer(RING_CAPACITY, 3);
+
+    /** The gaze vector of the sample being recorded. Used in the sensor thread only. */
+    private final float[] mSample = new float[3];
+
+    /** Binned samples that have not been flushed yet. Used in the background thread only. */
+    private final GazeHeatmap mPending;
+
+    /** Bins drained samples to the pending heatmap. */
+    private final SampleRingBuffer.Sink mBinner = new SampleRingBuffer.Sink() {
+        @Override
+        public void accept(long positionMs, float[] values, int offset) {
+            mPending.add((int) positionMs, values[offset], values[offset + 1],
+                    values[offset + 2]);
+        }
+    };
+
+    /** Drains the ring buffer. */
+    private final Runnable mDrainTask = new Runnable() {
+        @Override
+        public void run() {
+            mRing.drain(mBinner);
+        }
+    };
+
+    /** Drains the ring buffer and merges the pending counts to the file. */
+    private final Callable<Long> mFlushTask = new Callable<Long>() {
+        @Override
+        public Long call() throws IOException {
+            mRing.drain(mBinner);
+            return mergePendingToFile();
+        }
+    };
+
+    /** The background thread, or null if not started. */
+    private ScheduledExecutorService mExecutor;
+
+
+    /**
+     * Constructor.
+     *
+     * @param width The number of heatmap columns, covering 360 degrees of yaw.
+     * @param height The number of heatmap rows, covering 180 degrees of pitch.
+     * @param bucketMs The duration of a video position bucket, in milliseconds.
+     * @param file The heatmap file. If it exists, new counts are merged into it.
+     */
+    public GazeCollector(int width, int height, int bucketMs, File file) {
+        mPending = new GazeHeatmap(width, height, bucketMs);
+        mFile = file;
+    }
+
+    /**
+     * Start the background thread.
+     */
+    public synchronized void start() {
+        if (null != mExecutor) return;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "GazeCollector");
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.scheduleWithFixedDelay(mDrainTask, DRAIN_INTERVAL_MS, DRAIN_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+        mExecutor = executor;
+    }
+
+    /**
+     * Record a gaze sample. Call from the sensor thread only. Never blocks.
+     *
+     * @param positionMs The video position, in milliseconds.
+     * @param x The x coordinate of the gaze unit vector.
+     * @param y The y coordinate of the gaze unit vector.
+     * @param z The z coordinate of the gaze unit vector.
+     */
+    public void record(int positionMs, float x, float y, float z) {
+        mSample[0] = x;
+        mSample[1] = y;
+        mSample[2] = z;
+        mRing.offer(positionMs, mSample);
+    }
+
+    /**
+     * Merge the samples recorded so far to the file, in the background thread.
+     *
+     * @return a future for the number of samples merged, or for the error if writing failed.
+     * @throws IllegalStateException if the collector has not been started.
+     */
+    public synchronized Future<Long> flush() {
+        if (null == mExecutor) {
+            throw new IllegalStateException("Not started");
+        }
+        return mExecutor.submit(mFlushTask);
+    }
+
+    /**
+     * Flush the recorded samples and stop the background thread.
+     *
+     * @return a future for the final flush, or null if the collector was not started.
+     */
+    public synchronized Future<Long> stop() {
+        if (null == mExecutor) return null;
+        Future<Long> flush = mExecutor.submit(mFlushTask);
+        mExecutor.shutdown();
+        mExecutor = null;
+        return flush;
+    }
+
+    /**
+     * Get the number of samples dropped because the background thread fell behind.
+     *
+     * @return the number of dropped samples.
+     */
+    public long getDroppedCount() {
+        return mRing.getDroppedCount();
+    }
+
+    /**
+     * Merge the pending counts to the file. If this fails, the counts are kept for
+     * the next flush.
+     *
+     * @return the number of samples merged.
+     */
+    private long mergePendingToFile() throws IOException {
+        if (mPending.isEmpty()) return 0;
+
+        GazeHeatmap merged = mPending;
+        if (mFile.exists()) {
+            FileInputStream in = new FileInputStream(mFile);
+            try {
+                merged = GazeHeatmap.read(in);
+            } finally {
+                in.close();
+            }
+            if (merged.getWidth() != mPending.getWidth()
+                    || merged.getHeight() != mPending.getHeight()
+                    || merged.getBucketMs() != mPending.getBucketMs()) {
+                throw new IOException("Heatmap layout of " + mFile + " differs");
+            }
+            merged.merge(mPending);
+        }
+
+        File temp = new File(mFile.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            merged.write(out);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(mFile)) {
+            throw new IOException("Failed to replace " + mFile);
+        }
+
+        long count = mPending.getTotal();
+        mPending.clear();
+        return count;
+    }
+}
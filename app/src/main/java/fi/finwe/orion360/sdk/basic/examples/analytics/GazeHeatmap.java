@@ -0,0 +1,323 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.analytics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A histogram of gaze directions over an equirectangular grid, per video position bucket.
+ * <p/>
+ * Each bucket covers a fixed span of video time and holds one count per grid cell. Columns
+ * go from yaw -180 to 180 degrees and rows from pitch 90 (up) to -90 (down) degrees, so the
+ * cells line up with the pixels of an equirectangular frame scaled to the grid size. Yaw 0 is
+ * the front direction (0, 0, -1) and yaw grows towards the right axis (+x), as in Vec3F and
+ * the camera path keyframes, see {@link #getYaw(double, double)}. The counts are kept in one
+ * primitive array per bucket.
+ * <p/>
+ * Heatmaps with the same layout can be merged, e.g. to combine viewing sessions, and saved
+ * to and loaded from a compact binary file:
+ * <pre>
+ * int magic 'GZHM'
+ * int version (1)
+ * int width, height, bucket duration in ms, number of stored buckets
+ * then for each non-empty bucket:
+ * int bucket index
+ * int[width * height] counts, row by row
+ * </pre>
+ * Not thread safe.
+ * <p/>
+ * This class has no Android dependencies and can be tested on a desktop JVM.
+ */
+public class GazeHeatmap {
+
+    /** The magic number at the start of a heatmap file. */
+    public static final int MAGIC = 0x475A484D;
+
+    /** The file format version. */
+    public static final int VERSION = 1;
+
+    /** The maximum number of cells per bucket accepted from a file; 1 degree cells. */
+    private static final int MAX_CELLS = 360 * 180;
+
+    /** The maximum number of buckets accepted from a file; over 90 hours of 5 s buckets. */
+    private static final int MAX_BUCKETS = 1 << 16;
+
+    /** The number of columns. */
+    private final int mWidth;
+
+    /** The number of rows. */
+    private final int mHeight;
+
+    /** The duration of a bucket, in milliseconds. */
+    private final int mBucketMs;
+
+    /** The counts of each bucket, or null for buckets without samples. */
+    private int[][] mBuckets = new int[0][];
+
+    /** The number of buckets, up to the last one with samples. */
+    private int mBucketCount = 0;
+
+    /** The total number of samples. */
+    private long mTotal = 0;
+
+
+    /**
+     * Constructor.
+     *
+     * @param width The number of columns, covering 360 degrees of yaw.
+     * @param height The number of rows, covering 180 degrees of pitch.
+     * @param bucketMs The duration of a video position bucket, in milliseconds.
+     */
+    public GazeHeatmap(int width, int height, int bucketMs) {
+        if (width <= 0 || height <= 0 || bucketMs <= 0) {
+            throw new IllegalArgumentException("Invalid heatmap layout");
+        }
+        mWidth = width;
+        mHeight = height;
+        mBucketMs = bucketMs;
+    }
+
+    /** @return the number of columns. */
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /** @return the number of rows. */
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /** @return the duration of a bucket, in milliseconds. */
+    public int getBucketMs() {
+        return mBucketMs;
+    }
+
+    /** @return the number of buckets, up to the last one with samples. */
+    public int getBucketCount() {
+        return mBucketCount;
+    }
+
+    /** @return the total number of samples. */
+    public long getTotal() {
+        return mTotal;
+    }
+
+    /** @return true if there are no samples, else false. */
+    public boolean isEmpty() {
+        return mTotal == 0;
+    }
+
+    /**
+     * Get the count of a cell.
+     *
+     * @param bucket The bucket index.
+     * @param column The column.
+     * @param row The row.
+     * @return the number of samples in the cell.
+     */
+    public int getCount(int bucket, int column, int row) {
+        if (bucket >= mBuckets.length || null == mBuckets[bucket]) return 0;
+        return mBuckets[bucket][row * mWidth + column];
+    }
+
+    /**
+     * Add a gaze sample.
+     *
+     * @param positionMs The video position, in milliseconds.
+     * @param x The x coordinate of the gaze unit vector.
+     * @param y The y coordinate of the gaze unit vector.
+     * @param z The z coordinate of the gaze unit vector.
+     */
+    public void add(int positionMs, float x, float y, float z) {
+        int bucket = Math.max(0, positionMs) / mBucketMs;
+        getBucket(bucket)[getRow(y) * mWidth + getColumn(x, z)]++;
+        mTotal++;
+    }
+
+    /**
+     * Add the counts of another heatmap with the same layout to this one.
+     *
+     * @param other The other heatmap.
+     * @throws IllegalArgumentException if the layouts differ.
+     */
+    public void merge(GazeHeatmap other) {
+        if (other.mWidth != mWidth || other.mHeight != mHeight
+                || other.mBucketMs != mBucketMs) {
+            throw new IllegalArgumentException("Heatmap layouts differ");
+        }
+        for (int bucket = 0; bucket < other.mBucketCount; bucket++) {
+            int[] source = other.mBuckets[bucket];
+            if (null == source) continue;
+            int[] target = getBucket(bucket);
+            for (int i = 0; i < source.length; i++) {
+                target[i] += source[i];
+            }
+        }
+        mTotal += other.mTotal;
+    }
+
+    /**
+     * Remove all samples.
+     */
+    public void clear() {
+        mBuckets = new int[0][];
+        mBucketCount = 0;
+        mTotal = 0;
+    }
+
+    /**
+     * Write the heatmap to a stream.
+     *
+     * @param out The stream. Not closed by this method, but flushed.
+     * @throws IOException if writing fails.
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        int stored = 0;
+        for (int[] counts : mBuckets) {
+            if (null != counts) stored++;
+        }
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(mWidth);
+        data.writeInt(mHeight);
+        data.writeInt(mBucketMs);
+        data.writeInt(stored);
+        for (int bucket = 0; bucket < mBucketCount; bucket++) {
+            int[] counts = mBuckets[bucket];
+            if (null == counts) continue;
+            data.writeInt(bucket);
+            for (int count : counts) {
+                data.writeInt(count);
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Read a heatmap from a stream.
+     * <p/>
+     * The layout, the bucket count and the bucket indices are validated before allocating
+     * anything for them, so a corrupted file cannot make this run out of memory.
+     *
+     * @param in The stream. Not closed by this method.
+     * @return the heatmap.
+     * @throws IOException if reading fails, or the stream is not a supported heatmap file.
+     */
+    public static GazeHeatmap read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a gaze heatmap");
+        }
+        int version = data.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported gaze heatmap version " + version);
+        }
+        int width = data.readInt();
+        int height = data.readInt();
+        int bucketMs = data.readInt();
+        int stored = data.readInt();
+        if (width <= 0 || height <= 0 || bucketMs <= 0 || stored < 0
+                || (long) width * height > MAX_CELLS || stored > MAX_BUCKETS) {
+            throw new IOException("Corrupted gaze heatmap");
+        }
+        GazeHeatmap heatmap = new GazeHeatmap(width, height, bucketMs);
+        int previous = -1;
+        for (int i = 0; i < stored; i++) {
+
+            // Buckets are written in ascending order, each at most once.
+            int bucket = data.readInt();
+            if (bucket <= previous || bucket >= MAX_BUCKETS) {
+                throw new IOException("Corrupted gaze heatmap");
+            }
+            previous = bucket;
+            int[] counts = heatmap.getBucket(bucket);
+            for (int j = 0; j < counts.length; j++) {
+                int count = data.readInt();
+                counts[j] += count;
+                heatmap.mTotal += count;
+            }
+        }
+        return heatmap;
+    }
+
+    /**
+     * Get the column of a gaze direction.
+     */
+    int getColumn(float x, float z) {
+        double yaw = getYaw(x, z);
+        int column = (int) ((yaw + Math.PI) / (2 * Math.PI) * mWidth);
+        return Math.min(mWidth - 1, Math.max(0, column));
+    }
+
+    /**
+     * Get the yaw angle of a direction: the angle around the up axis from the front axis
+     * (0, 0, -1) towards the right axis (1, 0, 0), as Vec3F.getYaw().
+     *
+     * @param x The x component of the direction.
+     * @param z The z component of the direction.
+     * @return the yaw angle in radians, in [-PI, PI].
+     */
+    public static double getYaw(double x, double z) {
+        return Math.atan2(x, -z);
+    }
+
+    /**
+     * Get the row of a gaze direction.
+     */
+    int getRow(float y) {
+        double pitch = Math.asin(Math.max(-1.0f, Math.min(1.0f, y)));
+        int row = (int) ((Math.PI / 2 - pitch) / Math.PI * mHeight);
+        return Math.min(mHeight - 1, Math.max(0, row));
+    }
+
+    /**
+     * Get the counts of a bucket, creating them if needed.
+     */
+    private int[] getBucket(int bucket) {
+        if (bucket >= mBuckets.length) {
+            mBuckets = Arrays.copyOf(mBuckets, Math.max(bucket + 1, 2 * mBuckets.length));
+        }
+        mBucketCount = Math.max(mBucketCount, bucket + 1);
+        int[] counts = mBuckets[bucket];
+        if (null == counts) {
+            counts = new int[mWidth * mHeight];
+            mBuckets[bucket] = counts;
+        }
+        return counts;
+    }
+}
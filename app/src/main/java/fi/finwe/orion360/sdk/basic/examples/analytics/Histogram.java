@@ -0,0 +1,256 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.analytics;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A histogram of non-negative values, such as latencies in milliseconds, with fixed buckets.
+ * <p/>
+ * Recording a value is a binary search over the bucket bounds and an increment, without
+ * allocations, so histograms can be updated from player callbacks and merged over many
+ * sessions. Percentiles are interpolated linearly within the bucket they fall in, hence
+ * their accuracy is the width of that bucket; the exact minimum and maximum are kept.
+ * <p/>
+ * Not thread safe.
+ * <p/>
+ * This class has no Android dependencies and can be tested on a desktop JVM.
+ */
+public class Histogram {
+
+    /** Default bucket upper bounds for latencies, in milliseconds; roughly 20% apart. */
+    public static final int[] LATENCY_BOUNDS_MS = {
+            10, 20, 30, 40, 50, 60, 80, 100, 120, 150, 200, 250, 300, 400, 500, 600, 800,
+            1000, 1200, 1500, 2000, 2500, 3000, 4000, 5000, 6000, 8000, 10000, 12000, 15000,
+            20000, 30000, 60000 };
+
+    /** The upper bounds of the buckets, inclusive, ascending; the last bucket is unbounded. */
+    private final int[] mBounds;
+
+    /** The number of values in each bucket; one more than there are bounds. */
+    private final long[] mCounts;
+
+    /** The number of values. */
+    private long mCount = 0;
+
+    /** The sum of the values. */
+    private long mSum = 0;
+
+    /** The smallest value. */
+    private long mMin = Long.MAX_VALUE;
+
+    /** The largest value. */
+    private long mMax = Long.MIN_VALUE;
+
+
+    /**
+     * Constructor, with the default latency buckets.
+     */
+    public Histogram() {
+        this(LATENCY_BOUNDS_MS);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param bounds The upper bounds of the buckets, inclusive, strictly ascending. Values
+     *               above the last bound go to an extra bucket.
+     */
+    public Histogram(int[] bounds) {
+        for (int i = 1; i < bounds.length; i++) {
+            if (bounds[i] <= bounds[i - 1]) {
+                throw new IllegalArgumentException("Bounds must be strictly ascending");
+            }
+        }
+        mBounds = bounds.clone();
+        mCounts = new long[bounds.length + 1];
+    }
+
+    /**
+     * Record a value. Negative values are recorded as 0.
+     *
+     * @param value The value.
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        int low = 0, high = mBounds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mBounds[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        mCounts[low]++;
+        mCount++;
+        mSum += value;
+        mMin = Math.min(mMin, value);
+        mMax = Math.max(mMax, value);
+    }
+
+    /**
+     * Add the values of another histogram with the same buckets.
+     *
+     * @param other The other histogram.
+     */
+    public void merge(Histogram other) {
+        if (!Arrays.equals(mBounds, other.mBounds)) {
+            throw new IllegalArgumentException("Histograms have different buckets");
+        }
+        for (int i = 0; i < mCounts.length; i++) {
+            mCounts[i] += other.mCounts[i];
+        }
+        mCount += other.mCount;
+        mSum += other.mSum;
+        mMin = Math.min(mMin, other.mMin);
+        mMax = Math.max(mMax, other.mMax);
+    }
+
+    /**
+     * Remove all values.
+     */
+    public void clear() {
+        Arrays.fill(mCounts, 0);
+        mCount = 0;
+        mSum = 0;
+        mMin = Long.MAX_VALUE;
+        mMax = Long.MIN_VALUE;
+    }
+
+    /**
+     * Get the number of values.
+     *
+     * @return the number of values.
+     */
+    public long getCount() {
+        return mCount;
+    }
+
+    /**
+     * Get the sum of the values.
+     *
+     * @return the sum.
+     */
+    public long getSum() {
+        return mSum;
+    }
+
+    /**
+     * Get the mean of the values.
+     *
+     * @return the mean, or 0 if there are no values.
+     */
+    public double getMean() {
+        return mCount > 0 ? (double) mSum / mCount : 0.0;
+    }
+
+    /**
+     * Get the smallest value.
+     *
+     * @return the smallest value, or 0 if there are no values.
+     */
+    public long getMin() {
+        return mCount > 0 ? mMin : 0;
+    }
+
+    /**
+     * Get the largest value.
+     *
+     * @return the largest value, or 0 if there are no values.
+     */
+    public long getMax() {
+        return mCount > 0 ? mMax : 0;
+    }
+
+    /**
+     * Get the number of buckets.
+     *
+     * @return the number of buckets.
+     */
+    public int getBucketCount() {
+        return mCounts.length;
+    }
+
+    /**
+     * Get the number of values in a bucket.
+     *
+     * @param bucket The bucket; the last one holds the values above all bounds.
+     * @return the number of values.
+     */
+    public long getBucketCount(int bucket) {
+        return mCounts[bucket];
+    }
+
+    /**
+     * Estimate a percentile of the values.
+     *
+     * @param percent The percentile, in range [0, 100].
+     * @return the estimated value, or 0 if there are no values.
+     */
+    public long getPercentile(double percent) {
+        if (mCount == 0) return 0;
+
+        // The rank of the value, counting from 1.
+        double rank = Math.max(1.0, Math.ceil(percent / 100.0 * mCount));
+        long seen = 0;
+        for (int i = 0; i < mCounts.length; i++) {
+            long count = mCounts[i];
+            if (count == 0) continue;
+            if (seen + count >= rank) {
+
+                // Interpolate within the bucket, limited to the values actually seen.
+                long lower = Math.max(mMin, i == 0 ? 0 : mBounds[i - 1]);
+                long upper = Math.min(mMax, i < mBounds.length ? mBounds[i] : mMax);
+                double fraction = (rank - seen) / count;
+                return Math.round(lower + fraction * (upper - lower));
+            }
+            seen += count;
+        }
+        return mMax;
+    }
+
+    /**
+     * Write the summary of the histogram as a JSON object.
+     *
+     * @param out Where to write.
+     * @throws IOException if writing fails.
+     */
+    public void writeJson(Appendable out) throws IOException {
+        out.append("{\"count\":").append(Long.toString(mCount))
+                .append(",\"mean\":").append(Long.toString(Math.round(getMean())))
+                .append(",\"p50\":").append(Long.toString(getPercentile(50)))
+                .append(",\"p95\":").append(Long.toString(getPercentile(95)))
+                .append(",\"p99\":").append(Long.toString(getPercentile(99)))
+                .append(",\"max\":").append(Long.toString(getMax()))
+                .append('}');
+    }
+}
@@ -0,0 +1,348 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.analytics;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects quality of experience (QoE) metrics of video playback sessions.
+ * <p/>
+ * The collector is driven by player events, each given with a timestamp from a monotonic
+ * clock. It measures:
+ * <ul>
+ * <li>time to prepare, from starting to prepare the video until the player is prepared;</li>
+ * <li>time to first frame, from starting to prepare until the first frame is shown;</li>
+ * <li>rebuffers: buffering after the first frame that is not caused by a seek, counted and
+ * timed until buffering stops, playback is paused or a seek starts;</li>
+ * <li>seek latency, from starting a seek until it completes;</li>
+ * <li>sessions and errors.</li>
+ * </ul>
+ * Durations are recorded into fixed-bucket {@link Histogram}s, hence percentiles such as the
+ * p95 startup time can be computed over any number of sessions with constant memory.
+ * Sessions are aggregated separately per dimension key, such as the rendition and network
+ * type, set with {@link #setDimensions(String, String)} before the session starts. The
+ * aggregates are handed to a {@link Sink} with {@link #flush(Sink)}.
+ * <p/>
+ * Not thread safe; call from the thread that receives the player events.
+ * <p/>
+ * This class has no Android dependencies and can be tested on a desktop JVM.
+ */
+public class QoeCollector {
+
+    /** Receives the aggregated metrics. */
+    public interface Sink {
+
+        /**
+         * Called with the metrics of one dimension key.
+         *
+         * @param key The dimension key, e.g. "1280x640/WIFI".
+         * @param stats The metrics.
+         * @throws IOException if exporting fails.
+         */
+        void export(String key, Stats stats) throws IOException;
+    }
+
+    /** Aggregated metrics of the sessions with the same dimension key. */
+    public static class Stats {
+
+        /** Time to prepare, in milliseconds. */
+        public final Histogram prepare = new Histogram();
+
+        /** Time to first frame, in milliseconds. */
+        public final Histogram firstFrame = new Histogram();
+
+        /** Rebuffer durations, in milliseconds. */
+        public final Histogram stall = new Histogram();
+
+        /** Seek latencies, in milliseconds. */
+        public final Histogram seek = new Histogram();
+
+        /** The number of sessions. */
+        public long sessions;
+
+        /** The number of sessions that ended in an error. */
+        public long errors;
+
+        /** The number of sessions that ended before the first frame was shown. */
+        public long abandoned;
+
+        /**
+         * Get the number of rebuffers.
+         *
+         * @return the number of rebuffers.
+         */
+        public long getRebufferCount() {
+            return stall.getCount();
+        }
+
+        /**
+         * Write the metrics as a JSON object.
+         *
+         * @param out Where to write.
+         * @throws IOException if writing fails.
+         */
+        public void writeJson(Appendable out) throws IOException {
+            out.append("{\"sessions\":").append(Long.toString(sessions))
+                    .append(",\"errors\":").append(Long.toString(errors))
+                    .append(",\"abandoned\":").append(Long.toString(abandoned))
+                    .append(",\"rebuffers\":").append(Long.toString(getRebufferCount()))
+                    .append(",\"stallMs\":").append(Long.toString(stall.getSum()))
+                    .append(",\"prepare\":");
+            prepare.writeJson(out);
+            out.append(",\"firstFrame\":");
+            firstFrame.writeJson(out);
+            out.append(",\"stall\":");
+            stall.writeJson(out);
+            out.append(",\"seek\":");
+            seek.writeJson(out);
+            out.append('}');
+        }
+    }
+
+    /** Dimension value when unknown. */
+    public static final String UNKNOWN = "unknown";
+
+    /** The aggregated metrics, by dimension key. */
+    private final Map<String, Stats> mStats = new LinkedHashMap<String, Stats>();
+
+    /** The dimension key for new sessions. */
+    private String mKey = UNKNOWN + "/" + UNKNOWN;
+
+    /** The metrics of the current session, or null if there is no session. */
+    private Stats mSession;
+
+    /** The dimension key of the current session. */
+    private String mSessionKey;
+
+    /** The time when preparing the current session started, in milliseconds. */
+    private long mPrepareStartMs;
+
+    /** Whether the current session has been prepared. */
+    private boolean mPrepared;
+
+    /** Whether the first frame of the current session has been shown. */
+    private boolean mFirstFrame;
+
+    /** Whether a rebuffer is in progress. */
+    private boolean mStalled;
+
+    /** The time when the rebuffer in progress started, in milliseconds. */
+    private long mStallStartMs;
+
+    /** Whether a seek is in progress. */
+    private boolean mSeeking;
+
+    /** The time when the seek in progress started, in milliseconds. */
+    private long mSeekStartMs;
+
+
+    /**
+     * Set the dimensions of the next sessions.
+     *
+     * @param rendition The rendition, e.g. "1280x640", or null if unknown.
+     * @param network The network type, e.g. "WIFI", or null if unknown.
+     */
+    public void setDimensions(String rendition, String network) {
+        mKey = (null != rendition ? rendition : UNKNOWN) + "/"
+                + (null != network ? network : UNKNOWN);
+    }
+
+    /**
+     * Get the dimension key of the next sessions.
+     *
+     * @return the key.
+     */
+    public String getKey() {
+        return mKey;
+    }
+
+    /**
+     * Called when preparing a video starts. Starts a new session, ending the previous one.
+     *
+     * @param nowMs The current time, in milliseconds.
+     */
+    public void onPrepareStarted(long nowMs) {
+        onSessionEnded(nowMs);
+        mSession = mStats.get(mKey);
+        if (null == mSession) {
+            mSession = new Stats();
+            mStats.put(mKey, mSession);
+        }
+        mSession.sessions++;
+        mSessionKey = mKey;
+        mPrepareStartMs = nowMs;
+        mPrepared = false;
+        mFirstFrame = false;
+        mStalled = false;
+        mSeeking = false;
+    }
+
+    /**
+     * Called when the player has been prepared.
+     *
+     * @param nowMs The current time, in milliseconds.
+     */
+    public void onPrepared(long nowMs) {
+        if (null == mSession || mPrepared) return;
+        mPrepared = true;
+        mSession.prepare.record(nowMs - mPrepareStartMs);
+    }
+
+    /**
+     * Called when the first video frame has been shown.
+     *
+     * @param nowMs The current time, in milliseconds.
+     */
+    public void onFirstFrame(long nowMs) {
+        if (null == mSession || mFirstFrame) return;
+        mFirstFrame = true;
+        mSession.firstFrame.record(nowMs - mPrepareStartMs);
+
+        // Buffering before the first frame is part of the startup time.
+        mStalled = false;
+    }
+
+    /**
+     * Called when the player starts buffering.
+     *
+     * @param nowMs The current time, in milliseconds.
+     */
+    public void onBufferingStarted(long nowMs) {
+        if (null == mSession || !mFirstFrame || mSeeking || mStalled) return;
+        mStalled = true;
+        mStallStartMs = nowMs;
+    }
+
+    /**
+     * Called when the player stops buffering.
+     *
+     * @param nowMs The current time, in milliseconds.
+     */
+    public void onBufferingStopped(long nowMs) {
+        endStall(nowMs);
+    }
+
+    /**
+     * Called when a seek starts.
+     *
+     * @param nowMs The current time, in milliseconds.
+     */
+    public void onSeekStarted(long nowMs) {
+        if (null == mSession) return;
+        endStall(nowMs);
+        mSeeking = true;
+        mSeekStartMs = nowMs;
+    }
+
+    /**
+     * Called when a seek completes.
+     *
+     * @param nowMs The current time, in milliseconds.
+     */
+    public void onSeekCompleted(long nowMs) {
+        if (null == mSession || !mSeeking) return;
+        mSeeking = false;
+        mSession.seek.record(nowMs - mSeekStartMs);
+    }
+
+    /**
+     * Called when playback is paused.
+     *
+     * @param nowMs The current time, in milliseconds.
+     */
+    public void onPaused(long nowMs) {
+        endStall(nowMs);
+    }
+
+    /**
+     * Called when the player reports an error. Ends the session.
+     *
+     * @param nowMs The current time, in milliseconds.
+     */
+    public void onError(long nowMs) {
+        if (null == mSession) return;
+        mSession.errors++;
+        onSessionEnded(nowMs);
+    }
+
+    /**
+     * Called when the session ends, e.g. playback completes or the player is released.
+     *
+     * @param nowMs The current time, in milliseconds.
+     */
+    public void onSessionEnded(long nowMs) {
+        if (null == mSession) return;
+        endStall(nowMs);
+        if (!mFirstFrame) {
+            mSession.abandoned++;
+        }
+        mSession = null;
+    }
+
+    /**
+     * Get the metrics of a dimension key.
+     *
+     * @param key The dimension key.
+     * @return the metrics, or null if there have been no sessions with the key.
+     */
+    public Stats getStats(String key) {
+        return mStats.get(key);
+    }
+
+    /**
+     * Export the metrics of all dimension keys, and start aggregating anew. The current
+     * session continues, counted in the new aggregates from then on.
+     *
+     * @param sink The sink.
+     * @throws IOException if exporting fails; the metrics are dropped.
+     */
+    public void flush(Sink sink) throws IOException {
+        Map<String, Stats> stats = new LinkedHashMap<String, Stats>(mStats);
+        mStats.clear();
+        if (null != mSession) {
+            mSession = new Stats();
+            mStats.put(mSessionKey, mSession);
+        }
+        for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+            sink.export(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Record the rebuffer in progress, if any.
+     */
+    private void endStall(long nowMs) {
+        if (!mStalled) return;
+        mStalled = false;
+        mSession.stall.record(nowMs - mStallStartMs);
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.analytics;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Appends QoE metrics to a local file, one JSON object per line and dimension key.
+ * <p/>
+ * Each line has the export time, the dimension key and the metrics written by
+ * {@link QoeCollector.Stats#writeJson(Appendable)}. The file is opened for each export,
+ * hence it can be picked up and truncated by an uploader between exports.
+ * <p/>
+ * This class has no Android dependencies and can be tested on a desktop JVM.
+ */
+public class QoeFileSink implements QoeCollector.Sink {
+
+    /** The file. */
+    private final File mFile;
+
+    /** The export time, in milliseconds since the epoch. */
+    private final long mTimeMs;
+
+
+    /**
+     * Constructor.
+     *
+     * @param file The file where to append.
+     */
+    public QoeFileSink(File file) {
+        this(file, System.currentTimeMillis());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file The file where to append.
+     * @param timeMs The export time written to each line, in milliseconds since the epoch.
+     */
+    public QoeFileSink(File file, long timeMs) {
+        mFile = file;
+        mTimeMs = timeMs;
+    }
+
+    @Override
+    public void export(String key, QoeCollector.Stats stats) throws IOException {
+        StringBuilder line = new StringBuilder(512);
+        line.append("{\"time\":").append(mTimeMs).append(",\"key\":\"");
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c >= ' ') {
+                line.append(c);
+            }
+        }
+        line.append("\",\"stats\":");
+        stats.writeJson(line);
+        line.append("}\n");
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(mFile, true), "UTF-8");
+        try {
+            writer.write(line.toString());
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.analytics;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import fi.finwe.orion360.sdk.basic.examples.playback.PlayerStateMachine;
+import fi.finwe.orion360.sdk.basic.examples.playback.PlayerStateTracker;
+
+/**
+ * Collects QoE metrics of a video view, see {@link QoeCollector}.
+ * <p/>
+ * The monitor follows the state machine of a {@link PlayerStateTracker}, which is driven by
+ * the callbacks of the video view, and turns its state changes into collector events: the
+ * first frame after preparing, stalls while playing, seeks, errors and the end of playback.
+ * Prepare the video and seek via the tracker, so that their start times are known.
+ * <p/>
+ * Sessions are aggregated by the rendition given to the constructor and the type of the
+ * active network when preparing starts. Must be used from the UI thread.
+ */
+public class QoeMonitor implements PlayerStateMachine.Listener {
+
+    /** Tag for logging. */
+    public static final String TAG = QoeMonitor.class.getSimpleName();
+
+    /** The connectivity manager, for the network type. */
+    private final ConnectivityManager mConnectivityManager;
+
+    /** The rendition of the video. */
+    private final String mRendition;
+
+    /** The collector. */
+    private final QoeCollector mCollector = new QoeCollector();
+
+
+    /**
+     * Constructor. Starts following the state machine of the tracker.
+     *
+     * @param tracker The state tracker of the video view.
+     * @param context The context.
+     * @param rendition The rendition of the video, e.g. "1280x640".
+     */
+    public QoeMonitor(PlayerStateTracker tracker, Context context, String rendition) {
+        mConnectivityManager = (ConnectivityManager) context.getSystemService(
+                Context.CONNECTIVITY_SERVICE);
+        mRendition = rendition;
+        tracker.getMachine().addListener(this);
+    }
+
+    /**
+     * Get the collector.
+     *
+     * @return the collector.
+     */
+    public QoeCollector getCollector() {
+        return mCollector;
+    }
+
+    /**
+     * Export the metrics collected so far, and start aggregating anew.
+     *
+     * @param sink The sink.
+     * @throws IOException if exporting fails.
+     */
+    public void flush(QoeCollector.Sink sink) throws IOException {
+        mCollector.flush(sink);
+    }
+
+    /**
+     * Export the metrics collected so far in a background thread, and start aggregating
+     * anew. The metrics are taken in the calling thread, and only handed to the sink in the
+     * background, since a sink such as {@link QoeFileSink} does disk I/O. Failures are logged.
+     *
+     * @param sink The sink.
+     */
+    public void flushInBackground(final QoeCollector.Sink sink) {
+        final List<String> keys = new ArrayList<>();
+        final List<QoeCollector.Stats> stats = new ArrayList<>();
+        try {
+            mCollector.flush(new QoeCollector.Sink() {
+                @Override
+                public void export(String key, QoeCollector.Stats keyStats) {
+                    keys.add(key);
+                    stats.add(keyStats);
+                }
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // Not thrown by the sink above.
+        }
+        if (keys.isEmpty()) return;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < keys.size(); i++) {
+                        sink.export(keys.get(i), stats.get(i));
+                    }
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to export QoE metrics", e);
+                }
+            }
+        }, TAG).start();
+    }
+
+    @Override
+    public void onStateChanged(PlayerStateMachine machine, int previous, int state) {
+        long now = SystemClock.elapsedRealtime();
+
+        // Leaving a state ends what was measured in it.
+        if (previous == PlayerStateMachine.STATE_STALLED) {
+            mCollector.onBufferingStopped(now);
+        } else if (previous == PlayerStateMachine.STATE_SEEKING) {
+            mCollector.onSeekCompleted(now);
+        }
+
+        switch (state) {
+            case PlayerStateMachine.STATE_PREPARING:
+                mCollector.setDimensions(mRendition, getNetworkType());
+                mCollector.onPrepareStarted(now);
+                break;
+            case PlayerStateMachine.STATE_PREPARED:
+                mCollector.onPrepared(now);
+                break;
+            case PlayerStateMachine.STATE_STALLED:
+                mCollector.onBufferingStarted(now);
+                break;
+            case PlayerStateMachine.STATE_PAUSED:
+                mCollector.onPaused(now);
+                break;
+            case PlayerStateMachine.STATE_SEEKING:
+                mCollector.onSeekStarted(now);
+                break;
+            case PlayerStateMachine.STATE_COMPLETED:
+            case PlayerStateMachine.STATE_IDLE:
+                mCollector.onSessionEnded(now);
+                break;
+            case PlayerStateMachine.STATE_ERROR:
+                mCollector.onError(now);
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void onFirstFrame(PlayerStateMachine machine, int positionMs) {
+        mCollector.onFirstFrame(SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * Get the type of the active network.
+     *
+     * @return the type, e.g. "WIFI" or "MOBILE", or "none" if not connected.
+     */
+    @SuppressWarnings("deprecation")
+    private String getNetworkType() {
+        if (null == mConnectivityManager) return QoeCollector.UNKNOWN;
+        NetworkInfo info = mConnectivityManager.getActiveNetworkInfo();
+        if (null == info || !info.isConnected()) return "none";
+        return info.getTypeName();
+    }
+}
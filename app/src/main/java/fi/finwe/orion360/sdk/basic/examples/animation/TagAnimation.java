@@ -0,0 +1,222 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.animation;
+
+/**
+ * An animation of a single float value, such as the alpha, scale or roll angle of a tag.
+ * <p/>
+ * Unlike ValueAnimator, a tag animation does not schedule itself: it is advanced by a
+ * {@link TagAnimationScheduler} together with all other running animations, once per display
+ * frame. Subclasses apply the animated value in {@link #onUpdate(float)}, and can override
+ * the start, end and cancel callbacks.
+ * <p/>
+ * The timing options follow ValueAnimator: a duration, a repeat count and mode, and an
+ * accelerate-decelerate interpolator by default.
+ * <p/>
+ * This class has no Android dependencies and can be tested on a desktop JVM.
+ */
+public abstract class TagAnimation {
+
+    /** Repeat count for repeating the animation forever. */
+    public static final int INFINITE = -1;
+
+    /** Repeat mode where each repetition starts again from the start value. */
+    public static final int RESTART = 1;
+
+    /** Repeat mode where every other repetition runs backwards. */
+    public static final int REVERSE = 2;
+
+    /** Interpolator that advances the value at a constant rate. */
+    public static final int INTERPOLATOR_LINEAR = 0;
+
+    /** Interpolator that starts and ends slowly, like the ValueAnimator default. */
+    public static final int INTERPOLATOR_ACCELERATE_DECELERATE = 1;
+
+    /** The start value. */
+    private final float mFrom;
+
+    /** The end value. */
+    private final float mTo;
+
+    /** The duration of one repetition, in milliseconds. */
+    private final long mDurationMs;
+
+    /** The number of repetitions after the first run, or INFINITE. */
+    private int mRepeatCount = 0;
+
+    /** The repeat mode, RESTART or REVERSE. */
+    private int mRepeatMode = RESTART;
+
+    /** The interpolator. */
+    private int mInterpolator = INTERPOLATOR_ACCELERATE_DECELERATE;
+
+    /** The frame time when the animation started, or -1 if it starts at the next frame. */
+    long mStartTimeMs = -1;
+
+    /** Flag for indicating whether the animation is running. */
+    boolean mRunning = false;
+
+    /** Flag for indicating whether the animation is in the list of a scheduler. */
+    boolean mListed = false;
+
+
+    /**
+     * Constructor.
+     *
+     * @param from The start value.
+     * @param to The end value.
+     * @param durationMs The duration of one repetition, in milliseconds.
+     */
+    public TagAnimation(float from, float to, long durationMs) {
+        mFrom = from;
+        mTo = to;
+        mDurationMs = durationMs;
+    }
+
+    /**
+     * Set the number of repetitions after the first run.
+     *
+     * @param repeatCount The repeat count, or INFINITE.
+     * @return this animation.
+     */
+    public TagAnimation setRepeatCount(int repeatCount) {
+        mRepeatCount = repeatCount;
+        return this;
+    }
+
+    /**
+     * Set the repeat mode.
+     *
+     * @param repeatMode RESTART or REVERSE.
+     * @return this animation.
+     */
+    public TagAnimation setRepeatMode(int repeatMode) {
+        mRepeatMode = repeatMode;
+        return this;
+    }
+
+    /**
+     * Set the interpolator.
+     *
+     * @param interpolator INTERPOLATOR_LINEAR or INTERPOLATOR_ACCELERATE_DECELERATE.
+     * @return this animation.
+     */
+    public TagAnimation setInterpolator(int interpolator) {
+        mInterpolator = interpolator;
+        return this;
+    }
+
+    /**
+     * Get the duration of one repetition.
+     *
+     * @return the duration in milliseconds.
+     */
+    public long getDuration() {
+        return mDurationMs;
+    }
+
+    /**
+     * Tells whether the animation is running.
+     *
+     * @return true if running, else false.
+     */
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * Called with the animated value at every frame while the animation is running.
+     *
+     * @param value The animated value.
+     */
+    protected abstract void onUpdate(float value);
+
+    /**
+     * Called when the animation is started.
+     */
+    protected void onStart() {}
+
+    /**
+     * Called when the animation has run to the end. Not called if the animation is canceled.
+     */
+    protected void onEnd() {}
+
+    /**
+     * Called when the animation is canceled before its end.
+     */
+    protected void onCancel() {}
+
+    /**
+     * Advance the animation to a frame time and apply the value.
+     *
+     * @param frameTimeMs The frame time, in milliseconds.
+     * @return true if the animation continues, false if this was its last frame.
+     */
+    boolean advance(long frameTimeMs) {
+        if (mStartTimeMs < 0) {
+            mStartTimeMs = frameTimeMs;
+        }
+        long elapsed = Math.max(0, frameTimeMs - mStartTimeMs);
+
+        float fraction;
+        long iteration;
+        boolean finished;
+        if (mDurationMs <= 0) {
+            iteration = Math.max(0, mRepeatCount);
+            fraction = 1.0f;
+            finished = true;
+        } else {
+            iteration = elapsed / mDurationMs;
+            finished = mRepeatCount != INFINITE && iteration > mRepeatCount;
+            if (finished) {
+                iteration = mRepeatCount;
+                fraction = 1.0f;
+            } else {
+                fraction = (float) (elapsed % mDurationMs) / mDurationMs;
+            }
+        }
+        if (mRepeatMode == REVERSE && iteration % 2 == 1) {
+            fraction = 1.0f - fraction;
+        }
+
+        onUpdate(mFrom + (mTo - mFrom) * interpolate(fraction));
+        return !finished;
+    }
+
+    /**
+     * Apply the interpolator to a fraction of the animation.
+     */
+    private float interpolate(float fraction) {
+        if (mInterpolator == INTERPOLATOR_ACCELERATE_DECELERATE) {
+            return (float) (Math.cos((fraction + 1) * Math.PI) / 2.0) + 0.5f;
+        }
+        return fraction;
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.animation;
+
+import java.util.Arrays;
+
+/**
+ * The running animations of a {@link TagAnimationScheduler}, advanced together once per frame.
+ * <p/>
+ * Starting and canceling an animation are constant time operations; canceled and finished
+ * animations are dropped from the list during the next tick. Animations may be started and
+ * canceled from their own callbacks, also during a tick. Does not allocate memory once the
+ * list has grown to the number of concurrent animations. Not thread safe.
+ * <p/>
+ * This class has no Android dependencies and can be tested on a desktop JVM.
+ */
+public class TagAnimationList {
+
+    /** Initial capacity of the list. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The listed animations, some of which may already be canceled. */
+    private TagAnimation[] mAnimations = new TagAnimation[INITIAL_CAPACITY];
+
+    /** The number of listed animations. */
+    private int mCount = 0;
+
+
+    /**
+     * Start an animation, or restart it from the beginning if it is already running.
+     *
+     * @param animation The animation.
+     */
+    public void start(TagAnimation animation) {
+        animation.mStartTimeMs = -1;
+        animation.mRunning = true;
+        if (!animation.mListed) {
+            if (mCount == mAnimations.length) {
+                mAnimations = Arrays.copyOf(mAnimations, 2 * mCount);
+            }
+            mAnimations[mCount++] = animation;
+            animation.mListed = true;
+        }
+        animation.onStart();
+    }
+
+    /**
+     * Cancel an animation. Does nothing if the animation is not running.
+     *
+     * @param animation The animation.
+     */
+    public void cancel(TagAnimation animation) {
+        if (!animation.mRunning) return;
+        animation.mRunning = false;
+        animation.onCancel();
+    }
+
+    /**
+     * Cancel all running animations.
+     */
+    public void cancelAll() {
+        for (int i = 0; i < mCount; i++) {
+            cancel(mAnimations[i]);
+        }
+    }
+
+    /**
+     * Tells whether any animation is running.
+     *
+     * @return true if there are running animations, else false.
+     */
+    public boolean hasRunning() {
+        for (int i = 0; i < mCount; i++) {
+            if (mAnimations[i].mRunning) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Advance all running animations to a frame time.
+     *
+     * @param frameTimeMs The frame time, in milliseconds.
+     * @return true if animations are still running after this frame, else false.
+     */
+    public boolean tick(long frameTimeMs) {
+
+        // Animations started from the callbacks are appended after the current count,
+        // they are advanced at the next tick.
+        int count = mCount;
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            TagAnimation animation = mAnimations[i];
+            if (animation.mRunning && !animation.advance(frameTimeMs)) {
+                animation.mRunning = false;
+                animation.onEnd();
+            }
+
+            // An animation may have been restarted from its own or another callback.
+            if (animation.mRunning) {
+                mAnimations[kept++] = animation;
+            } else {
+                animation.mListed = false;
+            }
+        }
+        for (int i = count; i < mCount; i++) {
+            mAnimations[kept++] = mAnimations[i];
+        }
+        Arrays.fill(mAnimations, kept, mCount, null);
+        mCount = kept;
+        return mCount > 0;
+    }
+}
@@ -0,0 +1,235 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.animation;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+
+/**
+ * Runs all tag animations of the app from one frame callback on the main thread.
+ * <p/>
+ * Each ValueAnimator posts its own updates, and each update listener writes its tag
+ * properties separately. With many animated hotspots this floods the main looper and the
+ * updates of different tags drift apart. The scheduler instead registers a single
+ * Choreographer frame callback while any animation is running, and advances all running
+ * {@link TagAnimation}s with the same vsync time in one pass. Below API level 16, where
+ * Choreographer is not available, a Handler tick at the display refresh rate is used instead.
+ * <p/>
+ * Work that should follow the animations in the same frame, such as flushing the tag
+ * property changes they made, can be posted with {@link #postAfterAnimations(Runnable)}.
+ * <p/>
+ * All methods must be called from the main thread.
+ */
+public class TagAnimationScheduler {
+
+    /** Tag for logging. */
+    public static final String TAG = TagAnimationScheduler.class.getSimpleName();
+
+    /** Frame interval used when Choreographer is not available, in milliseconds. */
+    private static final long FALLBACK_FRAME_INTERVAL_MS = 16;
+
+    /** The shared instance. */
+    private static TagAnimationScheduler sInstance;
+
+    /** The running animations. */
+    private final TagAnimationList mAnimations = new TagAnimationList();
+
+    /** Frame callback, on API level 16 and above. */
+    private final VsyncTicker mVsyncTicker;
+
+    /** Handler for the frame tick below API level 16. */
+    private final Handler mHandler;
+
+    /** Frame tick below API level 16. */
+    private final Runnable mFallbackTicker;
+
+    /** Callbacks to run once after the animations of the next frame. */
+    private ArrayList<Runnable> mAfterAnimations = new ArrayList<>();
+
+    /** The callbacks being run, swapped with mAfterAnimations at each frame. */
+    private ArrayList<Runnable> mRunningAfterAnimations = new ArrayList<>();
+
+    /** Flag for indicating whether a frame callback is pending. */
+    private boolean mFrameScheduled = false;
+
+
+    /**
+     * Get the shared scheduler for the main thread.
+     *
+     * @return the scheduler.
+     */
+    public static TagAnimationScheduler getInstance() {
+        if (null == sInstance) {
+            sInstance = new TagAnimationScheduler();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Constructor.
+     */
+    private TagAnimationScheduler() {
+        if (Build.VERSION.SDK_INT >= 16) {
+            mVsyncTicker = new VsyncTicker(this);
+            mHandler = null;
+            mFallbackTicker = null;
+        } else {
+            mVsyncTicker = null;
+            mHandler = new Handler(Looper.getMainLooper());
+            mFallbackTicker = new Runnable() {
+                @Override
+                public void run() {
+                    onFrame(SystemClock.uptimeMillis());
+                }
+            };
+        }
+    }
+
+    /**
+     * Start an animation at the next frame, or restart it if it is already running.
+     *
+     * @param animation The animation.
+     */
+    public void start(TagAnimation animation) {
+        mAnimations.start(animation);
+        scheduleFrame();
+    }
+
+    /**
+     * Cancel an animation. Does nothing if the animation is not running.
+     *
+     * @param animation The animation.
+     */
+    public void cancel(TagAnimation animation) {
+        mAnimations.cancel(animation);
+    }
+
+    /**
+     * Cancel all running animations.
+     */
+    public void cancelAll() {
+        mAnimations.cancelAll();
+    }
+
+    /**
+     * Run a callback once at the next frame, after the animations have been advanced.
+     * Does nothing if the callback is already waiting.
+     *
+     * @param callback The callback.
+     */
+    public void postAfterAnimations(Runnable callback) {
+        if (!mAfterAnimations.contains(callback)) {
+            mAfterAnimations.add(callback);
+        }
+        scheduleFrame();
+    }
+
+    /**
+     * Remove a callback posted with postAfterAnimations().
+     *
+     * @param callback The callback.
+     */
+    public void removeAfterAnimations(Runnable callback) {
+        mAfterAnimations.remove(callback);
+    }
+
+    /**
+     * Advance all animations and run the callbacks posted for this frame, and schedule
+     * the next frame if any animations are still running.
+     *
+     * @param frameTimeMs The frame time, in milliseconds.
+     */
+    private void onFrame(long frameTimeMs) {
+        mFrameScheduled = false;
+        boolean running = mAnimations.tick(frameTimeMs);
+
+        // Callbacks posted while running these are left for the next frame.
+        ArrayList<Runnable> callbacks = mAfterAnimations;
+        mAfterAnimations = mRunningAfterAnimations;
+        mRunningAfterAnimations = callbacks;
+        for (int i = 0; i < callbacks.size(); i++) {
+            callbacks.get(i).run();
+        }
+        callbacks.clear();
+
+        if (running || !mAfterAnimations.isEmpty()) {
+            scheduleFrame();
+        }
+    }
+
+    /**
+     * Schedule a frame callback, unless one is already pending.
+     */
+    private void scheduleFrame() {
+        if (mFrameScheduled) return;
+        mFrameScheduled = true;
+        if (null != mVsyncTicker) {
+            mVsyncTicker.post();
+        } else {
+            mHandler.postDelayed(mFallbackTicker, FALLBACK_FRAME_INTERVAL_MS);
+        }
+    }
+
+    /**
+     * Choreographer frame callback, kept in its own class so that older devices never load it.
+     */
+    private static class VsyncTicker implements Choreographer.FrameCallback {
+
+        /** The scheduler to advance. */
+        private final TagAnimationScheduler mScheduler;
+
+
+        /**
+         * Constructor.
+         *
+         * @param scheduler The scheduler to advance at each frame.
+         */
+        VsyncTicker(TagAnimationScheduler scheduler) {
+            mScheduler = scheduler;
+        }
+
+        /**
+         * Post a callback for the next frame.
+         */
+        void post() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mScheduler.onFrame(frameTimeNanos / 1000000);
+        }
+    }
+}
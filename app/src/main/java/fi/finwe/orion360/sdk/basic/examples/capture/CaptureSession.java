@@ -0,0 +1,386 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.capture;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.util.Locale;
+
+import fi.finwe.orion360.OrionSurfaceView;
+import fi.finwe.orion360.OrionVideoView;
+import fi.finwe.orion360.sdk.basic.examples.graphics.BitmapPool;
+
+/**
+ * Captures a sequence of screenshots at a target rate, for burst and timelapse capturing.
+ * <p/>
+ * A session requests a new screenshot from the video view at fixed intervals, for example
+ * 5 times per second for 10 seconds (burst), or once every 10 seconds for 30 frames
+ * (timelapse). Captured frames are saved in the background by the given encoder, in its
+ * format, to sequentially numbered files, such as '20161230120000_Orion360_Burst_00001.jpg'.
+ * Give each session a unique file name prefix, e.g. with a time stamp, since the numbering
+ * starts from 1.
+ * <p/>
+ * The owner creates the encoder once and passes it to each session, so that starting a session
+ * does not start new threads. The session listens to the encoder while it is running; the
+ * encoder should not be used for other screenshots meanwhile. Frames that are not passed to
+ * the encoder are returned to the given bitmap pool, like the encoder does with the saved ones.
+ * <p/>
+ * When the device cannot keep up with the target rate, frames are dropped rather than queued
+ * without limit: a frame is skipped if the previous screenshot has not been delivered yet, and
+ * the encoder drops frames when its queue is full. The achieved rate, the number of dropped
+ * frames and the encoding latency are reported to a listener in the UI thread.
+ * <p/>
+ * Since a video view has only one screenshot listener, the owner of the listener must forward
+ * screenshots to the session while it is running, see {@link #onScreenshotReady}.
+ * All methods must be called from the UI thread.
+ */
+public class CaptureSession implements ScreenshotEncoder.Listener {
+
+    /** Tag for logging. */
+    public static final String TAG = CaptureSession.class.getSimpleName();
+
+    /** Listener for capture session progress. Called in the UI thread. */
+    public interface Listener {
+
+        /**
+         * Called each time a frame has been saved, failed, or dropped.
+         *
+         * @param statistics The current statistics of the session.
+         */
+        void onCaptureProgress(Statistics statistics);
+
+        /**
+         * Called when all frames have been captured and saved (or dropped).
+         *
+         * @param statistics The final statistics of the session.
+         */
+        void onCaptureCompleted(Statistics statistics);
+    }
+
+    /** A snapshot of capture session statistics. */
+    public static class Statistics {
+
+        /** The number of frames requested so far. */
+        public final int requestedFrames;
+
+        /** The number of frames captured from the video view so far. */
+        public final int capturedFrames;
+
+        /** The number of frames saved to files so far. */
+        public final int savedFrames;
+
+        /** The number of frames dropped so far, either skipped or rejected by the encoder. */
+        public final int droppedFrames;
+
+        /** The number of frames that failed to be saved so far. */
+        public final int failedFrames;
+
+        /** The time elapsed since the session was started, in ms. */
+        public final long elapsedMs;
+
+        /** The achieved capture rate from the first captured frame to the last one, in fps. */
+        public final float achievedFps;
+
+        /** Average time to encode and save one frame, in ms. */
+        public final float averageEncodeMs;
+
+        /** Average time from capturing a frame until it was saved, in ms. */
+        public final float averageLatencyMs;
+
+        /** Maximum time from capturing a frame until it was saved, in ms. */
+        public final long maxLatencyMs;
+
+
+        /**
+         * Constructor.
+         */
+        Statistics(int requestedFrames, int capturedFrames, int savedFrames, int droppedFrames,
+                   int failedFrames, long elapsedMs, long captureSpanMs, float averageEncodeMs,
+                   float averageLatencyMs, long maxLatencyMs) {
+            this.requestedFrames = requestedFrames;
+            this.capturedFrames = capturedFrames;
+            this.savedFrames = savedFrames;
+            this.droppedFrames = droppedFrames;
+            this.failedFrames = failedFrames;
+            this.elapsedMs = elapsedMs;
+            this.achievedFps = captureSpanMs > 0
+                    ? 1000.0f * (capturedFrames - 1) / captureSpanMs : 0.0f;
+            this.averageEncodeMs = averageEncodeMs;
+            this.averageLatencyMs = averageLatencyMs;
+            this.maxLatencyMs = maxLatencyMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d/%d frames saved, %d dropped, %d failed, "
+                    + "%.1f fps, encode %.0f ms, latency %.0f ms (max %d ms)",
+                    savedFrames, requestedFrames, droppedFrames, failedFrames, achievedFps,
+                    averageEncodeMs, averageLatencyMs, maxLatencyMs);
+        }
+    }
+
+    /** Orion360 video view where to capture frames from. */
+    private final OrionVideoView mOrionVideoView;
+
+    /** Interval between frames, in ms. */
+    private final long mIntervalMs;
+
+    /** Directory where to save the frames. */
+    private final String mDirectory;
+
+    /** Counters and timing of the frames. */
+    private final CaptureTracker mTracker;
+
+    /** Encoder that saves the frames in background threads. */
+    private final ScreenshotEncoder mEncoder;
+
+    /** Pool where to return unused frames, or null to recycle them. */
+    private final BitmapPool mBitmapPool;
+
+    /** Handler for timing the capture requests. */
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /** Listener for progress, or null if none. */
+    private Listener mListener;
+
+    /** Flag for indicating if the session is currently running, or not. */
+    private boolean mIsRunning = false;
+
+    /** Flag for indicating if a screenshot has been requested but not yet delivered. */
+    private boolean mIsCapturePending = false;
+
+    /** Runnable that requests the next frame, re-scheduled at fixed times to avoid drift. */
+    private final Runnable mCaptureRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!mIsRunning || mTracker.isAllRequested()) return;
+
+            int requested = mTracker.onRequested();
+            if (mIsCapturePending) {
+
+                // The previous screenshot has not arrived yet; skip this frame.
+                mTracker.onSkipped();
+                notifyProgress();
+            } else {
+                try {
+                    mIsCapturePending = true;
+                    mOrionVideoView.captureScreenshotAsync();
+                } catch (OrionVideoView.LicenseVerificationException e) {
+                    Log.e(TAG, "License does not cover screenshots", e);
+                    mIsCapturePending = false;
+                    mTracker.onCaptureFailed();
+                }
+            }
+
+            if (!mTracker.isAllRequested()) {
+                mHandler.postAtTime(this, mTracker.getRequestTime(requested, mIntervalMs));
+            } else {
+                checkCompleted();
+            }
+        }
+    };
+
+
+    /**
+     * Constructor.
+     *
+     * @param orionVideoView The video view where to capture frames from.
+     * @param intervalMs The interval between frames, in ms (for example 200 for 5 fps).
+     * @param frameCount The total number of frames to capture.
+     * @param directory The directory where to save the frames.
+     * @param fileNamePrefix The file name prefix for the frames, unique to the session.
+     * @param encoder The encoder that saves the frames.
+     * @param bitmapPool The pool where to return unused frames, or null to recycle them.
+     */
+    public CaptureSession(OrionVideoView orionVideoView, long intervalMs, int frameCount,
+                          String directory, String fileNamePrefix, ScreenshotEncoder encoder,
+                          BitmapPool bitmapPool) {
+        mOrionVideoView = orionVideoView;
+        mIntervalMs = intervalMs;
+        mDirectory = directory;
+        mTracker = new CaptureTracker(frameCount, directory, fileNamePrefix);
+        mEncoder = encoder;
+        mBitmapPool = bitmapPool;
+    }
+
+    /**
+     * Create a burst capture session.
+     *
+     * @param orionVideoView The video view where to capture frames from.
+     * @param framesPerSecond The target capture rate.
+     * @param durationMs The length of the burst, in ms.
+     * @param directory The directory where to save the frames.
+     * @param fileNamePrefix The file name prefix for the frames, unique to the session.
+     * @param encoder The encoder that saves the frames.
+     * @param bitmapPool The pool where to return unused frames, or null to recycle them.
+     * @return the new session.
+     */
+    public static CaptureSession burst(OrionVideoView orionVideoView, float framesPerSecond,
+                                       long durationMs, String directory,
+                                       String fileNamePrefix, ScreenshotEncoder encoder,
+                                       BitmapPool bitmapPool) {
+        return new CaptureSession(orionVideoView, (long) (1000 / framesPerSecond),
+                (int) Math.ceil(durationMs * framesPerSecond / 1000.0f), directory,
+                fileNamePrefix, encoder, bitmapPool);
+    }
+
+    /**
+     * Set listener for capture progress.
+     *
+     * @param listener The listener, or null to remove.
+     */
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Start capturing frames. The first frame is captured immediately.
+     */
+    public void start() {
+        if (mIsRunning) return;
+        if (new File(mDirectory).mkdirs()) {
+            Log.i(TAG, "Created directory " + mDirectory);
+        }
+        mIsRunning = true;
+        mEncoder.setListener(this);
+        mTracker.start(SystemClock.uptimeMillis());
+        mHandler.post(mCaptureRunnable);
+    }
+
+    /**
+     * Stop capturing frames. Frames that were already captured will still be saved, but
+     * no more progress is reported. The encoder is left running for the next session.
+     */
+    public void stop() {
+        if (mIsRunning) {
+            mEncoder.setListener(null);
+        }
+        mIsRunning = false;
+        mHandler.removeCallbacks(mCaptureRunnable);
+    }
+
+    /**
+     * Tells whether the session is currently running, or not.
+     *
+     * @return true if running, else false.
+     */
+    public boolean isRunning() {
+        return mIsRunning;
+    }
+
+    /**
+     * Get the current statistics of the session.
+     *
+     * @return a snapshot of the statistics.
+     */
+    public Statistics getStatistics() {
+        return mTracker.getStatistics(SystemClock.uptimeMillis());
+    }
+
+    /**
+     * To be called from the video view's screenshot listener while the session is running.
+     * <p/>
+     * The session takes ownership of the bitmap.
+     *
+     * @param view The view where the screenshot was captured from.
+     * @param bitmap The screenshot.
+     * @see OrionSurfaceView.OnScreenshotReadyListener
+     */
+    public void onScreenshotReady(OrionSurfaceView view, Bitmap bitmap) {
+        mIsCapturePending = false;
+        if (!mIsRunning) {
+            if (null != mBitmapPool) {
+                mBitmapPool.put(bitmap);
+            } else {
+                bitmap.recycle();
+            }
+            return;
+        }
+
+        String filePath = mTracker.onCaptured(mEncoder.getFormat().getFileExtension(),
+                SystemClock.uptimeMillis());
+        mEncoder.submit(bitmap, filePath);
+    }
+
+    @Override
+    public void onScreenshotSaved(String filePath, long encodeTimeMs) {
+        if (!mTracker.isPending(filePath)) return;
+        mTracker.onSaved(filePath, encodeTimeMs, SystemClock.uptimeMillis());
+        notifyProgress();
+        checkCompleted();
+    }
+
+    @Override
+    public void onScreenshotFailed(String filePath, Exception e) {
+        if (!mTracker.isPending(filePath)) return;
+        mTracker.onFailed(filePath, SystemClock.uptimeMillis());
+        notifyProgress();
+        checkCompleted();
+    }
+
+    @Override
+    public void onScreenshotDropped(String filePath) {
+        if (!mTracker.isPending(filePath)) return;
+        mTracker.onDropped(filePath);
+        notifyProgress();
+        checkCompleted();
+    }
+
+    /**
+     * Notify listener about progress.
+     */
+    private void notifyProgress() {
+        if (null != mListener) {
+            mListener.onCaptureProgress(getStatistics());
+        }
+    }
+
+    /**
+     * Check if all frames have been handled, and if so, finish the session.
+     */
+    private void checkCompleted() {
+        if (!mIsRunning || !mTracker.isAllRequested() || mIsCapturePending
+                || mTracker.hasPendingFrames()) {
+            return;
+        }
+        Statistics statistics = getStatistics();
+        Log.i(TAG, "Capture session completed: " + statistics);
+        Listener listener = mListener;
+        stop();
+        if (null != listener) {
+            listener.onCaptureCompleted(statistics);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.capture;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * Bookkeeping for a {@link CaptureSession}: counts requested, captured, saved, dropped and
+ * failed frames, names the frame files, and measures encoding latency and capture rate.
+ * <p/>
+ * The achieved capture rate is measured from the first captured frame to the last one, so that
+ * the time spent waiting for the encoders to drain after the last capture does not count.
+ * <p/>
+ * Times are given by the caller, in ms. This class is not thread safe. It has no Android
+ * dependencies and can be tested on a desktop JVM.
+ */
+public class CaptureTracker {
+
+    /** File name format for the captured frames: prefix, running frame number, extension. */
+    private static final String FILE_NAME_FORMAT = "%s_%05d.%s";
+
+    /** Total number of frames to capture. */
+    private final int mFrameCount;
+
+    /** Directory where to save the frames. */
+    private final String mDirectory;
+
+    /** File name prefix for the frames. */
+    private final String mFileNamePrefix;
+
+    /** Capture times of the frames that are being saved, keyed by file path. */
+    private final HashMap<String, Long> mCaptureTimes = new HashMap<>();
+
+    /** Time when the session was started, in ms. */
+    private long mStartTime;
+
+    /** Times when the first and the last frame were captured, in ms. */
+    private long mFirstCaptureTime, mLastCaptureTime;
+
+    /** Counters for the statistics; finished frames are the ones saved or failed to save. */
+    private int mRequested, mCaptured, mSaved, mDropped, mFailed, mFinished;
+
+    /** Sums and maximum for the statistics, in ms. */
+    private long mEncodeTimeSum, mLatencySum, mMaxLatency;
+
+
+    /**
+     * Constructor.
+     *
+     * @param frameCount The total number of frames to capture.
+     * @param directory The directory where to save the frames.
+     * @param fileNamePrefix The file name prefix for the frames.
+     */
+    public CaptureTracker(int frameCount, String directory, String fileNamePrefix) {
+        mFrameCount = frameCount;
+        mDirectory = directory;
+        mFileNamePrefix = fileNamePrefix;
+    }
+
+    /**
+     * Mark the session started.
+     *
+     * @param now The current time, in ms.
+     */
+    public void start(long now) {
+        mStartTime = now;
+    }
+
+    /**
+     * Get the time when the given frame should be requested.
+     *
+     * @param frameIndex The index of the frame, starting from 0.
+     * @param intervalMs The interval between frames, in ms.
+     * @return the time, in ms.
+     */
+    public long getRequestTime(int frameIndex, long intervalMs) {
+        return mStartTime + frameIndex * intervalMs;
+    }
+
+    /**
+     * Count a new frame request.
+     *
+     * @return the number of frames requested so far, including this one.
+     */
+    public int onRequested() {
+        return ++mRequested;
+    }
+
+    /**
+     * Count a requested frame that was skipped because the previous one was still pending.
+     */
+    public void onSkipped() {
+        mDropped++;
+    }
+
+    /**
+     * Count a requested frame that could not be captured at all.
+     */
+    public void onCaptureFailed() {
+        mFailed++;
+    }
+
+    /**
+     * Count a captured frame and name its file.
+     *
+     * @param fileExtension The file name extension of the frame, without the dot.
+     * @param now The current time, in ms.
+     * @return the path of the file where to save the frame.
+     */
+    public String onCaptured(String fileExtension, long now) {
+        mCaptured++;
+        if (mCaptured == 1) {
+            mFirstCaptureTime = now;
+        }
+        mLastCaptureTime = now;
+        String filePath = mDirectory + File.separator + String.format(Locale.US,
+                FILE_NAME_FORMAT, mFileNamePrefix, mCaptured, fileExtension);
+        mCaptureTimes.put(filePath, now);
+        return filePath;
+    }
+
+    /**
+     * Count a frame that has been saved.
+     *
+     * @param filePath The file path of the frame.
+     * @param encodeTimeMs The time it took to encode and save the frame, in ms.
+     * @param now The current time, in ms.
+     */
+    public void onSaved(String filePath, long encodeTimeMs, long now) {
+        mSaved++;
+        mEncodeTimeSum += encodeTimeMs;
+        updateLatency(filePath, now);
+    }
+
+    /**
+     * Count a frame that failed to be saved.
+     *
+     * @param filePath The file path of the frame.
+     * @param now The current time, in ms.
+     */
+    public void onFailed(String filePath, long now) {
+        mFailed++;
+        updateLatency(filePath, now);
+    }
+
+    /**
+     * Count a captured frame that the encoder dropped.
+     *
+     * @param filePath The file path of the frame.
+     */
+    public void onDropped(String filePath) {
+        mDropped++;
+        mCaptureTimes.remove(filePath);
+    }
+
+    /**
+     * Tells whether all frames have been requested, or not.
+     *
+     * @return true if all frames have been requested, else false.
+     */
+    public boolean isAllRequested() {
+        return mRequested >= mFrameCount;
+    }
+
+    /**
+     * Tells whether a frame of this session is still being saved, or not.
+     *
+     * @param filePath The file path of the frame.
+     * @return true if the frame is being saved, false if it is not a frame of this session
+     * or it has already been counted.
+     */
+    public boolean isPending(String filePath) {
+        return mCaptureTimes.containsKey(filePath);
+    }
+
+    /**
+     * Tells whether there are captured frames that are still being saved, or not.
+     *
+     * @return true if frames are being saved, else false.
+     */
+    public boolean hasPendingFrames() {
+        return !mCaptureTimes.isEmpty();
+    }
+
+    /**
+     * Get the current statistics of the session.
+     *
+     * @param now The current time, in ms.
+     * @return a snapshot of the statistics.
+     */
+    public CaptureSession.Statistics getStatistics(long now) {
+        return new CaptureSession.Statistics(mRequested, mCaptured, mSaved, mDropped, mFailed,
+                now - mStartTime, mLastCaptureTime - mFirstCaptureTime,
+                mSaved > 0 ? (float) mEncodeTimeSum / mSaved : 0.0f,
+                mFinished > 0 ? (float) mLatencySum / mFinished : 0.0f, mMaxLatency);
+    }
+
+    /**
+     * Update latency statistics for a frame that has been saved or has failed.
+     *
+     * @param filePath The file path of the frame.
+     * @param now The current time, in ms.
+     */
+    private void updateLatency(String filePath, long now) {
+        Long captureTime = mCaptureTimes.remove(filePath);
+        if (null != captureTime) {
+            long latency = now - captureTime;
+            mFinished++;
+            mLatencySum += latency;
+            mMaxLatency = Math.max(mMaxLatency, latency);
+        }
+    }
+}
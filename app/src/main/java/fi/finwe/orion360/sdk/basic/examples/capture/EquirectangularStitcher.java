@@ -0,0 +1,374 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.capture;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Stitches rectilinear viewport captures (tiles) into one equirectangular panorama.
+ * <p/>
+ * Each tile is described by its pixels, its horizontal field of view, and the orientation of
+ * the camera that captured it, given as forward, right and up unit vectors. The stitcher uses
+ * its own right-handed frame: x points right, y up, and z forward (the center of the panorama).
+ * Longitude grows to the right and latitude upwards.
+ * <p/>
+ * For each pixel of the panorama, the direction on the sphere is projected to every tile that
+ * can see it, the tile is sampled bilinearly, and the samples are blended with weights that fall
+ * off towards the tile edges, which hides the seams between overlapping tiles. Pixels that no
+ * tile covers are left black.
+ * <p/>
+ * Rows of the panorama are independent, so rendering parallelizes well: with a ForkJoinPool
+ * (Java 7, Android API level 21), the rows are split recursively between the pool's threads.
+ * <p/>
+ * This class has no Android dependencies and can be tested on a desktop JVM.
+ */
+public class EquirectangularStitcher {
+
+    /** Maximum number of rows rendered by one fork/join task without splitting further. */
+    static final int ROWS_PER_TASK = 8;
+
+    /** Opaque black, for pixels that no tile covers. */
+    private static final int UNCOVERED = 0xFF000000;
+
+    /** A rectilinear viewport capture. */
+    public static class Tile {
+
+        /** The pixels in ARGB format, row by row without padding. */
+        final int[] mPixels;
+
+        /** The width of the tile, in pixels. */
+        final int mWidth;
+
+        /** The height of the tile, in pixels. */
+        final int mHeight;
+
+        /** The focal length, in pixels. */
+        final float mFocalLength;
+
+        /** The camera's forward, right and up unit vectors, in the stitcher's frame. */
+        final float[] mForward, mRight, mUp;
+
+        /** The range of latitudes that the tile can cover, in radians. */
+        final float mMinLatitude, mMaxLatitude;
+
+
+        /**
+         * Constructor.
+         *
+         * @param pixels The pixels in ARGB format, row by row without padding.
+         * @param width The width of the tile, in pixels.
+         * @param height The height of the tile, in pixels.
+         * @param horizontalFovDeg The horizontal field of view, in degrees.
+         * @param forward The direction the camera was looking at, as {x, y, z}.
+         * @param right The camera's right direction, as {x, y, z}.
+         * @param up The camera's up direction, as {x, y, z}.
+         */
+        public Tile(int[] pixels, int width, int height, float horizontalFovDeg,
+                    float[] forward, float[] right, float[] up) {
+            mPixels = pixels;
+            mWidth = width;
+            mHeight = height;
+            mFocalLength = (float) (0.5 * width / Math.tan(Math.toRadians(horizontalFovDeg) / 2));
+            mForward = forward;
+            mRight = right;
+            mUp = up;
+
+            // The tile cannot see further from its center than its corners.
+            double radius = Math.atan(Math.hypot(0.5 * width, 0.5 * height) / mFocalLength);
+            double latitude = Math.asin(Math.max(-1.0, Math.min(1.0, forward[1])));
+            mMinLatitude = (float) (latitude - radius);
+            mMaxLatitude = (float) (latitude + radius);
+        }
+
+        /**
+         * Create a tile captured by a camera with the given yaw and pitch, and no roll.
+         *
+         * @param pixels The pixels in ARGB format, row by row without padding.
+         * @param width The width of the tile, in pixels.
+         * @param height The height of the tile, in pixels.
+         * @param horizontalFovDeg The horizontal field of view, in degrees.
+         * @param yawDeg The yaw angle, in degrees; positive turns right.
+         * @param pitchDeg The pitch angle, in degrees; positive turns up.
+         * @return the tile.
+         */
+        public static Tile fromYawPitch(int[] pixels, int width, int height,
+                                        float horizontalFovDeg, float yawDeg, float pitchDeg) {
+            float[][] basis = getBasis(yawDeg, pitchDeg);
+            return new Tile(pixels, width, height, horizontalFovDeg,
+                    basis[0], basis[1], basis[2]);
+        }
+    }
+
+    /** The tiles to be stitched. */
+    private final List<Tile> mTiles = new ArrayList<>();
+
+
+    /**
+     * Add a tile.
+     *
+     * @param tile The tile.
+     */
+    public void addTile(Tile tile) {
+        mTiles.add(tile);
+    }
+
+    /**
+     * Get the number of tiles.
+     *
+     * @return the tile count.
+     */
+    public int getTileCount() {
+        return mTiles.size();
+    }
+
+    /**
+     * Create a grid of camera orientations that covers the full sphere with the given viewport.
+     * <p/>
+     * The grid has rows of tiles at evenly spaced pitch angles, with as many tiles per row as the
+     * row needs to cover the full circle at its widest latitude, plus one tile at each pole.
+     *
+     * @param horizontalFovDeg The horizontal field of view of the viewport, in degrees.
+     * @param verticalFovDeg The vertical field of view of the viewport, in degrees.
+     * @param overlap The fraction of the field of view that adjacent tiles overlap, e.g. 0.2.
+     * @return the orientations as {yaw, pitch} pairs, in degrees.
+     */
+    public static float[][] createGrid(float horizontalFovDeg, float verticalFovDeg,
+                                       float overlap) {
+        float verticalStep = verticalFovDeg * (1.0f - overlap);
+        float horizontalStep = horizontalFovDeg * (1.0f - overlap);
+        float maxPitch = Math.max(0.0f, 90.0f - verticalFovDeg / 2);
+        int rows = (int) Math.ceil(2 * maxPitch / verticalStep) + 1;
+
+        List<float[]> grid = new ArrayList<>();
+        grid.add(new float[] { 0.0f, 90.0f });
+        for (int row = 0; row < rows; row++) {
+            float pitch = rows > 1 ? maxPitch - row * 2 * maxPitch / (rows - 1) : 0.0f;
+
+            // The row is widest at its edge that is closest to the equator.
+            float widestLatitude = Math.max(0.0f, Math.abs(pitch) - verticalFovDeg / 2);
+            int columns = Math.max(1, (int) Math.ceil(
+                    360.0 * Math.cos(Math.toRadians(widestLatitude)) / horizontalStep));
+            for (int column = 0; column < columns; column++) {
+                float yaw = -180.0f + (column + 0.5f) * 360.0f / columns;
+                grid.add(new float[] { yaw, pitch });
+            }
+        }
+        grid.add(new float[] { 0.0f, -90.0f });
+        return grid.toArray(new float[grid.size()][]);
+    }
+
+    /**
+     * Render the panorama in the calling thread.
+     *
+     * @param out The output pixels in ARGB format, at least width * height.
+     * @param width The width of the panorama, typically twice the height.
+     * @param height The height of the panorama.
+     */
+    public void render(int[] out, int width, int height) {
+        renderRows(out, width, height, createColumnTable(width), 0, height);
+    }
+
+    /**
+     * Render the panorama in parallel in the given pool. Returns when done.
+     *
+     * @param out The output pixels in ARGB format, at least width * height.
+     * @param width The width of the panorama, typically twice the height.
+     * @param height The height of the panorama.
+     * @param pool The pool where to render.
+     */
+    public void render(int[] out, int width, int height, ForkJoinPool pool) {
+        pool.invoke(new RenderTask(out, width, height, createColumnTable(width), 0, height));
+    }
+
+    /**
+     * Get the camera basis vectors for the given yaw and pitch.
+     *
+     * @param yawDeg The yaw angle, in degrees; positive turns right.
+     * @param pitchDeg The pitch angle, in degrees; positive turns up.
+     * @return the forward, right and up vectors.
+     */
+    static float[][] getBasis(float yawDeg, float pitchDeg) {
+        double yaw = Math.toRadians(yawDeg);
+        double pitch = Math.toRadians(pitchDeg);
+        float sinYaw = (float) Math.sin(yaw), cosYaw = (float) Math.cos(yaw);
+        float sinPitch = (float) Math.sin(pitch), cosPitch = (float) Math.cos(pitch);
+        return new float[][] {
+                { cosPitch * sinYaw, sinPitch, cosPitch * cosYaw },
+                { cosYaw, 0.0f, -sinYaw },
+                { -sinPitch * sinYaw, cosPitch, -sinPitch * cosYaw } };
+    }
+
+    /**
+     * Precompute the sine and cosine of the longitude of each column.
+     *
+     * @param width The width of the panorama.
+     * @return the table as {sin, cos} pairs.
+     */
+    private static float[] createColumnTable(int width) {
+        float[] table = new float[2 * width];
+        for (int x = 0; x < width; x++) {
+            double longitude = ((x + 0.5) / width - 0.5) * 2 * Math.PI;
+            table[2 * x] = (float) Math.sin(longitude);
+            table[2 * x + 1] = (float) Math.cos(longitude);
+        }
+        return table;
+    }
+
+    /**
+     * Render a range of rows of the panorama.
+     *
+     * @param out The output pixels.
+     * @param width The width of the panorama.
+     * @param height The height of the panorama.
+     * @param columns The column table, see {@link #createColumnTable(int)}.
+     * @param startY The first row.
+     * @param endY The row after the last row.
+     */
+    void renderRows(int[] out, int width, int height, float[] columns, int startY, int endY) {
+        Tile[] candidates = new Tile[mTiles.size()];
+        for (int y = startY; y < endY; y++) {
+            double latitude = (0.5 - (y + 0.5) / height) * Math.PI;
+            float sinLatitude = (float) Math.sin(latitude);
+            float cosLatitude = (float) Math.cos(latitude);
+
+            // Only tiles whose latitude range includes this row need to be considered.
+            int candidateCount = 0;
+            for (Tile tile : mTiles) {
+                if (latitude >= tile.mMinLatitude && latitude <= tile.mMaxLatitude) {
+                    candidates[candidateCount++] = tile;
+                }
+            }
+
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                float vx = cosLatitude * columns[2 * x];
+                float vy = sinLatitude;
+                float vz = cosLatitude * columns[2 * x + 1];
+                out[offset + x] = sample(candidates, candidateCount, vx, vy, vz);
+            }
+        }
+    }
+
+    /**
+     * Blend the samples of all tiles that see the given direction.
+     *
+     * @return the blended color in ARGB format.
+     */
+    private static int sample(Tile[] tiles, int count, float vx, float vy, float vz) {
+        float sumR = 0.0f, sumG = 0.0f, sumB = 0.0f, sumWeight = 0.0f;
+        for (int i = 0; i < count; i++) {
+            Tile tile = tiles[i];
+            float[] f = tile.mForward;
+            float zc = vx * f[0] + vy * f[1] + vz * f[2];
+            if (zc <= 0.0f) continue;
+
+            float[] r = tile.mRight;
+            float[] u = tile.mUp;
+            float xc = vx * r[0] + vy * r[1] + vz * r[2];
+            float yc = vx * u[0] + vy * u[1] + vz * u[2];
+            float px = 0.5f * tile.mWidth + tile.mFocalLength * xc / zc - 0.5f;
+            float py = 0.5f * tile.mHeight - tile.mFocalLength * yc / zc - 0.5f;
+            if (px < 0.0f || py < 0.0f || px > tile.mWidth - 1 || py > tile.mHeight - 1) {
+                continue;
+            }
+
+            // Weight by distance to the nearest tile edge, for seamless blending.
+            float weight = Math.min(Math.min(px, tile.mWidth - 1 - px),
+                    Math.min(py, tile.mHeight - 1 - py)) + 0.5f;
+
+            int x0 = (int) px, y0 = (int) py;
+            int x1 = Math.min(x0 + 1, tile.mWidth - 1), y1 = Math.min(y0 + 1, tile.mHeight - 1);
+            float fx = px - x0, fy = py - y0;
+            int[] pixels = tile.mPixels;
+            int c00 = pixels[y0 * tile.mWidth + x0], c10 = pixels[y0 * tile.mWidth + x1];
+            int c01 = pixels[y1 * tile.mWidth + x0], c11 = pixels[y1 * tile.mWidth + x1];
+            float w00 = (1 - fx) * (1 - fy) * weight, w10 = fx * (1 - fy) * weight;
+            float w01 = (1 - fx) * fy * weight, w11 = fx * fy * weight;
+            sumR += ((c00 >> 16) & 0xFF) * w00 + ((c10 >> 16) & 0xFF) * w10
+                    + ((c01 >> 16) & 0xFF) * w01 + ((c11 >> 16) & 0xFF) * w11;
+            sumG += ((c00 >> 8) & 0xFF) * w00 + ((c10 >> 8) & 0xFF) * w10
+                    + ((c01 >> 8) & 0xFF) * w01 + ((c11 >> 8) & 0xFF) * w11;
+            sumB += (c00 & 0xFF) * w00 + (c10 & 0xFF) * w10
+                    + (c01 & 0xFF) * w01 + (c11 & 0xFF) * w11;
+            sumWeight += weight;
+        }
+        if (sumWeight <= 0.0f) {
+            return UNCOVERED;
+        }
+        int red = Math.round(sumR / sumWeight);
+        int green = Math.round(sumG / sumWeight);
+        int blue = Math.round(sumB / sumWeight);
+        return 0xFF000000 | (red << 16) | (green << 8) | blue;
+    }
+
+    /** A fork/join task that renders a range of rows, splitting it in halves when large. */
+    private class RenderTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        /** The output pixels. */
+        private final int[] mOut;
+
+        /** The size of the panorama. */
+        private final int mWidth, mHeight;
+
+        /** The column table. */
+        private final float[] mColumns;
+
+        /** The range of rows. */
+        private final int mStartY, mEndY;
+
+
+        /**
+         * Constructor.
+         */
+        RenderTask(int[] out, int width, int height, float[] columns, int startY, int endY) {
+            mOut = out;
+            mWidth = width;
+            mHeight = height;
+            mColumns = columns;
+            mStartY = startY;
+            mEndY = endY;
+        }
+
+        @Override
+        protected void compute() {
+            if (mEndY - mStartY <= ROWS_PER_TASK) {
+                renderRows(mOut, mWidth, mHeight, mColumns, mStartY, mEndY);
+            } else {
+                int middleY = (mStartY + mEndY) >>> 1;
+                invokeAll(new RenderTask(mOut, mWidth, mHeight, mColumns, mStartY, middleY),
+                        new RenderTask(mOut, mWidth, mHeight, mColumns, middleY, mEndY));
+            }
+        }
+    }
+}
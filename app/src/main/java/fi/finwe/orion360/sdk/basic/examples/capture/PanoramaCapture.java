@@ -0,0 +1,417 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.capture;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.concurrent.ForkJoinPool;
+
+import fi.finwe.math.QuatF;
+import fi.finwe.math.Vec3F;
+import fi.finwe.orion360.OrionSurfaceView;
+import fi.finwe.orion360.OrionVideoView;
+import fi.finwe.orion360.OrionViewConfig;
+import fi.finwe.orion360.sdk.basic.examples.graphics.BitmapPool;
+
+/**
+ * Captures a full-sphere equirectangular panorama of the current video frame.
+ * <p/>
+ * A screenshot only contains the current viewport. To capture the whole sphere, this class
+ * pauses the video, locks the field of view, and turns the view through a grid of orientations
+ * that covers the sphere with some overlap. At each orientation it captures a screenshot (tile)
+ * and records the actual viewing rotation. When all tiles are in, the original view state is
+ * restored and the tiles are reprojected to one equirectangular image in a background thread,
+ * see {@link EquirectangularStitcher}.
+ * <p/>
+ * Since a video view has only one screenshot listener, the owner of the listener must forward
+ * screenshots to the capture while it is running, see {@link #onScreenshotReady}.
+ * All methods must be called from the UI thread.
+ */
+public class PanoramaCapture {
+
+    /** Tag for logging. */
+    public static final String TAG = PanoramaCapture.class.getSimpleName();
+
+    /** Horizontal field of view used for capturing the tiles, in degrees. */
+    private static final float CAPTURE_FOV = 90.0f;
+
+    /** The fraction of the field of view that adjacent tiles overlap. */
+    private static final float OVERLAP = 0.2f;
+
+    /** Time to let the view render at a new orientation before capturing it, in ms. */
+    private static final long SETTLE_TIME_MS = 150;
+
+    /** Listener for panorama capture results. Called in the UI thread. */
+    public interface Listener {
+
+        /**
+         * Called after each captured tile.
+         *
+         * @param capturedTiles The number of tiles captured so far.
+         * @param totalTiles The total number of tiles.
+         */
+        void onPanoramaProgress(int capturedTiles, int totalTiles);
+
+        /**
+         * Called when the panorama is ready. The receiver owns the bitmap.
+         *
+         * @param panorama The equirectangular panorama, twice as wide as high.
+         */
+        void onPanoramaCompleted(Bitmap panorama);
+
+        /**
+         * Called when capturing the panorama failed.
+         *
+         * @param e The exception that caused the failure.
+         */
+        void onPanoramaFailed(Exception e);
+    }
+
+    /** Orion360 video view where to capture the panorama from. */
+    private final OrionVideoView mOrionVideoView;
+
+    /** The width of the panorama, in pixels. */
+    private final int mWidth;
+
+    /** Pool for borrowing and returning bitmaps. */
+    private final BitmapPool mBitmapPool;
+
+    /** Handler for timing the captures and delivering results. */
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /** Stitcher that collects the tiles. */
+    private final EquirectangularStitcher mStitcher = new EquirectangularStitcher();
+
+    /** Listener for results, or null if none. */
+    private Listener mListener;
+
+    /** The grid of orientations as {yaw, pitch} pairs, in degrees. */
+    private float[][] mGrid;
+
+    /** Index of the grid orientation being captured. */
+    private int mTileIndex;
+
+    /** The viewing rotation at the time the current tile was captured. */
+    private QuatF mTileRotation;
+
+    /** The width of the tiles after scaling, in pixels. */
+    private int mTileWidth;
+
+    /** View configuration to be restored after capturing. */
+    private OrionViewConfig mSavedConfig;
+
+    /** Viewing rotation to be restored after capturing. */
+    private QuatF mSavedRotation;
+
+    /** Flag for indicating if the video was playing before capturing, or not. */
+    private boolean mWasPlaying;
+
+    /** Flag for indicating if sensor control was enabled before capturing, or not. */
+    private boolean mWasSensorControlEnabled;
+
+    /** Flag for indicating if tiles are being captured, or not. */
+    private boolean mIsCapturing = false;
+
+    /** Runnable that captures the tile at the current orientation. */
+    private final Runnable mCaptureRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!mIsCapturing) return;
+            mTileRotation = mOrionVideoView.getViewingRotation();
+            try {
+                mOrionVideoView.captureScreenshotAsync();
+            } catch (OrionVideoView.LicenseVerificationException e) {
+                fail(e);
+            }
+        }
+    };
+
+
+    /**
+     * Constructor.
+     *
+     * @param orionVideoView The video view where to capture the panorama from.
+     * @param width The width of the panorama, in pixels; the height is half of it.
+     * @param bitmapPool The pool for borrowing and returning bitmaps.
+     */
+    public PanoramaCapture(OrionVideoView orionVideoView, int width, BitmapPool bitmapPool) {
+        mOrionVideoView = orionVideoView;
+        mWidth = width;
+        mBitmapPool = bitmapPool;
+    }
+
+    /**
+     * Set listener for results.
+     *
+     * @param listener The listener, or null to remove.
+     */
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Tells whether tiles are currently being captured, or not.
+     *
+     * @return true if capturing, else false.
+     */
+    public boolean isCapturing() {
+        return mIsCapturing;
+    }
+
+    /**
+     * Start capturing the panorama, for a view whose orientation sensor control is enabled
+     * (the default).
+     */
+    public void start() {
+        start(true);
+    }
+
+    /**
+     * Start capturing the panorama.
+     *
+     * @param sensorControlEnabled true if orientation sensor control of the view is currently
+     *                             enabled, else false. The view does not tell it, hence it
+     *                             must be given in order to restore it when capturing ends.
+     */
+    public void start(boolean sensorControlEnabled) {
+        if (mIsCapturing) return;
+
+        // Freeze the frame and the view: pause the video and turn off sensor control.
+        mWasPlaying = mOrionVideoView.isPlaying();
+        mWasSensorControlEnabled = sensorControlEnabled;
+        mOrionVideoView.pause();
+        mSavedRotation = mOrionVideoView.getViewingRotation();
+        mSavedConfig = mOrionVideoView.getCurrentConfigCopy();
+        mOrionVideoView.setOrientationSensorControlEnabled(false);
+
+        // Lock the field of view, so that all tiles share the same projection.
+        OrionViewConfig cfg = mOrionVideoView.getCurrentConfigCopy();
+        cfg.setProjection(OrionViewConfig.Projection.RECTILINEAR);
+        cfg.setFov(CAPTURE_FOV, CAPTURE_FOV, CAPTURE_FOV);
+        try {
+            mOrionVideoView.applyConfig(cfg);
+        } catch (OrionViewConfig.NotSupportedException e) {
+            Log.e(TAG, "Selected configuration is not supported!");
+        }
+
+        // The field of view is assumed to span the width of the viewport.
+        int viewWidth = mOrionVideoView.getWidth();
+        int viewHeight = mOrionVideoView.getHeight();
+        float verticalFov = (float) Math.toDegrees(2 * Math.atan(
+                Math.tan(Math.toRadians(CAPTURE_FOV / 2)) * viewHeight / viewWidth));
+        mGrid = EquirectangularStitcher.createGrid(CAPTURE_FOV, verticalFov, OVERLAP);
+
+        // Scale the tiles to the angular resolution of the panorama; more would be wasted.
+        mTileWidth = Math.min(viewWidth, Math.round(mWidth * CAPTURE_FOV / 360.0f));
+
+        Log.i(TAG, "Capturing " + mGrid.length + " tiles for a " + mWidth + "x" + mWidth / 2
+                + " panorama");
+        mIsCapturing = true;
+        mTileIndex = 0;
+        turnToTile();
+    }
+
+    /**
+     * Cancel capturing and restore the view state.
+     */
+    public void cancel() {
+        if (mIsCapturing) {
+            restoreView();
+        }
+    }
+
+    /**
+     * To be called from the video view's screenshot listener while tiles are being captured.
+     * <p/>
+     * The capture takes ownership of the bitmap.
+     *
+     * @param view The view where the screenshot was captured from.
+     * @param bitmap The screenshot.
+     * @see OrionSurfaceView.OnScreenshotReadyListener
+     */
+    public void onScreenshotReady(OrionSurfaceView view, Bitmap bitmap) {
+        if (!mIsCapturing) {
+            bitmap.recycle();
+            return;
+        }
+
+        // Scale the tile and copy its pixels, then the bitmaps can be recycled at once.
+        // Nothing borrows bitmaps of these sizes, hence they are not returned to the pool.
+        int tileHeight = Math.round((float) bitmap.getHeight() * mTileWidth / bitmap.getWidth());
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, mTileWidth, tileHeight, true);
+        int[] pixels = new int[mTileWidth * tileHeight];
+        scaled.getPixels(pixels, 0, mTileWidth, 0, 0, mTileWidth, tileHeight);
+        if (scaled != bitmap) {
+            scaled.recycle();
+        }
+        bitmap.recycle();
+
+        // Use the actual viewing rotation of the tile, which may differ from the requested one.
+        QuatF inverse = mTileRotation.conjugate();
+        mStitcher.addTile(new EquirectangularStitcher.Tile(pixels, mTileWidth, tileHeight,
+                CAPTURE_FOV, toStitcherFrame(Vec3F.AXIS_FRONT.rotate(inverse)),
+                toStitcherFrame(Vec3F.AXIS_RIGHT.rotate(inverse)),
+                toStitcherFrame(Vec3F.AXIS_UP.rotate(inverse))));
+
+        mTileIndex++;
+        if (null != mListener) {
+            mListener.onPanoramaProgress(mTileIndex, mGrid.length);
+        }
+        if (mTileIndex < mGrid.length) {
+            turnToTile();
+        } else {
+            restoreView();
+            stitch();
+        }
+    }
+
+    /**
+     * Turn the view to the current tile's orientation, and capture it after a while.
+     */
+    private void turnToTile() {
+        float yaw = (float) Math.toRadians(mGrid[mTileIndex][0]);
+        float pitch = (float) Math.toRadians(mGrid[mTileIndex][1]);
+        mOrionVideoView.setViewingRotation(
+                QuatF.fromRotationAxisX(pitch).multiply(QuatF.fromRotationAxisY(yaw)));
+        mHandler.postDelayed(mCaptureRunnable, SETTLE_TIME_MS);
+    }
+
+    /**
+     * Restore the view state that was saved when capturing started.
+     */
+    private void restoreView() {
+        mIsCapturing = false;
+        mHandler.removeCallbacks(mCaptureRunnable);
+        try {
+            mOrionVideoView.applyConfig(mSavedConfig);
+        } catch (OrionViewConfig.NotSupportedException e) {
+            Log.e(TAG, "Selected configuration is not supported!");
+        }
+        mOrionVideoView.setViewingRotation(mSavedRotation);
+        mOrionVideoView.setOrientationSensorControlEnabled(mWasSensorControlEnabled);
+        if (mWasPlaying) {
+            mOrionVideoView.start();
+        }
+    }
+
+    /**
+     * Stitch the tiles in a background thread, and deliver the result in the UI thread.
+     */
+    private void stitch() {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                int width = mWidth, height = mWidth / 2;
+                long startTime = System.currentTimeMillis();
+                try {
+                    int[] pixels = new int[width * height];
+                    if (Build.VERSION.SDK_INT >= 21) {
+                        ForkJoinPool pool = new ForkJoinPool();
+                        try {
+                            mStitcher.render(pixels, width, height, pool);
+                        } finally {
+                            pool.shutdown();
+                        }
+                    } else {
+                        mStitcher.render(pixels, width, height);
+                    }
+                    final Bitmap panorama = mBitmapPool.get(width, height,
+                            Bitmap.Config.ARGB_8888);
+                    panorama.setPixels(pixels, 0, width, 0, 0, width, height);
+                    Log.i(TAG, "Stitched " + mStitcher.getTileCount() + " tiles in "
+                            + (System.currentTimeMillis() - startTime) + " ms");
+                    mHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (null != mListener) {
+                                mListener.onPanoramaCompleted(panorama);
+                            } else {
+                                mBitmapPool.put(panorama);
+                            }
+                        }
+                    });
+                } catch (OutOfMemoryError e) {
+                    Log.e(TAG, "Not enough memory for stitching the panorama", e);
+                    postFailure(new IllegalStateException("Not enough memory", e));
+                }
+            }
+        }, TAG).start();
+    }
+
+    /**
+     * Stop capturing because of an error.
+     *
+     * @param e The error.
+     */
+    private void fail(Exception e) {
+        restoreView();
+        postFailure(e);
+    }
+
+    /**
+     * Deliver a failure to the listener in the UI thread.
+     *
+     * @param e The error.
+     */
+    private void postFailure(final Exception e) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (null != mListener) {
+                    mListener.onPanoramaFailed(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Convert a direction from the Orion360 frame to the stitcher's frame.
+     *
+     * @param v The direction.
+     * @return the direction as {right, up, forward} components.
+     */
+    private static float[] toStitcherFrame(Vec3F v) {
+        return new float[] { dot(v, Vec3F.AXIS_RIGHT), dot(v, Vec3F.AXIS_UP),
+                dot(v, Vec3F.AXIS_FRONT) };
+    }
+
+    /**
+     * Dot product of two vectors.
+     */
+    private static float dot(Vec3F a, Vec3F b) {
+        return a.x * b.x + a.y * b.y + a.z * b.z;
+    }
+}
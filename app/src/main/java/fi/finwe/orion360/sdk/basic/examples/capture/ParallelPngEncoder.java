@@ -0,0 +1,506 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.capture;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A lossless PNG encoder that compresses bands of rows in parallel.
+ * <p/>
+ * Almost all of the time in PNG encoding goes to deflate compression, which is inherently
+ * sequential. Like pigz, this encoder splits the image into bands of rows and deflates each band
+ * independently in its own thread. Each band except the last one ends with a sync flush, which
+ * aligns its output to a byte boundary, so that the compressed bands can simply be written one
+ * after another as a single zlib stream. The zlib checksum of the whole stream is combined from
+ * the checksums of the bands. The cost is a slightly larger file, since matches cannot reach
+ * across band boundaries.
+ * <p/>
+ * Rows are filtered with the Paeth filter, which suits photographic content such as video
+ * frames. Opaque images are written as RGB, others as RGBA.
+ * <p/>
+ * With one thread, the bands are compressed as one continuous stream without sync flushes.
+ * That is also the only mode available on platforms where Deflater.SYNC_FLUSH is missing
+ * (Android before API level 19).
+ * <p/>
+ * This class has no Android dependencies and can be benchmarked on a desktop JVM.
+ */
+public class ParallelPngEncoder {
+
+    /** PNG file signature. */
+    private static final byte[] SIGNATURE = {
+            (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+
+    /** Target size of the filtered data in one band, in bytes. */
+    static final int BAND_SIZE = 256 * 1024;
+
+    /** PNG filter type for the Paeth filter. */
+    private static final int FILTER_PAETH = 4;
+
+    /** Size of the compression output buffer, in bytes. */
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    /** Time after which idle compression threads exit, in ms. */
+    private static final long IDLE_TIMEOUT_MS = 10000;
+
+    /** Number of threads used for compression. */
+    private final int mThreadCount;
+
+    /** Deflate compression level, 0-9. */
+    private final int mCompressionLevel;
+
+    /** Executor for compressing bands in parallel, or null if sequential. */
+    private final ExecutorService mExecutor;
+
+
+    /**
+     * Constructor.
+     *
+     * @param threadCount The number of threads used for compression, 1 for sequential.
+     * @param compressionLevel The deflate compression level, 0-9.
+     */
+    public ParallelPngEncoder(int threadCount, int compressionLevel) {
+        mThreadCount = Math.max(1, threadCount);
+        mCompressionLevel = compressionLevel;
+        if (mThreadCount > 1) {
+
+            // Idle threads exit after a while, so an unused encoder does not hold on to them.
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(mThreadCount, mThreadCount,
+                    IDLE_TIMEOUT_MS, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory());
+            executor.allowCoreThreadTimeOut(true);
+            mExecutor = executor;
+        } else {
+            mExecutor = null;
+        }
+    }
+
+    /**
+     * Get the number of threads used for compression.
+     *
+     * @return the thread count.
+     */
+    public int getThreadCount() {
+        return mThreadCount;
+    }
+
+    /**
+     * Release the compression threads. The encoder cannot be used after this call.
+     */
+    public void shutdown() {
+        if (null != mExecutor) {
+            mExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Encode an image to PNG.
+     *
+     * @param argb The pixels in ARGB format (as in android.graphics.Bitmap.getPixels()),
+     *             row by row without padding.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param hasAlpha True to write the alpha channel, false to write RGB only.
+     * @param out The output stream where to write the PNG file.
+     * @throws IOException if writing fails.
+     */
+    public void encode(int[] argb, int width, int height, boolean hasAlpha, OutputStream out)
+            throws IOException {
+        if (width <= 0 || height <= 0 || argb.length < width * height) {
+            throw new IllegalArgumentException("Invalid image size " + width + "x" + height);
+        }
+
+        out.write(SIGNATURE);
+        writeHeader(width, height, hasAlpha, out);
+
+        int bytesPerPixel = hasAlpha ? 4 : 3;
+        int rowsPerBand = Math.max(1, BAND_SIZE / (1 + width * bytesPerPixel));
+        int bandCount = (height + rowsPerBand - 1) / rowsPerBand;
+
+        // zlib stream header, with the compression level hint.
+        int levelHint = mCompressionLevel <= 1 ? 0 : mCompressionLevel < 6 ? 1
+                : mCompressionLevel == 6 ? 2 : 3;
+        int zlibHeader = 0x7800 | (levelHint << 6);
+        zlibHeader += 31 - zlibHeader % 31;
+        writeChunk("IDAT", new byte[] { (byte) (zlibHeader >> 8), (byte) zlibHeader }, 2, out);
+
+        long adler;
+        if (null == mExecutor || bandCount == 1) {
+            adler = encodeSequential(argb, width, height, hasAlpha, rowsPerBand, out);
+        } else {
+            adler = encodeParallel(argb, width, height, hasAlpha, rowsPerBand, bandCount, out);
+        }
+
+        // zlib stream trailer.
+        writeChunk("IDAT", new byte[] { (byte) (adler >> 24), (byte) (adler >> 16),
+                (byte) (adler >> 8), (byte) adler }, 4, out);
+        writeChunk("IEND", new byte[0], 0, out);
+        out.flush();
+    }
+
+    /**
+     * Tells whether all pixels of an image are fully opaque.
+     *
+     * @param argb The pixels in ARGB format.
+     * @param count The number of pixels.
+     * @return true if opaque, else false.
+     */
+    public static boolean isOpaque(int[] argb, int count) {
+        for (int i = 0; i < count; i++) {
+            if ((argb[i] >>> 24) != 0xFF) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Compress all bands one after another as a single deflate stream.
+     *
+     * @return the Adler-32 checksum of the uncompressed data.
+     */
+    private long encodeSequential(int[] argb, int width, int height, boolean hasAlpha,
+                                  int rowsPerBand, OutputStream out) throws IOException {
+        Deflater deflater = new Deflater(mCompressionLevel, true);
+        Adler32 adler = new Adler32();
+        byte[] output = new byte[OUTPUT_BUFFER_SIZE];
+        try {
+            for (int y = 0; y < height; y += rowsPerBand) {
+                int endY = Math.min(height, y + rowsPerBand);
+                byte[] filtered = filterRows(argb, width, y, endY, hasAlpha);
+                adler.update(filtered, 0, filtered.length);
+                deflater.setInput(filtered);
+                boolean isLast = endY == height;
+                if (isLast) {
+                    deflater.finish();
+                }
+                while (isLast ? !deflater.finished() : !deflater.needsInput()) {
+                    int length = deflater.deflate(output);
+                    if (length > 0) {
+                        writeChunk("IDAT", output, length, out);
+                    }
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+        return adler.getValue();
+    }
+
+    /**
+     * Compress bands in parallel, and write them in order as soon as each one is ready.
+     *
+     * @return the Adler-32 checksum of the uncompressed data.
+     */
+    private long encodeParallel(final int[] argb, final int width, final int height,
+                                final boolean hasAlpha, int rowsPerBand, int bandCount,
+                                OutputStream out) throws IOException {
+        List<Future<Band>> futures = new ArrayList<>(bandCount);
+        for (int y = 0; y < height; y += rowsPerBand) {
+            final int startY = y;
+            final int endY = Math.min(height, y + rowsPerBand);
+            futures.add(mExecutor.submit(new Callable<Band>() {
+                @Override
+                public Band call() {
+                    return compressBand(argb, width, startY, endY, hasAlpha, endY == height);
+                }
+            }));
+        }
+
+        long adler = 1;
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                Band band = futures.get(i).get();
+                futures.set(i, null);
+                writeChunk("IDAT", band.mData, band.mLength, out);
+                adler = combineAdler32(adler, band.mAdler, band.mRawLength);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while encoding", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to compress", e.getCause());
+        } finally {
+            for (Future<Band> future : futures) {
+                if (null != future) future.cancel(true);
+            }
+        }
+        return adler;
+    }
+
+    /**
+     * Filter and compress one band of rows as an independent piece of a deflate stream.
+     *
+     * @param argb The pixels in ARGB format.
+     * @param width The width of the image.
+     * @param startY The first row of the band.
+     * @param endY The row after the last row of the band.
+     * @param hasAlpha True to include the alpha channel.
+     * @param isLast True if this is the last band of the image.
+     * @return the compressed band.
+     */
+    private Band compressBand(int[] argb, int width, int startY, int endY, boolean hasAlpha,
+                              boolean isLast) {
+        byte[] filtered = filterRows(argb, width, startY, endY, hasAlpha);
+        Adler32 adler = new Adler32();
+        adler.update(filtered, 0, filtered.length);
+
+        Deflater deflater = new Deflater(mCompressionLevel, true);
+        Band band = new Band(filtered.length / 2 + 1024);
+        band.mRawLength = filtered.length;
+        band.mAdler = adler.getValue();
+        try {
+            deflater.setInput(filtered);
+            if (isLast) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    band.ensureSpace(OUTPUT_BUFFER_SIZE);
+                    band.mLength += deflater.deflate(band.mData, band.mLength,
+                            band.mData.length - band.mLength);
+                }
+            } else {
+
+                // Sync flush ends the band at a byte boundary without ending the stream.
+                // If the output fills all of the given space, there may be more to flush.
+                int length, space;
+                do {
+                    band.ensureSpace(OUTPUT_BUFFER_SIZE);
+                    space = band.mData.length - band.mLength;
+                    length = deflater.deflate(band.mData, band.mLength, space,
+                            Deflater.SYNC_FLUSH);
+                    band.mLength += length;
+                } while (length == space);
+            }
+        } finally {
+            deflater.end();
+        }
+        return band;
+    }
+
+    /**
+     * Convert and filter rows of pixels to PNG scanlines.
+     *
+     * @param argb The pixels in ARGB format.
+     * @param width The width of the image.
+     * @param startY The first row.
+     * @param endY The row after the last row.
+     * @param hasAlpha True to include the alpha channel.
+     * @return the filtered scanlines, each starting with a filter type byte.
+     */
+    static byte[] filterRows(int[] argb, int width, int startY, int endY, boolean hasAlpha) {
+        int bpp = hasAlpha ? 4 : 3;
+        int rowBytes = width * bpp;
+        byte[] filtered = new byte[(endY - startY) * (1 + rowBytes)];
+        byte[] previous = new byte[rowBytes];
+        byte[] current = new byte[rowBytes];
+        if (startY > 0) {
+            toBytes(argb, (startY - 1) * width, width, hasAlpha, previous);
+        }
+
+        int pos = 0;
+        for (int y = startY; y < endY; y++) {
+            toBytes(argb, y * width, width, hasAlpha, current);
+            filtered[pos++] = FILTER_PAETH;
+            for (int i = 0; i < rowBytes; i++) {
+                int a = i >= bpp ? current[i - bpp] & 0xFF : 0;
+                int b = previous[i] & 0xFF;
+                int c = i >= bpp ? previous[i - bpp] & 0xFF : 0;
+                int p = a + b - c;
+                int pa = Math.abs(p - a);
+                int pb = Math.abs(p - b);
+                int pc = Math.abs(p - c);
+                int predictor = (pa <= pb && pa <= pc) ? a : (pb <= pc) ? b : c;
+                filtered[pos++] = (byte) (current[i] - predictor);
+            }
+            byte[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return filtered;
+    }
+
+    /**
+     * Convert one row of ARGB pixels to RGB or RGBA bytes.
+     */
+    private static void toBytes(int[] argb, int offset, int width, boolean hasAlpha,
+                                byte[] row) {
+        int pos = 0;
+        for (int x = 0; x < width; x++) {
+            int pixel = argb[offset + x];
+            row[pos++] = (byte) (pixel >> 16);
+            row[pos++] = (byte) (pixel >> 8);
+            row[pos++] = (byte) pixel;
+            if (hasAlpha) {
+                row[pos++] = (byte) (pixel >>> 24);
+            }
+        }
+    }
+
+    /**
+     * Combine the Adler-32 checksums of two consecutive pieces of data (as in zlib).
+     *
+     * @param adler1 The checksum of the first piece.
+     * @param adler2 The checksum of the second piece.
+     * @param length2 The length of the second piece.
+     * @return the checksum of the concatenated data.
+     */
+    static long combineAdler32(long adler1, long adler2, long length2) {
+        final long base = 65521;
+        long remainder = length2 % base;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = (remainder * sum1) % base;
+        sum1 += (adler2 & 0xFFFF) + base - 1;
+        sum2 += ((adler1 >> 16) & 0xFFFF) + ((adler2 >> 16) & 0xFFFF) + base - remainder;
+        if (sum1 >= base) sum1 -= base;
+        if (sum1 >= base) sum1 -= base;
+        if (sum2 >= (base << 1)) sum2 -= (base << 1);
+        if (sum2 >= base) sum2 -= base;
+        return sum1 | (sum2 << 16);
+    }
+
+    /**
+     * Write the IHDR chunk.
+     */
+    private static void writeHeader(int width, int height, boolean hasAlpha, OutputStream out)
+            throws IOException {
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8;                          // Bit depth.
+        header[9] = (byte) (hasAlpha ? 6 : 2);  // Color type: RGBA or RGB.
+        header[10] = 0;                         // Compression method: deflate.
+        header[11] = 0;                         // Filter method: adaptive.
+        header[12] = 0;                         // Interlace method: none.
+        writeChunk("IHDR", header, header.length, out);
+    }
+
+    /**
+     * Write a PNG chunk.
+     *
+     * @param type The chunk type.
+     * @param data The chunk data.
+     * @param length The length of the chunk data.
+     * @param out The output stream.
+     * @throws IOException if writing fails.
+     */
+    private static void writeChunk(String type, byte[] data, int length, OutputStream out)
+            throws IOException {
+        byte[] prefix = new byte[8];
+        putInt(prefix, 0, length);
+        for (int i = 0; i < 4; i++) {
+            prefix[4 + i] = (byte) type.charAt(i);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(prefix, 4, 4);
+        crc.update(data, 0, length);
+        byte[] suffix = new byte[4];
+        putInt(suffix, 0, (int) crc.getValue());
+
+        out.write(prefix);
+        out.write(data, 0, length);
+        out.write(suffix);
+    }
+
+    /**
+     * Put a big-endian int to a byte array.
+     */
+    private static void putInt(byte[] array, int offset, int value) {
+        array[offset] = (byte) (value >> 24);
+        array[offset + 1] = (byte) (value >> 16);
+        array[offset + 2] = (byte) (value >> 8);
+        array[offset + 3] = (byte) value;
+    }
+
+    /** A compressed band of rows. */
+    private static class Band {
+
+        /** The compressed data. */
+        byte[] mData;
+
+        /** The length of the compressed data. */
+        int mLength = 0;
+
+        /** The length of the uncompressed (filtered) data. */
+        int mRawLength;
+
+        /** Adler-32 checksum of the uncompressed data. */
+        long mAdler;
+
+
+        /**
+         * Constructor.
+         *
+         * @param capacity The initial capacity.
+         */
+        Band(int capacity) {
+            mData = new byte[capacity];
+        }
+
+        /**
+         * Grow the buffer if needed so that it has at least the given space left.
+         *
+         * @param space The space needed, in bytes.
+         */
+        void ensureSpace(int space) {
+            if (mData.length - mLength < space) {
+                byte[] data = new byte[Math.max(mData.length * 2, mLength + space)];
+                System.arraycopy(mData, 0, data, 0, mLength);
+                mData = data;
+            }
+        }
+    }
+
+    /** Thread factory for compression threads that do not keep the process alive. */
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        /** Counter for naming the threads. */
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable,
+                    ParallelPngEncoder.class.getSimpleName() + "-" + mCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
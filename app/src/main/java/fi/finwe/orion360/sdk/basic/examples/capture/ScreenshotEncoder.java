@@ -0,0 +1,408 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.capture;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fi.finwe.orion360.sdk.basic.examples.graphics.BitmapPool;
+
+/**
+ * Encodes and saves screenshot bitmaps in background threads.
+ * <p/>
+ * Compressing a full HD bitmap to PNG takes hundreds of milliseconds, and writing the result
+ * to storage may take even longer. When done in the UI thread, video playback visibly stutters.
+ * This class moves the work to a small pool of worker threads that are fed from a bounded queue.
+ * <p/>
+ * When screenshots are captured faster than they can be encoded, the queue fills up and
+ * the configured overflow policy decides which capture is dropped: the newest one that did not
+ * fit in, or the oldest one that has been waiting longest. The UI thread never waits.
+ * Screenshots that are too expensive to lose, such as a panorama that took seconds to capture,
+ * can be submitted as not droppable: they are always queued and never dropped, even when
+ * the queue is full.
+ * <p/>
+ * The encoder takes ownership of the submitted bitmaps: each bitmap is returned to a bitmap
+ * pool (if one is set) or recycled after it has been saved or dropped. Results are delivered
+ * to a listener in the UI thread.
+ */
+public class ScreenshotEncoder {
+
+    /** Tag for logging. */
+    public static final String TAG = ScreenshotEncoder.class.getSimpleName();
+
+    /** Policy for handling a new screenshot when the queue is full. */
+    public enum OverflowPolicy {
+
+        /** Drop the new screenshot and keep the queued ones. */
+        DROP_NEWEST,
+
+        /** Drop the oldest droppable queued screenshot to make room for the new one. */
+        DROP_OLDEST,
+    }
+
+    /** Listener for screenshot encoding results. Called in the UI thread. */
+    public interface Listener {
+
+        /**
+         * Called when a screenshot has been saved.
+         *
+         * @param filePath The path where the screenshot was saved to.
+         * @param encodeTimeMs The time it took to encode and save the screenshot, in ms.
+         */
+        void onScreenshotSaved(String filePath, long encodeTimeMs);
+
+        /**
+         * Called when saving a screenshot failed.
+         *
+         * @param filePath The path where the screenshot was to be saved to.
+         * @param e The exception that caused the failure.
+         */
+        void onScreenshotFailed(String filePath, Exception e);
+
+        /**
+         * Called when a screenshot was dropped because the queue was full.
+         *
+         * @param filePath The path where the screenshot was to be saved to.
+         */
+        void onScreenshotDropped(String filePath);
+    }
+
+    /** Time after which idle worker threads exit, in ms. */
+    private static final long IDLE_TIMEOUT_MS = 10000;
+
+    /** Executor that runs the encoding tasks. */
+    private final ThreadPoolExecutor mExecutor;
+
+    /** Queue of encoding tasks waiting for a worker thread. */
+    private final LinkedBlockingQueue<Runnable> mQueue = new LinkedBlockingQueue<>();
+
+    /** The maximum number of screenshots waiting to be encoded, unless not droppable. */
+    private final int mQueueCapacity;
+
+    /** Policy for handling a new screenshot when the queue is full. */
+    private final OverflowPolicy mOverflowPolicy;
+
+    /** Handler for delivering results to the UI thread. */
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /** Listener for encoding results, or null if none. */
+    private volatile Listener mListener;
+
+    /** Output format for the screenshots. */
+    private volatile ScreenshotFormat mFormat = ScreenshotFormat.png();
+
+    /** Pool where to return the bitmaps after use, or null to recycle them. */
+    private volatile BitmapPool mBitmapPool;
+
+
+    /**
+     * Constructor.
+     *
+     * @param workerCount The number of worker threads, at least 1.
+     * @param queueCapacity The maximum number of screenshots waiting to be encoded.
+     * @param overflowPolicy Policy for handling a new screenshot when the queue is full.
+     */
+    public ScreenshotEncoder(int workerCount, int queueCapacity, OverflowPolicy overflowPolicy) {
+        mOverflowPolicy = overflowPolicy;
+        mQueueCapacity = queueCapacity;
+        mExecutor = new ThreadPoolExecutor(workerCount, workerCount, IDLE_TIMEOUT_MS,
+                TimeUnit.MILLISECONDS, mQueue, new WorkerThreadFactory(), new ShutdownHandler());
+
+        // The encoder may live as long as its activity; workers are started again on demand.
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Set listener for encoding results.
+     *
+     * @param listener The listener, or null to remove.
+     */
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Set output format for the screenshots. The default is lossless PNG.
+     *
+     * @param format The format.
+     */
+    public void setFormat(ScreenshotFormat format) {
+        mFormat = format;
+    }
+
+    /**
+     * Get output format for the screenshots.
+     *
+     * @return the format.
+     */
+    public ScreenshotFormat getFormat() {
+        return mFormat;
+    }
+
+    /**
+     * Set bitmap pool where to return the bitmaps after they have been saved or dropped.
+     *
+     * @param bitmapPool The pool, or null to recycle the bitmaps instead.
+     */
+    public void setBitmapPool(BitmapPool bitmapPool) {
+        mBitmapPool = bitmapPool;
+    }
+
+    /**
+     * Submit a screenshot for encoding. Returns immediately.
+     * <p/>
+     * The encoder takes ownership of the bitmap, do not use or recycle it after this call.
+     *
+     * @param bitmap The screenshot bitmap.
+     * @param filePath The path where to save the screenshot.
+     * @return true if the screenshot was queued, false if it was dropped.
+     */
+    public boolean submit(Bitmap bitmap, String filePath) {
+        return submit(bitmap, filePath, true);
+    }
+
+    /**
+     * Submit a screenshot for encoding. Returns immediately.
+     * <p/>
+     * The encoder takes ownership of the bitmap, do not use or recycle it after this call.
+     *
+     * @param bitmap The screenshot bitmap.
+     * @param filePath The path where to save the screenshot.
+     * @param droppable true if the screenshot may be dropped when the queue is full, false if
+     *                  it must be queued anyway.
+     * @return true if the screenshot was queued, false if it was dropped.
+     */
+    public boolean submit(Bitmap bitmap, String filePath, boolean droppable) {
+        EncodeTask task = new EncodeTask(bitmap, filePath, droppable);
+
+        // Concurrent submitters may exceed the capacity briefly; that only costs the memory
+        // of the extra bitmaps.
+        if (droppable && mQueue.size() >= mQueueCapacity && !makeRoom()) {
+            drop(task);
+            return false;
+        }
+        mExecutor.execute(task);
+        return !task.mIsDropped;
+    }
+
+    /**
+     * Get the number of screenshots that are currently waiting to be encoded.
+     *
+     * @return the queue length.
+     */
+    public int getQueueLength() {
+        return mQueue.size();
+    }
+
+    /**
+     * Stop accepting new screenshots. Queued screenshots will still be saved.
+     */
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+
+    /**
+     * Encode a bitmap to the given output stream using the current output format.
+     *
+     * @param bitmap The bitmap to be encoded.
+     * @param out The output stream where to write the encoded image.
+     * @throws IOException if encoding fails.
+     */
+    protected void encode(Bitmap bitmap, OutputStream out) throws IOException {
+        mFormat.write(bitmap, out);
+    }
+
+    /**
+     * Release a bitmap that is no longer needed, returning it to the pool if there is one.
+     * The pool keeps only the sizes that are borrowed from it, and recycles the rest.
+     *
+     * @param bitmap The bitmap to be released.
+     */
+    private void release(Bitmap bitmap) {
+        BitmapPool pool = mBitmapPool;
+        if (null != pool) {
+            pool.put(bitmap);
+        } else {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Make room in the queue according to the overflow policy, by dropping the oldest
+     * droppable task.
+     *
+     * @return true if a task was dropped, false if there was nothing to drop.
+     */
+    private boolean makeRoom() {
+        if (mOverflowPolicy != OverflowPolicy.DROP_OLDEST) return false;
+        for (Runnable runnable : mQueue) {
+            EncodeTask task = (EncodeTask) runnable;
+
+            // A worker may take the task meanwhile; then it is not dropped.
+            if (task.mIsDroppable && mQueue.remove(task)) {
+                drop(task);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Post a 'dropped' notification for a task and release its bitmap.
+     *
+     * @param task The task that was dropped.
+     */
+    private void drop(EncodeTask task) {
+        task.mIsDropped = true;
+        release(task.mBitmap);
+        Log.w(TAG, "Screenshot queue full, dropped " + task.mFilePath);
+
+        final String filePath = task.mFilePath;
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                Listener listener = mListener;
+                if (null != listener) {
+                    listener.onScreenshotDropped(filePath);
+                }
+            }
+        });
+    }
+
+    /** A task for encoding and saving one screenshot. */
+    private class EncodeTask implements Runnable {
+
+        /** The screenshot bitmap. */
+        final Bitmap mBitmap;
+
+        /** The path where to save the screenshot. */
+        final String mFilePath;
+
+        /** Flag for indicating if this task may be dropped when the queue is full. */
+        final boolean mIsDroppable;
+
+        /** Flag for indicating if this task was dropped, or not. */
+        volatile boolean mIsDropped = false;
+
+
+        /**
+         * Constructor.
+         *
+         * @param bitmap The screenshot bitmap.
+         * @param filePath The path where to save the screenshot.
+         * @param droppable true if the task may be dropped when the queue is full.
+         */
+        EncodeTask(Bitmap bitmap, String filePath, boolean droppable) {
+            mBitmap = bitmap;
+            mFilePath = filePath;
+            mIsDroppable = droppable;
+        }
+
+        @Override
+        public void run() {
+            long startTime = SystemClock.elapsedRealtime();
+            Exception error = null;
+
+            OutputStream out = null;
+            try {
+                File parent = new File(mFilePath).getParentFile();
+                if (null != parent && parent.mkdirs()) {
+                    Log.i(TAG, "Created directory " + parent.getAbsolutePath());
+                }
+                out = new BufferedOutputStream(new FileOutputStream(mFilePath), 64 * 1024);
+                encode(mBitmap, out);
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to save screenshot " + mFilePath, e);
+                error = e;
+            } finally {
+                try { if (out != null) { out.close();} } catch (IOException e) {}
+                release(mBitmap);
+            }
+
+            final long encodeTimeMs = SystemClock.elapsedRealtime() - startTime;
+            final Exception failure = error;
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    Listener listener = mListener;
+                    if (null == listener) return;
+                    if (null == failure) {
+                        listener.onScreenshotSaved(mFilePath, encodeTimeMs);
+                    } else {
+                        listener.onScreenshotFailed(mFilePath, failure);
+                    }
+                }
+            });
+        }
+    }
+
+    /** Handler for tasks submitted after shutdown. */
+    private class ShutdownHandler implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            drop((EncodeTask) runnable);
+        }
+    }
+
+    /** Thread factory for background priority worker threads. */
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        /** Counter for naming the worker threads. */
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, TAG + "-" + mCount.incrementAndGet());
+        }
+    }
+}
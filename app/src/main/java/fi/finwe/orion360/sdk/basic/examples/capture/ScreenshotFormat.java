@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.capture;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output format for saving screenshots.
+ * <p/>
+ * PNG via Bitmap.compress() is lossless but slow, since it compresses in a single thread.
+ * For quick reviews, JPEG and WebP with a quality setting are much faster and smaller. For
+ * lossless captures of large frames, the parallel PNG format compresses bands of rows in
+ * several threads.
+ * <p/>
+ * Formats are thread safe; one format can be used by several encoder threads at once.
+ */
+public abstract class ScreenshotFormat {
+
+    /**
+     * Get the file name extension for this format, without the dot.
+     *
+     * @return the extension.
+     */
+    public abstract String getFileExtension();
+
+    /**
+     * Encode a bitmap to the given output stream.
+     *
+     * @param bitmap The bitmap to be encoded.
+     * @param out The output stream where to write the encoded image.
+     * @throws IOException if encoding fails.
+     */
+    public abstract void write(Bitmap bitmap, OutputStream out) throws IOException;
+
+    /**
+     * Lossless PNG, encoded with Bitmap.compress().
+     *
+     * @return the format.
+     */
+    public static ScreenshotFormat png() {
+        return new CompressFormat(Bitmap.CompressFormat.PNG, 100, "png");
+    }
+
+    /**
+     * Lossy JPEG, encoded with Bitmap.compress().
+     *
+     * @param quality The quality, 0-100.
+     * @return the format.
+     */
+    public static ScreenshotFormat jpeg(int quality) {
+        return new CompressFormat(Bitmap.CompressFormat.JPEG, quality, "jpg");
+    }
+
+    /**
+     * Lossy WebP, encoded with Bitmap.compress().
+     *
+     * @param quality The quality, 0-100.
+     * @return the format.
+     */
+    public static ScreenshotFormat webp(int quality) {
+        return new CompressFormat(Bitmap.CompressFormat.WEBP, quality, "webp");
+    }
+
+    /**
+     * Lossless PNG, encoded with {@link ParallelPngEncoder} using all CPU cores.
+     * <p/>
+     * Before API level 19, the platform lacks the sync flush that parallel compression needs,
+     * and the encoder runs in one thread.
+     *
+     * @param compressionLevel The deflate compression level, 0-9. Levels 1-3 are much faster
+     *                         than the default 6, with only slightly larger files.
+     * @return the format.
+     */
+    public static ScreenshotFormat parallelPng(int compressionLevel) {
+        int threads = Build.VERSION.SDK_INT >= 19
+                ? Runtime.getRuntime().availableProcessors() : 1;
+        return new ParallelPng(new ParallelPngEncoder(threads, compressionLevel));
+    }
+
+    /** Format that uses Bitmap.compress(). */
+    private static class CompressFormat extends ScreenshotFormat {
+
+        /** The compress format. */
+        private final Bitmap.CompressFormat mFormat;
+
+        /** The quality, 0-100. */
+        private final int mQuality;
+
+        /** The file name extension. */
+        private final String mExtension;
+
+
+        /**
+         * Constructor.
+         */
+        CompressFormat(Bitmap.CompressFormat format, int quality, String extension) {
+            mFormat = format;
+            mQuality = quality;
+            mExtension = extension;
+        }
+
+        @Override
+        public String getFileExtension() {
+            return mExtension;
+        }
+
+        @Override
+        public void write(Bitmap bitmap, OutputStream out) throws IOException {
+            if (!bitmap.compress(mFormat, mQuality, out)) {
+                throw new IOException("Failed to compress bitmap");
+            }
+        }
+    }
+
+    /** Format that uses the parallel PNG encoder. */
+    private static class ParallelPng extends ScreenshotFormat {
+
+        /** The encoder. */
+        private final ParallelPngEncoder mEncoder;
+
+
+        /**
+         * Constructor.
+         */
+        ParallelPng(ParallelPngEncoder encoder) {
+            mEncoder = encoder;
+        }
+
+        @Override
+        public String getFileExtension() {
+            return "png";
+        }
+
+        @Override
+        public synchronized void write(Bitmap bitmap, OutputStream out) throws IOException {
+
+            // The encoder already uses all cores, so screenshots are encoded one at a time.
+            // The pixels are not kept between screenshots: a panorama of 4096x2048 takes
+            // 32 MB, which would stay allocated for as long as the format is in use.
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            int[] pixels = new int[width * height];
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            boolean hasAlpha = bitmap.hasAlpha()
+                    && !ParallelPngEncoder.isOpaque(pixels, width * height);
+            mEncoder.encode(pixels, width, height, hasAlpha, out);
+        }
+    }
+}
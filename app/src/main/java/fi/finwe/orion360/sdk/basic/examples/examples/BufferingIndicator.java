@@ -32,7 +32,6 @@ package fi.finwe.orion360.sdk.basic.examples.examples;
 import android.app.Activity;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Handler;
 import android.util.Log;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
@@ -41,10 +40,19 @@ import android.widget.LinearLayout;
 import android.widget.ProgressBar;
 import android.widget.Toast;
 
+import java.io.File;
+
 import fi.finwe.orion360.OrionVideoView;
 import fi.finwe.orion360.OrionViewConfig;
 import fi.finwe.orion360.sdk.basic.examples.MainMenu;
 import fi.finwe.orion360.sdk.basic.examples.R;
+import fi.finwe.orion360.sdk.basic.examples.analytics.QoeFileSink;
+import fi.finwe.orion360.sdk.basic.examples.analytics.QoeMonitor;
+import fi.finwe.orion360.sdk.basic.examples.media.StreamCache;
+import fi.finwe.orion360.sdk.basic.examples.playback.PlayerStateMachine;
+import fi.finwe.orion360.sdk.basic.examples.playback.PlayerStateTracker;
+import fi.finwe.orion360.sdk.basic.examples.tracing.TraceDump;
+import fi.finwe.orion360.sdk.basic.examples.tracing.Tracer;
 
 /**
  * An example of a minimal Orion360 video player, with a buffering indicator.
@@ -66,14 +74,18 @@ import fi.finwe.orion360.sdk.basic.examples.R;
  * <p/>
  * Some Android devices have a buggy implementation of buffering events and the 'buffering
  * stopped' event might never come in the case we are buffering the very beginning
- * of the video. To prevent buffering indicator for staying on screen forever, you can use a
- * handler that polls when the video playback has progressed and ensure that buffering
- * indicator gets removed.
+ * of the video. To prevent buffering indicator for staying on screen forever, a player state
+ * tracker follows the player callbacks and reports when the first video frame is shown after
+ * playback starts, and the buffering indicator is removed then.
  * <p/>
  * In VR mode, both eyes need a separate buffering indicator. Simple implementation is to
  * have both normal and VR mode indicators configured in the layout, and select which one
  * to use by toggling their visibilities. Remember to update the indicators when user
  * toggles between normal and VR mode.
+ * <p/>
+ * To know how well playback works for the end users, a QoE monitor measures the startup
+ * time, rebuffers and seek latency, per rendition and network type, and appends the
+ * aggregated metrics to a local file whenever the activity is paused.
  *
  * Features:
  * <ul>
@@ -95,20 +107,30 @@ public class BufferingIndicator extends Activity {
     /** Tag for logging. */
     public static final String TAG = BufferingIndicator.class.getSimpleName();
 
+    /** The name of the file where the trace events are dumped at each pause. */
+    private static final String TRACE_EVENTS_FILE = "buffering_indicator_events.bin";
+
+    /** Trace event for buffer fill rate changes, in percent. */
+    private static final int EVENT_BUFFER_FILL =
+            Tracer.define(Tracer.VERBOSE, "bufferFill", "%.0f%%");
+
+    /** The name of the file where QoE metrics are appended, one JSON object per line. */
+    private static final String QOE_METRICS_FILE = "buffering_indicator_qoe.jsonl";
+
     /** Orion360 video player view. */
 	private OrionVideoView mOrionVideoView;
 
+    /** Playback quality of experience (QoE) monitor. */
+    private QoeMonitor mQoeMonitor;
+
     /** Buffering indicator, for normal mode. */
     private ProgressBar mBufferingIndicator;
 
     /** Buffering indicator, for VR mode. */
     private LinearLayout mBufferingIndicatorVR;
 
-    /** Handler for buffering indicators. */
-    private Handler mBufferingIndicatorHandler;
-
-    /** Polling interval for buffering indicator handler, in ms. */
-    int mBufferingIndicatorInterval = 500;
+    /** Player state tracker, for noticing when video frames are shown. */
+    private PlayerStateTracker mStateTracker;
 
     /** Gesture detector for tapping events. */
     private GestureDetector mGestureDetector;
@@ -124,13 +146,21 @@ public class BufferingIndicator extends Activity {
         // Get Orion360 video view that is defined in the XML layout.
         mOrionVideoView = (OrionVideoView) findViewById(R.id.orion_video_view);
 
-        // Get buffering indicator and setup a handler for it.
+        // Get buffering indicator, and track the player state for hiding it.
         mBufferingIndicator = (ProgressBar) findViewById(R.id.buffering_indicator);
         mBufferingIndicatorVR = (LinearLayout) findViewById(R.id.buffering_indicator_vr);
-        mBufferingIndicatorHandler = new Handler();
+        mStateTracker = new PlayerStateTracker(mOrionVideoView);
+
+        // Hide buffering indicator when the first frame is shown, even if device doesn't
+        // properly notify that buffering has ended.
+        mStateTracker.getMachine().addListener(mPlayerStateListener);
+
+        // Measure startup time, rebuffers and seek latency from the player state.
+        mQoeMonitor = new QoeMonitor(mStateTracker, this, "1280x640");
 
         // Listen for buffering events, and show/hide the buffering indicator accordingly.
-        mOrionVideoView.setOnBufferingStatusListener(new OrionVideoView.OnBufferingStatusListener() {
+        mOrionVideoView.setOnBufferingStatusListener(mStateTracker.wrap(
+                new OrionVideoView.OnBufferingStatusListener() {
             @Override
             public void onBufferingStarted(OrionVideoView orionVideoView) {
                 showBufferingIndicator();
@@ -138,28 +168,39 @@ public class BufferingIndicator extends Activity {
 
             @Override
             public void onBufferFillRateChanged(OrionVideoView orionVideoView, int percentage) {
-                Log.v(TAG, "Buffer: " + percentage + "%");
+                Tracer.event(EVENT_BUFFER_FILL, percentage);
             }
 
             @Override
             public void onBufferingStopped(OrionVideoView orionVideoView) {
                 hideBufferingIndicator();
             }
-        });
+        }));
 
         // Start playback when the player has initialized itself and buffered enough video frames.
-        mOrionVideoView.setOnPreparedListener(new OrionVideoView.OnPreparedListener() {
+        mOrionVideoView.setOnPreparedListener(mStateTracker.wrap(
+                new OrionVideoView.OnPreparedListener() {
             @Override
             public void onPrepared(OrionVideoView view) {
                 mOrionVideoView.start();
             }
-        });
+        }));
+
+        // Log player status changes; the state tracker follows them, too.
+        mOrionVideoView.setOnStatusChangeListener(mStateTracker.wrap(
+                new OrionVideoView.OnStatusChangeListener() {
+            @Override
+            public void onStatusChange(OrionVideoView view, OrionVideoView.PlayerStatus status) {
+                Log.d(TAG, "Player status: " + status.name());
+            }
+        }));
 
         // Initialize Orion360 video view with a URI to an .mp4 video-on-demand stream.
         // Notice that this call will fail if a valid Orion360 license file for the package name
         // (defined in the application's manifest file) cannot be found.
         try {
-            mOrionVideoView.prepare(MainMenu.TEST_VIDEO_URI_1280x640);
+            mStateTracker.prepare(StreamCache.getProxyUrl(this,
+                    MainMenu.TEST_VIDEO_URI_1280x640));
         } catch (OrionVideoView.LicenseVerificationException e) {
             Toast.makeText(this, e.getMessage(), Toast.LENGTH_LONG).show();
         }
@@ -229,9 +270,8 @@ public class BufferingIndicator extends Activity {
         // hence we make also the buffering indicator visible now.
         showBufferingIndicator();
 
-        // Hide buffering indicator when playback starts, even if device doesn't
-        // properly notify that buffering has ended.
-        mBufferingIndicatorRunnable.run();
+        // Look for the first frame again, to remove the indicator when the video shows.
+        mStateTracker.resume();
     }
 
 	@Override
@@ -239,8 +279,16 @@ public class BufferingIndicator extends Activity {
         // Propagate activity lifecycle events to Orion360 video view.
 		mOrionVideoView.onPause();
 
-        // Cancel buffering indicator handler (polling).
-        mBufferingIndicatorHandler.removeCallbacks(mBufferingIndicatorRunnable);
+        // Stop waiting for the first frame.
+        mStateTracker.pause();
+
+        // Export the QoE metrics collected so far; the file is written in the background.
+        mQoeMonitor.flushInBackground(new QoeFileSink(new File(
+                MainMenu.PRIVATE_EXTERNAL_FILES_PATH + QOE_METRICS_FILE)));
+
+        // Dump the latest trace events in the background, for inspecting them offline.
+        TraceDump.writeInBackground(
+                new File(MainMenu.PRIVATE_EXTERNAL_FILES_PATH + TRACE_EVENTS_FILE));
 
 		super.onPause();
 	}
@@ -262,21 +310,20 @@ public class BufferingIndicator extends Activity {
 	}
 
     /**
-     * Runnable for polling if video playback has already begun, and to hide buffering indicator.
+     * Player state listener for noticing when video playback has begun. The state machine
+     * reports the first frame after each start within a display frame, instead of us polling
+     * the video position.
      */
-    Runnable mBufferingIndicatorRunnable = new Runnable() {
+    PlayerStateMachine.Listener mPlayerStateListener = new PlayerStateMachine.Listener() {
         @Override
-        public void run() {
-            Log.d(TAG, "Checking if playback has started...");
-            int newPosition = mOrionVideoView.getCurrentPosition();
-            if (newPosition > 0) {
-                Log.d(TAG, "Now playing video.");
-                hideBufferingIndicator();
-            } else if (mOrionVideoView.getState() != OrionVideoView.PlayingState.UNDEFINED){
-                Log.d(TAG, "Still buffering.");
-                mBufferingIndicatorHandler.postDelayed(mBufferingIndicatorRunnable,
-                        mBufferingIndicatorInterval);
-            }
+        public void onStateChanged(PlayerStateMachine machine, int previous, int state) {
+            Log.d(TAG, "Player state: " + PlayerStateMachine.getStateName(state));
+        }
+
+        @Override
+        public void onFirstFrame(PlayerStateMachine machine, int positionMs) {
+            Log.d(TAG, "Now playing video.");
+            hideBufferingIndicator();
         }
     };
 
@@ -34,8 +34,6 @@ import android.content.Context;
 import android.media.AudioManager;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Message;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.GestureDetector;
@@ -51,13 +49,18 @@ import android.widget.SeekBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import java.lang.ref.WeakReference;
+import java.io.File;
+import java.io.IOException;
 import java.util.Locale;
 import java.util.concurrent.TimeUnit;
 
 import fi.finwe.orion360.OrionVideoView;
 import fi.finwe.orion360.sdk.basic.examples.MainMenu;
 import fi.finwe.orion360.sdk.basic.examples.R;
+import fi.finwe.orion360.sdk.basic.examples.media.Mp4Index;
+import fi.finwe.orion360.sdk.basic.examples.playback.PlaybackClock;
+import fi.finwe.orion360.sdk.basic.examples.playback.SeekController;
+import fi.finwe.orion360.sdk.basic.examples.playback.VideoViewClock;
 
 /**
  * An example of a minimal Orion360 video player, with custom video controls.
@@ -133,6 +136,10 @@ public class CustomControls extends Activity {
             Toast.makeText(this, e.getMessage(), Toast.LENGTH_LONG).show();
         }
 
+        // Read the key frame positions of the video, for snapping seeks to them.
+        mCustomController.loadSyncSamples(MainMenu.PRIVATE_EXTERNAL_FILES_PATH
+                + MainMenu.TEST_VIDEO_FILE_MQ);
+
         // Propagate all touch events from the video view to a gesture detector.
         mOrionVideoView.setOnTouchListener(new View.OnTouchListener() {
 
@@ -219,14 +226,14 @@ public class CustomControls extends Activity {
         /** Tag for logging. */
         public final String TAG = CustomController.class.getSimpleName();
 
-        // Message to handler: update progress.
-        private static final int UPDATE_VIDEO_POSITION = 1;
-
         // Delay in ms for updating progress.
         private static final int UPDATE_PROGRESS_DELAY = 500;
 
-        /** Handler for timed operations. */
-        private CustomControllerHandler mHandler;
+        /** The shared playback clock of the video view. */
+        private PlaybackClock mClock;
+
+        /** Seek controller, for coalescing the seeks of a seek bar drag. */
+        private SeekController mSeekController;
 
         /** Context. */
         private Context mContext;
@@ -314,9 +321,6 @@ public class CustomControls extends Activity {
             // Get audio manager for mute/volume control.
             mAudioManager = (AudioManager) mContext.getSystemService(Context.AUDIO_SERVICE);
 
-            // Initialize handler for timed operations.
-            mHandler = new CustomControllerHandler(this);
-
         }
 
         /**
@@ -325,8 +329,8 @@ public class CustomControls extends Activity {
         @SuppressWarnings("deprecation")
         public void onResume() {
 
-            // Start updating video position by polling it.
-            mHandler.sendEmptyMessage(UPDATE_VIDEO_POSITION);
+            // Start updating video position.
+            startPositionUpdates();
 
             // Restore audio muting, if previously flagged to be muted.
             if (mIsAudioMuted) {
@@ -346,8 +350,13 @@ public class CustomControls extends Activity {
         @SuppressWarnings("deprecation")
         public void onPause() {
 
-            // Stop updating video position by polling it.
-            mHandler.removeMessages(UPDATE_VIDEO_POSITION);
+            // Stop updating video position.
+            stopPositionUpdates();
+
+            // Forget seeks that have not been issued yet.
+            if (null != mSeekController) {
+                mSeekController.cancel();
+            }
 
             // Clear audio muting, but do not clear the flag so we can restore state later.
             if (mIsAudioMuted) {
@@ -437,28 +446,76 @@ public class CustomControls extends Activity {
             mOrionVideoView = videoView;
             if (null != mOrionVideoView) {
                 mOrionVideoView.setOnStatusChangeListener(this);
+                mClock = VideoViewClock.get(mOrionVideoView);
+                mSeekController = new SeekController(new SeekController.Player() {
+                    @Override
+                    public void seekTo(int positionMs) {
+                        mMediaPlayerControl.seekTo(positionMs);
+                    }
+                }, VideoViewClock.getScheduler());
             }
         }
 
+        /**
+         * Read the sync sample (key frame) table of a video file in a background thread,
+         * and give it to the seek controller.
+         *
+         * @param path The path to the video file.
+         */
+        public void loadSyncSamples(final String path) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Mp4Index.Track track = Mp4Index.parse(new File(path)).getVideoTrack();
+                        if (null == track) return;
+                        final long [] times = track.getSyncSampleTimesMs();
+                        post(new Runnable() {
+                            @Override
+                            public void run() {
+                                Log.d(TAG, "Video has " + times.length + " key frames");
+                                mSeekController.setSyncSampleTimes(times);
+                            }
+                        });
+                    } catch (IOException e) {
+                        Log.w(TAG, "Failed to read key frames: " + e.getMessage());
+                    } catch (RuntimeException e) {
+
+                        // Seeking works without key frames, hence a parser bug must not
+                        // crash the app; log it loudly instead.
+                        Log.e(TAG, "Failed to parse key frames", e);
+                    }
+                }
+            }, TAG).start();
+        }
+
         @Override
         public void onStatusChange(OrionVideoView view, OrionVideoView.PlayerStatus status) {
             Log.d(TAG, "onStatusChange(): " + status.name());
 
+            // The position jumps or stops, hence it must be read again.
+            if (null != mClock) {
+                mClock.invalidate();
+            }
+
             switch (status) {
                 case INITIALIZED:
                     break;
                 case STARTED:
                     updatePlayPauseButtonIcon();
-                    mHandler.sendEmptyMessage(UPDATE_VIDEO_POSITION);
+                    startPositionUpdates();
                     break;
                 case PAUSED:
                     updatePlayPauseButtonIcon();
-                    mHandler.removeMessages(UPDATE_VIDEO_POSITION);
+                    stopPositionUpdates();
                     break;
                 case COMPLETED:
                     mMediaPlayerControl.start(); // Loop video
                     break;
                 case SEEK_COMPLETE:
+                    if (null != mSeekController) {
+                        mSeekController.onSeekCompleted();
+                    }
                     break;
                 case RELEASED:
                     break;
@@ -487,15 +544,16 @@ public class CustomControls extends Activity {
             updatePlayPauseButtonIcon();
 
             // Get position and duration labels, and update them.
+            int position = mMediaPlayerControl.getCurrentPosition();
             mVideoPositionLabel = (TextView) mRootView.findViewById(R.id.position);
-            updatePositionLabel();
+            updatePositionLabel(position);
             mVideoDurationLabel = (TextView) mRootView.findViewById(R.id.duration);
             updateDurationLabel();
 
             // Get seekbar, listen to its events, and update video position.
             mVideoSeekBar = (SeekBar) mRootView.findViewById(R.id.seek_bar);
             mVideoSeekBar.setOnSeekBarChangeListener(mSeekBarListener);
-            updateSeekBarPosition();
+            updateSeekBarPosition(position);
 
             // Get audio mute button, listen for clicks, and set icon.
             mAudioMuteButton = (ImageButton) mRootView.findViewById(R.id.audiobutton);
@@ -529,34 +587,35 @@ public class CustomControls extends Activity {
 
             @Override
             public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
-                /*
                 if (fromUser) {
-                    // Here we could continuously track video position when user drags
-                    // seekbar handle, but won't as Android MediaPlayer is rather slow
-                    // to seek. Instead, we seek when user releases the seekbar handle.
+                    // Track video position while the user drags the seekbar handle. Android
+                    // MediaPlayer is rather slow to seek, hence the seek controller issues
+                    // one seek at a time to the nearest key frame, skipping positions that
+                    // the finger has already passed, as an approximate preview.
+                    updatePositionLabel(progress);
+                    mSeekController.onDrag(progress);
                 }
-                */
             }
 
             @Override
             public void onStartTrackingTouch(SeekBar seekBar) {
                 // Pause updating video position to the seekbar.
-                mHandler.removeMessages(UPDATE_VIDEO_POSITION);
+                stopPositionUpdates();
+                mSeekController.onDragStarted();
             }
 
             @Override
             public void onStopTrackingTouch(SeekBar seekBar) {
-                // Seek to the point where tracking was stopped.
-                mMediaPlayerControl.seekTo(seekBar.getProgress());
+                // Seek to the key frame nearest to the point where tracking was stopped.
+                mSeekController.onDragStopped(seekBar.getProgress());
 
                 // Continue updating video position to the seekbar.
-                mHandler.sendEmptyMessage(UPDATE_VIDEO_POSITION);
+                startPositionUpdates();
             }
         };
 
-        private void updateSeekBarPosition() {
+        private void updateSeekBarPosition(int position) {
             int duration = mMediaPlayerControl.getDuration();
-            int position = mMediaPlayerControl.getCurrentPosition();
 
             if (null != mVideoSeekBar) {
                 if (duration > 0) {
@@ -566,8 +625,7 @@ public class CustomControls extends Activity {
             }
         }
 
-        private void updatePositionLabel() {
-            int position = mMediaPlayerControl.getCurrentPosition();
+        private void updatePositionLabel(int position) {
             long minutes = TimeUnit.MILLISECONDS.toMinutes(position);
             long seconds = TimeUnit.MILLISECONDS.toSeconds(position)
                     - TimeUnit.MINUTES.toSeconds(minutes);
@@ -635,47 +693,54 @@ public class CustomControls extends Activity {
             setVisibility(View.VISIBLE);
 
             // Start updating video position.
-            mHandler.sendEmptyMessage(UPDATE_VIDEO_POSITION);
+            startPositionUpdates();
         }
 
         public void hide() {
             setVisibility(View.INVISIBLE);
 
             // Stop updating video position.
-            mHandler.removeMessages(UPDATE_VIDEO_POSITION);
+            stopPositionUpdates();
         }
 
-        // Note: This should be static; but as CustomController is an inner class, it can't.
-        private class CustomControllerHandler extends Handler {
-            private WeakReference<CustomController> mParent;
+        /**
+         * Start updating video position, now and periodically while playing.
+         */
+        private void startPositionUpdates() {
+            if (null == mClock) return;
+
+            // The clock delivers a tick at once, then periodically while the video is playing,
+            // and once more when it stops. The position is read from the player only rarely
+            // and shared with the other users of the clock, instead of polled by each of them.
+            mClock.removeListener(mPositionTicker);
+            mClock.addTicker(UPDATE_PROGRESS_DELAY, mPositionTicker);
+        }
 
-            CustomControllerHandler(CustomController parent) {
-                mParent = new WeakReference<>(parent);
-            }
+        /**
+         * Stop updating video position.
+         */
+        private void stopPositionUpdates() {
+            if (null == mClock) return;
+            mClock.removeListener(mPositionTicker);
+        }
+
+        /**
+         * Clock listener that updates video position.
+         */
+        private PlaybackClock.Listener mPositionTicker = new PlaybackClock.Listener() {
 
             @Override
-            public void handleMessage(Message message) {
-                CustomController parent = mParent.get();
-                if (parent == null) {
-                    return;
-                }
-                switch (message.what) {
-                    case UPDATE_VIDEO_POSITION:
-                        // Update progress now.
-                        parent.updateSeekBarPosition();
-                        parent.updatePositionLabel();
-                        parent.updateDurationLabel();
-
-                        // Check whether progress should be updated again after a delay.
-                        if (parent.mMediaPlayerControl.isPlaying()) {
-                            message = obtainMessage(UPDATE_VIDEO_POSITION);
-                            sendMessageDelayed(message, UPDATE_PROGRESS_DELAY);
-                        }
-                        break;
-                    default:
-                        break;
+            public void onPosition(PlaybackClock clock, int position) {
+
+                // While seeking, show where the user is going rather than where the player is.
+                if (mSeekController.isSeeking() && mSeekController.getTargetPosition() >= 0) {
+                    position = mSeekController.getTargetPosition();
                 }
+                updateSeekBarPosition(position);
+                updatePositionLabel(position);
+                updateDurationLabel();
             }
-        }
+
+        };
     }
 }
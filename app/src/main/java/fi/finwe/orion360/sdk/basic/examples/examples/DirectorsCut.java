@@ -29,15 +29,18 @@
 
 package fi.finwe.orion360.sdk.basic.examples.examples;
 
-import android.animation.ValueAnimator;
 import android.app.Activity;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.widget.Toast;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Locale;
 
 import fi.finwe.math.QuatF;
 import fi.finwe.math.Vec3F;
@@ -45,6 +48,12 @@ import fi.finwe.orion360.OrionVideoView;
 import fi.finwe.orion360.OrionViewConfig;
 import fi.finwe.orion360.sdk.basic.examples.MainMenu;
 import fi.finwe.orion360.sdk.basic.examples.R;
+import fi.finwe.orion360.sdk.basic.examples.animation.TagAnimationScheduler;
+import fi.finwe.orion360.sdk.basic.examples.playback.PlaybackClock;
+import fi.finwe.orion360.sdk.basic.examples.playback.VideoViewClock;
+import fi.finwe.orion360.sdk.basic.examples.timeline.CameraPathPlayer;
+import fi.finwe.orion360.sdk.basic.examples.timeline.CameraPathWriter;
+import fi.finwe.orion360.sdk.basic.examples.timeline.CueTimeline;
 
 /**
  * An example of a minimal Orion360 video player, with forced view rotation control.
@@ -72,20 +81,56 @@ public class DirectorsCut extends Activity {
     /** Orion360 video player view. */
 	private OrionVideoView mOrionVideoView;
 
-    /** Handler for video position checks. */
-    private Handler mVideoPositionHandler = new Handler();
+    /**
+     * The name format of the camera path track file, baked from the keyframes below. The name
+     * has the track format version and a hash of the keyframes, so that an existing file is
+     * up to date and need not be baked again.
+     */
+    private static final String CAMERA_PATH_FILE_FORMAT = "directors_cut_v%d_%08x.camerapath";
+
+    /** Camera path keyframes: time in ms, yaw, pitch and field of view in degrees, easing. */
+    private static final String CAMERA_PATH_KEYFRAMES =
+            "25000  270    0  90\n" +
+            "27000    0    0  90  ease\n" +
+            "30000   60   10  70  ease\n" +
+            "33000  -60  -10  90  linear\n" +
+            "35000    0    0  90  ease\n";
+
+    /** Camera path sample interval, in milliseconds. */
+    private static final int CAMERA_PATH_INTERVAL_MS = 33;
+
+    /** The shared playback clock of the video view. */
+    private PlaybackClock mClock;
+
+    /** Clock listener for video position checks at the cuts. */
+    private PlaybackClock.Listener mVideoPositionListener;
 
-    /** Runnable for video position checks. */
-    private Runnable mVideoPositionRunnable;
+    /** The cuts of the director's cut, with the yaw angle to rotate to at each cut. */
+    private final CueTimeline mCutTimeline = new CueTimeline();
 
-    /** Camera animator. */
-    private ValueAnimator mCameraAnimator;
+    /** Listener that rotates the view when the playback position crosses a cut. */
+    private CueTimeline.Listener mCutListener;
 
-    /** Handler for camera animation. */
-    private Handler mCameraAnimationHandler = new Handler();
+    /** Camera path player, or null if the camera path is not available. */
+    private CameraPathPlayer mCameraPath;
 
-    /** Runnable for camera animation. */
-    private Runnable mCameraAnimationRunnable;
+    /** Runnable that applies the camera path at each frame while the path is playing. */
+    private Runnable mCameraPathRunnable;
+
+    /** Clock listener that starts the camera path when playback reaches it. */
+    private PlaybackClock.Listener mCameraPathStartListener;
+
+    /** Whether the camera path is currently controlling the view. */
+    private boolean mCameraPathActive = false;
+
+    /** Whether the video is playing, i.e. the camera path should follow it at each frame. */
+    private boolean mPlaying = false;
+
+    /** Whether the activity has been destroyed, i.e. a baked camera path is not needed. */
+    private boolean mDestroyed = false;
+
+    /** Handler for opening the camera path in the UI thread after baking. */
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
 
 
 	@Override
@@ -189,6 +234,11 @@ public class DirectorsCut extends Activity {
                 // Start playback when the player has initialized itself and buffered
                 // enough video frames.
                 mOrionVideoView.start();
+
+                // Start video position checks.
+                mClock.invalidate();
+                mVideoPositionListener.onPosition(mClock, mClock.getPosition());
+                startCameraPath();
             }
         });
 
@@ -215,56 +265,89 @@ public class DirectorsCut extends Activity {
          * In order to perform such operations during video playback, we need to listen to the
          * video position and check when a predefined moment of time has been reached.
          * Unfortunately, the Android media player backend does not provide frame numbers,
-         * and even video position must be queried via polling.
+         * and even video position must be queried via polling. Instead of polling at a fixed
+         * rate, we ask the shared playback clock of the video view to call us back when the
+         * next cut is due. The clock interpolates the position between reads, and confirms
+         * it with a read before calling back.
          */
-        final LinkedHashMap<Integer, Float> cutList = new LinkedHashMap<>();
-        cutList.put(5000,  0.0f);      // At  5s, look at front
-        cutList.put(10000, 90.0f);     // At 10s, look at right
-        cutList.put(15000, 180.0f);    // At 15s, look at back
-        cutList.put(20000, 270.0f);    // At 20s, look at left
-
-        final int videoFramesPerSecond = 25; // Used for controlling the polling delay.
-
-        mVideoPositionRunnable = new Runnable() {
+        mCutTimeline.add(5000,  0.0f);      // At  5s, look at front
+        mCutTimeline.add(10000, 90.0f);     // At 10s, look at right
+        mCutTimeline.add(15000, 180.0f);    // At 15s, look at back
+        mCutTimeline.add(20000, 270.0f);    // At 20s, look at left
+
+        // The cut timeline keeps the cuts sorted and finds them with binary search, hence
+        // it works equally well with thousands of cuts. It reports the cuts that the
+        // position crosses between checks, also when the position moves backwards.
+        mCutListener = new CueTimeline.Listener() {
             @Override
-            public void run() {
-
-                // Get video player position. Notice that this method has some delay.
-                int position = mOrionVideoView.getCurrentPosition();
-
-                // Compare position to the defined set of cuts.
-                Map.Entry<Integer, Float> cut = null;
-                for (Map.Entry<Integer, Float> entry : cutList.entrySet()) {
-                    if (position >= entry.getKey()) {
-                        cut = entry;
-                        break;
-                    }
-                }
-                if (null != cut) {
+            public void onCue(CueTimeline timeline, int index, boolean forward) {
+                if (forward) {
 
-                    // Cut found, rotate view to the defined yaw angle.
-                    Toast.makeText(DirectorsCut.this, "Cut Position=" + position
-                                    + " Time=" + cut.getKey() + " Angle=" + cut.getValue(),
+                    // Cut reached, rotate view to the defined yaw angle.
+                    Toast.makeText(DirectorsCut.this, "Cut Time=" + timeline.getTime(index)
+                                    + " Angle=" + timeline.getValue(index),
                             Toast.LENGTH_SHORT).show();
-                    setYaw(cut.getValue());
+                    setYaw(timeline.getValue(index));
 
-                    // This cut has now been handled, remove it from the cut list.
-                    cutList.remove(cut.getKey());
-                }
+                } else if (index > 0) {
 
-                // Continue polling video position as long as there are cuts in the list.
-                if (cutList.size() > 0) {
+                    // Moved back before a cut, return to the angle of the previous cut.
+                    setYaw(timeline.getValue(index - 1));
+                }
+            }
+        };
 
-                    // Check video position again after the next frame.
-                    mVideoPositionHandler.postDelayed(mVideoPositionRunnable,
-                            1000/videoFramesPerSecond);
+        mClock = VideoViewClock.get(mOrionVideoView);
+        mVideoPositionListener = new PlaybackClock.Listener() {
+            @Override
+            public void onPosition(PlaybackClock clock, int position) {
 
-                }
+                // Handle the cuts crossed since the previous check, and wait for the next one.
+                mCutTimeline.advance(position, mCutListener);
+                scheduleNextCut(position);
             }
         };
 
-        // Start video position checks.
-        mVideoPositionHandler.postDelayed(mVideoPositionRunnable, 1000/videoFramesPerSecond);
+        // Check the position when playback starts or resumes, and after seeking. There is no
+        // need to check it while paused.
+        mOrionVideoView.setOnStatusChangeListener(new OrionVideoView.OnStatusChangeListener() {
+            @Override
+            public void onStatusChange(OrionVideoView view,
+                                       OrionVideoView.PlayerStatus status) {
+
+                // The position jumps or stops, hence it must be read again.
+                mClock.invalidate();
+                switch (status) {
+                    case STARTED:
+                        mPlaying = true;
+                        mVideoPositionListener.onPosition(mClock, mClock.getPosition());
+                        startCameraPath();
+                        break;
+                    case SEEK_COMPLETE:
+
+                        // Jump over the cuts in between, and apply the cut that is in
+                        // effect at the new position.
+                        int position = mClock.getPosition();
+                        int cut = mCutTimeline.seekTo(position);
+                        if (cut >= 0) {
+                            setYaw(mCutTimeline.getValue(cut));
+                        }
+                        scheduleNextCut(position);
+
+                        // While paused, the camera path is applied once at the new position.
+                        startCameraPath();
+                        break;
+                    case PAUSED:
+                    case COMPLETED:
+                        mPlaying = false;
+                        mClock.removeListener(mVideoPositionListener);
+                        stopCameraPath();
+                        break;
+                    default:
+                        break;
+                }
+            }
+        });
 
         /**
          * Finally, the director may want to perform animated camera operations,
@@ -275,20 +358,78 @@ public class DirectorsCut extends Activity {
          * control by user.
          */
 
-        // Wait until the hard cuts demo is over, then proceed to camera animation.
-        mCameraAnimationRunnable = new Runnable() {
+        // The camera operations are described as keyframes, and baked into a camera path
+        // track where the slerp and easing math has been precomputed into samples. The track
+        // is streamed from a file while playing, so directed content can be hours long. Here
+        // the keyframes are baked in a background thread the first time the activity is
+        // created; normally the track would be created once by the authoring tool and
+        // shipped with the video.
+        final File cameraPathFile = new File(MainMenu.PRIVATE_EXTERNAL_FILES_PATH
+                + String.format(Locale.US, CAMERA_PATH_FILE_FORMAT, CameraPathWriter.VERSION,
+                CAMERA_PATH_KEYFRAMES.hashCode() * 31 + CAMERA_PATH_INTERVAL_MS));
+        if (cameraPathFile.exists()) {
+            openCameraPath(cameraPathFile);
+        } else {
+            bakeCameraPath(cameraPathFile);
+        }
+
+        mCameraPathStartListener = new PlaybackClock.Listener() {
+            @Override
+            public void onPosition(PlaybackClock clock, int position) {
+                mCameraPathRunnable.run();
+            }
+        };
+
+        mCameraPathRunnable = new Runnable() {
             @Override
             public void run() {
 
-                // Proceed to camera animation, see down below.
-                Toast.makeText(DirectorsCut.this, "Camera Animation",
-                        Toast.LENGTH_SHORT).show();
-                animateYaw(0.0f, 2000);
+                // The clock interpolates the position between reads, hence it advances
+                // smoothly from frame to frame without querying the player at each frame.
+                int position = mClock.getPosition();
+                if (position < mCameraPath.getStartTime()) {
+
+                    // Wait until the hard cuts demo is over, then proceed to the camera path.
+                    if (mPlaying) {
+                        mClock.addThreshold(mCameraPath.getStartTime(),
+                                mCameraPathStartListener);
+                    }
+                    return;
+                }
+                if (!mCameraPath.contains(position)) {
+                    mCameraPathActive = false;
+                    return;
+                }
+                if (!mCameraPathActive) {
+                    mCameraPathActive = true;
+                    Toast.makeText(DirectorsCut.this, "Camera Animation",
+                            Toast.LENGTH_SHORT).show();
+                }
+
+                // Rotate the camera to the yaw angle of the path. Notice that at each frame
+                // only the yaw angle is taken from the path, but pitch and roll are checked
+                // again, hence allowing user control for these angles during the animation.
+                // The path also has pitch and field of view, for players that control them.
+                try {
+                    mCameraPath.sample(position);
+                    setYaw(mCameraPath.getYaw());
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to read camera path", e);
+                    return;
+                }
 
+                // The camera path is applied from the shared Choreographer frame callback, in
+                // sync with the display refresh. It still runs in the UI thread, hence any
+                // excessive load there will make the animation stutter. Another option is to
+                // upgrade to Orion360 SDK Pro, which has built-in support for many animations
+                // and performs them with C++ code in the GL thread, in sync with frame
+                // rendering at 60 fps. While paused the view is not animated, hence the
+                // runnable is not posted again until playback starts.
+                if (mPlaying) {
+                    TagAnimationScheduler.getInstance().postAfterAnimations(mCameraPathRunnable);
+                }
             }
         };
-
-        mCameraAnimationHandler.postDelayed(mCameraAnimationRunnable, 25000);
     }
 
     @Override
@@ -311,13 +452,11 @@ public class DirectorsCut extends Activity {
 	public void onPause() {
 
         // Stop video position checks.
-        mVideoPositionHandler.removeCallbacks(mVideoPositionRunnable);
+        mClock.removeListener(mVideoPositionListener);
 
         // Stop camera animation.
-        mCameraAnimationHandler.removeCallbacks(mCameraAnimationRunnable);
-        if (null != mCameraAnimator) {
-            mCameraAnimator.cancel();
-        }
+        mPlaying = false;
+        stopCameraPath();
 
         // Propagate activity lifecycle events to Orion360 video view.
 		mOrionVideoView.onPause();
@@ -335,12 +474,35 @@ public class DirectorsCut extends Activity {
 
 	@Override
 	public void onDestroy() {
+        // Close the camera path track, or discard it if it is still being baked.
+        mDestroyed = true;
+        if (null != mCameraPath) {
+            try {
+                mCameraPath.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to close camera path", e);
+            }
+        }
+
         // Propagate activity lifecycle events to Orion360 video view.
 		mOrionVideoView.onDestroy();
 
 		super.onDestroy();
 	}
 
+    /**
+     * Schedule the next video position check at the time of the next cut.
+     *
+     * @param position The current video position, in milliseconds.
+     */
+    private void scheduleNextCut(int position) {
+        mClock.removeListener(mVideoPositionListener);
+        int delay = mCutTimeline.getTimeToNextCue(position);
+        if (delay >= 0) {
+            mClock.addThreshold(position + delay, mVideoPositionListener);
+        }
+    }
+
     /**
      * Rotate the view to a given yaw angle, preserving current pitch and roll angles.
      *
@@ -370,59 +532,72 @@ public class DirectorsCut extends Activity {
     }
 
     /**
-     * Animate the view to a given yaw angle, preserving current pitch and roll angles.
+     * Bake the camera path keyframes into a track file in a background thread, and open
+     * the track in the UI thread when done. The track is written to a temporary file first,
+     * so that an interrupted bake never leaves a partial track that looks up to date.
      *
-     * @param yawDeg The target yaw angle, in degrees.
-     * @param durationMs The length of the animation in milliseconds.
+     * @param file The track file.
      */
-    private void animateYaw(float yawDeg, long durationMs) {
-
-        // Get current orientation.
-        QuatF currentOrientation = mOrionVideoView.getViewingRotation();
-
-        // Create a vector showing where in the sphere the user is currently looking at.
-        Vec3F lookingAt = Vec3F.AXIS_FRONT.rotate(currentOrientation.conjugate());
-
-        // Get current yaw offset with respective to content 'front' direction in rads.
-        float currentYawRad = lookingAt.getYaw();
-
-        // Convert target yaw angle from degrees to radians.
-        float newYawRad = (float) (Math.PI / 180.0f * yawDeg);
-
-        // Android ValueAnimators can only be run in the UI thread, hence any excessive
-        // load will make animations stutter, especially after a few seconds of inactivity
-        // when the device begins to throttle the CPU. You can observe this most easily with
-        // a pulsating or rotating animation: leave the device alone for a moment and
-        // keep watching an animated object - if the animation is first smooth, and after
-        // a few seconds starts to stutter, try touching the screen (e.g. pan a little)
-        // and observe if the animation now becomes smooth again.
-
-        // If this becomes a problem, you can try to use a background thread and a custom
-        // animator for making the animations smoother. Another option is to upgrade to
-        // Orion360 SDK Pro, which has built-in support for many animations and performs
-        // them with C++ code in the GL thread, in sync with frame rendering at 60 fps.
-
-        // Setup camera animator.
-        mCameraAnimator = ValueAnimator.ofFloat(currentYawRad, newYawRad);
-        mCameraAnimator.setRepeatCount(0);
-        mCameraAnimator.setRepeatMode(ValueAnimator.RESTART);
-        mCameraAnimator.setDuration(durationMs);
-        mCameraAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-
+    private void bakeCameraPath(final File file) {
+        new Thread(new Runnable() {
             @Override
-            public void onAnimationUpdate(final ValueAnimator animation) {
+            public void run() {
+                File tempFile = new File(file.getPath() + ".tmp");
+                try {
+                    CameraPathWriter.bake(new StringReader(CAMERA_PATH_KEYFRAMES),
+                            new FileOutputStream(tempFile), CAMERA_PATH_INTERVAL_MS);
+                    if (!tempFile.renameTo(file)) {
+                        throw new IOException("Failed to rename " + tempFile);
+                    }
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to bake camera path", e);
+                    tempFile.delete();
+                    return;
+                }
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        openCameraPath(file);
+                    }
+                });
+            }
+        }, TAG).start();
+    }
 
-                // Rotate the camera to the desired yaw angle. Notice that each
-                // animation step will get the yaw angle from the camera animator,
-                // but pitch and roll will be checked again at each animation step,
-                // hence allowing user control for these angles during the animation.
-                float animatedValue = (Float) animation.getAnimatedValue();
-                float yawDeg = (float) (animatedValue * 180.0f / Math.PI);
-                setYaw(yawDeg);
+    /**
+     * Open a baked camera path track, and start applying it if the video is playing.
+     *
+     * @param file The track file.
+     */
+    private void openCameraPath(File file) {
+        if (mDestroyed) return;
+        try {
+            mCameraPath = new CameraPathPlayer(file);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to open camera path", e);
+            return;
+        }
+        if (mPlaying) {
+            startCameraPath();
+        }
+    }
 
-            }
-        });
-        mCameraAnimator.start();
+    /**
+     * Start applying the camera path, if the video position is within it or before it.
+     */
+    private void startCameraPath() {
+        if (null == mCameraPath) return;
+        stopCameraPath();
+        mCameraPathRunnable.run();
     }
 
+    /**
+     * Stop applying the camera path.
+     */
+    private void stopCameraPath() {
+        if (null == mCameraPath) return;
+        mClock.removeListener(mCameraPathStartListener);
+        TagAnimationScheduler.getInstance().removeAfterAnimations(mCameraPathRunnable);
+        mCameraPathActive = false;
+    }
 }
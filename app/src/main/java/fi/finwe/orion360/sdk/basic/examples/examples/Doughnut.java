@@ -42,6 +42,7 @@ import fi.finwe.orion360.OrionVideoView;
 import fi.finwe.orion360.OrionViewConfig;
 import fi.finwe.orion360.sdk.basic.examples.MainMenu;
 import fi.finwe.orion360.sdk.basic.examples.R;
+import fi.finwe.orion360.sdk.basic.examples.media.StreamCache;
 
 /**
  * An example of a minimal Orion360 video player, with doughnut video configuration.
@@ -95,7 +96,8 @@ public class Doughnut extends Activity {
 
             // This video is not full spherical, but a doughnut shape:
             // 360x135 degrees where 22.5 degrees is cropped from top and bottom...
-            mOrionVideoView.prepare(MainMenu.TEST_VIDEO_URI_1920x720);
+            mOrionVideoView.prepare(StreamCache.getProxyUrl(this,
+                    MainMenu.TEST_VIDEO_URI_1920x720));
 
             // Hence, we setup a corresponding video surface.
             setupDoughnutMesh();
@@ -29,8 +29,6 @@
 
 package fi.finwe.orion360.sdk.basic.examples.examples;
 
-import android.animation.Animator;
-import android.animation.ValueAnimator;
 import android.app.Activity;
 import android.media.AudioManager;
 import android.media.ToneGenerator;
@@ -47,6 +45,17 @@ import fi.finwe.orion360.OrionSensorFusion;
 import fi.finwe.orion360.OrionVideoView;
 import fi.finwe.orion360.sdk.basic.examples.MainMenu;
 import fi.finwe.orion360.sdk.basic.examples.R;
+import fi.finwe.orion360.sdk.basic.examples.animation.TagAnimation;
+import fi.finwe.orion360.sdk.basic.examples.animation.TagAnimationScheduler;
+import fi.finwe.orion360.sdk.basic.examples.hotspot.GazeDispatcher;
+import fi.finwe.orion360.sdk.basic.examples.hotspot.GazeTracker;
+import fi.finwe.orion360.sdk.basic.examples.hotspot.HotspotStore;
+import fi.finwe.orion360.sdk.basic.examples.math.MutableQuatF;
+import fi.finwe.orion360.sdk.basic.examples.playback.PlaybackClock;
+import fi.finwe.orion360.sdk.basic.examples.playback.VideoViewClock;
+import fi.finwe.orion360.sdk.basic.examples.sensor.OrientationPredictor;
+import fi.finwe.orion360.sdk.basic.examples.tag.TagBatch;
+import fi.finwe.orion360.sdk.basic.examples.timeline.IntervalTrack;
 
 /**
  * An example of a minimal Orion360 video player, with interactive hotspots.
@@ -94,12 +103,89 @@ public class InteractiveHotspots extends Activity {
     /** Orion360 tag index for the start hotspot object at the LEFT direction. */
     public static final int IDX_HOTSPOT_START_LEFT = 4;
 
+    /** Orion360 tag index for the first timed hotspot object. */
+    public static final int IDX_HOTSPOT_TIMED_FIRST = 10;
+
     /** Orion360 video player view. */
 	private OrionVideoView mOrionVideoView;
 
-	/** An array for the hotspot objects. */
+	/** Batches the tag property updates of the video view, flushed once per frame. */
+	private TagBatch mTagBatch;
+
+	/** An array for the hotspot objects, in the same order as the slots of mHotspotStore. */
 	private ArrayList<Hotspot> mHotspots = new ArrayList<>();
 
+	/** Hotspot properties and states for bulk operations, stored as primitive arrays. */
+	private HotspotStore mHotspotStore = new HotspotStore();
+
+	/** Scratch array for the slots selected from mHotspotStore. */
+	private int[] mSelection = new int[0];
+
+	/** Writes hotspot alpha changes from bulk operations to the video view. */
+	private HotspotStore.TagWriter mTagWriter = new HotspotStore.TagWriter() {
+		@Override
+		public void setTagAlpha(int tagIndex, float alpha) {
+			mTagBatch.setTagAlpha(tagIndex, alpha);
+		}
+	};
+
+	/** Dispatcher that computes the gaze direction once and notifies the gazed hotspots. */
+	private GazeDispatcher mGazeDispatcher = new GazeDispatcher();
+
+	/** The shared playback clock of the video view. */
+	private PlaybackClock mClock;
+
+	/** The time windows of the timed hotspots, with their slots in mHotspotStore as values. */
+	private IntervalTrack mTimedTrack = new IntervalTrack();
+
+	/** Flag for indicating whether the tour has been started via a start hotspot. */
+	private boolean mTourStarted = false;
+
+	/** Shows and hides the timed hotspots as their time windows begin and end. */
+	private IntervalTrack.Listener mTimedTrackListener = new IntervalTrack.Listener() {
+		@Override
+		public void onChange(IntervalTrack track, int item, boolean active) {
+			mHotspotStore.setVisible(track.getValue(item), active, mTagWriter);
+		}
+	};
+
+	/** Clock listener that updates the timed hotspots when their set changes. */
+	private PlaybackClock.Listener mTimedUpdateListener = new PlaybackClock.Listener() {
+		@Override
+		public void onPosition(PlaybackClock clock, int position) {
+			updateTimedHotspots(position);
+		}
+	};
+
+    /** Hotspot that is shown during a time window of the video. */
+    private class TimedHotspot extends Hotspot {
+
+        /** The start of the time window, in milliseconds. */
+        int startMs;
+
+        /** The end of the time window, exclusive, in milliseconds. */
+        int endMs;
+
+        /**
+         * Constructor.
+         *
+         * @param index The Orion360 tag index to be set for this hotspot instance.
+         * @param location The location where to place this hotspot instance.
+         * @param startMs The start of the time window, in milliseconds.
+         * @param endMs The end of the time window, exclusive, in milliseconds.
+         */
+        TimedHotspot(int index, Vec3F location, int startMs, int endMs) {
+            super(index);
+            this.location = location;
+            this.imageFilename = getString(R.string.asset_hotspot_start);
+            this.scale = new Vec2F(0.05f, 0.05f);
+            this.alpha = 0.70f;
+            this.startMs = startMs;
+            this.endMs = endMs;
+        }
+
+    }
+
     /** Hotspot used as a gaze-selectable start button. */
     private class StartHotspot extends AnimatedSelectableHotspot {
 
@@ -119,8 +205,8 @@ public class InteractiveHotspots extends Activity {
             this.alpha = 0.90f;
 
             // Configure interactive features.
-            this.gazeInSensitivity = 0.08f;
-            this.gazeOutSensitivity = 0.12f;
+            this.gazeInAngle = 5.0f;
+            this.gazeOutAngle = 7.0f;
 
             // Configure animations.
             initAttentionAnimation(0.8f, 1.2f, 2000);
@@ -138,6 +224,10 @@ public class InteractiveHotspots extends Activity {
             hideHotspots();
             deactivateHotspots();
             stopHotspotAnimations();
+
+            // Show the timed hotspots of the tour as the video plays.
+            mTourStarted = true;
+            startTimedHotspots();
         }
 
     }
@@ -153,6 +243,12 @@ public class InteractiveHotspots extends Activity {
         // Get Orion360 video view that is defined in the XML layout.
         mOrionVideoView = (OrionVideoView) findViewById(R.id.orion_video_view);
 
+        // Get the playback clock, for following the video position.
+        mClock = VideoViewClock.get(mOrionVideoView);
+
+        // Route tag property updates via a batch that applies them once per frame.
+        mTagBatch = new TagBatch(mOrionVideoView);
+
         // Initialize the hotspot objects and add them to the video view.
         initializeHotspots();
 
@@ -208,11 +304,19 @@ public class InteractiveHotspots extends Activity {
 
         // Propagate activity lifecycle events to Orion360 video view.
 		mOrionVideoView.onResume();
+
+        // Continue showing the timed hotspots, if the tour was already started.
+        if (mTourStarted) {
+            startTimedHotspots();
+        }
 	}
 
 	@Override
 	public void onPause() {
 
+        // Stop updating the timed hotspots.
+        stopTimedHotspots();
+
         // Hide all hotspots.
         hideHotspots();
 
@@ -225,6 +329,9 @@ public class InteractiveHotspots extends Activity {
         // Stop all hotspot animations.
         stopHotspotAnimations();
 
+        // Apply the pending tag changes now, before pausing the video view.
+        mTagBatch.flush();
+
         // Propagate activity lifecycle events to Orion360 video view.
 		mOrionVideoView.onPause();
 
@@ -241,6 +348,9 @@ public class InteractiveHotspots extends Activity {
 
 	@Override
 	public void onDestroy() {
+        // Drop tag changes that would otherwise be flushed after the view is gone.
+        mTagBatch.cancel();
+
         // Propagate activity lifecycle events to Orion360 video view.
 		mOrionVideoView.onDestroy();
 
@@ -267,47 +377,103 @@ public class InteractiveHotspots extends Activity {
         mHotspots.add(new StartHotspot(IDX_HOTSPOT_START_LEFT,
                 Vec3F.AXIS_LEFT.rotateZ(-pitchOffset)));
 
+        // Create timed hotspots that point out things during the tour. Each is shown only
+        // during its own time window; the windows may overlap.
+        mHotspots.add(new TimedHotspot(IDX_HOTSPOT_TIMED_FIRST,
+                Vec3F.AXIS_FRONT, 3000, 9000));
+        mHotspots.add(new TimedHotspot(IDX_HOTSPOT_TIMED_FIRST + 1,
+                Vec3F.AXIS_RIGHT, 7000, 14000));
+        mHotspots.add(new TimedHotspot(IDX_HOTSPOT_TIMED_FIRST + 2,
+                Vec3F.AXIS_BACK, 12000, 20000));
+        mHotspots.add(new TimedHotspot(IDX_HOTSPOT_TIMED_FIRST + 3,
+                Vec3F.AXIS_LEFT, 18000, 30000));
+
+        // Register the hotspots to the store. The type checks are made only once here,
+        // after this the bulk operations select hotspots by their kind flags.
+        for (Hotspot hotspot : mHotspots) {
+            int kind = 0;
+            if (hotspot instanceof InteractiveHotspot) kind |= HotspotStore.KIND_INTERACTIVE;
+            if (hotspot instanceof AnimatedSelectableHotspot) kind |= HotspotStore.KIND_ANIMATED;
+            if (hotspot instanceof Reticle) kind |= HotspotStore.KIND_RETICLE;
+            if (hotspot instanceof TimedHotspot) kind |= HotspotStore.KIND_TIMED;
+            int slot = mHotspotStore.add(hotspot.index, hotspot.alpha, kind);
+
+            // The track finds the timed hotspots to show at a given time with an interval
+            // tree, hence it works equally well with tens of thousands of them.
+            if (hotspot instanceof TimedHotspot) {
+                TimedHotspot timed = (TimedHotspot) hotspot;
+                mTimedTrack.add(timed.startMs, timed.endMs, slot);
+            }
+        }
+        mSelection = new int[mHotspotStore.size()];
+
         // Add all hotspots to the video view as Orion360 tags.
         try {
             for (Hotspot hotspot : mHotspots) {
                 mOrionVideoView.createTag(hotspot.index);
                 // Here we load the image from the /assets
                 mOrionVideoView.setTagAssetFilename(hotspot.index, hotspot.imageFilename);
-                mOrionVideoView.setTagLocation(hotspot.index, hotspot.location.x,
-                        hotspot.location.y, hotspot.location.z);
-                mOrionVideoView.setTagScale(hotspot.index, hotspot.scale.x, hotspot.scale.y);
-                mOrionVideoView.setTagAlpha(hotspot.index, hotspot.alpha);
+                mTagBatch.setTagLocation(hotspot.index, hotspot.location);
+                mTagBatch.setTagScale(hotspot.index, hotspot.scale.x, hotspot.scale.y);
+                mTagBatch.setTagAlpha(hotspot.index, hotspot.alpha);
             }
         } catch (OrionVideoView.LicenseVerificationException e) {
             Log.e(TAG, "License does not cover selected feature", e);
         }
+        mTagBatch.flush();
     }
 
     /**
-     * Show the hotspots.
+     * Show the start hotspots and the reticle. Timed hotspots are shown by the timed track.
      */
 	private void showHotspots() {
-		for (Hotspot hotspot : mHotspots) {
-			mOrionVideoView.setTagAlpha(hotspot.index, hotspot.alpha);
-		}
+		mHotspotStore.show(HotspotStore.KIND_INTERACTIVE, mTagWriter);
+		mHotspotStore.show(HotspotStore.KIND_RETICLE, mTagWriter);
 	}
 
     /**
      * Hide the hotspots.
      */
 	private void hideHotspots() {
-        for (Hotspot hotspot : mHotspots) {
-			mOrionVideoView.setTagAlpha(hotspot.index, 0.0f);
-        }
+		mHotspotStore.hide(0, mTagWriter);
 	}
 
+    /**
+     * Start showing the timed hotspots at the current video position.
+     */
+    private void startTimedHotspots() {
+        mClock.invalidate();
+        updateTimedHotspots(mClock.getPosition());
+    }
+
+    /**
+     * Stop updating the timed hotspots. The caller hides them.
+     */
+    private void stopTimedHotspots() {
+        mClock.removeListener(mTimedUpdateListener);
+        mTimedTrack.reset();
+    }
+
+    /**
+     * Show and hide the timed hotspots whose time windows begin or end before the given
+     * position, and wait for the next change.
+     *
+     * @param position The video position, in milliseconds.
+     */
+    private void updateTimedHotspots(int position) {
+        mTimedTrack.update(position, mTimedTrackListener);
+        mClock.removeListener(mTimedUpdateListener);
+        int delay = mTimedTrack.getTimeToNextChange(position);
+        if (delay >= 0) {
+            mClock.addThreshold(position + delay, mTimedUpdateListener);
+        }
+    }
+
     /** Start hotspot animations. */
     private void startHotspotAnimations() {
-        for (Hotspot hotspot : mHotspots) {
-            if (hotspot instanceof AnimatedSelectableHotspot) {
-                AnimatedSelectableHotspot animated = (AnimatedSelectableHotspot) hotspot;
-                animated.startAttentionAnimation();
-            }
+        int count = mHotspotStore.select(HotspotStore.KIND_ANIMATED, mSelection);
+        for (int i = 0; i < count; i++) {
+            ((AnimatedSelectableHotspot) mHotspots.get(mSelection[i])).startAttentionAnimation();
         }
     }
 
@@ -315,11 +481,9 @@ public class InteractiveHotspots extends Activity {
      * Stop all animations from all animated hotspots.
      */
     private void stopHotspotAnimations() {
-        for (Hotspot hotspot : mHotspots) {
-            if (hotspot instanceof AnimatedSelectableHotspot) {
-                AnimatedSelectableHotspot animated = (AnimatedSelectableHotspot) hotspot;
-                animated.stopAllAnimations();
-            }
+        int count = mHotspotStore.select(HotspotStore.KIND_ANIMATED, mSelection);
+        for (int i = 0; i < count; i++) {
+            ((AnimatedSelectableHotspot) mHotspots.get(mSelection[i])).stopAllAnimations();
         }
     }
 
@@ -327,35 +491,34 @@ public class InteractiveHotspots extends Activity {
      * Activate all interactive hotspots.
      */
     private void activateHotspots() {
-        for (Hotspot hotspot : mHotspots) {
-            if (hotspot instanceof InteractiveHotspot) {
-                InteractiveHotspot interactive = (InteractiveHotspot) hotspot;
-                interactive.activate();
-            }
+        mGazeDispatcher.activate(mOrionVideoView);
+        int count = mHotspotStore.select(HotspotStore.KIND_INTERACTIVE, mSelection);
+        for (int i = 0; i < count; i++) {
+            ((InteractiveHotspot) mHotspots.get(mSelection[i])).activate();
         }
+        mHotspotStore.setState(HotspotStore.KIND_INTERACTIVE, HotspotStore.STATE_ACTIVE);
     }
 
     /**
      * Deactivate all interactive hotspots.
      */
     private void deactivateHotspots() {
-        for (Hotspot hotspot : mHotspots) {
-            if (hotspot instanceof InteractiveHotspot) {
-                InteractiveHotspot interactive = (InteractiveHotspot) hotspot;
-                interactive.deactivate();
-            }
+        int count = mHotspotStore.select(HotspotStore.KIND_INTERACTIVE
+                | HotspotStore.STATE_ACTIVE, mSelection);
+        for (int i = 0; i < count; i++) {
+            ((InteractiveHotspot) mHotspots.get(mSelection[i])).deactivate();
         }
+        mHotspotStore.clearState(HotspotStore.KIND_INTERACTIVE, HotspotStore.STATE_ACTIVE);
+        mGazeDispatcher.deactivate();
     }
 
     /**
      * Activate reticle.
      */
     private void activateReticle() {
-        for (Hotspot hotspot : mHotspots) {
-            if (hotspot instanceof Reticle) {
-                Reticle reticle = (Reticle) hotspot;
-                reticle.activate();
-            }
+        int count = mHotspotStore.select(HotspotStore.KIND_RETICLE, mSelection);
+        for (int i = 0; i < count; i++) {
+            ((Reticle) mHotspots.get(mSelection[i])).activate();
         }
     }
 
@@ -363,11 +526,9 @@ public class InteractiveHotspots extends Activity {
      * Deactivate reticle.
      */
     private void deactivateReticle() {
-        for (Hotspot hotspot : mHotspots) {
-            if (hotspot instanceof Reticle) {
-                Reticle reticle = (Reticle) hotspot;
-                reticle.deactivate();
-            }
+        int count = mHotspotStore.select(HotspotStore.KIND_RETICLE, mSelection);
+        for (int i = 0; i < count; i++) {
+            ((Reticle) mHotspots.get(mSelection[i])).deactivate();
         }
     }
 
@@ -404,6 +565,19 @@ public class InteractiveHotspots extends Activity {
     /** Reticle implemented as a hotspot that moves along viewing direction. */
     private class Reticle extends Hotspot implements OrionSensorFusion.Listener {
 
+        /** How far ahead the reticle orientation is predicted, roughly the sensor-to-display
+         * latency. Set to 0 to disable prediction. */
+        private static final long LOOK_AHEAD_NANOS = 33000000L;
+
+        /** The rotation that is passed to the video view, reused in every sensor callback. */
+        private final QuatF mTagRotation = new QuatF(1.0f, 0.0f, 0.0f, 0.0f);
+
+        /** Predicts where the view will be pointing when the reticle is drawn. */
+        private final OrientationPredictor mPredictor = new OrientationPredictor();
+
+        /** The predicted orientation, reused in every sensor callback. */
+        private final MutableQuatF mPredicted = new MutableQuatF();
+
         /**
          * Constructor.
          *
@@ -417,14 +591,24 @@ public class InteractiveHotspots extends Activity {
             this.imageFilename = getString(R.string.asset_hotspot_reticle);
             this.scale = new Vec2F(0.10f, 0.10f);
             this.alpha = 0.90f;
+
+            mPredictor.setLookAhead(LOOK_AHEAD_NANOS);
         }
 
         @Override
         public void onDeviceOrientationChanged(QuatF orientation) {
 
-            // Move the reticle to the current view direction; this way it appears
-            // to be fixed to the video view center.
-            mOrionVideoView.setTagRotation(index, orientation.conjugate());
+            // Move the reticle to the view direction at the time the frame is displayed;
+            // this way it appears to be fixed to the video view center instead of trailing
+            // behind during fast turns. The conjugate is written to a reused quaternion,
+            // since orientation.conjugate() would allocate at sensor rate.
+            mPredictor.addSample(System.nanoTime(), orientation);
+            mPredictor.predict(mPredicted);
+            mTagRotation.w = mPredicted.w;
+            mTagRotation.x = -mPredicted.x;
+            mTagRotation.y = -mPredicted.y;
+            mTagRotation.z = -mPredicted.z;
+            mOrionVideoView.setTagRotation(index, mTagRotation);
 
         }
 
@@ -435,6 +619,7 @@ public class InteractiveHotspots extends Activity {
          * Make the reticle active by starting to listen view orientation changes.
          */
         void activate() {
+            mPredictor.reset();
             mOrionVideoView.registerOrientationChangeListener(this);
         }
 
@@ -449,16 +634,14 @@ public class InteractiveHotspots extends Activity {
 
     /** Adds interactivity to the hotspot object by making it respond to gazing events. */
     private abstract class InteractiveHotspot extends Hotspot
-            implements OrionSensorFusion.Listener {
-
-        /** Sensitivity for receiving gazing focus. */
-        float gazeInSensitivity;
+            implements GazeTracker.Listener {
 
-        /** Sensitivity for losing gazing focus. Should be larger than gazeInSensitivity. */
-        float gazeOutSensitivity;
+        /** Angle from the hotspot within which it receives gazing focus, in degrees. */
+        float gazeInAngle;
 
-        /** Flag for indicating if the hotspot is currently being gazed at. */
-        private boolean mIsGazedAt = false;
+        /** Angle from the hotspot beyond which it loses gazing focus, in degrees.
+         * Should be larger than gazeInAngle. */
+        float gazeOutAngle;
 
 
         /**
@@ -471,45 +654,27 @@ public class InteractiveHotspots extends Activity {
         }
 
         @Override
-        public void onDeviceOrientationChanged(QuatF orientation) {
-
-            // Rotate a front vector to the direction where the user is currently looking at.
-            Vec3F gazeDirection = Vec3F.AXIS_FRONT.rotate(orientation.conjugate());
-
-            // Check if the gazing vector points close enough to the hotspot location
-            // using a very simple approximation.
-            if (!mIsGazedAt) {
-                if ((       Math.abs(location.x - gazeDirection.x) < gazeInSensitivity)
-                        && (Math.abs(location.y - gazeDirection.y) < gazeInSensitivity)
-                        && (Math.abs(location.z - gazeDirection.z) < gazeInSensitivity) ) {
-                    mIsGazedAt = true;
-                    onGotGazeFocus();
-                }
-            } else {
-                if ((       Math.abs(location.x - gazeDirection.x) > gazeOutSensitivity)
-                        || (Math.abs(location.y - gazeDirection.y) > gazeOutSensitivity)
-                        || (Math.abs(location.z - gazeDirection.z) > gazeOutSensitivity) ) {
-                    mIsGazedAt = false;
-                    onLostGazeFocus();
-                }
-            }
+        public void onGazeEnter(int id) {
+            onGotGazeFocus();
         }
 
         @Override
-        public void onDeviceDisplayRotationChanged(int rotationDegrees) {}
+        public void onGazeExit(int id) {
+            onLostGazeFocus();
+        }
 
         /**
-         * Make the hotspot active by starting to listen view orientation changes.
+         * Make the hotspot active by adding it to the gaze dispatcher.
          */
         void activate() {
-            mOrionVideoView.registerOrientationChangeListener(this);
+            mGazeDispatcher.add(index, location, gazeInAngle, gazeOutAngle, this);
         }
 
         /**
-         * Make the hotspot inactive by stopping to listen view orientation changes.
+         * Make the hotspot inactive by removing it from the gaze dispatcher.
          */
         void deactivate() {
-            mOrionVideoView.unregisterOrientationChangeListener(this);
+            mGazeDispatcher.remove(index);
         }
 
         /**
@@ -527,30 +692,25 @@ public class InteractiveHotspots extends Activity {
     /** Adds selection and animation capabilities to an interactive hotspot. */
     private abstract class AnimatedSelectableHotspot extends InteractiveHotspot {
 
-        // Android ValueAnimators can only be run in the UI thread, hence any excessive
-        // load will make animations stutter, especially after a few seconds of inactivity
-        // when the device begins to throttle the CPU. You can observe this most easily with
-        // a pulsating or rotating animation: leave the device alone for a moment and
-        // keep watching an animated object - if the animation is first smooth, and after
-        // a few seconds starts to stutter, try touching the screen (e.g. pan a little)
-        // and observe if the animation now becomes smooth again.
+        // The animations are advanced by a shared scheduler from a single Choreographer
+        // frame callback, together with the animations of all other hotspots. This keeps the
+        // main looper from flooding with separate animator updates when there are many
+        // hotspots, but the tag updates still run in the UI thread, hence any excessive load
+        // there will make animations stutter.
 
-        // If this becomes a problem, you can try to use a background thread and a custom
-        // animator for making the animations smoother. Another option is to upgrade to
-        // Orion360 SDK Pro, which has built-in support for many animations and performs
-        // them with C++ code in the GL thread, in sync with frame rendering at 60 fps.
+        // If this becomes a problem, you can try to use a background thread for making the
+        // animations smoother. Another option is to upgrade to Orion360 SDK Pro, which has
+        // built-in support for many animations and performs them with C++ code in the GL
+        // thread, in sync with frame rendering at 60 fps.
 
-        /** An animator for drawing attention to the hotspot (pulsating FX). */
-        private ValueAnimator mAttentionAnimator;
+        /** An animation for drawing attention to the hotspot (pulsating FX). */
+        private TagAnimation mAttentionAnimation;
 
-        /** An animator for indicating that the hotspot will be selected soon (roll FX). */
-        private ValueAnimator mPreSelectionAnimator;
+        /** An animation for indicating that the hotspot will be selected soon (roll FX). */
+        private TagAnimation mPreSelectionAnimation;
 
-        /** An animator for indicating that the hotspot has been selected (escape FX). */
-        private ValueAnimator mPostSelectionAnimator;
-
-        /** Flag for indicating whether current selection process has been canceled. */
-        private boolean mSelectionCanceled = false;
+        /** An animation for indicating that the hotspot has been selected (escape FX). */
+        private TagAnimation mPostSelectionAnimation;
 
 
         /**
@@ -570,7 +730,7 @@ public class InteractiveHotspots extends Activity {
 
         @Override
         protected void onLostGazeFocus() {
-            if (null != mPreSelectionAnimator && mPreSelectionAnimator.isRunning()) {
+            if (null != mPreSelectionAnimation && mPreSelectionAnimation.isRunning()) {
                 stopPreSelectionAnimation();
                 startAttentionAnimation();
             }
@@ -584,23 +744,17 @@ public class InteractiveHotspots extends Activity {
          * @param periodMs The period in milliseconds for a single pulsating cycle.
          */
         void initAttentionAnimation(float min, float max, long periodMs) {
-            mAttentionAnimator = ValueAnimator.ofFloat(min, max);
-            mAttentionAnimator.setRepeatCount(ValueAnimator.INFINITE);
-            mAttentionAnimator.setRepeatMode(ValueAnimator.REVERSE);
-            mAttentionAnimator.setDuration(periodMs / 2);
-            mAttentionAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+            mAttentionAnimation = new TagAnimation(min, max, periodMs / 2) {
 
                 @Override
-                public void onAnimationUpdate(ValueAnimator animation) {
+                protected void onUpdate(float value) {
 
                     // Create a pulsating effect by animating hotspot scale.
-                    float animatedValue = (Float) animation.getAnimatedValue();
-                    mOrionVideoView.setTagScale(index,
-                            animatedValue * scale.x, animatedValue * scale.y);
+                    mTagBatch.setTagScale(index, value * scale.x, value * scale.y);
 
                 }
 
-            });
+            }.setRepeatCount(TagAnimation.INFINITE).setRepeatMode(TagAnimation.REVERSE);
         }
 
         /**
@@ -608,8 +762,8 @@ public class InteractiveHotspots extends Activity {
          */
         void startAttentionAnimation() {
             stopAllAnimations();
-            if (null != mAttentionAnimator) {
-                mAttentionAnimator.start();
+            if (null != mAttentionAnimation) {
+                TagAnimationScheduler.getInstance().start(mAttentionAnimation);
             }
         }
 
@@ -617,8 +771,8 @@ public class InteractiveHotspots extends Activity {
          * Stop the attention animation.
          */
         void stopAttentionAnimation() {
-            if (null != mAttentionAnimator) {
-                mAttentionAnimator.cancel();
+            if (null != mAttentionAnimation) {
+                TagAnimationScheduler.getInstance().cancel(mAttentionAnimation);
             }
         }
 
@@ -628,65 +782,45 @@ public class InteractiveHotspots extends Activity {
          * @param selectionLatencyMs The amount of continuous gazing (ms) required for triggering.
          */
         void initPreSelectionAnimation(long selectionLatencyMs) {
-            mPreSelectionAnimator = ValueAnimator.ofFloat(0, (float) (2 * Math.PI));
-            mPreSelectionAnimator.setRepeatCount(0);
-            mPreSelectionAnimator.setRepeatMode(ValueAnimator.RESTART);
-            mPreSelectionAnimator.setDuration(selectionLatencyMs);
-            mPreSelectionAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+            mPreSelectionAnimation = new TagAnimation(0, (float) (2 * Math.PI),
+                    selectionLatencyMs) {
 
                 @Override
-                public void onAnimationUpdate(ValueAnimator animation) {
+                protected void onUpdate(float value) {
 
                     // Create a roll effect, and restore hotspot location with another rotation.
-                    float animatedValue = (Float) animation.getAnimatedValue();
-                    QuatF clockRotation = QuatF.fromRotationAxisZ(-animatedValue);
+                    QuatF clockRotation = QuatF.fromRotationAxisZ(-value);
                     QuatF locationRotation = QuatF.fromEulerRotationZXY(
                             -location.getYaw(), location.getPitch(), 0.0f);
                     QuatF total = locationRotation.multiply(clockRotation);
-                    mOrionVideoView.setTagRotation(index, total);
+                    mTagBatch.setTagRotation(index, total);
 
                 }
 
-            });
-            mPreSelectionAnimator.addListener(new Animator.AnimatorListener() {
-
                 @Override
-                public void onAnimationCancel(Animator arg0) {
+                protected void onCancel() {
 
                     // The user gazed away too soon, cancel selection and remove roll effect.
-                    mSelectionCanceled = true;
-                    mOrionVideoView.setTagLocation(index, location);
+                    mTagBatch.setTagLocation(index, location);
 
                 }
 
                 @Override
-                public void onAnimationEnd(Animator arg0) {
+                protected void onEnd() {
 
-                    if (!mSelectionCanceled) {
-
-                        // Make a short beep sound.
-                        new ToneGenerator(AudioManager.STREAM_NOTIFICATION, 60).startTone(
-                                ToneGenerator.TONE_PROP_BEEP);
-
-                        if (null != mPostSelectionAnimator) {
-                            startPostSelectionAnimation();
-                        } else {
-                            onSelected();
-                        }
+                    // Make a short beep sound.
+                    new ToneGenerator(AudioManager.STREAM_NOTIFICATION, 60).startTone(
+                            ToneGenerator.TONE_PROP_BEEP);
 
+                    if (null != mPostSelectionAnimation) {
+                        startPostSelectionAnimation();
+                    } else {
+                        onSelected();
                     }
 
                 }
 
-                @Override
-                public void onAnimationRepeat(Animator arg0) {}
-
-                @Override
-                public void onAnimationStart(Animator arg0) {
-                    mSelectionCanceled = false;
-                }
-
-            });
+            };
         }
 
         /**
@@ -694,8 +828,8 @@ public class InteractiveHotspots extends Activity {
          */
         void startPreSelectionAnimation() {
             stopAllAnimations();
-            if (null != mPreSelectionAnimator) {
-                mPreSelectionAnimator.start();
+            if (null != mPreSelectionAnimation) {
+                TagAnimationScheduler.getInstance().start(mPreSelectionAnimation);
             }
         }
 
@@ -703,8 +837,8 @@ public class InteractiveHotspots extends Activity {
          * Stop the pre-selection animation.
          */
         void stopPreSelectionAnimation() {
-            if (null != mPreSelectionAnimator) {
-                mPreSelectionAnimator.cancel();
+            if (null != mPreSelectionAnimation) {
+                TagAnimationScheduler.getInstance().cancel(mPreSelectionAnimation);
             }
         }
 
@@ -714,56 +848,27 @@ public class InteractiveHotspots extends Activity {
          * @param escapeDuration The duration in milliseconds to remove the hotspot from view.
          */
         void initPostSelectionAnimation(long escapeDuration) {
-            mPostSelectionAnimator = ValueAnimator.ofFloat(1.0f, 0.0f);
-            mPostSelectionAnimator.setRepeatCount(0);
-            mPostSelectionAnimator.setRepeatMode(ValueAnimator.RESTART);
-            mPostSelectionAnimator.setDuration(escapeDuration);
-            mPostSelectionAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+            mPostSelectionAnimation = new TagAnimation(1.0f, 0.0f, escapeDuration) {
 
                 @Override
-                public void onAnimationUpdate(ValueAnimator animation) {
+                protected void onUpdate(float value) {
 
                     // Create an escape effect by simultaneously scaling to zero and fading away.
-                    float animatedValue = (Float) animation.getAnimatedValue();
-                    mOrionVideoView.setTagAlpha(index, animatedValue);
-                    mOrionVideoView.setTagScale(index,
-                            scale.x * animatedValue, scale.y * animatedValue);
+                    mTagBatch.setTagAlpha(index, value);
+                    mTagBatch.setTagScale(index, scale.x * value, scale.y * value);
 
                 }
 
-            });
-            mPostSelectionAnimator.addListener(new Animator.AnimatorListener() {
-
                 @Override
-                public void onAnimationCancel(Animator arg0) {
+                protected void onEnd() {
 
-                    // Animation was canceled, perhaps because we are leaving the activity,
-                    // and should not proceed with the selection.
-                    mSelectionCanceled = true;
+                    // Trigger selection. If the animation was canceled, perhaps because we
+                    // are leaving the activity, this is not called.
+                    onSelected();
 
                 }
 
-                @Override
-                public void onAnimationEnd(Animator arg0) {
-
-                    if (!mSelectionCanceled) {
-
-                        // Trigger selection.
-                        onSelected();
-
-                    }
-
-                }
-
-                @Override
-                public void onAnimationRepeat(Animator arg0) {}
-
-                @Override
-                public void onAnimationStart(Animator arg0) {
-                    mSelectionCanceled = false;
-                }
-
-            });
+            };
         }
 
         /**
@@ -771,8 +876,8 @@ public class InteractiveHotspots extends Activity {
          */
         void startPostSelectionAnimation() {
             stopAllAnimations();
-            if (null != mPostSelectionAnimator) {
-                mPostSelectionAnimator.start();
+            if (null != mPostSelectionAnimation) {
+                TagAnimationScheduler.getInstance().start(mPostSelectionAnimation);
             }
         }
 
@@ -780,8 +885,8 @@ public class InteractiveHotspots extends Activity {
          * Stop the post-selection animation.
          */
         void stopPostSelectionAnimation() {
-            if (null != mPostSelectionAnimator) {
-                mPostSelectionAnimator.cancel();
+            if (null != mPostSelectionAnimation) {
+                TagAnimationScheduler.getInstance().cancel(mPostSelectionAnimation);
             }
         }
 
@@ -42,6 +42,7 @@ import fi.finwe.orion360.OrionVideoView;
 import fi.finwe.orion360.OrionViewConfig;
 import fi.finwe.orion360.sdk.basic.examples.MainMenu;
 import fi.finwe.orion360.sdk.basic.examples.R;
+import fi.finwe.orion360.sdk.basic.examples.media.VideoFileWarmUp;
 
 /**
  * An example of a minimal Orion360 video player, with VR mode enabled.
@@ -72,6 +73,9 @@ public class MinimalVRVideoFilePlayer extends Activity {
     /** Gesture detector for touch events. */
     private GestureDetector mGestureDetector;
 
+    /** Video file warm-up that reads the beginning of the file to memory before prepare. */
+    private VideoFileWarmUp mVideoFileWarmUp;
+
 
     @Override
 	protected void onCreate(Bundle savedInstanceState) {
@@ -105,15 +109,29 @@ public class MinimalVRVideoFilePlayer extends Activity {
             }
         });
 
-        // Initialize Orion360 video view with a URI to a local .mp4 video file.
-        // Notice that this call will fail if a valid Orion360 license file for the package name
-        // (defined in the application's manifest file) cannot be found.
-        try {
-            mOrionVideoView.prepare(MainMenu.PRIVATE_EXTERNAL_FILES_PATH
-                    + MainMenu.TEST_VIDEO_FILE_MQ);
-        } catch (OrionVideoView.LicenseVerificationException e) {
-            Toast.makeText(this, e.getMessage(), Toast.LENGTH_LONG).show();
-        }
+        // Warm up the local .mp4 video file in the background while the video view is being
+        // set up: the file index and the first seconds of video are read to memory with a few
+        // large reads, hence preparing the video won't wait for many small reads from storage.
+        final String videoPath = MainMenu.PRIVATE_EXTERNAL_FILES_PATH
+                + MainMenu.TEST_VIDEO_FILE_MQ;
+        mVideoFileWarmUp = new VideoFileWarmUp(this, videoPath,
+                VideoFileWarmUp.DEFAULT_WARM_UP_DURATION_MS).start();
+        mVideoFileWarmUp.runWhenDone(new Runnable() {
+            @Override
+            public void run() {
+
+                // Initialize Orion360 video view with a URI to a local .mp4 video file.
+                // Notice that this call will fail if a valid Orion360 license file for the
+                // package name (defined in the application's manifest file) cannot be found.
+                try {
+                    mOrionVideoView.prepare(videoPath);
+                } catch (OrionVideoView.LicenseVerificationException e) {
+                    Toast.makeText(MinimalVRVideoFilePlayer.this, e.getMessage(),
+                            Toast.LENGTH_LONG).show();
+                }
+
+            }
+        }, VideoFileWarmUp.DEFAULT_MAX_WAIT_MS);
 
         // In normal mode it is preferable to automatically rotate the content so that
         // when the rendering begins the front direction of the video is brought in view,
@@ -216,6 +234,9 @@ public class MinimalVRVideoFilePlayer extends Activity {
 
 	@Override
 	public void onDestroy() {
+        // Stop warming up the video file, if still in progress.
+        mVideoFileWarmUp.cancel();
+
         // Propagate activity lifecycle events to Orion360 video view.
 		mOrionVideoView.onDestroy();
 
@@ -44,6 +44,7 @@ import android.widget.Toast;
 import fi.finwe.orion360.OrionVideoView;
 import fi.finwe.orion360.sdk.basic.examples.MainMenu;
 import fi.finwe.orion360.sdk.basic.examples.R;
+import fi.finwe.orion360.sdk.basic.examples.media.VideoFileWarmUp;
 
 /**
  * An example of a minimal Orion360 video player, for playing a video file from local file system.
@@ -103,6 +104,9 @@ public class MinimalVideoFilePlayer extends Activity implements OrionVideoView.O
     /** Full path to a video file to be played. */
     private String mVideoPath;
 
+    /** Video file warm-up that reads the beginning of the file to memory before prepare. */
+    private VideoFileWarmUp mVideoFileWarmUp;
+
 
 	@Override
 	protected void onCreate(Bundle savedInstanceState) {
@@ -185,6 +189,11 @@ public class MinimalVideoFilePlayer extends Activity implements OrionVideoView.O
 
 	@Override
 	public void onDestroy() {
+        // Stop warming up the video file, if still in progress.
+        if (null != mVideoFileWarmUp) {
+            mVideoFileWarmUp.cancel();
+        }
+
         // Propagate activity lifecycle events to Orion360 video view.
 		mOrionVideoView.onDestroy();
 
@@ -236,7 +245,29 @@ public class MinimalVideoFilePlayer extends Activity implements OrionVideoView.O
 
         // We can now prepare the video file for playback. When it is ready, we get a callback
         // via onPreparedListener interface, and make another call to start video playback.
-        prepare();
+        warmUpAndPrepare();
+    }
+
+    /**
+     * Warm up the video file in the background, and then prepare it for playback.
+     * <p/>
+     * The warm-up reads the video file index and the first seconds of video to memory with
+     * a few large reads, while the video view is still setting itself up. This way the video
+     * player does not need to wait for many small reads from cold storage when it is prepared,
+     * and the first frame appears sooner. We wait for the warm-up only for a short while.
+     */
+    private void warmUpAndPrepare() {
+        if (null != mVideoFileWarmUp) {
+            mVideoFileWarmUp.cancel();
+        }
+        mVideoFileWarmUp = new VideoFileWarmUp(this, mVideoPath,
+                VideoFileWarmUp.DEFAULT_WARM_UP_DURATION_MS).start();
+        mVideoFileWarmUp.runWhenDone(new Runnable() {
+            @Override
+            public void run() {
+                prepare();
+            }
+        }, VideoFileWarmUp.DEFAULT_MAX_WAIT_MS);
     }
 
     /**
@@ -282,7 +313,7 @@ public class MinimalVideoFilePlayer extends Activity implements OrionVideoView.O
                     Log.i(TAG, "Read permission was granted by user");
 
                     // Public external folder works, start preparing the video file.
-                    prepare();
+                    warmUpAndPrepare();
                 }
                 return;
             }
@@ -39,6 +39,7 @@ import android.widget.Toast;
 import fi.finwe.orion360.OrionVideoView;
 import fi.finwe.orion360.sdk.basic.examples.MainMenu;
 import fi.finwe.orion360.sdk.basic.examples.R;
+import fi.finwe.orion360.sdk.basic.examples.media.StreamCache;
 
 /**
  * An example of a minimal Orion360 video player, for streaming a video file over the network.
@@ -120,10 +121,14 @@ public class MinimalVideoStreamPlayer extends Activity {
         // other adaptive video streams, although some devices may be able to play them
         // (HLS is officially supported in 'Orion360 SDK Pro' product).
 
+        // The stream is played through a local caching proxy, hence replaying it is served
+        // from disk instead of downloading it again.
+
         // Notice that this call will fail if a valid Orion360 license file for the package name
         // (defined in the application's manifest file) cannot be found.
         try {
-            mOrionVideoView.prepare(MainMenu.TEST_VIDEO_URI_1280x640);
+            mOrionVideoView.prepare(StreamCache.getProxyUrl(this,
+                    MainMenu.TEST_VIDEO_URI_1280x640));
         } catch (OrionVideoView.LicenseVerificationException e) {
             Toast.makeText(this, e.getMessage(), Toast.LENGTH_LONG).show();
         }
@@ -29,10 +29,8 @@
 
 package fi.finwe.orion360.sdk.basic.examples.examples;
 
-import android.animation.ValueAnimator;
 import android.app.Activity;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
 import android.util.Log;
 import android.widget.Toast;
@@ -43,6 +41,11 @@ import fi.finwe.orion360.OrionSensorFusion;
 import fi.finwe.orion360.OrionVideoView;
 import fi.finwe.orion360.sdk.basic.examples.MainMenu;
 import fi.finwe.orion360.sdk.basic.examples.R;
+import fi.finwe.orion360.sdk.basic.examples.animation.TagAnimation;
+import fi.finwe.orion360.sdk.basic.examples.animation.TagAnimationScheduler;
+import fi.finwe.orion360.sdk.basic.examples.graphics.BitmapPool;
+import fi.finwe.orion360.sdk.basic.examples.math.MutableQuatF;
+import fi.finwe.orion360.sdk.basic.examples.math.MutableVec3F;
 
 /**
  * An example of a minimal Orion360 video player, with a nadir patch image.
@@ -91,12 +94,15 @@ public class NadirPatch extends Activity {
     /** Orion360 video player view. */
 	private OrionVideoView mOrionVideoView;
 
-    /** A value animator for fading in the nadir patch when video playback begins. */
-    private ValueAnimator mFadeInOutAnimator;
+    /** An animation for fading in the nadir patch when video playback begins. */
+    private TagAnimation mFadeInOutAnimation;
 
     /** Flag for configuring nadir auto rotate on, or off. */
     private boolean mKeepNadirPatchUpright = true;
 
+    /** The nadir patch image, returned to the bitmap pool when the view is destroyed. */
+    private Bitmap mNadirPatchBitmap;
+
 
 	@Override
 	protected void onCreate(Bundle savedInstanceState) {
@@ -121,7 +127,7 @@ public class NadirPatch extends Activity {
                 mOrionVideoView.start();
 
                 // Fade in the nadir patch now.
-                mFadeInOutAnimator.start();
+                TagAnimationScheduler.getInstance().start(mFadeInOutAnimation);
 
                 // If nadir patch auto-rotate is enabled, start it now.
                 if (mKeepNadirPatchUpright) {
@@ -162,7 +168,7 @@ public class NadirPatch extends Activity {
 	public void onPause() {
 
         // Cancel all animations before pausing the video view.
-        mFadeInOutAnimator.cancel();
+        TagAnimationScheduler.getInstance().cancel(mFadeInOutAnimation);
 
         // Propagate activity lifecycle events to Orion360 video view.
 		mOrionVideoView.onPause();
@@ -183,6 +189,10 @@ public class NadirPatch extends Activity {
         // Propagate activity lifecycle events to Orion360 video view.
 		mOrionVideoView.onDestroy();
 
+        // The view no longer uses the patch image; let the next decode reuse its memory.
+        BitmapPool.getInstance(this).put(mNadirPatchBitmap);
+        mNadirPatchBitmap = null;
+
 		super.onDestroy();
 	}
 
@@ -203,10 +213,12 @@ public class NadirPatch extends Activity {
         mOrionVideoView.setTagLocation(IDX_NADIR_PATCH, Vec3F.AXIS_DOWN);
 
         // Set the PNG image file that will be drawn to the tag location.
-        // Here we load the image from the file system as a bitmap (RGBA_8888 format).
-        Bitmap bitmap = BitmapFactory.decodeFile(imagePath);
+        // Here we load the image from the file system as a bitmap (RGBA_8888 format),
+        // reusing the memory of a previously released bitmap of the same size if possible.
+        Bitmap bitmap = BitmapPool.getInstance(this).decodeFile(imagePath);
         if (null != bitmap) {
             mOrionVideoView.setTagBitmap(IDX_NADIR_PATCH, bitmap);
+            mNadirPatchBitmap = bitmap;
         } else {
             Log.e(TAG, "Could not decode bitmap " + imagePath);
         }
@@ -219,7 +231,7 @@ public class NadirPatch extends Activity {
         mOrionVideoView.setTagAlpha(IDX_NADIR_PATCH, 0.0f);
 
         // ... and then use an object animator to fade in the tag later when animator is started.
-        initFadeInOutAnimator(IDX_NADIR_PATCH, 0.0f, alpha, 3000);
+        initFadeInOutAnimation(IDX_NADIR_PATCH, 0.0f, alpha, 3000);
     }
 
     /**
@@ -230,16 +242,15 @@ public class NadirPatch extends Activity {
      * @param to The alpha value where to end to.
      * @param durationMs The duration of the animation in milliseconds.
      */
-    private void initFadeInOutAnimator(final int tag, float from, float to, long durationMs) {
-        mFadeInOutAnimator = ValueAnimator.ofFloat(from, to);
-        mFadeInOutAnimator.setDuration(durationMs);
-        mFadeInOutAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            public void onAnimationUpdate(ValueAnimator animation) {
+    private void initFadeInOutAnimation(final int tag, float from, float to, long durationMs) {
+        mFadeInOutAnimation = new TagAnimation(from, to, durationMs) {
+            @Override
+            protected void onUpdate(float value) {
 
-                mOrionVideoView.setTagAlpha(tag, (Float) animation.getAnimatedValue());
+                mOrionVideoView.setTagAlpha(tag, value);
 
             }
-        });
+        };
     }
 
     /**
@@ -248,27 +259,43 @@ public class NadirPatch extends Activity {
     private void startNadirPatchAutoRotate() {
         mOrionVideoView.registerOrientationChangeListener(new OrionSensorFusion.Listener() {
 
+            // This listener is called at sensor rate, hence all math is done in place with
+            // objects that are allocated only once, to avoid garbage collection pauses.
+
+            /** Scratch quaternion for the inverse orientation. */
+            private final MutableQuatF mInverse = new MutableQuatF();
+
+            /** Scratch vector for the gaze direction. */
+            private final MutableVec3F mGazeAt = new MutableVec3F();
+
+            /** Scratch quaternion for the total rotation. */
+            private final MutableQuatF mTotal = new MutableQuatF();
+
+            /** Rotation from the default front location to the bottom; it never changes. */
+            private final MutableQuatF mToNadir = new MutableQuatF()
+                    .setRotationAxisX(Vec3F.AXIS_DOWN.getPitch());
+
+            /** The rotation that is passed to the video view. */
+            private final QuatF mTagRotation = new QuatF(1.0f, 0.0f, 0.0f, 0.0f);
+
             @Override
             public void onDeviceOrientationChanged(QuatF orientation) {
 
                 // Rotate front vector to the direction where the user is currently looking at.
-                Vec3F gazeAt = Vec3F.AXIS_FRONT.rotate(orientation.conjugate());
+                mInverse.set(orientation).conjugate();
+                mGazeAt.set(Vec3F.AXIS_FRONT).rotate(mInverse);
 
                 // Get the yaw offset with respective to the 360 image front direction.
-                float gazeYaw = gazeAt.getYaw();
+                float gazeYaw = mGazeAt.getYaw();
 
                 // Negate it and convert to quaternion; this rotation keeps the patch upright.
-                QuatF yawCompensation = QuatF.fromRotationAxisY(-gazeYaw);
-
                 // Tag rotation naturally affects to tag location as well, hence we must rotate
                 // the nadir patch from the default front location to the bottom again.
-                QuatF toNadir = QuatF.fromRotationAxisX(Vec3F.AXIS_DOWN.getPitch());
-
                 // Combine the two rotations and mind the multiplication (rotation) order!
-                QuatF total = yawCompensation.multiply(toNadir);
+                mTotal.setRotationAxisY(-gazeYaw).multiply(mToNadir);
 
                 // Apply to the nadir patch tag.
-                mOrionVideoView.setTagRotation(IDX_NADIR_PATCH, total);
+                mOrionVideoView.setTagRotation(IDX_NADIR_PATCH, mTotal.copyTo(mTagRotation));
 
             }
 
@@ -32,7 +32,6 @@ package fi.finwe.orion360.sdk.basic.examples.examples;
 import android.animation.ValueAnimator;
 import android.app.Activity;
 import android.os.Bundle;
-import android.os.Handler;
 import android.util.Log;
 import android.view.View;
 import android.widget.ProgressBar;
@@ -41,6 +40,10 @@ import android.widget.Toast;
 import fi.finwe.orion360.OrionVideoView;
 import fi.finwe.orion360.sdk.basic.examples.MainMenu;
 import fi.finwe.orion360.sdk.basic.examples.R;
+import fi.finwe.orion360.sdk.basic.examples.media.StreamCache;
+import fi.finwe.orion360.sdk.basic.examples.playback.PlayerStateMachine;
+import fi.finwe.orion360.sdk.basic.examples.playback.PlayerStateTracker;
+import fi.finwe.orion360.sdk.basic.examples.playback.StartupOrchestrator;
 
 /**
  * An example of a minimal Orion360 video player, with a preview image.
@@ -97,11 +100,11 @@ public class PreviewImage extends Activity {
     /** Buffering indicator, to be shown while buffering video from the network. */
     private ProgressBar mBufferingIndicator;
 
-    /** Handler for buffering indicators. */
-    private Handler mBufferingIndicatorHandler;
+    /** Player state tracker, for noticing when video frames are shown. */
+    private PlayerStateTracker mStateTracker;
 
-    /** Polling interval for buffering indicator handler, in ms. */
-    int mBufferingIndicatorInterval = 500;
+    /** Startup orchestrator, for loading the preview image and the video in parallel. */
+    private StartupOrchestrator mStartup;
 
     /** Cross-fade animator. */
     private ValueAnimator mCrossfadeAnimator;
@@ -117,13 +120,19 @@ public class PreviewImage extends Activity {
         // Get Orion360 video view that is defined in the XML layout.
         mOrionVideoView = (OrionVideoView) findViewById(R.id.orion_video_view);
 
-        // Get buffering indicator and setup a handler for it.
+        // Get buffering indicator, and track the player state for hiding it.
         mBufferingIndicator = (ProgressBar) findViewById(R.id.buffering_indicator);
-        mBufferingIndicatorHandler = new Handler();
+        mStateTracker = new PlayerStateTracker(mOrionVideoView);
+
+        // Hide buffering indicator when the first frame is shown, even if device doesn't
+        // properly notify that buffering has ended.
+        mStateTracker.getMachine().addListener(mPlayerStateListener);
 
         // Listen for buffering events, and show/hide the buffering indicator accordingly.
         // For a better example, see BufferingIndicator example.
-        mOrionVideoView.setOnBufferingStatusListener(new OrionVideoView.OnBufferingStatusListener() {
+        // The state tracker wraps our listeners, as the video view has one of each kind.
+        mOrionVideoView.setOnBufferingStatusListener(mStateTracker.wrap(
+                new OrionVideoView.OnBufferingStatusListener() {
             @Override
             public void onBufferingStarted(OrionVideoView orionVideoView) {
                 mBufferingIndicator.setVisibility(View.VISIBLE);
@@ -138,31 +147,36 @@ public class PreviewImage extends Activity {
             public void onBufferingStopped(OrionVideoView orionVideoView) {
                 mBufferingIndicator.setVisibility(View.GONE);
             }
-        });
+        }));
 
         // Start playback when the player has initialized itself and buffered enough video frames.
-        mOrionVideoView.setOnPreparedListener(new OrionVideoView.OnPreparedListener() {
+        mOrionVideoView.setOnPreparedListener(mStateTracker.wrap(
+                new OrionVideoView.OnPreparedListener() {
             @Override
             public void onPrepared(OrionVideoView view) {
                 mOrionVideoView.start();
             }
-        });
+        }));
 
-        // Initialize Orion360 video view with a URI to an .mp4 video-on-demand stream.
-        // Notice that this call will fail if a valid Orion360 license file for the package name
-        // (defined in the application's manifest file) cannot be found.
-        try {
-            mOrionVideoView.prepare(MainMenu.TEST_VIDEO_URI_1920x960);
-        } catch (OrionVideoView.LicenseVerificationException e) {
-            Toast.makeText(this, e.getMessage(), Toast.LENGTH_LONG).show();
-        }
+        // Log player status changes; the state tracker follows them, too.
+        mOrionVideoView.setOnStatusChangeListener(mStateTracker.wrap(
+                new OrionVideoView.OnStatusChangeListener() {
+            @Override
+            public void onStatusChange(OrionVideoView view, OrionVideoView.PlayerStatus status) {
+                Log.d(TAG, "Player status: " + status.name());
+            }
+        }));
 
-        // Initialize Orion360 preview image with a URI to a .jpg image file.
+        // Initialize Orion360 video view with a URI to an .mp4 video-on-demand stream, and
+        // Orion360 preview image with a path to a .jpg image file. The startup orchestrator
+        // prepares the preview image for the screen in a background thread while the video
+        // is prepared, and traces when each phase of the startup is reached.
         // Notice that this call will fail if a valid Orion360 license file for the package name
         // (defined in the application's manifest file) cannot be found.
+        mStartup = new StartupOrchestrator(mOrionVideoView, mStateTracker);
         try {
-            mOrionVideoView.setPreviewImagePath(MainMenu.PRIVATE_EXTERNAL_FILES_PATH
-                    + MainMenu.TEST_PREVIEW_IMAGE_FILE_MQ);
+            mStartup.start(StreamCache.getProxyUrl(this, MainMenu.TEST_VIDEO_URI_1920x960),
+                    MainMenu.PRIVATE_EXTERNAL_FILES_PATH + MainMenu.TEST_PREVIEW_IMAGE_FILE_MQ);
         } catch (OrionVideoView.LicenseVerificationException e) {
             Toast.makeText(this, e.getMessage(), Toast.LENGTH_LONG).show();
         }
@@ -191,9 +205,8 @@ public class PreviewImage extends Activity {
         // decoded and renderer. When video playback begins, cross-fade animation is run.
         mOrionVideoView.setPreviewAlpha(1.0f);
 
-        // Hide buffering indicator when playback starts, even if device doesn't
-        // properly notify that buffering has ended.
-        mBufferingIndicatorRunnable.run();
+        // Look for the first frame again, to start the cross-fade when the video shows.
+        mStateTracker.resume();
 	}
 
 	@Override
@@ -204,8 +217,8 @@ public class PreviewImage extends Activity {
             mCrossfadeAnimator.cancel();
         }
 
-        // Cancel buffering indicator handler (polling).
-        mBufferingIndicatorHandler.removeCallbacks(mBufferingIndicatorRunnable);
+        // Stop waiting for the first frame.
+        mStateTracker.pause();
 
         // Propagate activity lifecycle events to Orion360 video view.
 		mOrionVideoView.onPause();
@@ -223,6 +236,9 @@ public class PreviewImage extends Activity {
 
 	@Override
 	public void onDestroy() {
+        // Stop following the startup.
+        mStartup.cancel();
+
         // Propagate activity lifecycle events to Orion360 video view.
 		mOrionVideoView.onDestroy();
 
@@ -230,22 +246,21 @@ public class PreviewImage extends Activity {
 	}
 
     /**
-     * Runnable for polling if video playback has already begun.
+     * Player state listener for noticing when video playback has begun. The state machine
+     * reports the first frame after each start within a display frame, instead of us polling
+     * the video position.
      */
-    Runnable mBufferingIndicatorRunnable = new Runnable() {
+    PlayerStateMachine.Listener mPlayerStateListener = new PlayerStateMachine.Listener() {
         @Override
-        public void run() {
-            Log.d(TAG, "Checking if playback has started...");
-            int newPosition = mOrionVideoView.getCurrentPosition();
-            if (newPosition > 0) {
-                Log.d(TAG, "Now playing video.");
-                mBufferingIndicator.setVisibility(View.GONE);
-                crossFade(1.0f, 0.0f, 1000);
-            } else if (mOrionVideoView.getState() != OrionVideoView.PlayingState.UNDEFINED){
-                Log.d(TAG, "Still buffering.");
-                mBufferingIndicatorHandler.postDelayed(mBufferingIndicatorRunnable,
-                        mBufferingIndicatorInterval);
-            }
+        public void onStateChanged(PlayerStateMachine machine, int previous, int state) {
+            Log.d(TAG, "Player state: " + PlayerStateMachine.getStateName(state));
+        }
+
+        @Override
+        public void onFirstFrame(PlayerStateMachine machine, int positionMs) {
+            Log.d(TAG, "Now playing video.");
+            mBufferingIndicator.setVisibility(View.GONE);
+            crossFade(1.0f, 0.0f, 1000);
         }
     };
 
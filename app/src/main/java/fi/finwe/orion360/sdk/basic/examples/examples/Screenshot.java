@@ -42,19 +42,29 @@ import android.view.MotionEvent;
 import android.view.View;
 import android.widget.Toast;
 
-import java.io.FileOutputStream;
-import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Locale;
 
 import fi.finwe.orion360.OrionSurfaceView;
 import fi.finwe.orion360.OrionVideoView;
 import fi.finwe.orion360.sdk.basic.examples.MainMenu;
 import fi.finwe.orion360.sdk.basic.examples.R;
+import fi.finwe.orion360.sdk.basic.examples.capture.CaptureSession;
+import fi.finwe.orion360.sdk.basic.examples.capture.PanoramaCapture;
+import fi.finwe.orion360.sdk.basic.examples.capture.ScreenshotEncoder;
+import fi.finwe.orion360.sdk.basic.examples.capture.ScreenshotFormat;
+import fi.finwe.orion360.sdk.basic.examples.graphics.BitmapPool;
 
 /**
  * An example of a minimal Orion360 video player, with screenshot capture by tapping.
  * <p/>
+ * Long-pressing the screen captures a burst of screenshots (5 per second for 10 seconds)
+ * to sequentially numbered JPEG files.
+ * <p/>
+ * Double-tapping the screen captures the current video frame as a full-sphere equirectangular
+ * panorama, by turning the view around and stitching the captured viewports together.
+ * <p/>
  * Features:
  * <ul>
  * <li>Plays one hard-coded full spherical (360x180) equirectangular video
@@ -75,8 +85,30 @@ public class Screenshot extends Activity {
     /** Tag for logging. */
     public static final String TAG = Screenshot.class.getSimpleName();
 
-    /** Screenshot filename format string. */
-    private static final String FILE_NAME_FORMAT = "yyyyMMddhhmmss'_Orion360_Screenshot.png'";
+    /** Screenshot filename format string, without the extension. */
+    private static final String FILE_NAME_FORMAT = "yyyyMMddhhmmss'_Orion360_Screenshot.'";
+
+    /** Panorama filename format string, without the extension. */
+    private static final String PANORAMA_FILE_NAME_FORMAT =
+            "yyyyMMddhhmmss'_Orion360_Panorama.'";
+
+    /** Panorama width on devices with a large heap, in pixels. */
+    private static final int PANORAMA_WIDTH_LARGE = 4096;
+
+    /** Panorama width on devices with a small heap, in pixels. */
+    private static final int PANORAMA_WIDTH_SMALL = 2048;
+
+    /** Burst capture JPEG quality. */
+    private static final int BURST_JPEG_QUALITY = 90;
+
+    /** Burst capture file name prefix format string, unique to each burst. */
+    private static final String BURST_FILE_NAME_FORMAT = "yyyyMMddHHmmss'_Orion360_Burst'";
+
+    /** Burst capture rate, in frames per second. */
+    private static final float BURST_FPS = 5.0f;
+
+    /** Burst capture duration, in ms. */
+    private static final long BURST_DURATION_MS = 10000;
 
     private static final String CAMERA_SOUND_FILE ="file:///system/media/audio/ui/camera_click.ogg";
 
@@ -89,6 +121,18 @@ public class Screenshot extends Activity {
     /** Media player for playing camera shoot sound. */
     private MediaPlayer mCameraShootPlayer;
 
+    /** Encoder that saves screenshots in a background thread. */
+    private ScreenshotEncoder mScreenshotEncoder;
+
+    /** Encoder that saves the frames of burst captures, shared by all bursts. */
+    private ScreenshotEncoder mBurstEncoder;
+
+    /** Burst capture session, or null if not capturing a burst. */
+    private CaptureSession mCaptureSession;
+
+    /** Panorama capture, or null if not capturing a panorama. */
+    private PanoramaCapture mPanoramaCapture;
+
 
     @Override
 	protected void onCreate(Bundle savedInstanceState) {
@@ -135,14 +179,74 @@ public class Screenshot extends Activity {
                     @Override
                     public boolean onSingleTapConfirmed(MotionEvent e) {
 
+                        // Extra screenshots would be mistaken for panorama tiles.
+                        if (null != mPanoramaCapture && mPanoramaCapture.isCapturing()) {
+                            return true;
+                        }
+
                         //captureScreenshot();
                         captureScreenshotAsync();
 
                         return true;
                     }
 
+                    @Override
+                    public void onLongPress(MotionEvent e) {
+                        startBurstCapture();
+                    }
+
+                    @Override
+                    public boolean onDoubleTap(MotionEvent e) {
+                        startPanoramaCapture();
+                        return true;
+                    }
+
                 });
 
+        // Compressing a screenshot to PNG and writing it to a file takes a long time, hence
+        // it is done in a background thread. Screenshots wait in a short queue; if the user
+        // taps faster than the screenshots can be saved, the newest ones are dropped.
+        mScreenshotEncoder = new ScreenshotEncoder(1, 2,
+                ScreenshotEncoder.OverflowPolicy.DROP_NEWEST);
+
+        // Stitched panoramas are allocated from the bitmap pool, and are returned there after
+        // they have been saved. The pool recycles the screenshots, which nothing borrows.
+        mScreenshotEncoder.setBitmapPool(BitmapPool.getInstance(this));
+
+        // Screenshots are saved as lossless PNG. The parallel encoder compresses bands of rows
+        // with all cores (from API level 19 on), here at the fast compression level 2, which
+        // makes saving large frames several times faster.
+        mScreenshotEncoder.setFormat(ScreenshotFormat.parallelPng(2));
+        mScreenshotEncoder.setListener(new ScreenshotEncoder.Listener() {
+
+            @Override
+            public void onScreenshotSaved(String filePath, long encodeTimeMs) {
+                Toast.makeText(Screenshot.this, "Screenshot saved to " + filePath,
+                        Toast.LENGTH_LONG).show();
+            }
+
+            @Override
+            public void onScreenshotFailed(String filePath, Exception e) {
+                Toast.makeText(Screenshot.this, "Screenshot FAILED!",
+                        Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onScreenshotDropped(String filePath) {
+                Toast.makeText(Screenshot.this, "Screenshot skipped, still saving previous",
+                        Toast.LENGTH_SHORT).show();
+            }
+
+        });
+
+        // Burst frames are saved as JPEG by their own encoder, which uses all but one of
+        // the cores and keeps a short queue per worker. Each burst reports progress from it.
+        int workers = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        mBurstEncoder = new ScreenshotEncoder(workers, 2 * workers,
+                ScreenshotEncoder.OverflowPolicy.DROP_NEWEST);
+        mBurstEncoder.setBitmapPool(BitmapPool.getInstance(this));
+        mBurstEncoder.setFormat(ScreenshotFormat.jpeg(BURST_JPEG_QUALITY));
+
         // Listener for async version of the screenshot capturing.
         mOrionVideoView.setOnScreenshotReadyListener(
                 new OrionSurfaceView.OnScreenshotReadyListener() {
@@ -150,8 +254,20 @@ public class Screenshot extends Activity {
                     @Override
                     public void onScreenshotReady(OrionSurfaceView orionSurfaceView,
                                                   Bitmap bitmap) {
-                        saveScreenshot(bitmap, createScreenshotFilePath());
-                        bitmap.recycle();
+                        // While a burst is being captured, frames belong to the session.
+                        if (null != mCaptureSession && mCaptureSession.isRunning()) {
+                            mCaptureSession.onScreenshotReady(orionSurfaceView, bitmap);
+                            return;
+                        }
+
+                        // Likewise, while a panorama is being captured, tiles belong to it.
+                        if (null != mPanoramaCapture && mPanoramaCapture.isCapturing()) {
+                            mPanoramaCapture.onScreenshotReady(orionSurfaceView, bitmap);
+                            return;
+                        }
+
+                        // Hand the bitmap over to the encoder, it returns the bitmap to the pool.
+                        mScreenshotEncoder.submit(bitmap, createScreenshotFilePath());
                     }
 
                 });
@@ -172,11 +288,25 @@ public class Screenshot extends Activity {
         // Propagate activity lifecycle events to Orion360 video view.
 		mOrionVideoView.onResume();
 
-        Toast.makeText(this, "Tap the screen to capture screenshot", Toast.LENGTH_SHORT).show();
+        Toast.makeText(this, "Tap the screen to capture screenshot, long-press for a burst, "
+                + "double-tap for a panorama", Toast.LENGTH_SHORT).show();
     }
 
 	@Override
 	public void onPause() {
+        // Stop burst capture, if any.
+        if (null != mCaptureSession) {
+            mCaptureSession.stop();
+            mCaptureSession = null;
+        }
+
+        // Cancel panorama capture, if any.
+        if (null != mPanoramaCapture) {
+            mPanoramaCapture.cancel();
+            mPanoramaCapture.setListener(null);
+            mPanoramaCapture = null;
+        }
+
         // Propagate activity lifecycle events to Orion360 video view.
 		mOrionVideoView.onPause();
 
@@ -193,6 +323,12 @@ public class Screenshot extends Activity {
 
 	@Override
 	public void onDestroy() {
+        // Finish saving queued screenshots, but do not accept new ones.
+        mScreenshotEncoder.setListener(null);
+        mScreenshotEncoder.shutdown();
+        mBurstEncoder.setListener(null);
+        mBurstEncoder.shutdown();
+
         // Propagate activity lifecycle events to Orion360 video view.
 		mOrionVideoView.onDestroy();
 
@@ -220,11 +356,8 @@ public class Screenshot extends Activity {
             return;
         }
 
-        // Save screenshot to file.
-        saveScreenshot(bitmap, createScreenshotFilePath());
-
-        // Release memory.
-        bitmap.recycle();
+        // Save screenshot to file in the background; the encoder returns the bitmap to the pool.
+        mScreenshotEncoder.submit(bitmap, createScreenshotFilePath());
     }
 
     /**
@@ -248,13 +381,97 @@ public class Screenshot extends Activity {
         }
     }
 
+    /**
+     * Start capturing a burst of screenshots, unless one is already being captured.
+     */
+    private void startBurstCapture() {
+        if ((null != mCaptureSession && mCaptureSession.isRunning())
+                || (null != mPanoramaCapture && mPanoramaCapture.isCapturing())) return;
+
+        playCameraShootSound();
+
+        mCaptureSession = CaptureSession.burst(mOrionVideoView, BURST_FPS, BURST_DURATION_MS,
+                MainMenu.PUBLIC_EXTERNAL_PICTURES_ORION_PATH,
+                new SimpleDateFormat(BURST_FILE_NAME_FORMAT, Locale.US).format(new Date()),
+                mBurstEncoder, BitmapPool.getInstance(this));
+        mCaptureSession.setListener(new CaptureSession.Listener() {
+
+            @Override
+            public void onCaptureProgress(CaptureSession.Statistics statistics) {
+                Log.d(TAG, "Burst: " + statistics);
+            }
+
+            @Override
+            public void onCaptureCompleted(CaptureSession.Statistics statistics) {
+                Toast.makeText(Screenshot.this, "Burst saved: " + statistics,
+                        Toast.LENGTH_LONG).show();
+            }
+
+        });
+        mCaptureSession.start();
+
+        Toast.makeText(this, "Capturing a burst of screenshots", Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * Start capturing a full-sphere panorama, unless something is already being captured.
+     */
+    private void startPanoramaCapture() {
+        if ((null != mCaptureSession && mCaptureSession.isRunning())
+                || (null != mPanoramaCapture && mPanoramaCapture.isCapturing())) return;
+
+        playCameraShootSound();
+
+        // Tiles and the panorama take a lot of memory, use a smaller panorama on small heaps.
+        int width = Runtime.getRuntime().maxMemory() >= 256 * 1024 * 1024
+                ? PANORAMA_WIDTH_LARGE : PANORAMA_WIDTH_SMALL;
+        mPanoramaCapture = new PanoramaCapture(mOrionVideoView, width,
+                BitmapPool.getInstance(this));
+        mPanoramaCapture.setListener(new PanoramaCapture.Listener() {
+
+            @Override
+            public void onPanoramaProgress(int capturedTiles, int totalTiles) {
+                Log.d(TAG, "Panorama: captured " + capturedTiles + "/" + totalTiles);
+            }
+
+            @Override
+            public void onPanoramaCompleted(Bitmap panorama) {
+
+                // The panorama took seconds to capture, so it is queued even if the queue is
+                // full of screenshots.
+                mScreenshotEncoder.submit(panorama,
+                        createScreenshotFilePath(PANORAMA_FILE_NAME_FORMAT), false);
+            }
+
+            @Override
+            public void onPanoramaFailed(Exception e) {
+                Toast.makeText(Screenshot.this, "Panorama FAILED!", Toast.LENGTH_SHORT).show();
+            }
+
+        });
+        mPanoramaCapture.start();
+
+        Toast.makeText(this, "Capturing a panorama, please wait", Toast.LENGTH_SHORT).show();
+    }
+
     /**
      * Creates a new screenshot file name and path, using time stamp in the file name.
      *
      * @return The newly created screenshot file path.
      */
     private String createScreenshotFilePath() {
-        String fileName = new SimpleDateFormat(FILE_NAME_FORMAT).format(new Date());
+        return createScreenshotFilePath(FILE_NAME_FORMAT);
+    }
+
+    /**
+     * Creates a new file name and path, using time stamp in the file name.
+     *
+     * @param fileNameFormat The file name format, without the extension.
+     * @return The newly created file path.
+     */
+    private String createScreenshotFilePath(String fileNameFormat) {
+        String fileName = new SimpleDateFormat(fileNameFormat).format(new Date())
+                + mScreenshotEncoder.getFormat().getFileExtension();
         String filePath = MainMenu.PUBLIC_EXTERNAL_PICTURES_ORION_PATH + fileName;
         return filePath;
     }
@@ -275,27 +492,4 @@ public class Screenshot extends Activity {
             }
         }
     }
-
-    /**
-     * Save a screenshot bitmap as a PNG image to given file path.
-     *
-     * Notice: depending on target file path, WRITE_EXTERNAL_STORAGE permission may be required!
-     *
-     * @param screenshot The bitmap to be saved.
-     * @param filePath The file path where to save the bitmap.
-     */
-    private void saveScreenshot(Bitmap screenshot, String filePath) {
-        FileOutputStream out = null;
-        try {
-            out = new FileOutputStream(filePath);
-            screenshot.compress(Bitmap.CompressFormat.PNG, 100, out);
-            Log.i(TAG, "Screenshot saved to " + filePath);
-            Toast.makeText(this, "Screenshot saved to " + filePath, Toast.LENGTH_LONG).show();
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to save screenshot", e);
-            Toast.makeText(this, "Screenshot FAILED!", Toast.LENGTH_SHORT).show();
-        } finally {
-            try { if (out != null) { out.close();} } catch (IOException e) {}
-        }
-    }
 }
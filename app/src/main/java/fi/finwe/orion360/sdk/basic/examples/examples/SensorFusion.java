@@ -34,6 +34,10 @@ import android.os.Bundle;
 import android.util.Log;
 import android.widget.Toast;
 
+import java.io.File;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
 import fi.finwe.math.QuatF;
 import fi.finwe.math.Vec3F;
 import fi.finwe.orion360.OrionSensorFusion;
@@ -41,6 +45,12 @@ import fi.finwe.orion360.OrionVideoView;
 import fi.finwe.orion360.OrionViewConfig;
 import fi.finwe.orion360.sdk.basic.examples.MainMenu;
 import fi.finwe.orion360.sdk.basic.examples.R;
+import fi.finwe.orion360.sdk.basic.examples.analytics.GazeAnalytics;
+import fi.finwe.orion360.sdk.basic.examples.math.MutableQuatF;
+import fi.finwe.orion360.sdk.basic.examples.math.MutableVec3F;
+import fi.finwe.orion360.sdk.basic.examples.sensor.OrientationRecorder;
+import fi.finwe.orion360.sdk.basic.examples.tracing.TraceDump;
+import fi.finwe.orion360.sdk.basic.examples.tracing.Tracer;
 
 /**
  * An example of a minimal Orion360 video player, with sensor fusion control.
@@ -58,6 +68,9 @@ import fi.finwe.orion360.sdk.basic.examples.R;
  * <li>Tilting (pinch rotate)
  * </ul>
  * <li>Auto Horizon Aligner (AHL) feature straightens the horizon</li>
+ * <li>Optionally records the orientation stream to a trace file, for replaying it offline</li>
+ * <li>Collects a gaze heatmap of the video over all viewing sessions</li>
+ * <li>Traces the viewing direction without building log strings at sensor rate</li>
  * </ul>
  */
 public class SensorFusion extends Activity implements OrionSensorFusion.Listener {
@@ -65,9 +78,44 @@ public class SensorFusion extends Activity implements OrionSensorFusion.Listener
     /** Tag for logging. */
     public static final String TAG = SensorFusion.class.getSimpleName();
 
+    /**
+     * Set to true to record the orientation stream to a trace file. Recording is off by
+     * default, as it is a development aid that writes a file during every viewing session.
+     */
+    private static final boolean RECORD_ORIENTATION_TRACE = false;
+
+    /** The name of the orientation trace file, replaced at each resume. */
+    private static final String ORIENTATION_TRACE_FILE = "sensor_fusion_orientation.trace";
+
+    /** The name of the gaze heatmap file of the video, accumulated over sessions. */
+    private static final String GAZE_HEATMAP_FILE = "sensor_fusion_gaze.heatmap";
+
+    /** The name of the file where the trace events are dumped at each pause. */
+    private static final String TRACE_EVENTS_FILE = "sensor_fusion_events.bin";
+
+    /** Trace event for the viewing direction, in degrees. */
+    private static final int EVENT_LOOK_AT =
+            Tracer.define(Tracer.DEBUG, "lookAt", "yaw=%.1f pitch=%.1f");
+
+    /** Trace event for display rotation changes, in degrees. */
+    private static final int EVENT_DISPLAY_ROTATION =
+            Tracer.define(Tracer.DEBUG, "displayRotation", "%.0f");
+
     /** Orion360 video player view. */
 	private OrionVideoView mOrionVideoView;
 
+    /** Gaze heatmap collector. */
+    private GazeAnalytics mGazeAnalytics;
+
+    /** Scratch quaternion for the inverse orientation, reused in every sensor callback. */
+    private final MutableQuatF mInverseOrientation = new MutableQuatF();
+
+    /** Scratch vector for the viewing direction, reused in every sensor callback. */
+    private final MutableVec3F mLookAt = new MutableVec3F();
+
+    /** Recorder for the orientation stream, or null if not recording. */
+    private OrientationRecorder mOrientationRecorder;
+
 
 	@Override
 	protected void onCreate(Bundle savedInstanceState) {
@@ -79,6 +127,10 @@ public class SensorFusion extends Activity implements OrionSensorFusion.Listener
         // Get Orion360 video view that is defined in the XML layout.
         mOrionVideoView = (OrionVideoView) findViewById(R.id.orion_video_view);
 
+        // Collect a heatmap of where the viewers look at in the video.
+        mGazeAnalytics = new GazeAnalytics(mOrionVideoView,
+                new File(MainMenu.PRIVATE_EXTERNAL_FILES_PATH + GAZE_HEATMAP_FILE));
+
 		/**
 		 * By default, the 360 view is automatically rotated based on device orientation.
 		 * Hence, to look at a desired direction, user can turn the device towards it,
@@ -270,6 +322,18 @@ public class SensorFusion extends Activity implements OrionSensorFusion.Listener
         // Start listening for sensor fusion events.
         mOrionVideoView.registerOrientationChangeListener(this);
 
+        // Start collecting gaze analytics.
+        mGazeAnalytics.start();
+
+        // Record the orientation stream, so that it can be replayed to orientation
+        // listeners on a desktop JVM, see OrientationReplayer. The recorder writes the file
+        // in its own thread; the sensor thread only puts the samples to a ring buffer.
+        if (RECORD_ORIENTATION_TRACE) {
+            mOrientationRecorder = new OrientationRecorder(
+                    new File(MainMenu.PRIVATE_EXTERNAL_FILES_PATH + ORIENTATION_TRACE_FILE));
+            mOrionVideoView.registerOrientationChangeListener(mOrientationRecorder);
+        }
+
 	}
 
 	@Override
@@ -278,6 +342,21 @@ public class SensorFusion extends Activity implements OrionSensorFusion.Listener
         // Stop listening for sensor fusion events.
         mOrionVideoView.unregisterOrientationChangeListener(this);
 
+        // Stop collecting gaze analytics; the collected samples are saved in the background.
+        logResult("Gaze heatmap flush", mGazeAnalytics.stop());
+
+        // Stop orientation recording; the file is closed in the recorder's thread.
+        if (null != mOrientationRecorder) {
+            mOrionVideoView.unregisterOrientationChangeListener(mOrientationRecorder);
+            logResult("Orientation recording (" + mOrientationRecorder.getDroppedCount()
+                    + " samples dropped)", mOrientationRecorder.close());
+            mOrientationRecorder = null;
+        }
+
+        // Dump the latest trace events in the background, for inspecting them offline.
+        TraceDump.writeInBackground(
+                new File(MainMenu.PRIVATE_EXTERNAL_FILES_PATH + TRACE_EVENTS_FILE));
+
         // Propagate activity lifecycle events to Orion360 video view.
 		mOrionVideoView.onPause();
 
@@ -304,7 +383,10 @@ public class SensorFusion extends Activity implements OrionSensorFusion.Listener
     public void onDeviceOrientationChanged(QuatF orientation) {
 
         // Rotate front vector to the direction where the user is currently looking at.
-        Vec3F lookAt = Vec3F.AXIS_FRONT.rotate(orientation.conjugate());
+        // This is called at sensor rate, hence we use scratch objects instead of allocating
+        // new ones, as Vec3F.AXIS_FRONT.rotate(orientation.conjugate()) would do.
+        mInverseOrientation.set(orientation).conjugate();
+        MutableVec3F lookAt = mLookAt.set(Vec3F.AXIS_FRONT).rotate(mInverseOrientation);
 
         // Get the yaw offset with respective to the 360 image center.
         float lookAtYaw = lookAt.getYaw();
@@ -314,8 +396,9 @@ public class SensorFusion extends Activity implements OrionSensorFusion.Listener
 
         float toDegree = (float) (180.0f / Math.PI);
 
-        Log.d(TAG, "Looking at yaw=" + lookAtYaw * toDegree
-                + " pitch=" + lookAtPitch * toDegree);
+        // Record a trace event instead of logging, as string concatenation at sensor rate
+        // allocates and costs CPU even when the log is not read.
+        Tracer.event(EVENT_LOOK_AT, lookAtYaw * toDegree, lookAtPitch * toDegree);
     }
 
     @Override
@@ -335,7 +418,29 @@ public class SensorFusion extends Activity implements OrionSensorFusion.Listener
          * with the 360 view, these will get rotated accordingly only if you allow the
          * whole activity to turn. The decision is yours and depends on the application.
          */
-        Log.d(TAG, "Display rotation: " + rotationDegrees);
+        Tracer.event(EVENT_DISPLAY_ROTATION, rotationDegrees);
+
+    }
 
+    /**
+     * Wait for the result of a background task in another thread, and log it.
+     *
+     * @param name The name of the task, for the log.
+     * @param result The future result of the task, or null if there is none.
+     */
+    private static void logResult(final String name, final Future<?> result) {
+        if (null == result) return;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Log.i(TAG, name + " done: " + result.get());
+                } catch (ExecutionException e) {
+                    Log.e(TAG, name + " failed", e.getCause());
+                } catch (InterruptedException e) {
+                    Log.w(TAG, name + " interrupted");
+                }
+            }
+        }, TAG).start();
     }
 }
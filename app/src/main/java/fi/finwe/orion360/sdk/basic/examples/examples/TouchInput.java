@@ -29,10 +29,8 @@
 
 package fi.finwe.orion360.sdk.basic.examples.examples;
 
-import android.animation.ValueAnimator;
 import android.app.Activity;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.PointF;
 import android.os.Build;
 import android.os.Bundle;
@@ -47,6 +45,8 @@ import android.widget.ImageView;
 import android.widget.MediaController;
 import android.widget.Toast;
 
+import java.io.File;
+
 import fi.finwe.math.QuatF;
 import fi.finwe.math.Vec3F;
 import fi.finwe.orion360.OrionSurfaceView;
@@ -54,6 +54,11 @@ import fi.finwe.orion360.OrionVideoView;
 import fi.finwe.orion360.OrionViewConfig;
 import fi.finwe.orion360.sdk.basic.examples.MainMenu;
 import fi.finwe.orion360.sdk.basic.examples.R;
+import fi.finwe.orion360.sdk.basic.examples.animation.TagAnimation;
+import fi.finwe.orion360.sdk.basic.examples.animation.TagAnimationScheduler;
+import fi.finwe.orion360.sdk.basic.examples.graphics.BitmapPool;
+import fi.finwe.orion360.sdk.basic.examples.tracing.TraceDump;
+import fi.finwe.orion360.sdk.basic.examples.tracing.Tracer;
 
 /**
  * An example of a minimal Orion360 video player, with touch input.
@@ -94,6 +99,13 @@ public class TouchInput extends Activity {
     /** Tag for logging. */
     public static final String TAG = TouchInput.class.getSimpleName();
 
+    /** The name of the file where the trace events are dumped at each pause. */
+    private static final String TRACE_EVENTS_FILE = "touch_input_events.bin";
+
+    /** Trace event for the scene coordinates where pointing begins, in degrees. */
+    private static final int EVENT_POINTING_BEGINS =
+            Tracer.define(Tracer.DEBUG, "pointingBegins", "%.2f° lat, %.2f° lon");
+
 	/** Orion360 tag index for the hotspot object. */
 	private static final int IDX_HOTSPOT = 0;
 
@@ -106,8 +118,8 @@ public class TouchInput extends Activity {
 	/** Media controller. */
 	private MediaController mMediaController;
 
-	/** A value animator for rolling the hotspot object when touched. */
-	private ValueAnimator mRotateAnimator;
+	/** An animation for rolling the hotspot object when touched. */
+	private TagAnimation mRotateAnimation;
 
 	/** Gesture detector for tapping events. */
 	private GestureDetector mGestureDetector;
@@ -133,6 +145,9 @@ public class TouchInput extends Activity {
 	/** Flag for indicating if video has been prepared already, or not. */
 	private boolean mIsVideoPrepared = false;
 
+	/** The hotspot image, returned to the bitmap pool when the view is destroyed. */
+	private Bitmap mHotspotBitmap;
+
 
 	@Override
 	protected void onCreate(Bundle savedInstanceState) {
@@ -161,17 +176,16 @@ public class TouchInput extends Activity {
 		addHotspot(IDX_HOTSPOT, LOC_HOTSPOT, MainMenu.PUBLIC_EXTERNAL_PICTURES_ORION_PATH +
 				MainMenu.TEST_TAG_IMAGE_FILE_HQ, 0.25f, 0.90f);
 
-        // Set up animator for rolling the hotspot 360 degrees.
-        mRotateAnimator = ValueAnimator.ofFloat(0, (float)(2 * Math.PI));
-        mRotateAnimator.setDuration(1000);
-        mRotateAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            public void onAnimationUpdate(ValueAnimator animation) {
+        // Set up animation for rolling the hotspot 360 degrees.
+        mRotateAnimation = new TagAnimation(0, (float)(2 * Math.PI), 1000) {
+            @Override
+            protected void onUpdate(float value) {
 
-                QuatF rotation = QuatF.fromRotationAxisZ((float)animation.getAnimatedValue());
+                QuatF rotation = QuatF.fromRotationAxisZ(value);
                 mOrionVideoView.setTagRotation(IDX_HOTSPOT, rotation);
 
             }
-        });
+        };
 
         // Start playback when the player has initialized itself and buffered enough video frames.
         mOrionVideoView.setOnPreparedListener(new OrionVideoView.OnPreparedListener() {
@@ -362,11 +376,12 @@ public class TouchInput extends Activity {
 				// latitude range [-90,90] and longitude range [-180,180]:
 				// lat = atan(y/sqrt(x*x+z*z)) * 180 / pi
 				// lon = atan2(x,-z) * 180 / pi
-				Log.d(TAG, "onPointingBegins at " +
+				// Here the position is recorded as a trace event, see Tracer; the events
+				// are dumped to a file at each pause.
+				Tracer.event(EVENT_POINTING_BEGINS, (float) (
 						Math.atan(sceneCoord.y / (0.0001 + Math.sqrt(sceneCoord.x *
-								sceneCoord.x + sceneCoord.z * sceneCoord.z))) * 57.2957795
-						+ "° lat, " + Math.atan2(sceneCoord.x, -sceneCoord.z) *
-						57.2957795 + "° lon");
+								sceneCoord.x + sceneCoord.z * sceneCoord.z))) * 57.2957795),
+						(float) (Math.atan2(sceneCoord.x, -sceneCoord.z) * 57.2957795));
 
 				// Rotate hotspot when pointed at (using a simple approximation for hit detection).
 				float dist = 0.24f;
@@ -374,8 +389,8 @@ public class TouchInput extends Activity {
 						&& (Math.abs(LOC_HOTSPOT.y - sceneCoord.y) < dist)
 						&& (Math.abs(LOC_HOTSPOT.z - sceneCoord.z) < dist) ) {
 
-					if (!mRotateAnimator.isRunning()) {
-						mRotateAnimator.start();
+					if (!mRotateAnimation.isRunning()) {
+						TagAnimationScheduler.getInstance().start(mRotateAnimation);
 					}
 
 				}
@@ -447,7 +462,11 @@ public class TouchInput extends Activity {
 	@Override
 	public void onPause() {
 		// Cancel all animations before pausing the video view.
-		mRotateAnimator.cancel();
+		TagAnimationScheduler.getInstance().cancel(mRotateAnimation);
+
+		// Dump the latest trace events in the background, for inspecting them offline.
+		TraceDump.writeInBackground(
+				new File(MainMenu.PRIVATE_EXTERNAL_FILES_PATH + TRACE_EVENTS_FILE));
 
         // Propagate activity lifecycle events to Orion360 video view.
 		mOrionVideoView.onPause();
@@ -468,6 +487,10 @@ public class TouchInput extends Activity {
         // Propagate activity lifecycle events to Orion360 video view.
 		mOrionVideoView.onDestroy();
 
+		// The view no longer uses the hotspot image; let the next decode reuse its memory.
+		BitmapPool.getInstance(this).put(mHotspotBitmap);
+		mHotspotBitmap = null;
+
 		super.onDestroy();
 	}
 
@@ -490,10 +513,12 @@ public class TouchInput extends Activity {
 		mOrionVideoView.setTagLocation(index, location);
 
 		// Set the PNG image file that will be drawn to the tag location.
-		// Here we load the image from the file system as a bitmap (RGBA_8888 format).
-		Bitmap bitmap = BitmapFactory.decodeFile(imagePath);
+		// Here we load the image from the file system as a bitmap (RGBA_8888 format),
+		// reusing the memory of a previously released bitmap of the same size if possible.
+		Bitmap bitmap = BitmapPool.getInstance(this).decodeFile(imagePath);
 		if (null != bitmap) {
 			mOrionVideoView.setTagBitmap(index, bitmap);
+			mHotspotBitmap = bitmap;
 		} else {
 			Log.e(TAG, "Could not decode bitmap " + imagePath);
 		}
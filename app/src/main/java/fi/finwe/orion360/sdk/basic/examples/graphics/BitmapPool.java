@@ -0,0 +1,266 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.graphics;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+/**
+ * A pool of reusable bitmaps, bucketed by size and pixel format.
+ * <p/>
+ * Panoramas and tag images are several megabytes each. Allocating a new bitmap for every
+ * decode makes the garbage collector run during video playback, which shows up as dropped
+ * frames. Instead of recycling a bitmap that is no longer needed, return it to the pool
+ * with {@link #put(Bitmap)}; the next allocation or decode of the same size reuses its memory,
+ * either via {@link #get(int, int, Bitmap.Config)} or via {@link #decodeFile(String)}, which
+ * decodes directly into a pooled bitmap (BitmapFactory.Options.inBitmap).
+ * <p/>
+ * Only sizes that have been asked for with get() or decodeFile() are pooled; a returned bitmap
+ * of any other size (e.g. a screenshot from the SDK) is recycled at once, since nothing would
+ * ever borrow it. Bitmaps are bucketed by exact width, height and config, since that is what
+ * inBitmap requires on all supported Android versions. The total size of the pooled bitmaps is
+ * capped, see {@link BucketPool}. The pool also releases memory when the system asks it to
+ * (onTrimMemory).
+ * <p/>
+ * There is one pool per application, obtain it with {@link #getInstance(Context)}.
+ * The pool is thread safe.
+ */
+public class BitmapPool implements ComponentCallbacks2 {
+
+    /** Tag for logging. */
+    public static final String TAG = BitmapPool.class.getSimpleName();
+
+    /** The default memory cap, as a fraction of the maximum heap size. */
+    private static final int DEFAULT_HEAP_FRACTION = 8;
+
+    /** The shared instance. */
+    private static BitmapPool sInstance;
+
+    /** Bookkeeping of the pooled bitmaps, sized in bytes. Guarded by this. */
+    private final BucketPool<Bitmap> mPool;
+
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize The maximum total size of the pooled bitmaps, in bytes.
+     */
+    public BitmapPool(long maxSize) {
+        mPool = new BucketPool<Bitmap>(maxSize) {
+
+            @Override
+            protected long getSize(Bitmap bitmap) {
+                return getByteCount(bitmap);
+            }
+
+            @Override
+            protected void release(Bitmap bitmap) {
+                bitmap.recycle();
+            }
+        };
+    }
+
+    /**
+     * Get the shared pool. On the first call, the pool registers itself to receive memory
+     * trim callbacks from the application.
+     *
+     * @param context The context.
+     * @return the shared pool.
+     */
+    public static synchronized BitmapPool getInstance(Context context) {
+        if (null == sInstance) {
+            sInstance = new BitmapPool(Runtime.getRuntime().maxMemory() / DEFAULT_HEAP_FRACTION);
+            context.getApplicationContext().registerComponentCallbacks(sInstance);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Get a bitmap of the given size and config, reusing a pooled one when available.
+     * <p/>
+     * The content of a reused bitmap is undefined; the caller is expected to overwrite it.
+     *
+     * @param width The width of the bitmap.
+     * @param height The height of the bitmap.
+     * @param config The config of the bitmap.
+     * @return the bitmap, which is always mutable.
+     */
+    public Bitmap get(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = poll(width, height, config);
+        if (null == bitmap) {
+            bitmap = Bitmap.createBitmap(width, height, config);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Return a bitmap to the pool. The caller must not use the bitmap after this call.
+     * <p/>
+     * Immutable and recycled bitmaps cannot be reused, and bitmaps of a size that has never
+     * been asked for would not be; they are simply released.
+     *
+     * @param bitmap The bitmap to be returned, or null.
+     */
+    public void put(Bitmap bitmap) {
+        if (null == bitmap || bitmap.isRecycled()) return;
+        if (!bitmap.isMutable() || null == bitmap.getConfig()) {
+            bitmap.recycle();
+            return;
+        }
+
+        synchronized (this) {
+            mPool.put(getKey(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig()), bitmap);
+        }
+    }
+
+    /**
+     * Decode an image file, reusing the memory of a pooled bitmap when one of the right size
+     * is available.
+     *
+     * @param path The path to the image file.
+     * @return the decoded bitmap, or null if the file could not be decoded.
+     */
+    public Bitmap decodeFile(String path) {
+
+        // Read the image size first, without allocating anything for the pixels.
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        options.inSampleSize = 1;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inBitmap = poll(options.outWidth, options.outHeight, Bitmap.Config.ARGB_8888);
+        try {
+            return BitmapFactory.decodeFile(path, options);
+        } catch (IllegalArgumentException e) {
+
+            // The decoder could not reuse the bitmap (e.g. the image has a different pixel
+            // format), put it back and decode into a new one.
+            Log.w(TAG, "Could not reuse bitmap for " + path);
+            put(options.inBitmap);
+            options.inBitmap = null;
+            return BitmapFactory.decodeFile(path, options);
+        }
+    }
+
+    /**
+     * Release all pooled bitmaps.
+     */
+    public synchronized void clear() {
+        mPool.clear();
+    }
+
+    /**
+     * Get the current total size of the pooled bitmaps.
+     *
+     * @return the size in bytes.
+     */
+    public synchronized long getSize() {
+        return mPool.getSize();
+    }
+
+    /**
+     * Get the maximum total size of the pooled bitmaps.
+     *
+     * @return the size in bytes.
+     */
+    public long getMaxSize() {
+        return mPool.getMaxSize();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        synchronized (this) {
+            Log.d(TAG, "Trim memory, level " + level + ", hits " + mPool.getHitCount()
+                    + ", misses " + mPool.getMissCount() + ", pooled " + mPool.getSize()
+                    + " bytes");
+            if (level >= TRIM_MEMORY_MODERATE) {
+
+                // The app is in the background and likely to be killed soon.
+                mPool.trimToSize(0);
+            } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+
+                // Memory is getting low; keep only half of the bitmaps.
+                mPool.trimToSize(mPool.getMaxSize() / 2);
+            }
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        clear();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {}
+
+    /**
+     * Take a bitmap of the given size and config from the pool.
+     *
+     * @param width The width of the bitmap.
+     * @param height The height of the bitmap.
+     * @param config The config of the bitmap.
+     * @return the bitmap, or null if there was none in the pool.
+     */
+    private synchronized Bitmap poll(int width, int height, Bitmap.Config config) {
+        return mPool.poll(getKey(width, height, config));
+    }
+
+    /**
+     * Get the bucket key for the given size and config.
+     *
+     * @param width The width of the bitmap.
+     * @param height The height of the bitmap.
+     * @param config The config of the bitmap.
+     * @return the key.
+     */
+    private static long getKey(int width, int height, Bitmap.Config config) {
+        return ((long) width << 32) | ((long) height << 8) | config.ordinal();
+    }
+
+    /**
+     * Get the number of bytes used by a bitmap's pixels.
+     *
+     * @param bitmap The bitmap.
+     * @return the size in bytes.
+     */
+    private static long getByteCount(Bitmap bitmap) {
+        return (long) bitmap.getRowBytes() * bitmap.getHeight();
+    }
+}
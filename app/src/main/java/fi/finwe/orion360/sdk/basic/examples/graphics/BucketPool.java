@@ -0,0 +1,203 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.graphics;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+
+/**
+ * Bookkeeping for a pool of reusable items that are bucketed by a key, such as bitmaps
+ * bucketed by size and pixel format.
+ * <p/>
+ * An item is pooled only if its key has been asked for with {@link #poll(long)}; items that
+ * nobody has ever tried to borrow would only take memory until they are trimmed, hence they
+ * are released at once. The total size of the pooled items is capped; when the cap is exceeded,
+ * items from the least recently used bucket are released first.
+ * <p/>
+ * This class is not thread safe. It has no Android dependencies and can be tested on
+ * a desktop JVM.
+ *
+ * @param <T> The type of the pooled items.
+ */
+public abstract class BucketPool<T> {
+
+    /** Pooled items by bucket key, in least recently used order. */
+    private final LinkedHashMap<Long, ArrayDeque<T>> mBuckets =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Keys that have been asked for, i.e. the sizes that are worth pooling. */
+    private final Set<Long> mWantedKeys = new HashSet<>();
+
+    /** The maximum total size of the pooled items. */
+    private final long mMaxSize;
+
+    /** The current total size of the pooled items. */
+    private long mSize = 0;
+
+    /** Counters for reuse statistics. */
+    private int mHits = 0, mMisses = 0;
+
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize The maximum total size of the pooled items.
+     */
+    public BucketPool(long maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Get the size of an item, in the same unit as the maximum size.
+     *
+     * @param item The item.
+     * @return the size.
+     */
+    protected abstract long getSize(T item);
+
+    /**
+     * Release an item that is dropped from the pool or is not worth pooling.
+     *
+     * @param item The item.
+     */
+    protected abstract void release(T item);
+
+    /**
+     * Take an item from the given bucket, and mark the key as wanted so that items with the
+     * same key will be pooled from now on.
+     *
+     * @param key The bucket key.
+     * @return the item, or null if there was none in the pool.
+     */
+    public T poll(long key) {
+        mWantedKeys.add(key);
+        ArrayDeque<T> bucket = mBuckets.get(key);
+        T item = null != bucket ? bucket.poll() : null;
+        if (null != item) {
+            mSize -= getSize(item);
+            mHits++;
+        } else {
+            mMisses++;
+        }
+        return item;
+    }
+
+    /**
+     * Return an item to the pool. The item is released instead if its key has never been
+     * asked for, or if it is larger than the pool.
+     *
+     * @param key The bucket key.
+     * @param item The item.
+     */
+    public void put(long key, T item) {
+        long size = getSize(item);
+        if (!mWantedKeys.contains(key) || size > mMaxSize) {
+            release(item);
+            return;
+        }
+
+        ArrayDeque<T> bucket = mBuckets.get(key);
+        if (null == bucket) {
+            bucket = new ArrayDeque<>();
+            mBuckets.put(key, bucket);
+        }
+        bucket.push(item);
+        mSize += size;
+        trimToSize(mMaxSize);
+    }
+
+    /**
+     * Release items, starting from the least recently used bucket, until the total size of
+     * the pooled items is at most the given size.
+     *
+     * @param maxSize The maximum size to be kept.
+     */
+    public void trimToSize(long maxSize) {
+        Iterator<ArrayDeque<T>> iterator = mBuckets.values().iterator();
+        while (mSize > maxSize && iterator.hasNext()) {
+            ArrayDeque<T> bucket = iterator.next();
+            while (mSize > maxSize && !bucket.isEmpty()) {
+                T item = bucket.removeLast();
+                mSize -= getSize(item);
+                release(item);
+            }
+            if (bucket.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Release all pooled items and forget the wanted keys.
+     */
+    public void clear() {
+        trimToSize(0);
+        mWantedKeys.clear();
+    }
+
+    /**
+     * Get the current total size of the pooled items.
+     *
+     * @return the size.
+     */
+    public long getSize() {
+        return mSize;
+    }
+
+    /**
+     * Get the maximum total size of the pooled items.
+     *
+     * @return the size.
+     */
+    public long getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Get the number of polls that found an item in the pool.
+     *
+     * @return the hit count.
+     */
+    public int getHitCount() {
+        return mHits;
+    }
+
+    /**
+     * Get the number of polls that found no item in the pool.
+     *
+     * @return the miss count.
+     */
+    public int getMissCount() {
+        return mMisses;
+    }
+}
@@ -0,0 +1,276 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.graphics;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.DisplayMetrics;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Prepares a preview image for the screen in a background thread.
+ * <p/>
+ * A preview image is an equirectangular image, of which only the part within the field of
+ * view is visible at a time. An image that is wider than the screen can show at that field of
+ * view (or than the largest texture that devices commonly support) only costs decoding time
+ * and memory. This class decodes such an image with subsampling, scales it to the width
+ * that the screen needs, and stores it as a JPEG file in the application's cache directory,
+ * where it is found on later launches. An image that is small enough is used as it is.
+ * <p/>
+ * The listener is called on the main thread with the path of the image to be given to
+ * setPreviewImagePath(). When the image needs no scaling, or its scaled copy is already
+ * cached, only the image header is read and the listener is called right away, without
+ * waiting for a background thread.
+ */
+public class PreviewImageLoader {
+
+    /** Tag for logging. */
+    public static final String TAG = PreviewImageLoader.class.getSimpleName();
+
+    /** The largest image width that is used, as a texture of this size is widely supported. */
+    public static final int MAX_TEXTURE_SIZE = 4096;
+
+    /** The quality of the scaled JPEG images. */
+    private static final int JPEG_QUALITY = 90;
+
+    /** The name of the cache directory, under the application's cache directory. */
+    private static final String DIRECTORY_NAME = "previews";
+
+    /** Receives the prepared image. */
+    public interface Listener {
+
+        /**
+         * Called on the main thread when the image is ready.
+         *
+         * @param path The path of the image, or null if it could not be prepared.
+         */
+        void onPreviewImageReady(String path);
+    }
+
+    /** Context for the cache directory. */
+    private final Context mContext;
+
+    /** The path to the original image. */
+    private final String mPath;
+
+    /** The maximum width of the image to be used. */
+    private final int mMaxWidth;
+
+    /** Handler for posting the result to the main thread. */
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /** Flag for indicating if loading has been canceled, or not. */
+    private volatile boolean mIsCanceled = false;
+
+
+    /**
+     * Constructor.
+     *
+     * @param context The context.
+     * @param path The path to the image file.
+     * @param maxWidth The maximum width of the image to be used, see
+     *                 {@link #getMaxWidth(Context, float)}.
+     */
+    public PreviewImageLoader(Context context, String path, int maxWidth) {
+        mContext = context.getApplicationContext();
+        mPath = path;
+        mMaxWidth = maxWidth;
+    }
+
+    /**
+     * Get the width of an equirectangular image that covers the screen pixel by pixel at
+     * a field of view, limited to {@link #MAX_TEXTURE_SIZE}.
+     *
+     * @param context The context.
+     * @param fieldOfViewDeg The horizontal field of view in landscape orientation, in degrees.
+     * @return the width in pixels.
+     */
+    public static int getMaxWidth(Context context, float fieldOfViewDeg) {
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        int screenWidth = Math.max(metrics.widthPixels, metrics.heightPixels);
+        return (int) Math.min(MAX_TEXTURE_SIZE, Math.ceil(screenWidth * 360.0f / fieldOfViewDeg));
+    }
+
+    /**
+     * Start preparing the image in a background thread. If the image is ready to be used,
+     * the listener is called before this method returns. Must be called on the main thread.
+     *
+     * @param listener The listener to be called when the image is ready.
+     * @return this instance, for chaining.
+     */
+    public PreviewImageLoader load(final Listener listener) {
+        String readyPath = findReadyImage();
+        if (null != readyPath) {
+            listener.onPreviewImageReady(readyPath);
+            return this;
+        }
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final String path = prepare();
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!mIsCanceled) {
+                            listener.onPreviewImageReady(path);
+                        }
+                    }
+                });
+            }
+        }, TAG);
+        thread.start();
+        return this;
+    }
+
+    /**
+     * Cancel loading. The listener will not be called.
+     */
+    public void cancel() {
+        mIsCanceled = true;
+    }
+
+    /**
+     * Find an image that can be used without decoding it: the original image if it is
+     * narrow enough, or an up-to-date scaled copy. Only the header of the image is read.
+     *
+     * @return the path of the image, or null if it needs to be prepared.
+     */
+    private String findReadyImage() {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(mPath, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+        if (options.outWidth <= mMaxWidth) return mPath;
+        File scaled = getScaledFile();
+        if (scaled.isFile() && scaled.lastModified() >= new File(mPath).lastModified()) {
+            return scaled.getAbsolutePath();
+        }
+        return null;
+    }
+
+    /**
+     * Get the file of the scaled copy of the image, in the cache directory.
+     *
+     * @return the file.
+     */
+    private File getScaledFile() {
+        File directory = new File(mContext.getCacheDir(), DIRECTORY_NAME);
+        return new File(directory, Integer.toHexString(mPath.hashCode()) + "_"
+                + mMaxWidth + ".jpg");
+    }
+
+    /**
+     * Prepare the image.
+     *
+     * @return the path of the image to be used, or null.
+     */
+    private String prepare() {
+        long startTime = SystemClock.elapsedRealtime();
+        File source = new File(mPath);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(mPath, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            Log.e(TAG, "Failed to read preview image " + mPath);
+            return null;
+        }
+        int width = options.outWidth;
+        if (width <= mMaxWidth) {
+            return mPath;
+        }
+
+        // A previously scaled image is reused, unless the original has changed since.
+        File scaled = getScaledFile();
+        File directory = scaled.getParentFile();
+        if (scaled.isFile() && scaled.lastModified() >= source.lastModified()) {
+            return scaled.getAbsolutePath();
+        }
+
+        // Subsample by the largest power of two that keeps the image at least as wide as
+        // needed, then scale down to the exact width.
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = 1;
+        while (width / (2 * options.inSampleSize) >= mMaxWidth) {
+            options.inSampleSize *= 2;
+        }
+        Bitmap bitmap = BitmapFactory.decodeFile(mPath, options);
+        if (null == bitmap) {
+            Log.e(TAG, "Failed to decode preview image " + mPath);
+            return mPath;
+        }
+        if (bitmap.getWidth() > mMaxWidth) {
+            Bitmap scaledBitmap = Bitmap.createScaledBitmap(bitmap, mMaxWidth,
+                    Math.max(1, bitmap.getHeight() * mMaxWidth / bitmap.getWidth()), true);
+            if (scaledBitmap != bitmap) {
+                bitmap.recycle();
+                bitmap = scaledBitmap;
+            }
+        }
+
+        // Write to a temporary file first, so that a partial file is never used.
+        File temp = new File(directory, scaled.getName() + ".tmp");
+        FileOutputStream out = null;
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Failed to create " + directory);
+            }
+            out = new FileOutputStream(temp);
+            if (!bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out)) {
+                throw new IOException("Failed to compress");
+            }
+            out.close();
+            out = null;
+            if (!temp.renameTo(scaled)) {
+                throw new IOException("Failed to rename " + temp);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to store scaled preview image: " + e.getMessage());
+            temp.delete();
+            return mPath;
+        } finally {
+            if (null != out) {
+                try { out.close(); } catch (IOException e) { Log.e(TAG,
+                        "Failed to close output stream."); }
+            }
+            bitmap.recycle();
+        }
+        Log.i(TAG, "Scaled preview image from " + width + " to " + mMaxWidth
+                + " px in " + (SystemClock.elapsedRealtime() - startTime) + " ms");
+        return scaled.getAbsolutePath();
+    }
+}
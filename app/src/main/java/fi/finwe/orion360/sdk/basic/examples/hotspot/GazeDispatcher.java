@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.hotspot;
+
+import android.util.SparseArray;
+
+import fi.finwe.math.QuatF;
+import fi.finwe.math.Vec3F;
+import fi.finwe.orion360.OrionSensorFusion;
+import fi.finwe.orion360.OrionVideoView;
+import fi.finwe.orion360.sdk.basic.examples.math.MutableQuatF;
+import fi.finwe.orion360.sdk.basic.examples.math.MutableVec3F;
+
+/**
+ * Dispatches gaze focus events to hotspots from a single orientation listener.
+ * <p/>
+ * Instead of every hotspot listening to orientation changes and computing the gaze direction
+ * on its own, the dispatcher computes the gaze direction once per sensor sample and looks up
+ * the nearby hotspots from a spatial index, see {@link GazeTracker}. The cost per sample stays
+ * nearly constant even with hundreds of hotspots in the scene.
+ * <p/>
+ * Hotspot locations are given as unit vectors, and the gaze thresholds as angles. Callbacks
+ * are made in the thread that delivers the orientation changes.
+ */
+public class GazeDispatcher implements OrionSensorFusion.Listener, GazeTracker.Listener {
+
+    /** Spatial index cell size, in degrees. */
+    private static final float CELL_SIZE_DEG = 10.0f;
+
+    /** Tracker that keeps the hotspot index and focus states. */
+    private final GazeTracker mTracker = new GazeTracker(CELL_SIZE_DEG);
+
+    /** Listeners by hotspot id. */
+    private final SparseArray<GazeTracker.Listener> mListeners = new SparseArray<>();
+
+    /** Scratch quaternion for the inverse orientation. */
+    private final MutableQuatF mInverseOrientation = new MutableQuatF();
+
+    /** Scratch vector for the gaze direction. */
+    private final MutableVec3F mGazeDirection = new MutableVec3F();
+
+    /** The view whose orientation changes are listened to, or null if not active. */
+    private OrionVideoView mView;
+
+
+    /**
+     * Constructor.
+     */
+    public GazeDispatcher() {
+        mTracker.setListener(this);
+    }
+
+    /**
+     * Add a hotspot, or update it if the id already exists.
+     *
+     * @param id The id of the hotspot, a small non-negative integer such as its tag index.
+     * @param location The location of the hotspot, a unit vector.
+     * @param gazeInAngleDeg The angle within which the hotspot gets focus, in degrees.
+     * @param gazeOutAngleDeg The angle beyond which the hotspot loses focus, in degrees;
+     *                        should be larger than gazeInAngleDeg.
+     * @param listener The listener for focus changes.
+     */
+    public void add(int id, Vec3F location, float gazeInAngleDeg, float gazeOutAngleDeg,
+                    GazeTracker.Listener listener) {
+        mTracker.put(id, location.x, location.y, location.z, gazeInAngleDeg, gazeOutAngleDeg);
+        mListeners.put(id, listener);
+    }
+
+    /**
+     * Remove a hotspot. It will not get further callbacks.
+     *
+     * @param id The id of the hotspot.
+     */
+    public void remove(int id) {
+        mTracker.remove(id);
+        mListeners.remove(id);
+    }
+
+    /**
+     * Tells whether a hotspot currently has gaze focus.
+     *
+     * @param id The id of the hotspot.
+     * @return true if focused, else false.
+     */
+    public boolean isFocused(int id) {
+        return mTracker.isFocused(id);
+    }
+
+    /**
+     * Start listening to orientation changes of a view.
+     *
+     * @param view The view.
+     */
+    public void activate(OrionVideoView view) {
+        if (null != mView) return;
+        mView = view;
+        mView.registerOrientationChangeListener(this);
+    }
+
+    /**
+     * Stop listening to orientation changes.
+     */
+    public void deactivate() {
+        if (null == mView) return;
+        mView.unregisterOrientationChangeListener(this);
+        mView = null;
+    }
+
+    @Override
+    public void onDeviceOrientationChanged(QuatF orientation) {
+
+        // Rotate a front vector to the direction where the user is currently looking at.
+        mInverseOrientation.set(orientation).conjugate();
+        mGazeDirection.set(Vec3F.AXIS_FRONT).rotate(mInverseOrientation);
+
+        mTracker.update(mGazeDirection.x, mGazeDirection.y, mGazeDirection.z);
+    }
+
+    @Override
+    public void onDeviceDisplayRotationChanged(int rotationDegrees) {}
+
+    @Override
+    public void onGazeEnter(int id) {
+        GazeTracker.Listener listener = mListeners.get(id);
+        if (null != listener) {
+            listener.onGazeEnter(id);
+        }
+    }
+
+    @Override
+    public void onGazeExit(int id) {
+        GazeTracker.Listener listener = mListeners.get(id);
+        if (null != listener) {
+            listener.onGazeExit(id);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.hotspot;
+
+import java.util.Arrays;
+
+/**
+ * Tracks which targets on the sphere the user is gazing at, with hysteresis.
+ * <p/>
+ * Each target has a location and two angular thresholds: it gets gaze focus when the gaze
+ * direction comes within the 'in' angle of its location, and loses focus only when the gaze
+ * moves further than the larger 'out' angle. The gap between the two keeps the focus from
+ * flickering when the gaze rests near the edge, as it does with sensor noise.
+ * <p/>
+ * Targets are kept in a {@link SphericalGrid}, so each gaze sample costs a query of the nearby
+ * cells plus a check of the currently focused targets, independent of the total number of
+ * targets. Updates do not allocate memory. Not thread safe.
+ * <p/>
+ * This class has no Android dependencies and can be tested on a desktop JVM.
+ */
+public class GazeTracker {
+
+    /** Listener for gaze focus changes. */
+    public interface Listener {
+
+        /**
+         * Called when a target gets gaze focus.
+         *
+         * @param id The id of the target.
+         */
+        void onGazeEnter(int id);
+
+        /**
+         * Called when a target loses gaze focus.
+         *
+         * @param id The id of the target.
+         */
+        void onGazeExit(int id);
+    }
+
+    /** Index of the target locations. */
+    private final SphericalGrid mGrid;
+
+    /** Listener for focus changes, or null if none. */
+    private Listener mListener;
+
+    /** Cosine of the 'in' angle of each target. Grows as needed. */
+    private float[] mInCos = new float[0];
+
+    /** Cosine of the 'out' angle of each target. Grows as needed. */
+    private float[] mOutCos = new float[0];
+
+    /** Flag for each target that currently has gaze focus. Grows as needed. */
+    private boolean[] mIsFocused = new boolean[0];
+
+    /** The ids of the targets that currently have gaze focus. */
+    private int[] mFocused = new int[8];
+
+    /** The number of targets that currently have gaze focus. */
+    private int mFocusedCount = 0;
+
+    /** The largest 'in' angle of the targets, in radians; used as the query angle. */
+    private float mMaxInAngle = 0.0f;
+
+    /** Buffer for query results. */
+    private int[] mCandidates = new int[32];
+
+
+    /**
+     * Constructor.
+     *
+     * @param cellSizeDeg The cell size of the spatial index, in degrees; about the typical
+     *                    'in' angle of the targets is a good choice.
+     */
+    public GazeTracker(float cellSizeDeg) {
+        mGrid = new SphericalGrid(cellSizeDeg);
+    }
+
+    /**
+     * Set listener for focus changes.
+     *
+     * @param listener The listener, or null to remove.
+     */
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Add a target, or update it if the id already exists. An updated target keeps its focus
+     * state until the next gaze sample.
+     *
+     * @param id The id of the target, a small non-negative integer.
+     * @param x The x coordinate of the target location, a unit vector.
+     * @param y The y coordinate of the target location.
+     * @param z The z coordinate of the target location.
+     * @param inAngleDeg The angle within which the target gets focus, in degrees.
+     * @param outAngleDeg The angle beyond which the target loses focus, in degrees; should be
+     *                    larger than the 'in' angle.
+     */
+    public void put(int id, float x, float y, float z, float inAngleDeg, float outAngleDeg) {
+        ensureIdCapacity(id + 1);
+        mGrid.put(id, x, y, z);
+        float inAngle = (float) Math.toRadians(inAngleDeg);
+        mInCos[id] = (float) Math.cos(inAngle);
+        mOutCos[id] = (float) Math.cos(Math.toRadians(Math.max(inAngleDeg, outAngleDeg)));
+        mMaxInAngle = Math.max(mMaxInAngle, inAngle);
+    }
+
+    /**
+     * Remove a target. If the target has focus, it is dropped silently, without a
+     * {@link Listener#onGazeExit} call.
+     *
+     * @param id The id of the target.
+     */
+    public void remove(int id) {
+        if (!mGrid.remove(id)) return;
+        if (mIsFocused[id]) {
+            mIsFocused[id] = false;
+            removeFocused(id);
+        }
+    }
+
+    /**
+     * Tells whether a target currently has gaze focus.
+     *
+     * @param id The id of the target.
+     * @return true if focused, else false.
+     */
+    public boolean isFocused(int id) {
+        return id >= 0 && id < mIsFocused.length && mIsFocused[id];
+    }
+
+    /**
+     * Get the number of targets.
+     *
+     * @return the number of targets.
+     */
+    public int size() {
+        return mGrid.size();
+    }
+
+    /**
+     * Update focus states for a new gaze direction, and notify the listener about changes.
+     *
+     * @param x The x coordinate of the gaze direction, a unit vector.
+     * @param y The y coordinate of the gaze direction.
+     * @param z The z coordinate of the gaze direction.
+     */
+    public void update(float x, float y, float z) {
+
+        // Focused targets lose focus when the gaze moves beyond their 'out' angle.
+        // The listener may add or remove targets, hence the extra checks in the loops.
+        for (int i = mFocusedCount - 1; i >= 0; i--) {
+            if (i >= mFocusedCount) continue;
+            int id = mFocused[i];
+            float dot = mGrid.getX(id) * x + mGrid.getY(id) * y + mGrid.getZ(id) * z;
+            if (dot < mOutCos[id]) {
+                mIsFocused[id] = false;
+                removeFocused(id);
+                if (null != mListener) {
+                    mListener.onGazeExit(id);
+                }
+            }
+        }
+
+        // Nearby targets get focus when the gaze comes within their 'in' angle.
+        int count = mGrid.query(x, y, z, mMaxInAngle, mCandidates);
+        if (count > mCandidates.length) {
+            mCandidates = new int[2 * count];
+            count = mGrid.query(x, y, z, mMaxInAngle, mCandidates);
+        }
+        for (int i = 0; i < count; i++) {
+            int id = mCandidates[i];
+            if (mIsFocused[id] || !mGrid.contains(id)) continue;
+            float dot = mGrid.getX(id) * x + mGrid.getY(id) * y + mGrid.getZ(id) * z;
+            if (dot >= mInCos[id]) {
+                mIsFocused[id] = true;
+                addFocused(id);
+                if (null != mListener) {
+                    mListener.onGazeEnter(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add an id to the list of focused targets.
+     */
+    private void addFocused(int id) {
+        if (mFocusedCount == mFocused.length) {
+            mFocused = Arrays.copyOf(mFocused, 2 * mFocusedCount);
+        }
+        mFocused[mFocusedCount++] = id;
+    }
+
+    /**
+     * Remove an id from the list of focused targets.
+     */
+    private void removeFocused(int id) {
+        for (int i = 0; i < mFocusedCount; i++) {
+            if (mFocused[i] == id) {
+                mFocused[i] = mFocused[--mFocusedCount];
+                return;
+            }
+        }
+    }
+
+    /**
+     * Make sure that ids up to the given capacity can be stored.
+     */
+    private void ensureIdCapacity(int capacity) {
+        if (capacity <= mInCos.length) return;
+        int newCapacity = Math.max(capacity, 2 * mInCos.length);
+        mInCos = Arrays.copyOf(mInCos, newCapacity);
+        mOutCos = Arrays.copyOf(mOutCos, newCapacity);
+        mIsFocused = Arrays.copyOf(mIsFocused, newCapacity);
+    }
+}
@@ -0,0 +1,281 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.hotspot;
+
+import java.util.Arrays;
+
+/**
+ * A registry of hotspots stored as parallel primitive arrays.
+ * <p/>
+ * Instead of one object per hotspot scattered around the heap, the store keeps each property
+ * in its own array, indexed by a slot number. Bulk operations such as showing, hiding or
+ * activating a group of hotspots walk the arrays sequentially, which is cache friendly and free
+ * of type checks and pointer chasing even with thousands of hotspots.
+ * <p/>
+ * Hotspot locations are not stored here: gaze focus is tracked by {@link GazeTracker}, which
+ * keeps the locations in a spatial index and tests only the hotspots near the viewing
+ * direction, so a gaze test over location columns here would be a slower duplicate of it.
+ * <p/>
+ * Hotspots are grouped with kind flags given when they are added (e.g. {@link #KIND_ANIMATED}),
+ * and have state flags that the bulk operations change (e.g. {@link #STATE_VISIBLE}).
+ * Bulk operations select the hotspots that have all the flags of a given mask. Slots are
+ * assigned in the order the hotspots are added, starting from 0, so the caller can keep any
+ * per-hotspot objects in a list with the same indices. Not thread safe.
+ * <p/>
+ * This class has no Android dependencies and can be tested on a desktop JVM.
+ */
+public class HotspotStore {
+
+    /** Kind flag for hotspots that react to gazing. */
+    public static final int KIND_INTERACTIVE = 1;
+
+    /** Kind flag for hotspots that have animations. */
+    public static final int KIND_ANIMATED = 1 << 1;
+
+    /** Kind flag for a reticle that follows the viewing direction. */
+    public static final int KIND_RETICLE = 1 << 2;
+
+    /** Kind flag for hotspots that are shown only during time windows of the video. */
+    public static final int KIND_TIMED = 1 << 3;
+
+    /** State flag for hotspots that are currently shown. */
+    public static final int STATE_VISIBLE = 1 << 8;
+
+    /** State flag for hotspots that are currently active, i.e. react to gazing. */
+    public static final int STATE_ACTIVE = 1 << 9;
+
+    /** Initial capacity of the arrays. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Receives tag property changes from bulk operations. */
+    public interface TagWriter {
+
+        /**
+         * Called when the alpha of a tag should be changed.
+         *
+         * @param tagIndex The tag index of the hotspot.
+         * @param alpha The new alpha value.
+         */
+        void setTagAlpha(int tagIndex, float alpha);
+    }
+
+    /** The tag index of each hotspot. */
+    private int[] mTagIndex = new int[INITIAL_CAPACITY];
+
+    /** The alpha of each hotspot when it is shown. */
+    private float[] mAlpha = new float[INITIAL_CAPACITY];
+
+    /** The kind and state flags of each hotspot. */
+    private int[] mFlags = new int[INITIAL_CAPACITY];
+
+    /** The number of hotspots. */
+    private int mCount = 0;
+
+
+    /**
+     * Add a hotspot.
+     *
+     * @param tagIndex The Orion360 tag index of the hotspot.
+     * @param alpha The alpha when shown.
+     * @param kind The kind flags, a combination of the KIND_ constants.
+     * @return the slot of the new hotspot.
+     */
+    public int add(int tagIndex, float alpha, int kind) {
+        if (mCount == mFlags.length) {
+            grow();
+        }
+        int slot = mCount++;
+        mTagIndex[slot] = tagIndex;
+        mAlpha[slot] = alpha;
+        mFlags[slot] = kind & 0xff;
+        return slot;
+    }
+
+    /**
+     * Get the number of hotspots.
+     *
+     * @return the number of hotspots.
+     */
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * Get the tag index of a hotspot.
+     *
+     * @param slot The slot of the hotspot.
+     * @return the tag index.
+     */
+    public int getTagIndex(int slot) {
+        return mTagIndex[slot];
+    }
+
+    /** @return the alpha of a hotspot when shown. */
+    public float getAlpha(int slot) {
+        return mAlpha[slot];
+    }
+
+    /**
+     * Tells whether a hotspot has all the given flags.
+     *
+     * @param slot The slot of the hotspot.
+     * @param mask The flags.
+     * @return true if all flags are set, else false.
+     */
+    public boolean hasFlags(int slot, int mask) {
+        return (mFlags[slot] & mask) == mask;
+    }
+
+    /**
+     * Find the hotspots that have all the given flags.
+     *
+     * @param mask The flags, a combination of the KIND_ and STATE_ constants.
+     * @param out Array where to write the slots found; should be at least size() long.
+     * @return the number of slots written.
+     */
+    public int select(int mask, int[] out) {
+        int found = 0;
+        int limit = Math.min(mCount, out.length);
+        int[] flags = mFlags;
+        for (int i = 0; i < mCount && found < limit; i++) {
+            if ((flags[i] & mask) == mask) {
+                out[found++] = i;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Set state flags on all hotspots that have the given flags.
+     *
+     * @param mask The flags used for selecting the hotspots.
+     * @param state The state flags to set.
+     * @return the number of hotspots whose flags changed.
+     */
+    public int setState(int mask, int state) {
+        int changed = 0;
+        int[] flags = mFlags;
+        for (int i = 0; i < mCount; i++) {
+            int f = flags[i];
+            if ((f & mask) == mask && (f & state) != state) {
+                flags[i] = f | state;
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Clear state flags from all hotspots that have the given flags.
+     *
+     * @param mask The flags used for selecting the hotspots.
+     * @param state The state flags to clear.
+     * @return the number of hotspots whose flags changed.
+     */
+    public int clearState(int mask, int state) {
+        int changed = 0;
+        int[] flags = mFlags;
+        for (int i = 0; i < mCount; i++) {
+            int f = flags[i];
+            if ((f & mask) == mask && (f & state) != 0) {
+                flags[i] = f & ~state;
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Show all hotspots that have the given flags, by writing their alpha values.
+     *
+     * @param mask The flags used for selecting the hotspots.
+     * @param writer The writer that receives the alpha values.
+     * @return the number of hotspots shown.
+     */
+    public int show(int mask, TagWriter writer) {
+        int count = 0;
+        int[] flags = mFlags;
+        for (int i = 0; i < mCount; i++) {
+            if ((flags[i] & mask) == mask) {
+                flags[i] |= STATE_VISIBLE;
+                writer.setTagAlpha(mTagIndex[i], mAlpha[i]);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Hide all hotspots that have the given flags, by writing zero alpha values.
+     *
+     * @param mask The flags used for selecting the hotspots.
+     * @param writer The writer that receives the alpha values.
+     * @return the number of hotspots hidden.
+     */
+    public int hide(int mask, TagWriter writer) {
+        int count = 0;
+        int[] flags = mFlags;
+        for (int i = 0; i < mCount; i++) {
+            if ((flags[i] & mask) == mask) {
+                flags[i] &= ~STATE_VISIBLE;
+                writer.setTagAlpha(mTagIndex[i], 0.0f);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Show or hide a single hotspot, by writing its alpha value.
+     *
+     * @param slot The slot of the hotspot.
+     * @param visible true to show the hotspot, false to hide it.
+     * @param writer The writer that receives the alpha value.
+     */
+    public void setVisible(int slot, boolean visible, TagWriter writer) {
+        if (visible) {
+            mFlags[slot] |= STATE_VISIBLE;
+            writer.setTagAlpha(mTagIndex[slot], mAlpha[slot]);
+        } else {
+            mFlags[slot] &= ~STATE_VISIBLE;
+            writer.setTagAlpha(mTagIndex[slot], 0.0f);
+        }
+    }
+
+    /**
+     * Double the capacity of the arrays.
+     */
+    private void grow() {
+        int capacity = 2 * mFlags.length;
+        mTagIndex = Arrays.copyOf(mTagIndex, capacity);
+        mAlpha = Arrays.copyOf(mAlpha, capacity);
+        mFlags = Arrays.copyOf(mFlags, capacity);
+    }
+}
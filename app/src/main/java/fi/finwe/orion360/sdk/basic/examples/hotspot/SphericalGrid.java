@@ -0,0 +1,298 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.hotspot;
+
+import java.util.Arrays;
+
+/**
+ * A spatial index for points on the unit sphere, bucketed by latitude and longitude.
+ * <p/>
+ * The sphere is divided into rows of latitude, and each row into cells of longitude. The number
+ * of cells per row shrinks towards the poles, so that all cells are roughly the same size. A
+ * query for the points within an angle of a direction only visits the cells that overlap the
+ * spherical cap around it, and then tests the candidates exactly with a dot product. With
+ * hundreds of points and a small query angle, a query touches a handful of points instead of
+ * all of them.
+ * <p/>
+ * Points are identified by small non-negative integer ids (such as tag indices), which are used
+ * as array indices internally. The y axis is taken as the polar axis; the index works for
+ * any orientation, it is just most efficient when the points are not crowded at its poles.
+ * Queries do not allocate memory. Not thread safe.
+ * <p/>
+ * This class has no Android dependencies and can be tested on a desktop JVM.
+ */
+public class SphericalGrid {
+
+    /** Margin for selecting cells, in radians. */
+    private static final double MARGIN = 1e-4;
+
+    /** Initial capacity of a cell. */
+    private static final int INITIAL_CELL_CAPACITY = 4;
+
+    /** Number of latitude rows. */
+    private final int mRowCount;
+
+    /** Height of a latitude row, in radians. */
+    private final double mRowHeight;
+
+    /** Number of longitude cells in each row. */
+    private final int[] mRowColumns;
+
+    /** Index of the first cell of each row. */
+    private final int[] mRowStart;
+
+    /** The ids of the points in each cell. */
+    private final int[][] mCellIds;
+
+    /** The number of points in each cell. */
+    private final int[] mCellCounts;
+
+    /** The cell of each id, or -1 if the id is not in the index. Grows as needed. */
+    private int[] mIdCells = new int[0];
+
+    /** The coordinates of each id. Grows as needed. */
+    private float[] mX = new float[0], mY = new float[0], mZ = new float[0];
+
+    /** The number of points in the index. */
+    private int mSize = 0;
+
+
+    /**
+     * Constructor.
+     *
+     * @param cellSizeDeg The approximate size of a cell, in degrees. Around the typical query
+     *                    angle is a good choice.
+     */
+    public SphericalGrid(float cellSizeDeg) {
+        mRowCount = Math.max(1, (int) Math.ceil(180.0 / cellSizeDeg));
+        mRowHeight = Math.PI / mRowCount;
+        mRowColumns = new int[mRowCount];
+        mRowStart = new int[mRowCount];
+        int cellCount = 0;
+        for (int row = 0; row < mRowCount; row++) {
+
+            // The row is widest at its edge closest to the equator.
+            double bottom = -Math.PI / 2 + row * mRowHeight;
+            double top = bottom + mRowHeight;
+            double widest = bottom <= 0.0 && top >= 0.0 ? 0.0
+                    : Math.min(Math.abs(bottom), Math.abs(top));
+            mRowColumns[row] = Math.max(1, (int) Math.ceil(
+                    360.0 * Math.cos(widest) / cellSizeDeg));
+            mRowStart[row] = cellCount;
+            cellCount += mRowColumns[row];
+        }
+        mCellIds = new int[cellCount][];
+        mCellCounts = new int[cellCount];
+    }
+
+    /**
+     * Add a point, or move it if the id is already in the index.
+     *
+     * @param id The id of the point, non-negative.
+     * @param x The x coordinate of the unit vector.
+     * @param y The y coordinate of the unit vector.
+     * @param z The z coordinate of the unit vector.
+     */
+    public void put(int id, float x, float y, float z) {
+        ensureIdCapacity(id + 1);
+        remove(id);
+        int cell = getCell(x, y, z);
+        int count = mCellCounts[cell];
+        int[] ids = mCellIds[cell];
+        if (null == ids) {
+            ids = mCellIds[cell] = new int[INITIAL_CELL_CAPACITY];
+        } else if (count == ids.length) {
+            ids = mCellIds[cell] = Arrays.copyOf(ids, 2 * count);
+        }
+        ids[count] = id;
+        mCellCounts[cell] = count + 1;
+        mIdCells[id] = cell;
+        mX[id] = x;
+        mY[id] = y;
+        mZ[id] = z;
+        mSize++;
+    }
+
+    /**
+     * Remove a point.
+     *
+     * @param id The id of the point.
+     * @return true if the point was removed, false if it was not in the index.
+     */
+    public boolean remove(int id) {
+        if (id < 0 || id >= mIdCells.length || mIdCells[id] < 0) return false;
+        int cell = mIdCells[id];
+        int[] ids = mCellIds[cell];
+        int count = mCellCounts[cell];
+        for (int i = 0; i < count; i++) {
+            if (ids[i] == id) {
+                ids[i] = ids[count - 1];
+                break;
+            }
+        }
+        mCellCounts[cell] = count - 1;
+        mIdCells[id] = -1;
+        mSize--;
+        return true;
+    }
+
+    /**
+     * Tells whether a point is in the index.
+     *
+     * @param id The id of the point.
+     * @return true if in the index, else false.
+     */
+    public boolean contains(int id) {
+        return id >= 0 && id < mIdCells.length && mIdCells[id] >= 0;
+    }
+
+    /**
+     * Get the number of points in the index.
+     *
+     * @return the number of points.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Get the x coordinate of a point. The id must be in the index.
+     */
+    public float getX(int id) {
+        return mX[id];
+    }
+
+    /**
+     * Get the y coordinate of a point. The id must be in the index.
+     */
+    public float getY(int id) {
+        return mY[id];
+    }
+
+    /**
+     * Get the z coordinate of a point. The id must be in the index.
+     */
+    public float getZ(int id) {
+        return mZ[id];
+    }
+
+    /**
+     * Find the points within an angle of a direction.
+     *
+     * @param x The x coordinate of the unit direction vector.
+     * @param y The y coordinate of the unit direction vector.
+     * @param z The z coordinate of the unit direction vector.
+     * @param angle The maximum angle between the direction and a point, in radians.
+     * @param out Array where to write the ids of the points found.
+     * @return the number of points found; if larger than out.length, the rest did not fit.
+     */
+    public int query(float x, float y, float z, float angle, int[] out) {
+        if (mSize == 0) return 0;
+
+        float minDot = (float) Math.cos(angle);
+        double latitude = Math.asin(Math.max(-1.0f, Math.min(1.0f, y)));
+        double longitude = Math.atan2(x, z);
+
+        // The cells are selected with a small margin, to be safe from rounding errors.
+        double margin = angle + MARGIN;
+        int firstRow = getRow(latitude - margin);
+        int lastRow = getRow(latitude + margin);
+
+        // The longitude range of the cap, unless it contains a pole.
+        double halfWidth = Math.PI;
+        if (Math.abs(latitude) + margin < Math.PI / 2) {
+            halfWidth = Math.asin(Math.min(1.0, Math.sin(margin) / Math.cos(latitude)));
+        }
+
+        int found = 0;
+        for (int row = firstRow; row <= lastRow; row++) {
+            int columns = mRowColumns[row];
+            int firstColumn, columnCount;
+            if (halfWidth >= Math.PI) {
+                firstColumn = 0;
+                columnCount = columns;
+            } else {
+                double columnWidth = 2 * Math.PI / columns;
+                firstColumn = (int) Math.floor((longitude - halfWidth + Math.PI) / columnWidth);
+                int lastColumn = (int) Math.floor((longitude + halfWidth + Math.PI) / columnWidth);
+                columnCount = Math.min(columns, lastColumn - firstColumn + 1);
+            }
+            for (int i = 0; i < columnCount; i++) {
+                int column = (firstColumn + i) % columns;
+                if (column < 0) column += columns;
+                int cell = mRowStart[row] + column;
+                int[] ids = mCellIds[cell];
+                for (int j = mCellCounts[cell] - 1; j >= 0; j--) {
+                    int id = ids[j];
+                    if (mX[id] * x + mY[id] * y + mZ[id] * z >= minDot) {
+                        if (found < out.length) {
+                            out[found] = id;
+                        }
+                        found++;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Get the cell of a direction.
+     */
+    private int getCell(float x, float y, float z) {
+        int row = getRow(Math.asin(Math.max(-1.0f, Math.min(1.0f, y))));
+        int columns = mRowColumns[row];
+        double longitude = Math.atan2(x, z);
+        int column = (int) ((longitude + Math.PI) / (2 * Math.PI) * columns);
+        return mRowStart[row] + Math.min(columns - 1, Math.max(0, column));
+    }
+
+    /**
+     * Get the row of a latitude, clamped to the valid rows.
+     */
+    private int getRow(double latitude) {
+        int row = (int) Math.floor((latitude + Math.PI / 2) / mRowHeight);
+        return Math.min(mRowCount - 1, Math.max(0, row));
+    }
+
+    /**
+     * Make sure that ids up to the given capacity can be stored.
+     */
+    private void ensureIdCapacity(int capacity) {
+        if (capacity <= mIdCells.length) return;
+        int newCapacity = Math.max(capacity, 2 * mIdCells.length);
+        int oldCapacity = mIdCells.length;
+        mIdCells = Arrays.copyOf(mIdCells, newCapacity);
+        Arrays.fill(mIdCells, oldCapacity, newCapacity, -1);
+        mX = Arrays.copyOf(mX, newCapacity);
+        mY = Arrays.copyOf(mY, newCapacity);
+        mZ = Arrays.copyOf(mZ, newCapacity);
+    }
+}
@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.math;
+
+import fi.finwe.math.QuatF;
+
+/**
+ * A mutable quaternion for allocation-free rotation math.
+ * <p/>
+ * The immutable QuatF creates a new instance for every operation. That is convenient, but in
+ * orientation listeners that run at sensor rate, the garbage adds up and the collector pauses
+ * show as judder, especially in VR mode. This class performs the same operations in place:
+ * allocate the instances once (e.g. as listener fields) and reuse them in every callback.
+ * <p/>
+ * The operations follow the conventions of QuatF: {@link #multiply} is the Hamilton product
+ * this * q, and the axis rotations match QuatF.fromRotationAxisX/Y/Z.
+ * Instances are not thread safe.
+ */
+public class MutableQuatF {
+
+    /** The scalar component. */
+    public float w;
+
+    /** The vector components. */
+    public float x, y, z;
+
+
+    /**
+     * Constructor. Creates an identity rotation.
+     */
+    public MutableQuatF() {
+        w = 1.0f;
+    }
+
+    /**
+     * Set the components.
+     *
+     * @return this, for chaining.
+     */
+    public MutableQuatF set(float w, float x, float y, float z) {
+        this.w = w;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    /**
+     * Copy the components from a quaternion.
+     *
+     * @param q The quaternion to copy.
+     * @return this, for chaining.
+     */
+    public MutableQuatF set(QuatF q) {
+        return set(q.w, q.x, q.y, q.z);
+    }
+
+    /**
+     * Copy the components from a mutable quaternion.
+     *
+     * @param q The quaternion to copy.
+     * @return this, for chaining.
+     */
+    public MutableQuatF set(MutableQuatF q) {
+        return set(q.w, q.x, q.y, q.z);
+    }
+
+    /**
+     * Set to the identity rotation.
+     *
+     * @return this, for chaining.
+     */
+    public MutableQuatF setIdentity() {
+        return set(1.0f, 0.0f, 0.0f, 0.0f);
+    }
+
+    /**
+     * Set to a rotation around the X axis, as QuatF.fromRotationAxisX().
+     *
+     * @param angle The rotation angle, in radians.
+     * @return this, for chaining.
+     */
+    public MutableQuatF setRotationAxisX(float angle) {
+        float half = 0.5f * angle;
+        return set((float) Math.cos(half), (float) Math.sin(half), 0.0f, 0.0f);
+    }
+
+    /**
+     * Set to a rotation around the Y axis, as QuatF.fromRotationAxisY().
+     *
+     * @param angle The rotation angle, in radians.
+     * @return this, for chaining.
+     */
+    public MutableQuatF setRotationAxisY(float angle) {
+        float half = 0.5f * angle;
+        return set((float) Math.cos(half), 0.0f, (float) Math.sin(half), 0.0f);
+    }
+
+    /**
+     * Set to a rotation around the Z axis, as QuatF.fromRotationAxisZ().
+     *
+     * @param angle The rotation angle, in radians.
+     * @return this, for chaining.
+     */
+    public MutableQuatF setRotationAxisZ(float angle) {
+        float half = 0.5f * angle;
+        return set((float) Math.cos(half), 0.0f, 0.0f, (float) Math.sin(half));
+    }
+
+    /**
+     * Conjugate in place. For a unit quaternion, this is the inverse rotation.
+     *
+     * @return this, for chaining.
+     */
+    public MutableQuatF conjugate() {
+        x = -x;
+        y = -y;
+        z = -z;
+        return this;
+    }
+
+    /**
+     * Multiply in place from the right: this = this * q.
+     *
+     * @param q The quaternion to multiply with. May be this.
+     * @return this, for chaining.
+     */
+    public MutableQuatF multiply(MutableQuatF q) {
+        float nw = w * q.w - x * q.x - y * q.y - z * q.z;
+        float nx = w * q.x + x * q.w + y * q.z - z * q.y;
+        float ny = w * q.y - x * q.z + y * q.w + z * q.x;
+        float nz = w * q.z + x * q.y - y * q.x + z * q.w;
+        return set(nw, nx, ny, nz);
+    }
+
+    /**
+     * Multiply in place from the left: this = q * this.
+     *
+     * @param q The quaternion to multiply with. May be this.
+     * @return this, for chaining.
+     */
+    public MutableQuatF preMultiply(MutableQuatF q) {
+        float nw = q.w * w - q.x * x - q.y * y - q.z * z;
+        float nx = q.w * x + q.x * w + q.y * z - q.z * y;
+        float ny = q.w * y - q.x * z + q.y * w + q.z * x;
+        float nz = q.w * z + q.x * y - q.y * x + q.z * w;
+        return set(nw, nx, ny, nz);
+    }
+
+    /**
+     * Copy the components to a QuatF, for passing the result to the Orion360 API.
+     *
+     * @param out The quaternion to write to.
+     * @return the given quaternion.
+     */
+    public QuatF copyTo(QuatF out) {
+        out.w = w;
+        out.x = x;
+        out.y = y;
+        out.z = z;
+        return out;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + w + ", " + x + ", " + y + ", " + z + "]";
+    }
+}
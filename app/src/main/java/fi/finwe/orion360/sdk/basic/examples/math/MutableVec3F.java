@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.math;
+
+import fi.finwe.math.Vec3F;
+
+/**
+ * A mutable 3D vector for allocation-free rotation math.
+ * <p/>
+ * The in-place counterpart of Vec3F, see {@link MutableQuatF}. For example, the direction
+ * where the user is looking at, usually written as
+ * <pre>
+ *     Vec3F lookAt = Vec3F.AXIS_FRONT.rotate(orientation.conjugate());
+ * </pre>
+ * can be computed without allocations with scratch instances:
+ * <pre>
+ *     mInverse.set(orientation).conjugate();
+ *     mLookAt.set(Vec3F.AXIS_FRONT).rotate(mInverse);
+ * </pre>
+ * Yaw and pitch follow the conventions of Vec3F: yaw is the angle around the up axis measured
+ * from the front axis towards the right axis, and pitch is the angle above the horizon.
+ * Instances are not thread safe.
+ */
+public class MutableVec3F {
+
+    /** The components. */
+    public float x, y, z;
+
+
+    /**
+     * Constructor. Creates a zero vector.
+     */
+    public MutableVec3F() {}
+
+    /**
+     * Set the components.
+     *
+     * @return this, for chaining.
+     */
+    public MutableVec3F set(float x, float y, float z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    /**
+     * Copy the components from a vector.
+     *
+     * @param v The vector to copy.
+     * @return this, for chaining.
+     */
+    public MutableVec3F set(Vec3F v) {
+        return set(v.x, v.y, v.z);
+    }
+
+    /**
+     * Copy the components from a mutable vector.
+     *
+     * @param v The vector to copy.
+     * @return this, for chaining.
+     */
+    public MutableVec3F set(MutableVec3F v) {
+        return set(v.x, v.y, v.z);
+    }
+
+    /**
+     * Rotate in place by a unit quaternion (q * v * q^-1), as Vec3F.rotate().
+     *
+     * @param q The rotation.
+     * @return this, for chaining.
+     */
+    public MutableVec3F rotate(MutableQuatF q) {
+
+        // t = 2 * cross(q.xyz, v); v' = v + q.w * t + cross(q.xyz, t)
+        float tx = 2.0f * (q.y * z - q.z * y);
+        float ty = 2.0f * (q.z * x - q.x * z);
+        float tz = 2.0f * (q.x * y - q.y * x);
+        return set(x + q.w * tx + (q.y * tz - q.z * ty),
+                y + q.w * ty + (q.z * tx - q.x * tz),
+                z + q.w * tz + (q.x * ty - q.y * tx));
+    }
+
+    /**
+     * Dot product with a vector.
+     *
+     * @param v The other vector.
+     * @return the dot product.
+     */
+    public float dot(Vec3F v) {
+        return x * v.x + y * v.y + z * v.z;
+    }
+
+    /**
+     * Dot product with a mutable vector.
+     *
+     * @param v The other vector.
+     * @return the dot product.
+     */
+    public float dot(MutableVec3F v) {
+        return x * v.x + y * v.y + z * v.z;
+    }
+
+    /**
+     * Get the yaw angle of this direction, as Vec3F.getYaw().
+     *
+     * @return the yaw angle in radians, in range [-PI, PI].
+     */
+    public float getYaw() {
+        return (float) Math.atan2(dot(Vec3F.AXIS_RIGHT), dot(Vec3F.AXIS_FRONT));
+    }
+
+    /**
+     * Get the pitch angle of this direction, as Vec3F.getPitch().
+     *
+     * @return the pitch angle in radians, in range [-PI/2, PI/2].
+     */
+    public float getPitch() {
+        float horizontal = (float) Math.hypot(dot(Vec3F.AXIS_RIGHT), dot(Vec3F.AXIS_FRONT));
+        return (float) Math.atan2(dot(Vec3F.AXIS_UP), horizontal);
+    }
+
+    /**
+     * Copy the components to a Vec3F, for passing the result to the Orion360 API.
+     *
+     * @param out The vector to write to.
+     * @return the given vector.
+     */
+    public Vec3F copyTo(Vec3F out) {
+        out.x = x;
+        out.y = y;
+        out.z = z;
+        return out;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + x + ", " + y + ", " + z + "]";
+    }
+}
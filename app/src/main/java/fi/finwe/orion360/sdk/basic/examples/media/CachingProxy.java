@@ -0,0 +1,677 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.media;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A loopback HTTP proxy that serves network streams through a {@link RangeCache}.
+ * <p/>
+ * The video player is given a proxy URL instead of the original one, see
+ * {@link #getUrl(String)}. The proxy answers the byte range requests of the player: the
+ * parts of the requested range that are cached are read from disk, and the gaps are fetched
+ * from the origin and written to the cache while they are passed to the player. Replaying
+ * a video, or seeking back to a part that has already been played, does not touch the network.
+ * <p/>
+ * When a connection to the origin is open, short cached runs are read through from the
+ * origin instead of opening a new connection after each of them.
+ * <p/>
+ * Resources are assumed not to change; a cached resource is revalidated only by its length,
+ * when the origin is next contacted for it.
+ * <p/>
+ * The proxy listens on the loopback interface only, and only proxies http and https URLs.
+ * Any app on the device can connect to a loopback port, hence the proxy URLs carry a random
+ * token created for each proxy instance, and requests without it are answered 403 Forbidden;
+ * otherwise other apps could use the proxy as an open relay under the identity of this app.
+ * Each connection is served in its own thread.
+ * <p/>
+ * This class has no Android dependencies and can be tested on a desktop JVM.
+ */
+public class CachingProxy {
+
+    /** Tag for logging. */
+    public static final String TAG = CachingProxy.class.getSimpleName();
+
+    /** Size of the copy buffer, in bytes. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Cached runs shorter than this are read through from an open origin connection. */
+    private static final long MIN_CACHED_RUN = 64 * 1024;
+
+    /** Maximum size of a request head, in bytes. */
+    private static final int MAX_REQUEST_HEAD_SIZE = 16 * 1024;
+
+    /** Timeout for reading a request from the player, in ms. */
+    private static final int REQUEST_TIMEOUT_MS = 10000;
+
+    /** Number of random bytes in the access token of the proxy URLs. */
+    private static final int TOKEN_BYTES = 16;
+
+    /** Charset of HTTP heads. */
+    private static final Charset HEAD_CHARSET = Charset.forName("ISO-8859-1");
+
+    /** The cache. */
+    private final RangeCache mCache;
+
+    /** The origin of the resources. */
+    private final Origin mOrigin;
+
+    /** The path prefix of the proxy URLs, with the access token: "/token/". */
+    private final String mPathPrefix;
+
+    /** Executor for serving connections. */
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, TAG);
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /** The accepted sockets that are open, for closing on stop. */
+    private final Set<Socket> mSockets =
+            Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+
+    /** The bodies of the origin responses that are open, for closing on stop. */
+    private final Set<InputStream> mBodies =
+            Collections.newSetFromMap(new ConcurrentHashMap<InputStream, Boolean>());
+
+    /** The number of bytes served from the cache. */
+    private final AtomicLong mCacheBytes = new AtomicLong();
+
+    /** The number of bytes fetched from the origin. */
+    private final AtomicLong mOriginBytes = new AtomicLong();
+
+    /** The server socket, or null when not started. */
+    private volatile ServerSocket mServerSocket;
+
+
+    /**
+     * Opens resources from where they originate.
+     */
+    public interface Origin {
+
+        /**
+         * Open a resource from a position to its end.
+         *
+         * @param url The URL of the resource.
+         * @param position The position to start from.
+         * @return the response, with its body at the position.
+         * @throws IOException If the resource cannot be opened.
+         */
+        Response open(String url, long position) throws IOException;
+    }
+
+    /**
+     * A response from the origin.
+     */
+    public static class Response {
+
+        /** The length of the whole resource, or RangeCache.UNKNOWN_LENGTH. */
+        public final long length;
+
+        /** The content type of the resource, or null. */
+        public final String contentType;
+
+        /** The body, at the requested position. Closing it releases the connection. */
+        public final InputStream body;
+
+        /**
+         * Constructor.
+         *
+         * @param length The length of the whole resource, or RangeCache.UNKNOWN_LENGTH.
+         * @param contentType The content type of the resource, or null.
+         * @param body The body, at the requested position.
+         */
+        public Response(long length, String contentType, InputStream body) {
+            this.length = length;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Opens resources with HttpURLConnection, using range requests.
+     */
+    public static class HttpOrigin implements Origin {
+
+        /** Timeout for connecting and reading, in ms. */
+        private static final int TIMEOUT_MS = 15000;
+
+        @Override
+        public Response open(String url, long position) throws IOException {
+            final HttpURLConnection connection =
+                    (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(TIMEOUT_MS);
+            connection.setReadTimeout(TIMEOUT_MS);
+
+            // Compressed bodies would not match the byte ranges.
+            connection.setRequestProperty("Accept-Encoding", "identity");
+            if (position > 0) {
+                connection.setRequestProperty("Range", "bytes=" + position + "-");
+            }
+            try {
+                int code = connection.getResponseCode();
+                long length;
+                long start;
+                if (code == HttpURLConnection.HTTP_PARTIAL) {
+                    String contentRange = connection.getHeaderField("Content-Range");
+                    long [] range = parseContentRange(contentRange);
+                    if (null == range) {
+                        throw new IOException("Invalid Content-Range: " + contentRange);
+                    }
+                    start = range[0];
+                    length = range[1];
+                } else if (code == HttpURLConnection.HTTP_OK) {
+                    start = 0;
+                    length = parseLong(connection.getHeaderField("Content-Length"));
+                } else {
+                    throw new IOException("HTTP " + code + " for " + url);
+                }
+                InputStream body = new FilterInputStream(connection.getInputStream()) {
+                    @Override
+                    public void close() {
+                        connection.disconnect();
+                    }
+                };
+
+                // A server that ignores the range sends the whole resource.
+                while (start < position) {
+                    long skipped = body.skip(position - start);
+                    if (skipped <= 0) {
+                        throw new IOException("Unexpected end of stream: " + url);
+                    }
+                    start += skipped;
+                }
+                if (start != position) {
+                    throw new IOException("Unexpected range from " + start + ": " + url);
+                }
+                return new Response(length, connection.getContentType(), body);
+            } catch (IOException e) {
+                connection.disconnect();
+                throw e;
+            }
+        }
+    }
+
+
+    /**
+     * Constructor.
+     *
+     * @param cache The cache.
+     * @param origin The origin of the resources.
+     */
+    public CachingProxy(RangeCache cache, Origin origin) {
+        mCache = cache;
+        mOrigin = origin;
+
+        byte [] token = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(token);
+        StringBuilder prefix = new StringBuilder(2 * TOKEN_BYTES + 2).append('/');
+        for (byte b : token) {
+            prefix.append(Character.forDigit((b >> 4) & 0xF, 16));
+            prefix.append(Character.forDigit(b & 0xF, 16));
+        }
+        mPathPrefix = prefix.append('/').toString();
+    }
+
+    /**
+     * Start listening on a free loopback port.
+     *
+     * @throws IOException If the server socket cannot be opened.
+     */
+    public synchronized void start() throws IOException {
+        if (null != mServerSocket) return;
+        if (mExecutor.isShutdown()) {
+            throw new IllegalStateException("The proxy has been stopped");
+        }
+        final ServerSocket serverSocket = new ServerSocket(0, 8,
+                InetAddress.getByName("127.0.0.1"));
+        mServerSocket = serverSocket;
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        final Socket socket = serverSocket.accept();
+                        mExecutor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                serve(socket);
+                            }
+                        });
+                    } catch (IOException e) {
+                        // Closed.
+                    }
+                }
+            }
+        }, TAG);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop listening, and close the open connections. The proxy cannot be started again.
+     */
+    public synchronized void stop() {
+        if (null == mServerSocket) return;
+        try {
+            mServerSocket.close();
+        } catch (IOException e) {
+            // Ignored.
+        }
+        mServerSocket = null;
+        mExecutor.shutdownNow();
+
+        // Closing the sockets and origin responses wakes up the threads blocked on them.
+        for (Socket socket : mSockets) {
+            closeQuietly(socket);
+        }
+        for (InputStream body : mBodies) {
+            closeQuietly(body);
+        }
+    }
+
+    /**
+     * Get the port that the proxy listens on.
+     *
+     * @return the port, or -1 if not started.
+     */
+    public int getPort() {
+        ServerSocket serverSocket = mServerSocket;
+        return null != serverSocket ? serverSocket.getLocalPort() : -1;
+    }
+
+    /**
+     * Get the proxy URL of a resource.
+     *
+     * @param url The URL of the resource.
+     * @return the proxy URL, or the URL itself if it cannot be proxied or the proxy has not
+     * been started.
+     */
+    public String getUrl(String url) {
+        int port = getPort();
+        if (port < 0 || !isProxied(url)) return url;
+        try {
+            return "http://127.0.0.1:" + port + mPathPrefix + URLEncoder.encode(url, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            return url;
+        }
+    }
+
+    /**
+     * Get the number of bytes that have been served from the cache.
+     *
+     * @return the number of bytes.
+     */
+    public long getCacheBytes() {
+        return mCacheBytes.get();
+    }
+
+    /**
+     * Get the number of bytes that have been fetched from the origin.
+     *
+     * @return the number of bytes.
+     */
+    public long getOriginBytes() {
+        return mOriginBytes.get();
+    }
+
+    /**
+     * Tells whether a URL can be proxied.
+     */
+    private static boolean isProxied(String url) {
+        return null != url && (url.startsWith("http://") || url.startsWith("https://"));
+    }
+
+    /**
+     * Serve one request of a connection.
+     */
+    private void serve(Socket socket) {
+        mSockets.add(socket);
+        try {
+            if (mExecutor.isShutdown()) return;
+            socket.setSoTimeout(REQUEST_TIMEOUT_MS);
+            InputStream in = socket.getInputStream();
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+            String [] head = readHead(in);
+            if (null == head) return;
+            String [] requestLine = head[0].split(" ");
+            boolean isHead = requestLine[0].equals("HEAD");
+            if (requestLine.length < 2 || !(isHead || requestLine[0].equals("GET"))) {
+                writeStatus(out, 405, "Method Not Allowed");
+                return;
+            }
+            if (!requestLine[1].startsWith(mPathPrefix)) {
+                writeStatus(out, 403, "Forbidden");
+                return;
+            }
+            String url;
+            try {
+                url = URLDecoder.decode(requestLine[1].substring(mPathPrefix.length()), "UTF-8");
+            } catch (IllegalArgumentException e) {
+
+                // A malformed escape sequence.
+                url = null;
+            }
+            if (!isProxied(url)) {
+                writeStatus(out, 400, "Bad Request");
+                return;
+            }
+            String range = null;
+            for (int i = 1; i < head.length; i++) {
+                int colon = head[i].indexOf(':');
+                if (colon > 0 && head[i].substring(0, colon).trim().equalsIgnoreCase("Range")) {
+                    range = head[i].substring(colon + 1).trim();
+                }
+            }
+            RangeCache.Entry entry = mCache.open(url);
+            try {
+                serve(entry, url, range, isHead, out);
+            } finally {
+                entry.close();
+            }
+        } catch (IOException e) {
+            // The player closed the connection, or the origin failed; either way the
+            // connection is closed, and the player tries again if it still needs the data.
+        } finally {
+            mSockets.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Serve a request for a resource.
+     */
+    private void serve(RangeCache.Entry entry, String url, String range, boolean isHead,
+                       OutputStream out) throws IOException {
+        long [] requested = parseRange(range);
+        boolean isPartial = null != requested;
+        long start = isPartial && requested[0] >= 0 ? requested[0] : 0;
+
+        // The length is needed for the response head; ask the origin if it is not cached.
+        Response response = null;
+        try {
+            long length = entry.getLength();
+            if (length == RangeCache.UNKNOWN_LENGTH) {
+                response = openOrigin(url, start);
+                if (response.length == RangeCache.UNKNOWN_LENGTH) {
+                    writeStatus(out, 502, "Bad Gateway");
+                    return;
+                }
+                entry.setInfo(response.length, response.contentType);
+                length = response.length;
+            }
+
+            long end = length;
+            if (isPartial) {
+                if (requested[0] < 0) {
+
+                    // A suffix range: the last bytes of the resource.
+                    start = Math.max(0, length + requested[0]);
+                    response = closeUnless(response, start == 0);
+                } else if (requested[1] >= 0) {
+                    end = Math.min(length, requested[1] + 1);
+                }
+                if (start >= length || start >= end) {
+                    writeHead(out, "416 Range Not Satisfiable", null, 0,
+                            "bytes */" + length);
+                    return;
+                }
+            }
+            String contentType = entry.getContentType();
+            writeHead(out, isPartial ? "206 Partial Content" : "200 OK",
+                    null != contentType ? contentType : "application/octet-stream", end - start,
+                    isPartial ? "bytes " + start + "-" + (end - 1) + "/" + length : null);
+            if (isHead) return;
+
+            byte [] buffer = new byte[BUFFER_SIZE];
+            long position = start;
+            while (position < end) {
+                long cached = Math.min(entry.getCachedLength(position), end - position);
+                if (cached > 0 && (null == response || cached >= MIN_CACHED_RUN
+                        || position + cached == end)) {
+
+                    // Serve the cached run from disk.
+                    response = closeUnless(response, false);
+                    long stop = position + cached;
+                    while (position < stop) {
+                        int count = entry.read(position, buffer, 0,
+                                (int) Math.min(buffer.length, stop - position));
+                        if (count <= 0) break;
+                        out.write(buffer, 0, count);
+                        position += count;
+                        mCacheBytes.addAndGet(count);
+                    }
+                    continue;
+                }
+
+                // Fetch the gap from the origin up to the next cached run, and cache it on
+                // the way.
+                if (null == response) {
+                    response = openOrigin(url, position);
+                    if (response.length != length) {
+                        entry.setInfo(response.length, response.contentType);
+                        throw new IOException("Resource has changed: " + url);
+                    }
+                }
+                long stop = Math.min(end, entry.getNextCachedPosition(position));
+                int count = response.body.read(buffer, 0,
+                        (int) Math.min(buffer.length, stop - position));
+                if (count < 0) {
+                    throw new IOException("Unexpected end of stream: " + url);
+                }
+                entry.write(position, buffer, 0, count);
+                out.write(buffer, 0, count);
+                position += count;
+                mOriginBytes.addAndGet(count);
+            }
+        } finally {
+            closeUnless(response, false);
+            out.flush();
+        }
+    }
+
+    /**
+     * Open a resource from the origin, and track the response until it is closed.
+     *
+     * @throws IOException If the resource cannot be opened, or the proxy has been stopped.
+     */
+    private Response openOrigin(String url, long position) throws IOException {
+        Response response = mOrigin.open(url, position);
+        mBodies.add(response.body);
+        if (mExecutor.isShutdown()) {
+            closeUnless(response, false);
+            throw new IOException("The proxy has been stopped");
+        }
+        return response;
+    }
+
+    /**
+     * Close a response unless it is to be kept.
+     *
+     * @return the response if kept, else null.
+     */
+    private Response closeUnless(Response response, boolean keep) {
+        if (null == response || keep) return response;
+        mBodies.remove(response.body);
+        closeQuietly(response.body);
+        return null;
+    }
+
+    /**
+     * Close a socket, ignoring errors.
+     */
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Ignored.
+        }
+    }
+
+    /**
+     * Close a stream, ignoring errors.
+     */
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException e) {
+            // Ignored.
+        }
+    }
+
+    /**
+     * Read the head of a request.
+     *
+     * @return the lines of the head, or null if the connection was closed.
+     */
+    private static String [] readHead(InputStream in) throws IOException {
+        byte [] head = new byte[MAX_REQUEST_HEAD_SIZE];
+        int length = 0;
+        while (length < 4 || head[length - 4] != '\r' || head[length - 3] != '\n'
+                || head[length - 2] != '\r' || head[length - 1] != '\n') {
+            if (length == head.length) {
+                throw new IOException("Request head too large");
+            }
+            int b = in.read();
+            if (b < 0) return null;
+            head[length++] = (byte) b;
+        }
+        return new String(head, 0, length - 4, HEAD_CHARSET).split("\r\n");
+    }
+
+    /**
+     * Write a response head.
+     */
+    private static void writeHead(OutputStream out, String status, String contentType,
+                                  long contentLength, String contentRange) throws IOException {
+        StringBuilder head = new StringBuilder(256);
+        head.append("HTTP/1.1 ").append(status).append("\r\n");
+        if (null != contentType) {
+            head.append("Content-Type: ").append(contentType).append("\r\n");
+        }
+        head.append("Content-Length: ").append(contentLength).append("\r\n");
+        if (null != contentRange) {
+            head.append("Content-Range: ").append(contentRange).append("\r\n");
+        }
+        head.append("Accept-Ranges: bytes\r\n");
+        head.append("Connection: close\r\n\r\n");
+        out.write(head.toString().getBytes(HEAD_CHARSET));
+    }
+
+    /**
+     * Write a response without a body.
+     */
+    private static void writeStatus(OutputStream out, int code, String reason)
+            throws IOException {
+        writeHead(out, code + " " + reason, null, 0, null);
+        out.flush();
+    }
+
+    /**
+     * Parse the first range of a Range header.
+     *
+     * @param range The header value, such as "bytes=100-199", "bytes=100-" or "bytes=-100".
+     * @return {first, last} where last is -1 if open ended, {-suffixLength, -1} for a suffix
+     * range, or null if there is no valid range.
+     */
+    static long [] parseRange(String range) {
+        if (null == range || !range.startsWith("bytes=")) return null;
+        String spec = range.substring("bytes=".length());
+        int comma = spec.indexOf(',');
+        if (comma >= 0) {
+            spec = spec.substring(0, comma);
+        }
+        int dash = spec.indexOf('-');
+        if (dash < 0) return null;
+        long first = parseLong(spec.substring(0, dash).trim());
+        long last = parseLong(spec.substring(dash + 1).trim());
+        if (first < 0) {
+            return last > 0 ? new long [] { -last, -1 } : null;
+        }
+        if (last >= 0 && last < first) return null;
+        return new long [] { first, last };
+    }
+
+    /**
+     * Parse a Content-Range header.
+     *
+     * @param contentRange The header value, such as "bytes 100-199/1000".
+     * @return {first, length} where length is RangeCache.UNKNOWN_LENGTH if not given, or null
+     * if the value is not valid.
+     */
+    static long [] parseContentRange(String contentRange) {
+        if (null == contentRange || !contentRange.startsWith("bytes ")) return null;
+        int dash = contentRange.indexOf('-');
+        int slash = contentRange.indexOf('/');
+        if (dash < 0 || slash < dash) return null;
+        long first = parseLong(contentRange.substring("bytes ".length(), dash).trim());
+        if (first < 0) return null;
+        return new long [] { first, parseLong(contentRange.substring(slash + 1).trim()) };
+    }
+
+    /**
+     * Parse a non-negative number.
+     *
+     * @return the number, or -1 if not valid.
+     */
+    private static long parseLong(String value) {
+        if (null == value || value.isEmpty()) return -1;
+        try {
+            long number = Long.parseLong(value);
+            return number >= 0 ? number : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,720 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.media;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A minimal MP4 (ISO base media file) index parser.
+ * <p/>
+ * Reads the top-level box layout of an .mp4 file and the sample tables of each track from
+ * the 'moov' box, which is enough to tell where in the file the samples of a given time range
+ * are located, and where the sync samples (key frames) are. Nothing is decoded; only the byte
+ * layout of the file is resolved.
+ * <p/>
+ * This class has no Android dependencies, hence it can be used and tested on a plain JVM.
+ */
+public class Mp4Index {
+
+    /** Largest 'moov' box that we are willing to read into memory for parsing, in bytes. */
+    private static final long MAX_MOOV_SIZE = 64L * 1024 * 1024;
+
+    /** The file offset where the 'moov' box begins, relative to the beginning of the file. */
+    private long mMoovOffset = -1;
+
+    /** The size of the 'moov' box, in bytes. */
+    private long mMoovSize;
+
+    /** The file offset where the 'mdat' box begins, relative to the beginning of the file. */
+    private long mMdatOffset = -1;
+
+    /** Number of time units per second in the movie timeline, from the 'mvhd' box. */
+    private long mMovieTimescale;
+
+    /** The tracks that were found from the 'moov' box. */
+    private final List<Track> mTracks = new ArrayList<>();
+
+    /** Sample tables of a single track. */
+    public static class Track {
+
+        /** Handler type of the track, for example 'vide' or 'soun'. */
+        public String handlerType;
+
+        /** Number of time units per second in the track's media timeline. */
+        public long timescale;
+
+        /** Time-to-sample table as [sample count, sample delta] pairs. */
+        int [] sttsCounts = new int[0];
+
+        /** Time-to-sample table deltas, see sttsCounts. */
+        int [] sttsDeltas = new int[0];
+
+        /** Sample-to-chunk table, 1-based index of the first chunk of each run. */
+        int [] stscFirstChunk = new int[0];
+
+        /** Sample-to-chunk table, number of samples per chunk in each run. */
+        int [] stscSamplesPerChunk = new int[0];
+
+        /** Constant sample size, or 0 if sample sizes are given in sampleSizes table. */
+        int constantSampleSize;
+
+        /** Total number of samples in the track. */
+        int sampleCount;
+
+        /** Per-sample sizes in bytes (empty when constantSampleSize is used). */
+        int [] sampleSizes = new int[0];
+
+        /** File offsets of the chunks. */
+        long [] chunkOffsets = new long[0];
+
+        /** Sync sample table, 1-based sample numbers; null if every sample is a sync sample. */
+        int [] syncSamples;
+
+        /** Composition offset table as [sample count, offset] pairs; null if none. */
+        int [] cttsCounts;
+
+        /** Composition offset table offsets, see cttsCounts. */
+        int [] cttsOffsets;
+
+        /** Media time where the presentation of the track begins, from the edit list. */
+        long editMediaTime;
+
+        /** Presentation time where the track begins, in movie time units (empty edits). */
+        long editStartTime;
+
+        /** Number of time units per second in the movie timeline. */
+        long movieTimescale;
+
+        /**
+         * Get the size of a sample.
+         *
+         * @param sample The 0-based sample index.
+         * @return the size of the sample, in bytes.
+         */
+        int getSampleSize(int sample) {
+            return constantSampleSize != 0 ? constantSampleSize : sampleSizes[sample];
+        }
+
+        /**
+         * Get the presentation times of the sync samples (key frames), where a decoder can
+         * start without the preceding samples. These are the positions that a player seeks
+         * to.
+         * <p/>
+         * The decoding time of each sample is shifted by its composition offset ('ctts'),
+         * and the track timeline is mapped to the presentation timeline with the first edit
+         * of the edit list ('elst'): leading empty edits delay the track, and the media time
+         * of the first real edit is where the presentation begins. Edit lists with several
+         * real edits are rare in video files, and are not followed further.
+         *
+         * @return the times in milliseconds, in ascending order.
+         */
+        public long [] getSyncSampleTimesMs() {
+            if (timescale <= 0) return new long[0];
+            int count = null != syncSamples ? syncSamples.length : sampleCount;
+            long [] times = new long[count];
+            long startMs = movieTimescale > 0 ? ceilDiv(editStartTime * 1000, movieTimescale) : 0;
+            int next = 0;
+            int syncEntry = 0;
+            long sampleTime = 0;
+            int sttsEntry = 0;
+            int sttsRemaining = sttsCounts.length > 0 ? sttsCounts[0] : 0;
+            int cttsEntry = 0;
+            int cttsRemaining = null != cttsCounts && cttsCounts.length > 0 ? cttsCounts[0] : 0;
+            for (int sample = 0; sample < sampleCount && next < count; sample++) {
+
+                // Find the composition offset of the sample.
+                while (cttsRemaining == 0 && null != cttsCounts
+                        && cttsEntry + 1 < cttsCounts.length) {
+                    cttsEntry++;
+                    cttsRemaining = cttsCounts[cttsEntry];
+                }
+                long compositionOffset = 0;
+                if (cttsRemaining > 0) {
+                    compositionOffset = cttsOffsets[cttsEntry];
+                    cttsRemaining--;
+                }
+
+                boolean isSync = true;
+                if (null != syncSamples) {
+
+                    // The table is in ascending order; entries out of order are skipped.
+                    while (syncEntry < count && syncSamples[syncEntry] - 1 < sample) {
+                        syncEntry++;
+                    }
+                    isSync = syncEntry < count && syncSamples[syncEntry] - 1 == sample;
+                }
+                if (isSync) {
+                    long mediaTime = sampleTime + compositionOffset - editMediaTime;
+                    // Round up: a player seeks to the sync sample at or before the given
+                    // time, hence a time just before the key frame would land a GOP early.
+                    times[next++] = Math.max(0, startMs + ceilDiv(mediaTime * 1000, timescale));
+                }
+
+                // Advance the sample clock using the time-to-sample table.
+                while (sttsRemaining == 0 && sttsEntry + 1 < sttsCounts.length) {
+                    sttsEntry++;
+                    sttsRemaining = sttsCounts[sttsEntry];
+                }
+                if (sttsRemaining > 0) {
+                    sampleTime += sttsDeltas[sttsEntry];
+                    sttsRemaining--;
+                }
+            }
+            if (next < times.length) {
+                times = Arrays.copyOf(times, next);
+            }
+
+            // Sync samples are in decoding order, which may differ from presentation order.
+            Arrays.sort(times);
+            return times;
+        }
+
+        /**
+         * Divide rounding towards positive infinity.
+         */
+        private static long ceilDiv(long dividend, long divisor) {
+            return dividend >= 0 ? (dividend + divisor - 1) / divisor : dividend / divisor;
+        }
+    }
+
+
+    /**
+     * Parse the index of an .mp4 file from the given file channel.
+     * <p/>
+     * The file may be embedded into a larger file (such as an uncompressed asset inside
+     * the .apk or an .obb expansion package), hence the start offset and length.
+     *
+     * @param channel The channel where to read from.
+     * @param start The offset where the .mp4 file begins in the channel.
+     * @param length The length of the .mp4 file, in bytes.
+     * @return the parsed index.
+     * @throws IOException if reading fails or the file is not a valid .mp4 file.
+     */
+    public static Mp4Index parse(FileChannel channel, long start, long length) throws IOException {
+        Mp4Index index = new Mp4Index();
+        ByteBuffer header = ByteBuffer.allocate(16);
+
+        // Walk the top-level boxes to find 'moov' and 'mdat'. Here we only read box headers.
+        long offset = 0;
+        while (offset + 8 <= length) {
+            header.clear();
+            readFully(channel, header, start + offset);
+            long size = header.getInt(0) & 0xFFFFFFFFL;
+            int type = header.getInt(4);
+            int headerSize = 8;
+            if (size == 1) {
+                size = header.getLong(8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = length - offset;
+            }
+            if (size < headerSize) {
+                throw new IOException("Invalid box size " + size + " at offset " + offset);
+            }
+
+            if (type == fourCC("moov")) {
+                index.mMoovOffset = offset;
+                index.mMoovSize = size;
+            } else if (type == fourCC("mdat")) {
+                index.mMdatOffset = offset;
+            }
+            offset += size;
+        }
+
+        if (index.mMoovOffset < 0) {
+            throw new IOException("No 'moov' box found");
+        }
+        if (index.mMoovSize > MAX_MOOV_SIZE) {
+            throw new IOException("Too large 'moov' box: " + index.mMoovSize);
+        }
+
+        // Read the whole 'moov' box into memory and parse its contents.
+        ByteBuffer moov = ByteBuffer.allocate((int) index.mMoovSize);
+        readFully(channel, moov, start + index.mMoovOffset);
+        moov.flip();
+        index.parseContainer(moov, 8, moov.limit(), null);
+
+        return index;
+    }
+
+    /**
+     * Get the file offset where the 'moov' box begins.
+     *
+     * @return the offset, relative to the beginning of the .mp4 file.
+     */
+    public long getMoovOffset() {
+        return mMoovOffset;
+    }
+
+    /**
+     * Get the size of the 'moov' box.
+     *
+     * @return the size, in bytes.
+     */
+    public long getMoovSize() {
+        return mMoovSize;
+    }
+
+    /**
+     * Tells whether the 'moov' box is located before the media data ('fast start' layout).
+     *
+     * @return true if 'moov' is before 'mdat', else false.
+     */
+    public boolean isFastStart() {
+        return mMdatOffset < 0 || mMoovOffset < mMdatOffset;
+    }
+
+    /**
+     * Get the tracks that were found from the file.
+     *
+     * @return the list of tracks.
+     */
+    public List<Track> getTracks() {
+        return mTracks;
+    }
+
+    /**
+     * Get the first video track.
+     *
+     * @return the track, or null if there is no video track.
+     */
+    public Track getVideoTrack() {
+        for (Track track : mTracks) {
+            if ("vide".equals(track.handlerType)) return track;
+        }
+        return null;
+    }
+
+    /**
+     * Parse the index of an .mp4 file.
+     *
+     * @param file The file.
+     * @return the parsed index.
+     * @throws IOException if reading fails or the file is not a valid .mp4 file.
+     */
+    public static Mp4Index parse(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            return parse(channel, 0, channel.size());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Get the byte ranges that contain the samples of all tracks within the given time
+     * window from the beginning of the media timeline.
+     * <p/>
+     * Ranges that are closer to each other than the given gap are merged, since reading
+     * a small gap is cheaper than issuing another read.
+     *
+     * @param durationMs The length of the time window, in milliseconds.
+     * @param mergeGap Ranges closer than this many bytes are merged together.
+     * @return the ranges as a flat array of [offset, length] pairs, sorted by offset.
+     */
+    public long [] getSampleRanges(long durationMs, long mergeGap) {
+        long [] ranges = new long[64];
+        int count = 0;
+
+        for (Track track : mTracks) {
+            if (track.timescale <= 0) continue;
+            long endTime = durationMs * track.timescale / 1000;
+
+            int sample = 0;
+            long sampleTime = 0;
+            int sttsEntry = 0;
+            int sttsRemaining = track.sttsCounts.length > 0 ? track.sttsCounts[0] : 0;
+
+            // Walk chunks in order; samples of a chunk are stored contiguously.
+            int chunkCount = track.chunkOffsets.length;
+            int stscEntry = 0;
+            for (int chunk = 0; chunk < chunkCount && sample < track.sampleCount
+                    && sampleTime < endTime; chunk++) {
+                while (stscEntry + 1 < track.stscFirstChunk.length
+                        && track.stscFirstChunk[stscEntry + 1] - 1 <= chunk) {
+                    stscEntry++;
+                }
+                if (track.stscSamplesPerChunk.length == 0) break;
+                int samplesInChunk = track.stscSamplesPerChunk[stscEntry];
+
+                long chunkOffset = track.chunkOffsets[chunk];
+                long chunkLength = 0;
+                for (int i = 0; i < samplesInChunk && sample < track.sampleCount
+                        && sampleTime < endTime; i++) {
+                    chunkLength += track.getSampleSize(sample);
+                    sample++;
+
+                    // Advance the sample clock using the time-to-sample table.
+                    while (sttsRemaining == 0 && sttsEntry + 1 < track.sttsCounts.length) {
+                        sttsEntry++;
+                        sttsRemaining = track.sttsCounts[sttsEntry];
+                    }
+                    if (sttsRemaining > 0) {
+                        sampleTime += track.sttsDeltas[sttsEntry];
+                        sttsRemaining--;
+                    }
+                }
+
+                if (chunkLength > 0) {
+                    if (count + 2 > ranges.length) {
+                        ranges = Arrays.copyOf(ranges, ranges.length * 2);
+                    }
+                    ranges[count++] = chunkOffset;
+                    ranges[count++] = chunkLength;
+                }
+            }
+        }
+
+        return mergeRanges(Arrays.copyOf(ranges, count), mergeGap);
+    }
+
+    /**
+     * Sort and merge a flat array of [offset, length] pairs.
+     *
+     * @param ranges The ranges to be merged.
+     * @param mergeGap Ranges closer than this many bytes are merged together.
+     * @return the merged ranges.
+     */
+    static long [] mergeRanges(long [] ranges, long mergeGap) {
+        int pairs = ranges.length / 2;
+        if (pairs == 0) return ranges;
+
+        // Sort the pairs by offset (simple insertion sort, the input is nearly sorted).
+        for (int i = 1; i < pairs; i++) {
+            long offset = ranges[2 * i];
+            long length = ranges[2 * i + 1];
+            int j = i - 1;
+            while (j >= 0 && ranges[2 * j] > offset) {
+                ranges[2 * j + 2] = ranges[2 * j];
+                ranges[2 * j + 3] = ranges[2 * j + 1];
+                j--;
+            }
+            ranges[2 * j + 2] = offset;
+            ranges[2 * j + 3] = length;
+        }
+
+        int out = 0;
+        for (int i = 1; i < pairs; i++) {
+            long end = ranges[2 * out] + ranges[2 * out + 1];
+            long offset = ranges[2 * i];
+            long length = ranges[2 * i + 1];
+            if (offset <= end + mergeGap) {
+                ranges[2 * out + 1] = Math.max(end, offset + length) - ranges[2 * out];
+            } else {
+                out++;
+                ranges[2 * out] = offset;
+                ranges[2 * out + 1] = length;
+            }
+        }
+        return Arrays.copyOf(ranges, 2 * (out + 1));
+    }
+
+    /**
+     * Parse the child boxes of a container box.
+     *
+     * @param buffer The buffer that contains the 'moov' box.
+     * @param begin The position where the children begin.
+     * @param end The position where the children end.
+     * @param track The track that is currently being parsed, or null if none.
+     * @throws IOException if the box structure is invalid.
+     */
+    private void parseContainer(ByteBuffer buffer, int begin, int end, Track track)
+            throws IOException {
+        int position = begin;
+        while (position + 8 <= end) {
+            long size = buffer.getInt(position) & 0xFFFFFFFFL;
+            int type = buffer.getInt(position + 4);
+            int headerSize = 8;
+            if (size == 1) {
+                if (position + 16 > end) {
+                    throw new IOException("Truncated box header inside 'moov'");
+                }
+                size = buffer.getLong(position + 8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - position;
+            }
+            if (size < headerSize || size > end - position) {
+                throw new IOException("Invalid box size " + size + " inside 'moov'");
+            }
+            int body = position + headerSize;
+            int boxEnd = (int) (position + size);
+
+            if (type == fourCC("trak")) {
+                Track newTrack = new Track();
+                newTrack.movieTimescale = mMovieTimescale;
+                parseContainer(buffer, body, boxEnd, newTrack);
+                mTracks.add(newTrack);
+            } else if (type == fourCC("mdia") || type == fourCC("minf")
+                    || type == fourCC("stbl") || type == fourCC("edts")) {
+                parseContainer(buffer, body, boxEnd, track);
+            } else if (type == fourCC("mvhd") && null == track) {
+                mMovieTimescale = readTimescale(buffer, type, body, boxEnd);
+            } else if (null != track) {
+                parseTrackBox(buffer, type, body, boxEnd, track);
+            }
+            position = boxEnd;
+        }
+    }
+
+    /**
+     * Parse a leaf box that belongs to a track.
+     * <p/>
+     * Every field and table is checked against the end of the box before it is read, and
+     * every entry count against the bytes that remain in the box before anything is allocated
+     * for it, so a corrupted file fails with an IOException instead of a buffer underflow or
+     * a huge allocation.
+     *
+     * @param buffer The buffer that contains the 'moov' box.
+     * @param type The type of the box as a four character code.
+     * @param body The position where the box body begins (the full box version byte).
+     * @param end The position where the box ends.
+     * @param track The track where to store the parsed data.
+     * @throws IOException if the box is truncated or its entry counts do not fit in it.
+     */
+    private void parseTrackBox(ByteBuffer buffer, int type, int body, int end, Track track)
+            throws IOException {
+        int p = body + 4; // Skip version and flags.
+
+        if (type == fourCC("mdhd")) {
+            track.timescale = readTimescale(buffer, type, body, end);
+        } else if (type == fourCC("hdlr")) {
+            checkRemaining(type, p, 8, end);
+            track.handlerType = fourCCToString(buffer.getInt(p + 4));
+        } else if (type == fourCC("stts")) {
+            int count = readEntryCount(buffer, type, p, 8, end);
+            track.sttsCounts = new int[count];
+            track.sttsDeltas = new int[count];
+            for (int i = 0; i < count; i++) {
+                track.sttsCounts[i] = buffer.getInt(p + 4 + 8 * i);
+                track.sttsDeltas[i] = buffer.getInt(p + 8 + 8 * i);
+            }
+        } else if (type == fourCC("stsc")) {
+            int count = readEntryCount(buffer, type, p, 12, end);
+            track.stscFirstChunk = new int[count];
+            track.stscSamplesPerChunk = new int[count];
+            for (int i = 0; i < count; i++) {
+                track.stscFirstChunk[i] = buffer.getInt(p + 4 + 12 * i);
+                track.stscSamplesPerChunk[i] = buffer.getInt(p + 8 + 12 * i);
+            }
+        } else if (type == fourCC("stsz")) {
+            checkRemaining(type, p, 4, end);
+            track.constantSampleSize = buffer.getInt(p);
+            track.sampleCount = readEntryCount(buffer, type, p + 4,
+                    track.constantSampleSize == 0 ? 4 : 0, end);
+            if (track.constantSampleSize == 0) {
+                track.sampleSizes = new int[track.sampleCount];
+                for (int i = 0; i < track.sampleCount; i++) {
+                    track.sampleSizes[i] = buffer.getInt(p + 8 + 4 * i);
+                }
+            }
+        } else if (type == fourCC("stz2")) {
+            checkRemaining(type, p, 8, end);
+            int fieldSize = buffer.get(p + 3) & 0xFF;
+            int count = buffer.getInt(p + 4);
+            if (fieldSize != 4 && fieldSize != 8 && fieldSize != 16) {
+                throw new IOException("Invalid field size " + fieldSize + " in 'stz2'");
+            }
+            if (count < 0 || ((long) count * fieldSize + 7) / 8 > end - (p + 8)) {
+                throw new IOException("Invalid entry count " + (count & 0xFFFFFFFFL)
+                        + " in 'stz2'");
+            }
+            track.sampleCount = count;
+            track.sampleSizes = new int[track.sampleCount];
+            for (int i = 0; i < track.sampleCount; i++) {
+                if (fieldSize == 4) {
+                    int b = buffer.get(p + 8 + i / 2) & 0xFF;
+                    track.sampleSizes[i] = (i % 2 == 0) ? (b >> 4) : (b & 0x0F);
+                } else if (fieldSize == 8) {
+                    track.sampleSizes[i] = buffer.get(p + 8 + i) & 0xFF;
+                } else {
+                    track.sampleSizes[i] = buffer.getShort(p + 8 + 2 * i) & 0xFFFF;
+                }
+            }
+        } else if (type == fourCC("stss")) {
+            int count = readEntryCount(buffer, type, p, 4, end);
+            track.syncSamples = new int[count];
+            for (int i = 0; i < count; i++) {
+                track.syncSamples[i] = buffer.getInt(p + 4 + 4 * i);
+            }
+        } else if (type == fourCC("ctts")) {
+            int count = readEntryCount(buffer, type, p, 8, end);
+            track.cttsCounts = new int[count];
+            track.cttsOffsets = new int[count];
+            for (int i = 0; i < count; i++) {
+                track.cttsCounts[i] = buffer.getInt(p + 4 + 8 * i);
+
+                // Version 0 offsets are unsigned, but writers use them as signed, as in
+                // version 1, and no real offset is large enough for the difference to matter.
+                track.cttsOffsets[i] = buffer.getInt(p + 8 + 8 * i);
+            }
+        } else if (type == fourCC("elst")) {
+            checkRemaining(type, body, 4, end);
+            boolean isVersion1 = (buffer.get(body) & 0xFF) == 1;
+            int entrySize = isVersion1 ? 20 : 12;
+            int count = readEntryCount(buffer, type, p, entrySize, end);
+            track.editStartTime = 0;
+            track.editMediaTime = 0;
+            for (int i = 0; i < count; i++) {
+                int entry = p + 4 + entrySize * i;
+                long duration = isVersion1 ? buffer.getLong(entry)
+                        : buffer.getInt(entry) & 0xFFFFFFFFL;
+                long mediaTime = isVersion1 ? buffer.getLong(entry + 8)
+                        : buffer.getInt(entry + 4);
+                if (mediaTime != -1) {
+                    track.editMediaTime = mediaTime;
+                    break;
+                }
+
+                // An empty edit delays the presentation of the track.
+                track.editStartTime += duration;
+            }
+        } else if (type == fourCC("stco")) {
+            int count = readEntryCount(buffer, type, p, 4, end);
+            track.chunkOffsets = new long[count];
+            for (int i = 0; i < count; i++) {
+                track.chunkOffsets[i] = buffer.getInt(p + 4 + 4 * i) & 0xFFFFFFFFL;
+            }
+        } else if (type == fourCC("co64")) {
+            int count = readEntryCount(buffer, type, p, 8, end);
+            track.chunkOffsets = new long[count];
+            for (int i = 0; i < count; i++) {
+                track.chunkOffsets[i] = buffer.getLong(p + 4 + 8 * i);
+            }
+        }
+    }
+
+    /**
+     * Read the timescale of a movie header ('mvhd') or media header ('mdhd') box.
+     *
+     * @param buffer The buffer that contains the 'moov' box.
+     * @param type The type of the box.
+     * @param body The position where the box body begins (the full box version byte).
+     * @param end The position where the box ends.
+     * @return the timescale, in time units per second.
+     * @throws IOException if the box is truncated.
+     */
+    private static long readTimescale(ByteBuffer buffer, int type, int body, int end)
+            throws IOException {
+        checkRemaining(type, body, 4, end);
+        int version = buffer.get(body) & 0xFF;
+
+        // Skip version, flags, and creation and modification times.
+        int p = body + 4 + ((version == 1) ? 16 : 8);
+        checkRemaining(type, p, 4, end);
+        return buffer.getInt(p) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Check that a field fits in the rest of a box.
+     *
+     * @param type The type of the box, for the error message.
+     * @param position The position where the field begins.
+     * @param size The size of the field, in bytes.
+     * @param end The position where the box ends.
+     * @throws IOException if the field extends beyond the end of the box.
+     */
+    private static void checkRemaining(int type, int position, int size, int end)
+            throws IOException {
+        if (size > end - position) {
+            throw new IOException("Truncated '" + fourCCToString(type) + "' box");
+        }
+    }
+
+    /**
+     * Read the entry count of a table, and check that the entries fit in the rest of the box.
+     *
+     * @param buffer The buffer that contains the 'moov' box.
+     * @param type The type of the box, for the error message.
+     * @param position The position of the 32-bit entry count, followed by the entries.
+     * @param entrySize The size of an entry, in bytes.
+     * @param end The position where the box ends.
+     * @return the entry count.
+     * @throws IOException if the count is negative, or the entries extend beyond the box.
+     */
+    private static int readEntryCount(ByteBuffer buffer, int type, int position, int entrySize,
+                                      int end) throws IOException {
+        checkRemaining(type, position, 4, end);
+        int count = buffer.getInt(position);
+        if (count < 0 || (long) count * entrySize > end - (position + 4)) {
+            throw new IOException("Invalid entry count " + (count & 0xFFFFFFFFL) + " in '"
+                    + fourCCToString(type) + "'");
+        }
+        return count;
+    }
+
+    /**
+     * Read from the channel until the buffer is full, or end of file is reached.
+     *
+     * @param channel The channel where to read from.
+     * @param buffer The buffer where to read to.
+     * @param position The channel position where to start reading.
+     * @throws IOException if reading fails.
+     */
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) break;
+            position += read;
+        }
+    }
+
+    /**
+     * Convert a four character code to an integer, as it appears in the file.
+     *
+     * @param code The four character code, such as "moov".
+     * @return the code as a big-endian integer.
+     */
+    static int fourCC(String code) {
+        return (code.charAt(0) << 24) | (code.charAt(1) << 16)
+                | (code.charAt(2) << 8) | code.charAt(3);
+    }
+
+    /**
+     * Convert an integer to a four character code.
+     *
+     * @param code The code as a big-endian integer.
+     * @return the four character code, such as "moov".
+     */
+    static String fourCCToString(int code) {
+        return new String(new char [] {
+                (char) ((code >> 24) & 0xFF), (char) ((code >> 16) & 0xFF),
+                (char) ((code >> 8) & 0xFF), (char) (code & 0xFF) });
+    }
+}
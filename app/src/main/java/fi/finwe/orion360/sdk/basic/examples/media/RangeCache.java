@@ -0,0 +1,649 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.media;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * A sparse on-disk cache of byte ranges of remote resources, such as video streams.
+ * <p/>
+ * A video player does not read a stream from beginning to end: it reads the index, jumps to
+ * where playback starts, and jumps again on each seek. Hence each resource is cached as a
+ * sparse data file, where fetched bytes are written at their own offsets, and an index file
+ * that lists the byte ranges that are present. A later read of a cached range is served from
+ * disk, and only the gaps need to be fetched again.
+ * <p/>
+ * The total size of the cached bytes is capped; when the cap is exceeded, resources are
+ * evicted as a whole, least recently used first. Resources that are open are never evicted.
+ * The index of a resource is written when it is closed, after its data; if the application
+ * dies before that, the cache only forgets ranges that it has, and never claims ranges that
+ * it does not have.
+ * <p/>
+ * The cache is thread safe, and an open resource can be read and written from several
+ * threads, such as two connections of a video player.
+ * <p/>
+ * This class has no Android dependencies and can be tested on a desktop JVM.
+ */
+public class RangeCache {
+
+    /** Tag for logging. */
+    public static final String TAG = RangeCache.class.getSimpleName();
+
+    /** Length of a resource that is not yet known. */
+    public static final long UNKNOWN_LENGTH = -1;
+
+    /** Suffix of data files. */
+    private static final String DATA_SUFFIX = ".data";
+
+    /** Suffix of index files. */
+    private static final String INDEX_SUFFIX = ".index";
+
+    /** Identifies index files, and their version. */
+    private static final int INDEX_MAGIC = 0x4f524331;
+
+    /** The directory of the cache files. */
+    private final File mDirectory;
+
+    /** The maximum total size of the cached bytes. */
+    private final long mMaxSize;
+
+    /** The resources by key, in least recently used order. */
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** The current total size of the cached bytes. */
+    private long mSize = 0;
+
+    /** The time of the latest access. */
+    private long mLastAccess = 0;
+
+    /** Flag for indicating if the cache directory has been loaded, or not. */
+    private boolean mLoaded = false;
+
+
+    /**
+     * A cached resource. Obtain with {@link #open(String)}, and close when done.
+     */
+    public static class Entry {
+
+        /** The cache. */
+        private final RangeCache mCache;
+
+        /** The key of the resource, typically its URL. */
+        private final String mKey;
+
+        /** The base name of the files of the resource. */
+        private final String mName;
+
+        /** The length of the resource, or UNKNOWN_LENGTH. */
+        private long mLength = UNKNOWN_LENGTH;
+
+        /** The content type of the resource, or null. */
+        private String mContentType;
+
+        /** The cached ranges as sorted, disjoint [start, end) pairs. */
+        private long [] mRanges = new long[8];
+
+        /** The number of values in mRanges, two per range. */
+        private int mRangeCount = 0;
+
+        /** The number of cached bytes. */
+        private long mCachedBytes = 0;
+
+        /** Time of the last access, for ordering the entries on load. Guarded by the cache. */
+        private long mLastAccess;
+
+        /** The data file while the entry is open, else null. Guarded by the cache. */
+        private RandomAccessFile mFile;
+
+        /** The number of open handles. Guarded by the cache. */
+        private int mOpenCount = 0;
+
+        /** Flag for indicating if the index needs to be written, or not. */
+        private boolean mDirty = false;
+
+        /**
+         * Constructor.
+         *
+         * @param cache The cache.
+         * @param key The key of the resource.
+         * @param name The base name of the files.
+         */
+        Entry(RangeCache cache, String key, String name) {
+            mCache = cache;
+            mKey = key;
+            mName = name;
+        }
+
+        /**
+         * Get the key of the resource.
+         *
+         * @return the key.
+         */
+        public String getKey() {
+            return mKey;
+        }
+
+        /**
+         * Get the length of the resource.
+         *
+         * @return the length in bytes, or UNKNOWN_LENGTH.
+         */
+        public synchronized long getLength() {
+            return mLength;
+        }
+
+        /**
+         * Get the content type of the resource.
+         *
+         * @return the content type, or null if not known.
+         */
+        public synchronized String getContentType() {
+            return mContentType;
+        }
+
+        /**
+         * Set the length and the content type of the resource, as reported by its origin.
+         * If the length differs from a previously known one, the resource has changed and
+         * the cached ranges are discarded, and the index file is deleted right away so that
+         * the old ranges are not used if the application dies before the resource is closed.
+         *
+         * @param length The length in bytes.
+         * @param contentType The content type, or null.
+         */
+        public void setInfo(long length, String contentType) {
+            long discarded = 0;
+            synchronized (this) {
+                if (mLength != UNKNOWN_LENGTH && mLength != length) {
+                    discarded = mCachedBytes;
+                    mRangeCount = 0;
+                    mCachedBytes = 0;
+                    mCache.deleteIndex(this);
+                }
+                mLength = length;
+                if (null != contentType) {
+                    mContentType = contentType;
+                }
+                mDirty = true;
+            }
+            if (discarded > 0) {
+                mCache.onCachedBytesChanged(-discarded);
+            }
+        }
+
+        /**
+         * Get the number of bytes that are cached contiguously from a position.
+         *
+         * @param position The position.
+         * @return the number of bytes, 0 if the position is not cached.
+         */
+        public synchronized long getCachedLength(long position) {
+            int i = findRange(position);
+            return i >= 0 ? mRanges[i + 1] - position : 0;
+        }
+
+        /**
+         * Get the start of the first cached range after a position.
+         *
+         * @param position The position.
+         * @return the start of the next cached range, or Long.MAX_VALUE if there is none.
+         */
+        public synchronized long getNextCachedPosition(long position) {
+            for (int i = 0; i < mRangeCount; i += 2) {
+                if (mRanges[i] > position) return mRanges[i];
+            }
+            return Long.MAX_VALUE;
+        }
+
+        /**
+         * Get the number of cached bytes of the resource.
+         *
+         * @return the number of bytes.
+         */
+        public synchronized long getCachedBytes() {
+            return mCachedBytes;
+        }
+
+        /**
+         * Read cached bytes. Reads only from the cached range that contains the position.
+         *
+         * @param position The position.
+         * @param buffer The buffer to read to.
+         * @param offset The offset in the buffer.
+         * @param length The maximum number of bytes to read.
+         * @return the number of bytes read, 0 if the position is not cached.
+         * @throws IOException If the data file cannot be read.
+         */
+        public synchronized int read(long position, byte [] buffer, int offset, int length)
+                throws IOException {
+            checkOpen();
+            int count = (int) Math.min(length, getCachedLength(position));
+            if (count <= 0) return 0;
+            mFile.seek(position);
+            mFile.readFully(buffer, offset, count);
+            return count;
+        }
+
+        /**
+         * Write bytes to the cache. May evict other resources to stay within the size cap.
+         *
+         * @param position The position of the bytes in the resource.
+         * @param buffer The buffer to write from.
+         * @param offset The offset in the buffer.
+         * @param length The number of bytes to write.
+         * @throws IOException If the data file cannot be written.
+         */
+        public void write(long position, byte [] buffer, int offset, int length)
+                throws IOException {
+            if (length <= 0) return;
+            long added;
+            synchronized (this) {
+                checkOpen();
+                mFile.seek(position);
+                mFile.write(buffer, offset, length);
+                added = addRange(position, position + length);
+                mDirty = true;
+            }
+            if (added > 0) {
+                mCache.onCachedBytesChanged(added);
+            }
+        }
+
+        /**
+         * Close this handle of the resource. When the last handle is closed, the index of the
+         * resource is written and the resource can be evicted.
+         */
+        public void close() {
+            mCache.close(this);
+        }
+
+        /**
+         * Throw if the entry is not open.
+         */
+        private void checkOpen() throws IOException {
+            if (null == mFile) {
+                throw new IOException("Cache entry is closed: " + mKey);
+            }
+        }
+
+        /**
+         * Find the cached range that contains a position.
+         *
+         * @return the index of the range in mRanges, or -1.
+         */
+        private int findRange(long position) {
+            int low = 0;
+            int high = mRangeCount / 2 - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (mRanges[2 * mid + 1] <= position) {
+                    low = mid + 1;
+                } else if (mRanges[2 * mid] > position) {
+                    high = mid - 1;
+                } else {
+                    return 2 * mid;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Add a range to the cached ranges, merging it with the ranges it overlaps or touches.
+         *
+         * @return the number of bytes that were not cached before.
+         */
+        long addRange(long start, long end) {
+
+            // Find the ranges that overlap or touch [start, end).
+            int first = 0;
+            while (first < mRangeCount && mRanges[first + 1] < start) first += 2;
+            int last = first;
+            long covered = 0;
+            while (last < mRangeCount && mRanges[last] <= end) {
+                covered += Math.min(end, mRanges[last + 1]) - Math.max(start, mRanges[last]);
+                last += 2;
+            }
+            long added = end - start - Math.max(0, covered);
+            if (last > first) {
+                start = Math.min(start, mRanges[first]);
+                end = Math.max(end, mRanges[last - 1]);
+            }
+
+            // Replace them with the merged range.
+            int removed = last - first;
+            int count = mRangeCount - removed + 2;
+            if (count > mRanges.length) {
+                mRanges = Arrays.copyOf(mRanges, Math.max(count, 2 * mRanges.length));
+            }
+            System.arraycopy(mRanges, last, mRanges, first + 2, mRangeCount - last);
+            mRanges[first] = start;
+            mRanges[first + 1] = end;
+            mRangeCount = count;
+            mCachedBytes += added;
+            return added;
+        }
+
+        /**
+         * Get the number of cached ranges.
+         *
+         * @return the number of ranges.
+         */
+        synchronized int getRangeCount() {
+            return mRangeCount / 2;
+        }
+
+        /**
+         * Write the index file of the resource.
+         */
+        synchronized void writeIndex(File file) throws IOException {
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+            try {
+                out.writeInt(INDEX_MAGIC);
+                out.writeUTF(mKey);
+                out.writeLong(mLength);
+                out.writeUTF(null != mContentType ? mContentType : "");
+                out.writeLong(mLastAccess);
+                out.writeInt(mRangeCount);
+                for (int i = 0; i < mRangeCount; i++) {
+                    out.writeLong(mRanges[i]);
+                }
+            } finally {
+                out.close();
+            }
+            mDirty = false;
+        }
+
+        /**
+         * Read the index file of a resource.
+         *
+         * @return the entry.
+         */
+        static Entry readIndex(RangeCache cache, File file, String name) throws IOException {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                if (in.readInt() != INDEX_MAGIC) {
+                    throw new IOException("Not a cache index: " + file);
+                }
+                Entry entry = new Entry(cache, in.readUTF(), name);
+                entry.mLength = in.readLong();
+                String contentType = in.readUTF();
+                entry.mContentType = contentType.isEmpty() ? null : contentType;
+                entry.mLastAccess = in.readLong();
+                int count = in.readInt();
+                if (count < 0 || count % 2 != 0) {
+                    throw new IOException("Corrupted cache index: " + file);
+                }
+                for (int i = 0; i < count; i += 2) {
+                    entry.addRange(in.readLong(), in.readLong());
+                }
+                return entry;
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+
+    /**
+     * Constructor. The directory is loaded on first use.
+     *
+     * @param directory The directory of the cache files; created if it does not exist.
+     * @param maxSize The maximum total size of the cached bytes.
+     */
+    public RangeCache(File directory, long maxSize) {
+        mDirectory = directory;
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Open a resource, creating an empty entry for it if it is not cached.
+     *
+     * @param key The key of the resource, typically its URL.
+     * @return the entry, to be closed when done.
+     * @throws IOException If the data file cannot be opened.
+     */
+    public synchronized Entry open(String key) throws IOException {
+        load();
+        Entry entry = mEntries.get(key);
+        if (null == entry) {
+            entry = new Entry(this, key, getName(key));
+            mEntries.put(key, entry);
+        }
+        if (entry.mOpenCount == 0) {
+            entry.mFile = new RandomAccessFile(new File(mDirectory, entry.mName + DATA_SUFFIX),
+                    "rw");
+        }
+        entry.mOpenCount++;
+
+        // Access times are kept unique, for keeping the order when loaded.
+        mLastAccess = Math.max(System.currentTimeMillis(), mLastAccess + 1);
+        entry.mLastAccess = mLastAccess;
+        entry.mDirty = true;
+        return entry;
+    }
+
+    /**
+     * Get the total size of the cached bytes.
+     *
+     * @return the size in bytes.
+     */
+    public synchronized long getSize() {
+        load();
+        return mSize;
+    }
+
+    /**
+     * Get the maximum total size of the cached bytes.
+     *
+     * @return the size in bytes.
+     */
+    public long getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Tells whether a resource is in the cache, with or without cached bytes.
+     *
+     * @param key The key of the resource.
+     * @return true if the resource is in the cache, else false.
+     */
+    public synchronized boolean contains(String key) {
+        load();
+        return mEntries.containsKey(key);
+    }
+
+    /**
+     * Remove all resources that are not open.
+     */
+    public synchronized void clear() {
+        load();
+        trim(0);
+    }
+
+    /**
+     * Close a handle of a resource.
+     */
+    synchronized void close(Entry entry) {
+        if (entry.mOpenCount == 0) return;
+        if (--entry.mOpenCount > 0) return;
+        try {
+            entry.mFile.close();
+        } catch (IOException e) {
+            // Ignored, the data was already written.
+        }
+        entry.mFile = null;
+        if (mEntries.get(entry.mKey) == entry && entry.mDirty) {
+            try {
+                entry.writeIndex(new File(mDirectory, entry.mName + INDEX_SUFFIX));
+            } catch (IOException e) {
+                // Without an index, the data is not used.
+                remove(entry);
+            }
+        }
+        trim(mMaxSize);
+    }
+
+    /**
+     * Account for a change in the number of cached bytes, and evict if needed.
+     */
+    synchronized void onCachedBytesChanged(long delta) {
+        mSize += delta;
+        if (mSize > mMaxSize) {
+            trim(mMaxSize);
+        }
+    }
+
+    /**
+     * Evict resources that are not open, least recently used first, until the total size
+     * is within the given size.
+     */
+    private void trim(long maxSize) {
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while (mSize > maxSize && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.mOpenCount > 0) continue;
+            iterator.remove();
+            deleteFiles(entry);
+            mSize -= entry.getCachedBytes();
+        }
+    }
+
+    /**
+     * Remove a resource that is not open.
+     */
+    private void remove(Entry entry) {
+        mEntries.remove(entry.mKey);
+        deleteFiles(entry);
+        mSize -= entry.getCachedBytes();
+    }
+
+    /**
+     * Delete the index file of a resource.
+     */
+    void deleteIndex(Entry entry) {
+        new File(mDirectory, entry.mName + INDEX_SUFFIX).delete();
+    }
+
+    /**
+     * Delete the files of a resource.
+     */
+    private void deleteFiles(Entry entry) {
+        new File(mDirectory, entry.mName + DATA_SUFFIX).delete();
+        deleteIndex(entry);
+    }
+
+    /**
+     * Load the index files of the cache directory, in least recently used order. Files that
+     * cannot be read are deleted.
+     */
+    private void load() {
+        if (mLoaded) return;
+        mLoaded = true;
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            return;
+        }
+        File [] files = mDirectory.listFiles();
+        if (null == files) return;
+        List<Entry> entries = new ArrayList<>();
+        for (File file : files) {
+            String fileName = file.getName();
+            if (!fileName.endsWith(INDEX_SUFFIX)) continue;
+            String name = fileName.substring(0, fileName.length() - INDEX_SUFFIX.length());
+            File data = new File(mDirectory, name + DATA_SUFFIX);
+            try {
+                Entry entry = Entry.readIndex(this, file, name);
+                if (!data.isFile() || !name.equals(getName(entry.mKey))) {
+                    throw new IOException("Missing cache data: " + data);
+                }
+                entries.add(entry);
+            } catch (IOException e) {
+                file.delete();
+                data.delete();
+            }
+        }
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                return a.mLastAccess < b.mLastAccess ? -1 : a.mLastAccess > b.mLastAccess ? 1 : 0;
+            }
+        });
+        for (Entry entry : entries) {
+            mEntries.put(entry.mKey, entry);
+            mSize += entry.mCachedBytes;
+            mLastAccess = Math.max(mLastAccess, entry.mLastAccess);
+        }
+
+        // Data files without an index are left over from a crash.
+        for (File file : files) {
+            String fileName = file.getName();
+            if (fileName.endsWith(DATA_SUFFIX) && !new File(mDirectory, fileName.substring(0,
+                    fileName.length() - DATA_SUFFIX.length()) + INDEX_SUFFIX).isFile()) {
+                file.delete();
+            }
+        }
+        trim(mMaxSize);
+    }
+
+    /**
+     * Get the base name of the files of a resource.
+     *
+     * @param key The key of the resource.
+     * @return a name that is safe to use as a file name.
+     */
+    static String getName(String key) {
+        try {
+            byte [] digest = MessageDigest.getInstance("SHA-1").digest(
+                    key.getBytes(Charset.forName("UTF-8")));
+            StringBuilder name = new StringBuilder(2 * digest.length);
+            for (byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16));
+                name.append(Character.forDigit(b & 0xf, 16));
+            }
+            return name.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
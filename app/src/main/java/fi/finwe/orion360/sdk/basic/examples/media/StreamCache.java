@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.media;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Provides the shared {@link CachingProxy} of the application, for caching network streams
+ * on disk.
+ * <p/>
+ * Pass the URL of a stream through {@link #getProxyUrl(Context, String)} before giving it to
+ * OrionVideoView.prepare(). The first playback fetches the stream from the network as usual,
+ * and repeated playbacks are served from the cache in the application's cache directory.
+ * Other URLs, such as local files, are returned as they are.
+ * <p/>
+ * Since the player talks to the proxy over plain http, the network security configuration of
+ * the application permits cleartext traffic to the loopback address.
+ */
+public class StreamCache {
+
+    /** Tag for logging. */
+    public static final String TAG = StreamCache.class.getSimpleName();
+
+    /** The maximum total size of the cached streams, in bytes. */
+    public static final long DEFAULT_MAX_SIZE = 256 * 1024 * 1024;
+
+    /** The name of the cache directory, under the application's cache directory. */
+    private static final String DIRECTORY_NAME = "streams";
+
+    /** The shared proxy. */
+    private static CachingProxy sProxy;
+
+
+    /** Not instantiated. */
+    private StreamCache() {}
+
+    /**
+     * Get the proxy URL of a stream, starting the proxy on first use. If the proxy cannot be
+     * started, the stream is played directly from the network.
+     *
+     * @param context The context.
+     * @param url The URL of the stream.
+     * @return the URL to be given to the player.
+     */
+    public static synchronized String getProxyUrl(Context context, String url) {
+        if (null == sProxy) {
+            CachingProxy proxy = new CachingProxy(new RangeCache(
+                    new File(context.getCacheDir(), DIRECTORY_NAME), DEFAULT_MAX_SIZE),
+                    new CachingProxy.HttpOrigin());
+            try {
+                proxy.start();
+                sProxy = proxy;
+                Log.i(TAG, "Caching proxy listening on port " + proxy.getPort());
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to start caching proxy: " + e.getMessage());
+                return url;
+            }
+        }
+        Log.d(TAG, "Cache hits " + sProxy.getCacheBytes() / 1024 + " kB, misses "
+                + sProxy.getOriginBytes() / 1024 + " kB");
+        return sProxy.getUrl(url);
+    }
+}
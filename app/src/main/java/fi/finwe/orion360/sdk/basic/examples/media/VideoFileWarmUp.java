@@ -0,0 +1,260 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.media;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import fi.finwe.orion360.sdk.basic.examples.MainMenu;
+
+/**
+ * Warms up a local video file before it is prepared for playback.
+ * <p/>
+ * When a video player is prepared, the media framework first reads the index of the .mp4 file
+ * (the 'moov' box) and then the first group of pictures. On a cold start these reads go all the
+ * way to flash storage, and since the 'moov' box is often located at the very end of the file,
+ * the reads are small, random and slow. The time-to-first-frame then becomes dominated by
+ * storage rather than decoder initialization.
+ * <p/>
+ * This class parses the .mp4 index in a background thread and reads the 'moov' box and the
+ * first few seconds of sample data with large sequential reads, which brings them to the
+ * operating system's page cache. When the player is prepared right after, its reads are served
+ * from memory. The warm-up runs in parallel with view setup, and the caller decides how long
+ * it is willing to wait for it before calling prepare() anyway.
+ * <p/>
+ * Supported locations are plain file paths, file:// URIs, uncompressed assets, R.raw resources
+ * and content:// URIs (such as the expansion package provider). Network streams are ignored.
+ */
+public class VideoFileWarmUp {
+
+    /** Tag for logging. */
+    public static final String TAG = VideoFileWarmUp.class.getSimpleName();
+
+    /** Default length of the warm-up window from the beginning of the video, in ms. */
+    public static final long DEFAULT_WARM_UP_DURATION_MS = 3000;
+
+    /** Default maximum time to wait for the warm-up before preparing the video, in ms. */
+    public static final long DEFAULT_MAX_WAIT_MS = 500;
+
+    /** Read size for warming up sample data, in bytes. */
+    private static final int READ_BUFFER_SIZE = 256 * 1024;
+
+    /** Sample ranges closer than this are read with a single request, in bytes. */
+    private static final long MERGE_GAP = 64 * 1024;
+
+    /** Context for accessing assets, resources and content providers. */
+    private final Context mContext;
+
+    /** The path to the video to be warmed up. */
+    private final String mPath;
+
+    /** The length of the warm-up window from the beginning of the video, in ms. */
+    private final long mDurationMs;
+
+    /** Handler for posting the completion callback to the UI thread. */
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /** Runnable to be run on the UI thread when the warm-up is done (or waiting timed out). */
+    private Runnable mOnDone;
+
+    /** Flag for indicating if the warm-up has completed, or not. */
+    private boolean mIsDone = false;
+
+    /** Flag for indicating if the warm-up has been canceled, or not. */
+    private volatile boolean mIsCanceled = false;
+
+    /** Runnable that delivers the completion callback exactly once. */
+    private final Runnable mDeliverRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mHandler.removeCallbacks(this);
+            Runnable onDone = mOnDone;
+            mOnDone = null;
+            if (null != onDone && !mIsCanceled) {
+                onDone.run();
+            }
+        }
+    };
+
+
+    /**
+     * Constructor.
+     *
+     * @param context The context to be used for opening the video.
+     * @param path The path to the video file, as it would be given to OrionVideoView.prepare().
+     * @param durationMs The length of the warm-up window from the beginning of the video, in ms.
+     */
+    public VideoFileWarmUp(Context context, String path, long durationMs) {
+        mContext = context.getApplicationContext();
+        mPath = path;
+        mDurationMs = durationMs;
+    }
+
+    /**
+     * Start warming up the video file in a background thread.
+     *
+     * @return this instance, for chaining.
+     */
+    public VideoFileWarmUp start() {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                warmUp();
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mIsDone = true;
+                        mDeliverRunnable.run();
+                    }
+                });
+            }
+        }, TAG);
+        thread.start();
+        return this;
+    }
+
+    /**
+     * Run the given runnable on the UI thread when the warm-up is done, or when the given
+     * maximum waiting time has elapsed, whichever happens first. Must be called from
+     * the UI thread.
+     *
+     * @param onDone The runnable to be run, typically one that calls prepare().
+     * @param maxWaitMs The maximum time to wait for the warm-up, in ms.
+     */
+    public void runWhenDone(Runnable onDone, long maxWaitMs) {
+        mOnDone = onDone;
+        if (mIsDone) {
+            mDeliverRunnable.run();
+        } else {
+            mHandler.postDelayed(mDeliverRunnable, maxWaitMs);
+        }
+    }
+
+    /**
+     * Cancel the warm-up. Pending completion callback will not be run.
+     */
+    public void cancel() {
+        mIsCanceled = true;
+        mOnDone = null;
+        mHandler.removeCallbacks(mDeliverRunnable);
+    }
+
+    /**
+     * Read the index and the beginning of the video to the page cache.
+     */
+    private void warmUp() {
+        long startTime = SystemClock.elapsedRealtime();
+
+        AssetFileDescriptor afd = null;
+        FileInputStream in = null;
+        try {
+            long start = 0;
+            long length;
+            if (mPath.startsWith(MainMenu.PRIVATE_ASSET_FILES_PATH)) {
+                afd = mContext.getAssets().openFd(
+                        mPath.substring(MainMenu.PRIVATE_ASSET_FILES_PATH.length()));
+            } else if (mPath.startsWith("android.resource://")) {
+                String name = mPath.substring(mPath.lastIndexOf('/') + 1);
+                int resId = mContext.getResources().getIdentifier(name, "raw",
+                        mContext.getPackageName());
+                afd = mContext.getResources().openRawResourceFd(resId);
+            } else if (mPath.startsWith("content://")) {
+                afd = mContext.getContentResolver().openAssetFileDescriptor(
+                        Uri.parse(mPath), "r");
+            } else if (mPath.startsWith("http://") || mPath.startsWith("https://")) {
+                Log.d(TAG, "Network streams are not warmed up: " + mPath);
+                return;
+            }
+
+            if (null != afd) {
+                in = new FileInputStream(afd.getFileDescriptor());
+                start = afd.getStartOffset();
+                length = afd.getLength();
+            } else {
+                in = new FileInputStream(mPath.startsWith("file://") ?
+                        mPath.substring("file://".length()) : mPath);
+                length = AssetFileDescriptor.UNKNOWN_LENGTH;
+            }
+            FileChannel channel = in.getChannel();
+            if (length == AssetFileDescriptor.UNKNOWN_LENGTH) {
+                length = channel.size() - start;
+            }
+
+            // Parsing the index reads the whole 'moov' box, which already warms it up.
+            Mp4Index index = Mp4Index.parse(channel, start, length);
+            long bytes = index.getMoovSize();
+
+            // Read the sample data of the warm-up window with large sequential reads.
+            long [] ranges = index.getSampleRanges(mDurationMs, MERGE_GAP);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+            for (int i = 0; i < ranges.length && !mIsCanceled; i += 2) {
+                long position = start + ranges[i];
+                long end = position + ranges[i + 1];
+                while (position < end && !mIsCanceled) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                    int read = channel.read(buffer, position);
+                    if (read < 0) break;
+                    position += read;
+                    bytes += read;
+                }
+            }
+
+            Log.i(TAG, "Warmed up " + bytes / 1024 + " kB of " + mPath + " in "
+                    + (SystemClock.elapsedRealtime() - startTime) + " ms (fast start: "
+                    + index.isFastStart() + ")");
+
+        } catch (Exception e) {
+            // The warm-up is only an optimization; the player will read the file anyway.
+            Log.w(TAG, "Failed to warm up " + mPath + ": " + e.getMessage());
+        } finally {
+            if (null != in) {
+                try { in.close(); } catch (IOException e) { Log.e(TAG,
+                        "Failed to close input stream."); }
+            }
+            if (null != afd) {
+                try { afd.close(); } catch (IOException e) { Log.e(TAG,
+                        "Failed to close file descriptor."); }
+            }
+        }
+    }
+}
@@ -0,0 +1,491 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.playback;
+
+import java.util.Arrays;
+
+/**
+ * A playback position clock shared by everything that follows the video position.
+ * <p/>
+ * Reading the position from the media player is slow and the value lags, yet UI controls,
+ * cue timelines, buffering indicators and analytics each used to poll it on their own timers.
+ * The clock reads the position rarely, and in between interpolates it from the last read,
+ * the time since, the playing state and the playback rate. The interpolated position does
+ * not step backwards because of small read errors, so it is smooth enough to be sampled at
+ * every display frame.
+ * <p/>
+ * Subscribers register for:
+ * <ul>
+ * <li>position thresholds, one-shot callbacks when playback reaches a position. The clock
+ * wakes up exactly when the threshold is predicted to be reached, and confirms it with
+ * a read before calling back, so a stalled player does not trigger it early;</li>
+ * <li>periodic ticks while playing, e.g. for updating a seek bar. Ticks are also delivered
+ * once when the ticker is added and when playback stops.</li>
+ * </ul>
+ * All subscribers share one wake-up, scheduled for the earliest thing that is due. Call
+ * {@link #invalidate()} when the player starts, pauses or seeks, so that the change is seen
+ * without waiting for the next read.
+ * <p/>
+ * Must be used from a single thread, typically the UI thread.
+ * <p/>
+ * This class has no Android dependencies and can be tested on a desktop JVM.
+ */
+public class PlaybackClock {
+
+    /** Reads the state of the player. */
+    public interface Source {
+
+        /**
+         * Read the current playback position.
+         *
+         * @return the position in milliseconds.
+         */
+        int getPosition();
+
+        /**
+         * Read whether the player is playing.
+         *
+         * @return true if playing, else false.
+         */
+        boolean isPlaying();
+    }
+
+    /** Runs the wake-ups of the clock. */
+    public interface Scheduler {
+
+        /**
+         * Get the current time, from a monotonic clock.
+         *
+         * @return the time in milliseconds.
+         */
+        long now();
+
+        /**
+         * Run a task after a delay, replacing an earlier schedule of the same task.
+         *
+         * @param task The task.
+         * @param delayMs The delay, in milliseconds.
+         */
+        void schedule(Runnable task, long delayMs);
+
+        /**
+         * Cancel a scheduled task.
+         *
+         * @param task The task.
+         */
+        void cancel(Runnable task);
+    }
+
+    /** Receives position callbacks. */
+    public interface Listener {
+
+        /**
+         * Called when a threshold is reached or a tick is due.
+         *
+         * @param clock The clock.
+         * @param positionMs The playback position, in milliseconds.
+         */
+        void onPosition(PlaybackClock clock, int positionMs);
+    }
+
+    /** Default interval between position reads, in milliseconds. */
+    public static final int DEFAULT_SYNC_INTERVAL_MS = 500;
+
+    /** Read error below which the interpolated position is not allowed to step back. */
+    private static final int MONOTONIC_TOLERANCE_MS = 100;
+
+    /** Tick due time for a ticker that ticks at the next wake-up, also while paused. */
+    private static final long TICK_NOW = Long.MIN_VALUE;
+
+    /** First retry delay when a predicted threshold is not yet reached, in milliseconds. */
+    private static final int MIN_CONFIRM_DELAY_MS = 16;
+
+    /** The player. */
+    private final Source mSource;
+
+    /** The scheduler. */
+    private final Scheduler mScheduler;
+
+    /** The wake-up task. */
+    private final Runnable mWakeUp = new Runnable() {
+        @Override
+        public void run() {
+            wakeUp();
+        }
+    };
+
+    /** The interval between position reads, in milliseconds. */
+    private int mSyncIntervalMs = DEFAULT_SYNC_INTERVAL_MS;
+
+    /** The playback rate. */
+    private float mRate = 1.0f;
+
+    /** Whether the last read is valid. */
+    private boolean mSynced = false;
+
+    /** The time of the last read, in milliseconds. */
+    private long mSyncTime;
+
+    /** The position at the last read, in milliseconds. */
+    private int mSyncPosition;
+
+    /** The playing state at the last read. */
+    private boolean mPlaying;
+
+    /** The last interpolated position, or Integer.MIN_VALUE after a discontinuity. */
+    private int mLastPosition = Integer.MIN_VALUE;
+
+    /** The number of position reads. */
+    private long mReadCount = 0;
+
+    /** The threshold positions, sorted. */
+    private int[] mThresholds = new int[4];
+
+    /** The listeners of the thresholds. */
+    private Listener[] mThresholdListeners = new Listener[4];
+
+    /** The number of thresholds. */
+    private int mThresholdCount = 0;
+
+    /** The delay before the next confirmation of a threshold that was not yet reached. */
+    private int mConfirmDelayMs = 0;
+
+    /** The periods of the tickers, in milliseconds. */
+    private int[] mTickPeriods = new int[4];
+
+    /** The times when the tickers are due next, in milliseconds, or TICK_NOW. */
+    private long[] mTickDue = new long[4];
+
+    /** The listeners of the tickers. */
+    private Listener[] mTickListeners = new Listener[4];
+
+    /** The number of tickers. */
+    private int mTickerCount = 0;
+
+    /** Whether the tickers should tick once more, as playback stopped. */
+    private boolean mTickOnStop = false;
+
+
+    /**
+     * Constructor.
+     *
+     * @param source The player.
+     * @param scheduler The scheduler.
+     */
+    public PlaybackClock(Source source, Scheduler scheduler) {
+        mSource = source;
+        mScheduler = scheduler;
+    }
+
+    /**
+     * Set the interval between position reads.
+     *
+     * @param intervalMs The interval, in milliseconds.
+     */
+    public void setSyncInterval(int intervalMs) {
+        mSyncIntervalMs = Math.max(1, intervalMs);
+        reschedule();
+    }
+
+    /**
+     * Set the playback rate, e.g. when the player supports fast forward.
+     *
+     * @param rate The rate; 1 is normal speed.
+     */
+    public void setRate(float rate) {
+        if (mSynced) {
+            int position = estimate(mScheduler.now());
+            mSyncTime = mScheduler.now();
+            mSyncPosition = position;
+        }
+        mRate = rate;
+        reschedule();
+    }
+
+    /**
+     * Get the number of times the position has been read from the player.
+     *
+     * @return the number of reads.
+     */
+    public long getReadCount() {
+        return mReadCount;
+    }
+
+    /**
+     * Get the current playback position.
+     *
+     * @return the interpolated position, in milliseconds.
+     */
+    public int getPosition() {
+        long now = mScheduler.now();
+        if (!mSynced || now - mSyncTime >= mSyncIntervalMs) {
+            sync(now);
+        }
+        return estimate(now);
+    }
+
+    /**
+     * Tells whether the player is playing.
+     *
+     * @return true if playing, else false.
+     */
+    public boolean isPlaying() {
+        long now = mScheduler.now();
+        if (!mSynced || now - mSyncTime >= mSyncIntervalMs) {
+            sync(now);
+        }
+        return mPlaying;
+    }
+
+    /**
+     * Forget the last read, e.g. after the player has started, paused or sought, so that
+     * the next position is read from the player. Due thresholds and ticks are delivered.
+     */
+    public void invalidate() {
+        mSynced = false;
+        mLastPosition = Integer.MIN_VALUE;
+        mConfirmDelayMs = 0;
+        if (hasSubscribers()) {
+            mScheduler.schedule(mWakeUp, 0);
+        }
+    }
+
+    /**
+     * Call a listener once when playback reaches a position.
+     *
+     * @param positionMs The position, in milliseconds.
+     * @param listener The listener.
+     */
+    public void addThreshold(int positionMs, Listener listener) {
+        if (mThresholdCount == mThresholds.length) {
+            mThresholds = Arrays.copyOf(mThresholds, 2 * mThresholdCount);
+            mThresholdListeners = Arrays.copyOf(mThresholdListeners, 2 * mThresholdCount);
+        }
+
+        // Insert in order, after equal positions.
+        int index = mThresholdCount;
+        while (index > 0 && mThresholds[index - 1] > positionMs) {
+            mThresholds[index] = mThresholds[index - 1];
+            mThresholdListeners[index] = mThresholdListeners[index - 1];
+            index--;
+        }
+        mThresholds[index] = positionMs;
+        mThresholdListeners[index] = listener;
+        mThresholdCount++;
+        mConfirmDelayMs = 0;
+        reschedule();
+    }
+
+    /**
+     * Call a listener periodically while playing.
+     *
+     * @param periodMs The period, in milliseconds.
+     * @param listener The listener.
+     */
+    public void addTicker(int periodMs, Listener listener) {
+        if (mTickerCount == mTickPeriods.length) {
+            mTickPeriods = Arrays.copyOf(mTickPeriods, 2 * mTickerCount);
+            mTickDue = Arrays.copyOf(mTickDue, 2 * mTickerCount);
+            mTickListeners = Arrays.copyOf(mTickListeners, 2 * mTickerCount);
+        }
+        mTickPeriods[mTickerCount] = Math.max(1, periodMs);
+        mTickDue[mTickerCount] = TICK_NOW;
+        mTickListeners[mTickerCount] = listener;
+        mTickerCount++;
+        reschedule();
+    }
+
+    /**
+     * Remove all thresholds and tickers of a listener.
+     *
+     * @param listener The listener.
+     */
+    public void removeListener(Listener listener) {
+        int count = 0;
+        for (int i = 0; i < mThresholdCount; i++) {
+            if (mThresholdListeners[i] == listener) continue;
+            mThresholds[count] = mThresholds[i];
+            mThresholdListeners[count] = mThresholdListeners[i];
+            count++;
+        }
+        Arrays.fill(mThresholdListeners, count, mThresholdCount, null);
+        mThresholdCount = count;
+
+        count = 0;
+        for (int i = 0; i < mTickerCount; i++) {
+            if (mTickListeners[i] == listener) continue;
+            mTickPeriods[count] = mTickPeriods[i];
+            mTickDue[count] = mTickDue[i];
+            mTickListeners[count] = mTickListeners[i];
+            count++;
+        }
+        Arrays.fill(mTickListeners, count, mTickerCount, null);
+        mTickerCount = count;
+        reschedule();
+    }
+
+    /**
+     * Tells whether any thresholds or tickers are registered.
+     *
+     * @return true if there are subscribers, else false.
+     */
+    public boolean hasSubscribers() {
+        return mThresholdCount > 0 || mTickerCount > 0;
+    }
+
+    /**
+     * Read the position and the playing state from the player.
+     *
+     * @param now The current time, in milliseconds.
+     */
+    private void sync(long now) {
+        boolean wasPlaying = mPlaying;
+        mSyncPosition = mSource.getPosition();
+        mPlaying = mSource.isPlaying();
+        mSyncTime = now;
+        mSynced = true;
+        mReadCount++;
+        if (wasPlaying && !mPlaying) {
+            mTickOnStop = true;
+        }
+    }
+
+    /**
+     * Interpolate the position from the last read.
+     *
+     * @param now The current time, in milliseconds.
+     * @return the position, in milliseconds.
+     */
+    private int estimate(long now) {
+        int position = mSyncPosition;
+        if (mPlaying) {
+            position += (int) ((now - mSyncTime) * mRate);
+        }
+
+        // A read slightly behind the previous estimate is read error, not a step back.
+        if (mPlaying && position < mLastPosition
+                && mLastPosition - position < MONOTONIC_TOLERANCE_MS) {
+            position = mLastPosition;
+        }
+        mLastPosition = position;
+        return position;
+    }
+
+    /**
+     * Deliver what is due, and schedule the next wake-up.
+     */
+    private void wakeUp() {
+        long now = mScheduler.now();
+        if (!mSynced || now - mSyncTime >= mSyncIntervalMs) {
+            sync(now);
+        }
+
+        // Confirm predicted thresholds with a read before delivering them.
+        if (mThresholdCount > 0 && mThresholds[0] <= estimate(now) && mSyncTime != now) {
+            sync(now);
+        }
+        int position = estimate(now);
+        if (mThresholdCount > 0) {
+            if (mThresholds[0] <= position) {
+                mConfirmDelayMs = 0;
+                deliverThresholds(position);
+            } else if (mPlaying) {
+                mConfirmDelayMs = mConfirmDelayMs == 0 ? MIN_CONFIRM_DELAY_MS
+                        : Math.min(mSyncIntervalMs, 2 * mConfirmDelayMs);
+            }
+        }
+
+        boolean tickOnStop = mTickOnStop;
+        mTickOnStop = false;
+        for (int i = 0; i < mTickerCount; i++) {
+            boolean due = mTickDue[i] == TICK_NOW || (mPlaying && now >= mTickDue[i]);
+            if (due || tickOnStop) {
+
+                // Keep the ticks on the period, unless they have fallen behind a whole period.
+                long next = mTickDue[i] + mTickPeriods[i];
+                mTickDue[i] = mTickDue[i] == TICK_NOW || next <= now
+                        ? now + mTickPeriods[i] : next;
+                mTickListeners[i].onPosition(this, position);
+            }
+        }
+        reschedule();
+    }
+
+    /**
+     * Deliver the thresholds at or before a position. Listeners may add and remove
+     * thresholds and tickers.
+     *
+     * @param position The position, in milliseconds.
+     */
+    private void deliverThresholds(int position) {
+        while (mThresholdCount > 0 && mThresholds[0] <= position) {
+            Listener listener = mThresholdListeners[0];
+            mThresholdCount--;
+            System.arraycopy(mThresholds, 1, mThresholds, 0, mThresholdCount);
+            System.arraycopy(mThresholdListeners, 1, mThresholdListeners, 0, mThresholdCount);
+            mThresholdListeners[mThresholdCount] = null;
+            listener.onPosition(this, position);
+        }
+    }
+
+    /**
+     * Schedule the next wake-up for the earliest thing that is due, or cancel it if there
+     * are no subscribers.
+     */
+    private void reschedule() {
+        if (!hasSubscribers()) {
+            mScheduler.cancel(mWakeUp);
+            return;
+        }
+        long now = mScheduler.now();
+        if (!mSynced) {
+            mScheduler.schedule(mWakeUp, 0);
+            return;
+        }
+
+        // Read again at the sync interval, also while paused, to notice state changes.
+        long delay = Math.max(0, mSyncTime + mSyncIntervalMs - now);
+        for (int i = 0; i < mTickerCount; i++) {
+            if (mTickDue[i] == TICK_NOW) {
+                delay = 0;
+            } else if (mPlaying) {
+                delay = Math.min(delay, Math.max(0, mTickDue[i] - now));
+            }
+        }
+        if (mPlaying) {
+            if (mThresholdCount > 0 && mRate > 0.0f) {
+                long remaining = mThresholds[0] - (long) mLastPosition;
+                long untilThreshold = (long) Math.ceil(Math.max(0, remaining) / mRate);
+                delay = Math.min(delay, Math.max(untilThreshold, mConfirmDelayMs));
+            }
+        }
+        mScheduler.schedule(mWakeUp, delay);
+    }
+}
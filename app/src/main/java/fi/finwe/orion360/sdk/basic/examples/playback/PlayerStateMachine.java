@@ -0,0 +1,334 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.playback;
+
+import java.util.ArrayList;
+
+/**
+ * A state machine of a video player, driven by the prepared, status and buffering callbacks
+ * of the player.
+ * <p/>
+ * The callbacks of the player tell when it has been prepared, started, paused and so on, but
+ * not when video frames are actually shown: after starting, the player may still buffer, and
+ * some devices never report that buffering has stopped. Hence after each start, i.e. after
+ * preparing, resuming or seeking, the machine waits in {@link #STATE_STARTING} until a frame
+ * shows that the playback position has advanced past where it started, then reports the
+ * first frame and moves to {@link #STATE_PLAYING}. The caller feeds the position with
+ * {@link #onFrame(int)} at each display frame, but only while {@link #isWaitingForFrame()}.
+ * <p/>
+ * Buffering while playing moves to {@link #STATE_STALLED} and back. Buffering while starting
+ * or seeking is part of the start, and does not change the state.
+ * <p/>
+ * Not thread safe; call from the thread that receives the player callbacks.
+ * <p/>
+ * This class has no Android dependencies and can be tested on a desktop JVM.
+ */
+public class PlayerStateMachine {
+
+    /** Receives state changes. */
+    public interface Listener {
+
+        /**
+         * Called when the state changes.
+         *
+         * @param machine The state machine.
+         * @param previous The previous state.
+         * @param state The new state.
+         */
+        void onStateChanged(PlayerStateMachine machine, int previous, int state);
+
+        /**
+         * Called when the first frame after a start has been shown, after the state has
+         * changed to {@link #STATE_PLAYING}.
+         *
+         * @param machine The state machine.
+         * @param positionMs The playback position, in milliseconds.
+         */
+        void onFirstFrame(PlayerStateMachine machine, int positionMs);
+    }
+
+    /** No video, or the player has been released. */
+    public static final int STATE_IDLE = 0;
+
+    /** Preparing a video. */
+    public static final int STATE_PREPARING = 1;
+
+    /** Prepared, not yet started. */
+    public static final int STATE_PREPARED = 2;
+
+    /** Started, waiting for the first frame. */
+    public static final int STATE_STARTING = 3;
+
+    /** Playing, frames are shown. */
+    public static final int STATE_PLAYING = 4;
+
+    /** Playing, but buffering after frames have been shown. */
+    public static final int STATE_STALLED = 5;
+
+    /** Paused. */
+    public static final int STATE_PAUSED = 6;
+
+    /** Seeking. */
+    public static final int STATE_SEEKING = 7;
+
+    /** Playback has completed. */
+    public static final int STATE_COMPLETED = 8;
+
+    /** The player has failed. */
+    public static final int STATE_ERROR = 9;
+
+    /** The names of the states, for logging. */
+    private static final String[] STATE_NAMES = { "IDLE", "PREPARING", "PREPARED",
+            "STARTING", "PLAYING", "STALLED", "PAUSED", "SEEKING", "COMPLETED", "ERROR" };
+
+    /** The listeners. */
+    private final ArrayList<Listener> mListeners = new ArrayList<>();
+
+    /** The current state. */
+    private int mState = STATE_IDLE;
+
+    /** The state to enter when the seek in progress completes. */
+    private int mStateAfterSeek = STATE_IDLE;
+
+    /** The position where the current start began, in milliseconds. */
+    private int mStartPosition = 0;
+
+
+    /**
+     * Get the name of a state.
+     *
+     * @param state The state.
+     * @return the name.
+     */
+    public static String getStateName(int state) {
+        return state >= 0 && state < STATE_NAMES.length ? STATE_NAMES[state] : "?";
+    }
+
+    /**
+     * Add a listener.
+     *
+     * @param listener The listener.
+     */
+    public void addListener(Listener listener) {
+        if (!mListeners.contains(listener)) {
+            mListeners.add(listener);
+        }
+    }
+
+    /**
+     * Remove a listener.
+     *
+     * @param listener The listener.
+     */
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Get the current state.
+     *
+     * @return the state, one of the STATE_ constants.
+     */
+    public int getState() {
+        return mState;
+    }
+
+    /**
+     * Tells whether the player is playing or about to, i.e. starting, playing or stalled.
+     *
+     * @return true if playing, else false.
+     */
+    public boolean isPlaying() {
+        return mState == STATE_STARTING || mState == STATE_PLAYING || mState == STATE_STALLED;
+    }
+
+    /**
+     * Tells whether the machine waits for the first frame after a start, and should be fed
+     * the playback position at each display frame.
+     *
+     * @return true if waiting, else false.
+     */
+    public boolean isWaitingForFrame() {
+        return mState == STATE_STARTING;
+    }
+
+    /**
+     * Called when preparing a video starts.
+     */
+    public void onPrepareStarted() {
+        setState(STATE_PREPARING);
+    }
+
+    /**
+     * Called when the player has been prepared.
+     */
+    public void onPrepared() {
+        if (mState == STATE_PREPARING) {
+            setState(STATE_PREPARED);
+        }
+    }
+
+    /**
+     * Called when playback starts or resumes.
+     *
+     * @param positionMs The playback position, in milliseconds.
+     */
+    public void onStarted(int positionMs) {
+        if (isPlaying() || mState == STATE_IDLE || mState == STATE_ERROR) return;
+        if (mState == STATE_SEEKING) {
+
+            // Started while seeking; wait for the first frame when the seek completes.
+            mStateAfterSeek = STATE_STARTING;
+            return;
+        }
+        start(positionMs);
+    }
+
+    /**
+     * Called when playback is paused.
+     */
+    public void onPaused() {
+        if (mState == STATE_SEEKING) {
+            mStateAfterSeek = STATE_PAUSED;
+        } else if (isPlaying()) {
+            setState(STATE_PAUSED);
+        }
+    }
+
+    /**
+     * Called when a seek starts.
+     */
+    public void onSeekStarted() {
+        if (mState == STATE_IDLE || mState == STATE_PREPARING || mState == STATE_ERROR
+                || mState == STATE_SEEKING) return;
+        mStateAfterSeek = isPlaying() ? STATE_STARTING : mState;
+        setState(STATE_SEEKING);
+    }
+
+    /**
+     * Called when a seek completes.
+     *
+     * @param positionMs The playback position, in milliseconds.
+     */
+    public void onSeekCompleted(int positionMs) {
+        int next;
+        if (mState == STATE_SEEKING) {
+            next = mStateAfterSeek;
+        } else if (isPlaying()) {
+
+            // A seek that was not reported as started; frames at the new position are yet
+            // to be shown.
+            next = STATE_STARTING;
+        } else {
+            return;
+        }
+        if (next == STATE_STARTING) {
+            start(positionMs);
+        } else {
+            setState(next);
+        }
+    }
+
+    /**
+     * Called when the player starts buffering.
+     */
+    public void onBufferingStarted() {
+        if (mState == STATE_PLAYING) {
+            setState(STATE_STALLED);
+        }
+    }
+
+    /**
+     * Called when the player stops buffering.
+     */
+    public void onBufferingStopped() {
+        if (mState == STATE_STALLED) {
+            setState(STATE_PLAYING);
+        }
+    }
+
+    /**
+     * Called when playback has completed.
+     */
+    public void onCompleted() {
+        if (mState != STATE_IDLE && mState != STATE_ERROR) {
+            setState(STATE_COMPLETED);
+        }
+    }
+
+    /**
+     * Called when the player has failed.
+     */
+    public void onError() {
+        setState(STATE_ERROR);
+    }
+
+    /**
+     * Called when the player has been released.
+     */
+    public void onReleased() {
+        setState(STATE_IDLE);
+    }
+
+    /**
+     * Called at each display frame while {@link #isWaitingForFrame()}.
+     *
+     * @param positionMs The playback position, in milliseconds.
+     */
+    public void onFrame(int positionMs) {
+        if (mState != STATE_STARTING || positionMs <= mStartPosition) return;
+
+        // Frames are shown, hence any buffering that was not reported to have stopped is over.
+        setState(STATE_PLAYING);
+        for (Listener listener : mListeners.toArray(new Listener[mListeners.size()])) {
+            listener.onFirstFrame(this, positionMs);
+        }
+    }
+
+    /**
+     * Enter the starting state at a position.
+     */
+    private void start(int positionMs) {
+        mStartPosition = positionMs;
+        setState(STATE_STARTING);
+    }
+
+    /**
+     * Change the state, and notify the listeners. Listeners may add and remove listeners.
+     */
+    private void setState(int state) {
+        int previous = mState;
+        if (previous == state) return;
+        mState = state;
+        for (Listener listener : mListeners.toArray(new Listener[mListeners.size()])) {
+            listener.onStateChanged(this, previous, state);
+        }
+    }
+}
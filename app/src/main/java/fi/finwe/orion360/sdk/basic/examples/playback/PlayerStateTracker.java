@@ -0,0 +1,236 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.playback;
+
+import fi.finwe.orion360.OrionVideoView;
+import fi.finwe.orion360.sdk.basic.examples.animation.TagAnimationScheduler;
+
+/**
+ * Drives a {@link PlayerStateMachine} from the callbacks of a video view.
+ * <p/>
+ * The video view has one listener of each kind, hence the tracker does not replace them but
+ * wraps the listeners of the activity: pass them through the wrap() methods when setting
+ * them to the view. Prepare the video and seek with {@link #prepare(String)} and
+ * {@link #seekTo(int)}, so that the machine knows when they start.
+ * <p/>
+ * While the machine waits for the first frame after a start, the tracker reads the playback
+ * position once per display frame, from the shared frame callback of
+ * {@link TagAnimationScheduler}; hence the first frame is reported within a frame of the
+ * position advancing. The rest of the time the tracker does no work between callbacks.
+ * Must be used from the UI thread.
+ */
+public class PlayerStateTracker {
+
+    /** Tag for logging. */
+    public static final String TAG = PlayerStateTracker.class.getSimpleName();
+
+    /** The video view. */
+    private final OrionVideoView mOrionVideoView;
+
+    /** The state machine. */
+    private final PlayerStateMachine mMachine = new PlayerStateMachine();
+
+    /** Whether the frame probe is scheduled. */
+    private boolean mProbing = false;
+
+    /** Feeds the playback position to the machine at each frame while it waits for one. */
+    private final Runnable mFrameProbe = new Runnable() {
+        @Override
+        public void run() {
+            mProbing = false;
+            if (mMachine.isWaitingForFrame()) {
+                mMachine.onFrame(mOrionVideoView.getCurrentPosition());
+            }
+            updateFrameProbe();
+        }
+    };
+
+
+    /**
+     * Constructor.
+     *
+     * @param view The video view.
+     */
+    public PlayerStateTracker(OrionVideoView view) {
+        mOrionVideoView = view;
+    }
+
+    /**
+     * Get the state machine, e.g. for adding listeners.
+     *
+     * @return the state machine.
+     */
+    public PlayerStateMachine getMachine() {
+        return mMachine;
+    }
+
+    /**
+     * Prepare the video view.
+     *
+     * @param uri The URI of the video.
+     * @throws OrionVideoView.LicenseVerificationException if the license is not valid.
+     */
+    public void prepare(String uri) throws OrionVideoView.LicenseVerificationException {
+        mMachine.onPrepareStarted();
+        mOrionVideoView.prepare(uri);
+    }
+
+    /**
+     * Seek the video view.
+     *
+     * @param positionMs The position, in milliseconds.
+     */
+    public void seekTo(int positionMs) {
+        mMachine.onSeekStarted();
+        mOrionVideoView.seekTo(positionMs);
+    }
+
+    /**
+     * Stop probing frames, e.g. when the activity is paused. Probing continues when the
+     * player is started again, or when {@link #resume()} is called.
+     */
+    public void pause() {
+        TagAnimationScheduler.getInstance().removeAfterAnimations(mFrameProbe);
+        mProbing = false;
+    }
+
+    /**
+     * Continue probing frames after {@link #pause()}, e.g. when the activity is resumed, if
+     * the player is still waiting for its first frame. The player may resume playback without
+     * reporting another start, hence probing must not wait for one.
+     */
+    public void resume() {
+        updateFrameProbe();
+    }
+
+    /**
+     * Wrap a prepared listener so that the tracker gets the events too.
+     *
+     * @param listener The listener of the activity, or null.
+     * @return the listener to set to the video view.
+     */
+    public OrionVideoView.OnPreparedListener wrap(
+            final OrionVideoView.OnPreparedListener listener) {
+        return new OrionVideoView.OnPreparedListener() {
+            @Override
+            public void onPrepared(OrionVideoView view) {
+                mMachine.onPrepared();
+                if (null != listener) {
+                    listener.onPrepared(view);
+                }
+            }
+        };
+    }
+
+    /**
+     * Wrap a status change listener so that the tracker gets the events too.
+     *
+     * @param listener The listener of the activity, or null.
+     * @return the listener to set to the video view.
+     */
+    public OrionVideoView.OnStatusChangeListener wrap(
+            final OrionVideoView.OnStatusChangeListener listener) {
+        return new OrionVideoView.OnStatusChangeListener() {
+            @Override
+            public void onStatusChange(OrionVideoView view, OrionVideoView.PlayerStatus status) {
+                switch (status) {
+                    case STARTED:
+                        mMachine.onStarted(view.getCurrentPosition());
+                        break;
+                    case PAUSED:
+                        mMachine.onPaused();
+                        break;
+                    case SEEK_COMPLETE:
+                        mMachine.onSeekCompleted(view.getCurrentPosition());
+                        break;
+                    case COMPLETED:
+                        mMachine.onCompleted();
+                        break;
+                    case RELEASED:
+                        mMachine.onReleased();
+                        break;
+                    case ERROR:
+                        mMachine.onError();
+                        break;
+                    default:
+                        break;
+                }
+                updateFrameProbe();
+                if (null != listener) {
+                    listener.onStatusChange(view, status);
+                }
+            }
+        };
+    }
+
+    /**
+     * Wrap a buffering status listener so that the tracker gets the events too.
+     *
+     * @param listener The listener of the activity, or null.
+     * @return the listener to set to the video view.
+     */
+    public OrionVideoView.OnBufferingStatusListener wrap(
+            final OrionVideoView.OnBufferingStatusListener listener) {
+        return new OrionVideoView.OnBufferingStatusListener() {
+            @Override
+            public void onBufferingStarted(OrionVideoView view) {
+                mMachine.onBufferingStarted();
+                if (null != listener) {
+                    listener.onBufferingStarted(view);
+                }
+            }
+
+            @Override
+            public void onBufferFillRateChanged(OrionVideoView view, int percentage) {
+                if (null != listener) {
+                    listener.onBufferFillRateChanged(view, percentage);
+                }
+            }
+
+            @Override
+            public void onBufferingStopped(OrionVideoView view) {
+                mMachine.onBufferingStopped();
+                if (null != listener) {
+                    listener.onBufferingStopped(view);
+                }
+            }
+        };
+    }
+
+    /**
+     * Schedule the frame probe if the machine waits for a frame.
+     */
+    private void updateFrameProbe() {
+        if (mMachine.isWaitingForFrame() && !mProbing) {
+            mProbing = true;
+            TagAnimationScheduler.getInstance().postAfterAnimations(mFrameProbe);
+        }
+    }
+}
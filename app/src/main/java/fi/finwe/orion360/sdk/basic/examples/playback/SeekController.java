@@ -0,0 +1,312 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.playback;
+
+import java.util.Arrays;
+
+/**
+ * Coalesces the seeks of a seek bar drag, and snaps them to sync samples.
+ * <p/>
+ * Every seek flushes the decoder, which then decodes from the previous sync sample (key
+ * frame) up to the target; with a 4K video that takes a while. Issuing a seek for every
+ * progress change of a drag queues up work that is stale before it is done. Here at most
+ * one seek is in flight at a time: while it is, newer targets replace each other, and only
+ * the latest one is issued when the seek completes.
+ * <p/>
+ * During a drag, seeks are issued at most every {@link #DRAG_SEEK_INTERVAL_MS} and go to the
+ * nearest sync sample, which the decoder can show without decoding other frames. This gives
+ * an approximate preview that keeps up with the finger. When the drag ends, the final seek
+ * also snaps to the nearest sync sample, so the player lands where the user sees it will,
+ * instead of at an arbitrary earlier key frame. Without a sync sample table, positions are
+ * used as they are.
+ * <p/>
+ * Some players do not report every completed seek, hence a seek that has not completed
+ * within {@link #SEEK_TIMEOUT_MS} is considered done.
+ * <p/>
+ * Must be used from a single thread, typically the UI thread.
+ * <p/>
+ * This class has no Android dependencies and can be tested on a desktop JVM.
+ */
+public class SeekController {
+
+    /** Seeks the player. */
+    public interface Player {
+
+        /**
+         * Seek to a position.
+         *
+         * @param positionMs The position, in milliseconds.
+         */
+        void seekTo(int positionMs);
+    }
+
+    /** Minimum interval between the seeks of a drag, in milliseconds. */
+    public static final long DRAG_SEEK_INTERVAL_MS = 250;
+
+    /** Time after which a seek is considered done even if not reported, in milliseconds. */
+    public static final long SEEK_TIMEOUT_MS = 2000;
+
+    /** No position. */
+    private static final int NONE = -1;
+
+    /** The player. */
+    private final Player mPlayer;
+
+    /** The scheduler for the drag interval and the seek timeout. */
+    private final PlaybackClock.Scheduler mScheduler;
+
+    /** The times of the sync samples in milliseconds, sorted, or null if not known. */
+    private long[] mSyncTimes;
+
+    /** Flag for indicating if the user is dragging, or not. */
+    private boolean mDragging = false;
+
+    /** The position of the seek in flight, or NONE. */
+    private int mInFlight = NONE;
+
+    /** The position to seek to next, or NONE. */
+    private int mPending = NONE;
+
+    /** The latest target position, for showing while seeking, or NONE. */
+    private int mTarget = NONE;
+
+    /** The position of the latest seek, or NONE. */
+    private int mLastSeekPosition = NONE;
+
+    /** The time of the latest seek. */
+    private long mLastSeekTime = Long.MIN_VALUE / 2;
+
+    /** The number of seeks issued to the player. */
+    private int mSeekCount = 0;
+
+    /** Runs the pending seek when the drag interval has passed. */
+    private final Runnable mIntervalTask = new Runnable() {
+        @Override
+        public void run() {
+            issuePending();
+        }
+    };
+
+    /** Gives up waiting for a seek to complete. */
+    private final Runnable mTimeoutTask = new Runnable() {
+        @Override
+        public void run() {
+            onSeekCompleted();
+        }
+    };
+
+
+    /**
+     * Constructor.
+     *
+     * @param player The player.
+     * @param scheduler The scheduler.
+     */
+    public SeekController(Player player, PlaybackClock.Scheduler scheduler) {
+        mPlayer = player;
+        mScheduler = scheduler;
+    }
+
+    /**
+     * Set the times of the sync samples of the video.
+     *
+     * @param timesMs The times in milliseconds, or null if not known.
+     */
+    public void setSyncSampleTimes(long[] timesMs) {
+        if (null != timesMs && timesMs.length > 0) {
+            mSyncTimes = Arrays.copyOf(timesMs, timesMs.length);
+            Arrays.sort(mSyncTimes);
+        } else {
+            mSyncTimes = null;
+        }
+    }
+
+    /**
+     * Get the sync sample nearest to a position.
+     *
+     * @param positionMs The position, in milliseconds.
+     * @return the time of the nearest sync sample, or the position itself if not known.
+     */
+    public int snap(int positionMs) {
+        if (null == mSyncTimes) return positionMs;
+        int i = Arrays.binarySearch(mSyncTimes, positionMs);
+        if (i >= 0) return positionMs;
+        int next = -i - 1;
+        if (next == 0) return (int) mSyncTimes[0];
+        if (next == mSyncTimes.length) return (int) mSyncTimes[next - 1];
+        long before = mSyncTimes[next - 1];
+        long after = mSyncTimes[next];
+        return (int) (positionMs - before <= after - positionMs ? before : after);
+    }
+
+    /**
+     * Called when the user starts dragging.
+     */
+    public void onDragStarted() {
+        mDragging = true;
+    }
+
+    /**
+     * Called when the user drags to a position. Issues an approximate seek if the previous
+     * one has completed and the drag interval has passed, else replaces the pending seek.
+     *
+     * @param positionMs The position, in milliseconds.
+     */
+    public void onDrag(int positionMs) {
+        if (!mDragging) {
+            onDragStarted();
+        }
+        mTarget = positionMs;
+        mPending = snap(positionMs);
+        issuePending();
+    }
+
+    /**
+     * Called when the user stops dragging. Seeks to the sync sample nearest to the position,
+     * as soon as the seek in flight, if any, has completed.
+     *
+     * @param positionMs The position, in milliseconds.
+     */
+    public void onDragStopped(int positionMs) {
+        mDragging = false;
+        seekTo(positionMs);
+    }
+
+    /**
+     * Seek to the sync sample nearest to a position, as soon as the seek in flight, if any,
+     * has completed.
+     *
+     * @param positionMs The position, in milliseconds.
+     */
+    public void seekTo(int positionMs) {
+        mScheduler.cancel(mIntervalTask);
+        mTarget = positionMs;
+        mPending = snap(positionMs);
+        if (mInFlight == NONE) {
+            issue();
+        }
+    }
+
+    /**
+     * Called when the player reports that a seek has completed.
+     */
+    public void onSeekCompleted() {
+        if (mInFlight == NONE) return;
+        mInFlight = NONE;
+        mScheduler.cancel(mTimeoutTask);
+        if (mPending != NONE) {
+            if (mDragging) {
+                issuePending();
+            } else {
+                issue();
+            }
+        } else if (!mDragging) {
+            mTarget = NONE;
+        }
+    }
+
+    /**
+     * Forget the pending seeks and stop waiting, e.g. when the activity is paused.
+     */
+    public void cancel() {
+        mScheduler.cancel(mIntervalTask);
+        mScheduler.cancel(mTimeoutTask);
+        mDragging = false;
+        mInFlight = NONE;
+        mPending = NONE;
+        mTarget = NONE;
+        mLastSeekPosition = NONE;
+    }
+
+    /**
+     * Tells whether the user is dragging, or a seek is in flight or pending. While seeking,
+     * the position of the player is not yet where the user wants it to be, and should not
+     * be shown.
+     *
+     * @return true if seeking, else false.
+     */
+    public boolean isSeeking() {
+        return mDragging || mInFlight != NONE || mPending != NONE;
+    }
+
+    /**
+     * Get the position to show while seeking.
+     *
+     * @return the latest target position in milliseconds, or -1 if not seeking.
+     */
+    public int getTargetPosition() {
+        return mTarget;
+    }
+
+    /**
+     * Get the number of seeks issued to the player.
+     *
+     * @return the number of seeks.
+     */
+    public int getSeekCount() {
+        return mSeekCount;
+    }
+
+    /**
+     * Issue the pending seek of a drag if the previous one has completed and the drag
+     * interval has passed, else wait.
+     */
+    private void issuePending() {
+        if (mInFlight != NONE || mPending == NONE) return;
+
+        // Drag positions that snap to the sync sample already shown need no seek.
+        if (mPending == mLastSeekPosition) {
+            mPending = NONE;
+            return;
+        }
+        long wait = mLastSeekTime + DRAG_SEEK_INTERVAL_MS - mScheduler.now();
+        if (wait > 0) {
+            mScheduler.schedule(mIntervalTask, wait);
+        } else {
+            issue();
+        }
+    }
+
+    /**
+     * Issue the pending seek.
+     */
+    private void issue() {
+        int position = mPending;
+        mPending = NONE;
+        mScheduler.cancel(mIntervalTask);
+        if (position == NONE) return;
+        mInFlight = position;
+        mLastSeekPosition = position;
+        mLastSeekTime = mScheduler.now();
+        mSeekCount++;
+        mScheduler.schedule(mTimeoutTask, SEEK_TIMEOUT_MS);
+        mPlayer.seekTo(position);
+    }
+}
@@ -0,0 +1,229 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.playback;
+
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.ViewTreeObserver;
+
+import fi.finwe.orion360.OrionVideoView;
+import fi.finwe.orion360.sdk.basic.examples.animation.TagAnimationScheduler;
+import fi.finwe.orion360.sdk.basic.examples.graphics.PreviewImageLoader;
+
+/**
+ * Starts a video with a preview image, keeping the preview off the critical path.
+ * <p/>
+ * Setting the preview image and preparing the video one after the other on the main thread
+ * makes the network prepare wait for the image decode, and the image wait for the main
+ * thread. Here the preview image is prepared for the screen in a background thread while
+ * the video is prepared, and set to the view as soon as it is ready, unless the video is
+ * already showing by then.
+ * <p/>
+ * Each phase of the startup is recorded in a {@link StartupTrace}: layout, preview set,
+ * prepared and first frame. The trace is logged after the first frame, once the preview image
+ * has been shown or given up. A warning is logged if the preview image takes longer than
+ * {@link #PREVIEW_BUDGET_MS} to be set; the preview is marked as set on the first UI frame
+ * after setPreviewImagePath(), while the GL renderer draws it asynchronously a little later,
+ * so the budget does not include the time for the renderer to draw the image.
+ * <p/>
+ * All methods must be called from the main thread.
+ */
+public class StartupOrchestrator implements PlayerStateMachine.Listener {
+
+    /** Tag for logging. */
+    public static final String TAG = StartupOrchestrator.class.getSimpleName();
+
+    /** The time within which the preview image should be set, in milliseconds. */
+    public static final long PREVIEW_BUDGET_MS = 100;
+
+    /** The field of view that the preview image is scaled for, in degrees. */
+    private static final float PREVIEW_FIELD_OF_VIEW_DEG = 90.0f;
+
+    /** Orion360 video player view. */
+    private final OrionVideoView mOrionVideoView;
+
+    /** Player state tracker, for preparing the video and noticing the first frame. */
+    private final PlayerStateTracker mStateTracker;
+
+    /** The phases of the startup. */
+    private final StartupTrace mTrace = new StartupTrace();
+
+    /** The preview image loader, or null. */
+    private PreviewImageLoader mPreviewLoader;
+
+    /** Flag for indicating if the preview image is yet to be shown or given up, or not. */
+    private boolean mPreviewPending = false;
+
+    /** Listener for noticing when the view has been laid out. */
+    private final ViewTreeObserver.OnPreDrawListener mPreDrawListener =
+            new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            mOrionVideoView.getViewTreeObserver().removeOnPreDrawListener(this);
+            mark(StartupTrace.PHASE_LAYOUT);
+            return true;
+        }
+    };
+
+    /** Listener for setting the preview image when it is ready. */
+    private final PreviewImageLoader.Listener mPreviewListener = new PreviewImageLoader.Listener() {
+        @Override
+        public void onPreviewImageReady(String path) {
+            mPreviewLoader = null;
+            if (null == path) {
+                onPreviewDone();
+                return;
+            }
+            if (mTrace.isMarked(StartupTrace.PHASE_FIRST_FRAME)) {
+                Log.d(TAG, "Video is already showing, preview image is not needed");
+                onPreviewDone();
+                return;
+            }
+            try {
+                mOrionVideoView.setPreviewImagePath(path);
+            } catch (OrionVideoView.LicenseVerificationException e) {
+                Log.e(TAG, "Failed to set preview image: " + e.getMessage());
+                onPreviewDone();
+                return;
+            }
+            TagAnimationScheduler.getInstance().postAfterAnimations(mPreviewShown);
+        }
+    };
+
+    /**
+     * Runnable for noticing when the UI frame after setting the preview image begins. The
+     * view does not tell when its GL renderer has drawn the image.
+     */
+    private final Runnable mPreviewShown = new Runnable() {
+        @Override
+        public void run() {
+            mark(StartupTrace.PHASE_PREVIEW_SET);
+            long elapsed = mTrace.getElapsed(StartupTrace.PHASE_PREVIEW_SET);
+            if (elapsed > PREVIEW_BUDGET_MS) {
+                Log.w(TAG, "Preview image was set in " + elapsed + " ms");
+            }
+            onPreviewDone();
+        }
+    };
+
+
+    /**
+     * Constructor.
+     *
+     * @param view The video view.
+     * @param stateTracker The state tracker of the view.
+     */
+    public StartupOrchestrator(OrionVideoView view, PlayerStateTracker stateTracker) {
+        mOrionVideoView = view;
+        mStateTracker = stateTracker;
+        mStateTracker.getMachine().addListener(this);
+    }
+
+    /**
+     * Get the phases of the startup.
+     *
+     * @return the trace.
+     */
+    public StartupTrace getTrace() {
+        return mTrace;
+    }
+
+    /**
+     * Start loading the preview image and preparing the video, in parallel.
+     *
+     * @param videoUri The URI of the video, as given to OrionVideoView.prepare().
+     * @param previewImagePath The path to the preview image file, or null for none.
+     * @throws OrionVideoView.LicenseVerificationException If the license is not valid.
+     */
+    public void start(String videoUri, String previewImagePath)
+            throws OrionVideoView.LicenseVerificationException {
+        cancel();
+        mTrace.start(SystemClock.elapsedRealtime());
+        mOrionVideoView.getViewTreeObserver().addOnPreDrawListener(mPreDrawListener);
+
+        // The decode starts first, so that it runs while the main thread calls prepare().
+        // An image that needs no decoding is set right away, before load() returns.
+        mPreviewPending = null != previewImagePath;
+        if (mPreviewPending) {
+            mPreviewLoader = new PreviewImageLoader(mOrionVideoView.getContext(),
+                    previewImagePath, PreviewImageLoader.getMaxWidth(
+                            mOrionVideoView.getContext(), PREVIEW_FIELD_OF_VIEW_DEG));
+            mPreviewLoader.load(mPreviewListener);
+        }
+        mStateTracker.prepare(videoUri);
+    }
+
+    /**
+     * Stop following the startup. A preview image that is still loading is not set.
+     */
+    public void cancel() {
+        if (null != mPreviewLoader) {
+            mPreviewLoader.cancel();
+            mPreviewLoader = null;
+        }
+        mPreviewPending = false;
+        mOrionVideoView.getViewTreeObserver().removeOnPreDrawListener(mPreDrawListener);
+        TagAnimationScheduler.getInstance().removeAfterAnimations(mPreviewShown);
+    }
+
+    @Override
+    public void onStateChanged(PlayerStateMachine machine, int previous, int state) {
+        if (state == PlayerStateMachine.STATE_PREPARED) {
+            mark(StartupTrace.PHASE_PREPARED);
+        }
+    }
+
+    @Override
+    public void onFirstFrame(PlayerStateMachine machine, int positionMs) {
+        if (mark(StartupTrace.PHASE_FIRST_FRAME) && !mPreviewPending) {
+            Log.i(TAG, "Startup: " + mTrace);
+        }
+    }
+
+    /**
+     * Called when the preview image has been shown or given up. Logs the trace if the first
+     * frame has already been shown.
+     */
+    private void onPreviewDone() {
+        mPreviewPending = false;
+        if (mTrace.isMarked(StartupTrace.PHASE_FIRST_FRAME)) {
+            Log.i(TAG, "Startup: " + mTrace);
+        }
+    }
+
+    /**
+     * Record a phase.
+     *
+     * @return true if recorded, false if already recorded or not started.
+     */
+    private boolean mark(int phase) {
+        return mTrace.mark(phase, SystemClock.elapsedRealtime());
+    }
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.playback;
+
+import java.util.Arrays;
+
+import fi.finwe.orion360.sdk.basic.examples.tracing.Tracer;
+
+/**
+ * Records when the phases of a video startup are reached, relative to the start.
+ * <p/>
+ * The phases are the layout of the view, the preview image being set, the player being
+ * prepared, and the first video frame. They do not necessarily happen in this order,
+ * since the preview and the video are loaded in parallel. Each phase is recorded once,
+ * both here and as a {@link Tracer} event.
+ * <p/>
+ * This class has no Android dependencies and can be tested on a desktop JVM.
+ */
+public class StartupTrace {
+
+    /** The view has been laid out. */
+    public static final int PHASE_LAYOUT = 0;
+
+    /**
+     * The preview image has been set to the view, and the next UI frame has begun. The GL
+     * renderer draws the image asynchronously after that, usually within a frame or two,
+     * hence this is when the preview is about to be visible, not when it is on screen.
+     */
+    public static final int PHASE_PREVIEW_SET = 1;
+
+    /** The player has been prepared. */
+    public static final int PHASE_PREPARED = 2;
+
+    /** The first video frame has been shown. */
+    public static final int PHASE_FIRST_FRAME = 3;
+
+    /** The number of phases. */
+    public static final int PHASE_COUNT = 4;
+
+    /** The names of the phases, for logging. */
+    private static final String[] PHASE_NAMES = {
+            "layout", "previewSet", "prepared", "firstFrame" };
+
+    /** Trace events of the phases, with the elapsed time as the argument. */
+    private static final int[] PHASE_EVENTS = {
+            Tracer.define(Tracer.INFO, "startupLayout", "%.0f ms"),
+            Tracer.define(Tracer.INFO, "startupPreviewSet", "%.0f ms"),
+            Tracer.define(Tracer.INFO, "startupPrepared", "%.0f ms"),
+            Tracer.define(Tracer.INFO, "startupFirstFrame", "%.0f ms") };
+
+    /** Time when a phase was reached, or -1, per phase. */
+    private final long[] mTimes = new long[PHASE_COUNT];
+
+    /** The start time, or -1 if not started. */
+    private long mStartTime = -1;
+
+
+    /**
+     * Constructor.
+     */
+    public StartupTrace() {
+        Arrays.fill(mTimes, -1);
+    }
+
+    /**
+     * Get the name of a phase.
+     *
+     * @param phase The phase.
+     * @return the name.
+     */
+    public static String getPhaseName(int phase) {
+        return phase >= 0 && phase < PHASE_COUNT ? PHASE_NAMES[phase] : "?";
+    }
+
+    /**
+     * Start a new startup, forgetting the phases of the previous one.
+     *
+     * @param timeMs The current time, in milliseconds.
+     */
+    public void start(long timeMs) {
+        mStartTime = timeMs;
+        Arrays.fill(mTimes, -1);
+    }
+
+    /**
+     * Record that a phase has been reached. Only the first time counts.
+     *
+     * @param phase The phase.
+     * @param timeMs The current time, in milliseconds.
+     * @return true if recorded, false if not started or already recorded.
+     */
+    public boolean mark(int phase, long timeMs) {
+        if (mStartTime < 0 || mTimes[phase] >= 0) return false;
+        mTimes[phase] = timeMs;
+        Tracer.event(PHASE_EVENTS[phase], timeMs - mStartTime);
+        return true;
+    }
+
+    /**
+     * Tells whether a phase has been reached.
+     *
+     * @param phase The phase.
+     * @return true if reached, else false.
+     */
+    public boolean isMarked(int phase) {
+        return mTimes[phase] >= 0;
+    }
+
+    /**
+     * Get the time from the start to a phase.
+     *
+     * @param phase The phase.
+     * @return the elapsed time in milliseconds, or -1 if the phase has not been reached.
+     */
+    public long getElapsed(int phase) {
+        return mTimes[phase] >= 0 ? mTimes[phase] - mStartTime : -1;
+    }
+
+    /**
+     * Tells whether all phases have been reached.
+     *
+     * @return true if complete, else false.
+     */
+    public boolean isComplete() {
+        for (long time : mTimes) {
+            if (time < 0) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            if (i > 0) builder.append(", ");
+            builder.append(PHASE_NAMES[i]).append('=');
+            if (mTimes[i] >= 0) {
+                builder.append(getElapsed(i)).append(" ms");
+            } else {
+                builder.append('-');
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.playback;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import fi.finwe.orion360.OrionVideoView;
+
+/**
+ * Provides the shared {@link PlaybackClock} of an Orion video view.
+ * <p/>
+ * All components that follow the position of the same video view get the same clock, so
+ * the position is read from the player once for all of them. The clock runs on the main
+ * thread, and does not keep the view alive.
+ */
+public class VideoViewClock {
+
+    /** Tag for logging. */
+    public static final String TAG = VideoViewClock.class.getSimpleName();
+
+    /** The scheduler of the main thread. */
+    private static final PlaybackClock.Scheduler sScheduler = new HandlerScheduler();
+
+    /** The clocks, by video view. */
+    private static final Map<OrionVideoView, PlaybackClock> sClocks =
+            new WeakHashMap<OrionVideoView, PlaybackClock>();
+
+
+    /** Not instantiated. */
+    private VideoViewClock() {}
+
+    /**
+     * Get the playback clock of a video view, creating it on first use.
+     *
+     * @param videoView The video view.
+     * @return the clock.
+     */
+    public static synchronized PlaybackClock get(OrionVideoView videoView) {
+        PlaybackClock clock = sClocks.get(videoView);
+        if (null == clock) {
+            clock = new PlaybackClock(new ViewSource(videoView), sScheduler);
+            sClocks.put(videoView, clock);
+        }
+        return clock;
+    }
+
+    /**
+     * Get a scheduler that runs tasks on the main thread, for other components that follow
+     * playback, such as a {@link SeekController}.
+     *
+     * @return the scheduler.
+     */
+    public static PlaybackClock.Scheduler getScheduler() {
+        return sScheduler;
+    }
+
+    /** Reads the position of a video view. */
+    private static class ViewSource implements PlaybackClock.Source {
+
+        /** The video view. */
+        private final WeakReference<OrionVideoView> mVideoView;
+
+        /**
+         * Constructor.
+         *
+         * @param videoView The video view.
+         */
+        ViewSource(OrionVideoView videoView) {
+            mVideoView = new WeakReference<OrionVideoView>(videoView);
+        }
+
+        @Override
+        public int getPosition() {
+            OrionVideoView videoView = mVideoView.get();
+            return null != videoView ? videoView.getCurrentPosition() : 0;
+        }
+
+        @Override
+        public boolean isPlaying() {
+            OrionVideoView videoView = mVideoView.get();
+            return null != videoView && videoView.isPlaying();
+        }
+    }
+
+    /** Runs the wake-ups of a clock on the main thread. */
+    private static class HandlerScheduler implements PlaybackClock.Scheduler {
+
+        /** The handler of the main thread. */
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public long now() {
+            return SystemClock.uptimeMillis();
+        }
+
+        @Override
+        public void schedule(Runnable task, long delayMs) {
+            mHandler.removeCallbacks(task);
+            mHandler.postDelayed(task, delayMs);
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+            mHandler.removeCallbacks(task);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.sensor;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import fi.finwe.math.QuatF;
+import fi.finwe.orion360.sdk.basic.examples.math.MutableQuatF;
+
+/**
+ * Measures the error of an {@link OrientationPredictor} on a recorded orientation trace.
+ * <p/>
+ * The trace is fed to the predictor sample by sample. After each sample, the prediction for
+ * the sample time plus the look-ahead is compared to the true orientation at that time,
+ * interpolated from the trace, and the angle between the two is the error. A predictor with
+ * the maximum angle set to 0 never extrapolates, and gives the error of showing the latest
+ * sample as is, which is the baseline that prediction must beat.
+ * <p/>
+ * This class does not depend on the Android framework and can be used on a desktop JVM.
+ */
+public class OrientationPredictionEvaluator {
+
+    /**
+     * Prediction error statistics, in degrees.
+     */
+    public static class Result {
+
+        /** The number of predictions evaluated. */
+        public final int count;
+
+        /** The mean error. */
+        public final float mean;
+
+        /** The 95th percentile error. */
+        public final float p95;
+
+        /** The maximum error. */
+        public final float max;
+
+        /**
+         * Constructor.
+         *
+         * @param count The number of predictions evaluated.
+         * @param mean The mean error.
+         * @param p95 The 95th percentile error.
+         * @param max The maximum error.
+         */
+        public Result(int count, float mean, float p95, float max) {
+            this.count = count;
+            this.mean = mean;
+            this.p95 = p95;
+            this.max = max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "n=%d mean=%.2f p95=%.2f max=%.2f deg",
+                    count, mean, p95, max);
+        }
+    }
+
+
+    /**
+     * Evaluate a predictor on a trace.
+     *
+     * @param trace The trace.
+     * @param predictor The predictor; it is reset before the evaluation.
+     * @param lookAheadNanos The look-ahead to evaluate, in nanoseconds.
+     * @return the error statistics.
+     */
+    public static Result evaluate(OrientationTrace trace, OrientationPredictor predictor,
+                                  long lookAheadNanos) {
+        int size = trace.size();
+        float[] errors = new float[size];
+        int count = 0;
+        double sum = 0;
+        QuatF sample = new QuatF(1.0f, 0.0f, 0.0f, 0.0f);
+        QuatF next = new QuatF(1.0f, 0.0f, 0.0f, 0.0f);
+        MutableQuatF predicted = new MutableQuatF();
+        MutableQuatF actual = new MutableQuatF();
+
+        predictor.reset();
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            long time = trace.getTimeNanos(i);
+            predictor.addSample(time, trace.getOrientation(i, sample));
+
+            // Find the samples around the target time; they only move forward.
+            long target = time + lookAheadNanos;
+            if (target > trace.getDurationNanos()) break;
+            while (j < size - 1 && trace.getTimeNanos(j + 1) < target) j++;
+            if (j == size - 1) {
+                actual.set(trace.getOrientation(j, sample));
+            } else {
+                long t0 = trace.getTimeNanos(j);
+                long t1 = trace.getTimeNanos(j + 1);
+                float fraction = t1 > t0 ? (float) (target - t0) / (t1 - t0) : 0.0f;
+                slerp(trace.getOrientation(j, sample), trace.getOrientation(j + 1, next),
+                        fraction, actual);
+            }
+
+            predictor.predict(target, predicted);
+            float error = angleBetween(predicted, actual);
+            errors[count++] = error;
+            sum += error;
+        }
+
+        if (count == 0) {
+            return new Result(0, 0, 0, 0);
+        }
+        Arrays.sort(errors, 0, count);
+        int p95 = Math.min(count - 1, (int) Math.ceil(0.95 * count) - 1);
+        return new Result(count, (float) (sum / count), errors[p95], errors[count - 1]);
+    }
+
+    /**
+     * Spherical linear interpolation between two orientations.
+     *
+     * @param a The orientation at fraction 0.
+     * @param b The orientation at fraction 1.
+     * @param fraction The fraction, in [0, 1].
+     * @param out The quaternion where to write the result.
+     */
+    static void slerp(QuatF a, QuatF b, float fraction, MutableQuatF out) {
+        float bw = b.w, bx = b.x, by = b.y, bz = b.z;
+        float dot = a.w * bw + a.x * bx + a.y * by + a.z * bz;
+        if (dot < 0.0f) {
+            dot = -dot;
+            bw = -bw;
+            bx = -bx;
+            by = -by;
+            bz = -bz;
+        }
+        float wa = 1.0f - fraction;
+        float wb = fraction;
+        if (dot < 0.9995f) {
+            double theta = Math.acos(dot);
+            double sin = Math.sin(theta);
+            wa = (float) (Math.sin((1.0f - fraction) * theta) / sin);
+            wb = (float) (Math.sin(fraction * theta) / sin);
+        }
+        out.set(wa * a.w + wb * bw, wa * a.x + wb * bx, wa * a.y + wb * by, wa * a.z + wb * bz);
+    }
+
+    /**
+     * Get the rotation angle between two orientations.
+     *
+     * @param a The first orientation.
+     * @param b The second orientation.
+     * @return the angle in degrees.
+     */
+    static float angleBetween(MutableQuatF a, MutableQuatF b) {
+        double dot = a.w * b.w + a.x * b.x + a.y * b.y + a.z * b.z;
+        double norm = Math.sqrt((a.w * a.w + a.x * a.x + a.y * a.y + a.z * a.z)
+                * (b.w * b.w + b.x * b.x + b.y * b.y + b.z * b.z));
+        double cos = Math.min(1.0, Math.abs(dot) / norm);
+        return (float) Math.toDegrees(2 * Math.acos(cos));
+    }
+}
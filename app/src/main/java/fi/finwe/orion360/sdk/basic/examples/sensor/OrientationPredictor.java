@@ -0,0 +1,260 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.sensor;
+
+import fi.finwe.math.QuatF;
+import fi.finwe.orion360.sdk.basic.examples.math.MutableQuatF;
+
+/**
+ * Predicts the device orientation a short time ahead, from the recent orientation samples.
+ * <p/>
+ * An orientation pushed to a tag from a sensor callback is drawn one or more frames later,
+ * so during fast head turns the tag lags behind. The predictor estimates the angular velocity
+ * from consecutive samples, smooths it with an exponential moving average to suppress sensor
+ * noise, and extrapolates the latest orientation along it to the expected display time.
+ * The extrapolated angle is capped, so that a glitch in the samples cannot throw the
+ * prediction far off.
+ * <p/>
+ * Use {@link OrientationPredictionEvaluator} to tune the look-ahead and smoothing on recorded
+ * traces. Does not allocate memory. Not thread safe.
+ * <p/>
+ * This class does not depend on the Android framework and can be used on a desktop JVM.
+ */
+public class OrientationPredictor {
+
+    /** Default look-ahead, about two display frames at 60 Hz. */
+    public static final long DEFAULT_LOOK_AHEAD_NANOS = 33000000L;
+
+    /** Default smoothing factor for the angular velocity. */
+    public static final float DEFAULT_SMOOTHING = 0.5f;
+
+    /** Default maximum extrapolated angle, in radians. */
+    public static final float DEFAULT_MAX_ANGLE = (float) Math.toRadians(20);
+
+    /** Sample gap after which the velocity is estimated from scratch, in nanoseconds. */
+    private static final long MAX_SAMPLE_GAP_NANOS = 200000000L;
+
+    /** The look-ahead, in nanoseconds. */
+    private long mLookAheadNanos = DEFAULT_LOOK_AHEAD_NANOS;
+
+    /** The smoothing factor; 1 uses the latest velocity as is. */
+    private float mSmoothing = DEFAULT_SMOOTHING;
+
+    /** The maximum extrapolated angle, in radians. */
+    private float mMaxAngle = DEFAULT_MAX_ANGLE;
+
+    /** The time of the latest sample, in nanoseconds. */
+    private long mTimeNanos;
+
+    /** The latest orientation, on the same hemisphere as the previous one. */
+    private float mW, mX, mY, mZ;
+
+    /** The smoothed angular velocity vector, in radians per second. */
+    private float mVelocityX, mVelocityY, mVelocityZ;
+
+    /** The number of samples since the last reset, capped at 2. */
+    private int mSampleCount = 0;
+
+
+    /**
+     * Set the look-ahead used by {@link #predict(MutableQuatF)}.
+     *
+     * @param lookAheadNanos The look-ahead in nanoseconds; 0 disables prediction.
+     */
+    public void setLookAhead(long lookAheadNanos) {
+        mLookAheadNanos = Math.max(0, lookAheadNanos);
+    }
+
+    /**
+     * Get the look-ahead.
+     *
+     * @return the look-ahead in nanoseconds.
+     */
+    public long getLookAhead() {
+        return mLookAheadNanos;
+    }
+
+    /**
+     * Set the smoothing factor of the angular velocity.
+     *
+     * @param smoothing The weight of the latest velocity estimate, in (0, 1]; smaller values
+     *                  suppress more noise but react slower to changes in the motion.
+     */
+    public void setSmoothing(float smoothing) {
+        mSmoothing = Math.max(0.01f, Math.min(1.0f, smoothing));
+    }
+
+    /**
+     * Set the maximum extrapolated angle.
+     *
+     * @param maxAngle The maximum angle, in radians.
+     */
+    public void setMaxAngle(float maxAngle) {
+        mMaxAngle = Math.max(0.0f, maxAngle);
+    }
+
+    /**
+     * Forget the samples, e.g. when the sensors are restarted.
+     */
+    public void reset() {
+        mSampleCount = 0;
+        mVelocityX = mVelocityY = mVelocityZ = 0.0f;
+    }
+
+    /**
+     * Tells whether a sample has been added since the last reset.
+     *
+     * @return true if prediction is possible, else false.
+     */
+    public boolean hasSample() {
+        return mSampleCount > 0;
+    }
+
+    /**
+     * Get the current angular speed estimate.
+     *
+     * @return the angular speed, in radians per second.
+     */
+    public float getAngularSpeed() {
+        return (float) Math.sqrt(mVelocityX * mVelocityX + mVelocityY * mVelocityY
+                + mVelocityZ * mVelocityZ);
+    }
+
+    /**
+     * Add an orientation sample.
+     *
+     * @param timeNanos The time of the sample in nanoseconds, from a monotonic clock.
+     * @param orientation The orientation.
+     */
+    public void addSample(long timeNanos, QuatF orientation) {
+        addSample(timeNanos, orientation.w, orientation.x, orientation.y, orientation.z);
+    }
+
+    /**
+     * Add an orientation sample.
+     *
+     * @param timeNanos The time of the sample in nanoseconds, from a monotonic clock.
+     * @param w The w component of the orientation quaternion.
+     * @param x The x component of the orientation quaternion.
+     * @param y The y component of the orientation quaternion.
+     * @param z The z component of the orientation quaternion.
+     */
+    public void addSample(long timeNanos, float w, float x, float y, float z) {
+        long dt = timeNanos - mTimeNanos;
+        if (mSampleCount > 0 && (dt <= 0 || dt > MAX_SAMPLE_GAP_NANOS)) {
+            if (dt <= 0) return;
+            reset();
+        }
+
+        if (mSampleCount > 0) {
+
+            // q and -q are the same rotation; keep consecutive samples on the same hemisphere
+            // so that the difference is the short way around.
+            if (w * mW + x * mX + y * mY + z * mZ < 0.0f) {
+                w = -w;
+                x = -x;
+                y = -y;
+                z = -z;
+            }
+
+            // Rotation from the previous sample to this one: d = q * conj(previous).
+            float dw = w * mW + x * mX + y * mY + z * mZ;
+            float dx = -w * mX + x * mW - y * mZ + z * mY;
+            float dy = -w * mY + x * mZ + y * mW - z * mX;
+            float dz = -w * mZ - x * mY + y * mX + z * mW;
+
+            // Convert to an angular velocity vector: axis * angle / dt.
+            float sin = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+            float scale = 0.0f;
+            if (sin > 1e-7f) {
+                float angle = 2.0f * (float) Math.atan2(sin, dw);
+                scale = angle / sin / (dt * 1e-9f);
+            }
+            float vx = dx * scale, vy = dy * scale, vz = dz * scale;
+            if (mSampleCount == 1) {
+                mVelocityX = vx;
+                mVelocityY = vy;
+                mVelocityZ = vz;
+            } else {
+                mVelocityX += mSmoothing * (vx - mVelocityX);
+                mVelocityY += mSmoothing * (vy - mVelocityY);
+                mVelocityZ += mSmoothing * (vz - mVelocityZ);
+            }
+        }
+
+        mTimeNanos = timeNanos;
+        mW = w;
+        mX = x;
+        mY = y;
+        mZ = z;
+        mSampleCount = Math.min(2, mSampleCount + 1);
+    }
+
+    /**
+     * Predict the orientation at the latest sample time plus the look-ahead.
+     *
+     * @param out The quaternion where to write the prediction.
+     * @return the out quaternion.
+     */
+    public MutableQuatF predict(MutableQuatF out) {
+        return predict(mTimeNanos + mLookAheadNanos, out);
+    }
+
+    /**
+     * Predict the orientation at a given time.
+     *
+     * @param timeNanos The time, on the same clock as the samples. Times before the latest
+     *                  sample give the latest sample.
+     * @param out The quaternion where to write the prediction.
+     * @return the out quaternion; identity if no samples have been added.
+     */
+    public MutableQuatF predict(long timeNanos, MutableQuatF out) {
+        if (mSampleCount == 0) {
+            return out.setIdentity();
+        }
+        out.set(mW, mX, mY, mZ);
+        float speed = getAngularSpeed();
+        long ahead = timeNanos - mTimeNanos;
+        if (ahead <= 0 || speed < 1e-6f) {
+            return out;
+        }
+
+        // Rotate the latest orientation by the velocity over the look-ahead: e * q.
+        float angle = Math.min(mMaxAngle, speed * ahead * 1e-9f);
+        float s = (float) Math.sin(angle / 2) / speed;
+        float ew = (float) Math.cos(angle / 2);
+        float ex = mVelocityX * s, ey = mVelocityY * s, ez = mVelocityZ * s;
+        return out.set(
+                ew * mW - ex * mX - ey * mY - ez * mZ,
+                ew * mX + ex * mW + ey * mZ - ez * mY,
+                ew * mY - ex * mZ + ey * mW + ez * mX,
+                ew * mZ + ex * mY - ey * mX + ez * mW);
+    }
+}
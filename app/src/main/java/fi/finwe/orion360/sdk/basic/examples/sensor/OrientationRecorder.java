@@ -0,0 +1,259 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.sensor;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import fi.finwe.math.QuatF;
+import fi.finwe.orion360.OrionSensorFusion;
+
+/**
+ * Records the orientation changes of a view to a trace file, see {@link OrientationTrace}.
+ * <p/>
+ * Register the recorder as an orientation change listener of an Orion360 view, and close it
+ * when done. Samples are timestamped with System.nanoTime() when they arrive. The sensor
+ * thread only puts each sample to a lock-free {@link SampleRingBuffer}; a low priority
+ * writer thread opens the file, drains the buffer periodically and writes the samples.
+ * Closing flushes and closes the file in the writer thread too, so no file I/O happens in
+ * the sensor thread or in the caller's thread. If the writer thread falls behind, samples are
+ * dropped and counted. If writing fails, the recorder stops writing and reports the error
+ * from the future returned by {@link #close()}.
+ * <p/>
+ * This class does not depend on the Android framework and can be used on a desktop JVM.
+ */
+public class OrientationRecorder implements OrionSensorFusion.Listener {
+
+    /** Interval for draining the ring buffer, in milliseconds. */
+    private static final long DRAIN_INTERVAL_MS = 250;
+
+    /** Capacity of the ring buffer, in samples; several drain intervals at sensor rate. */
+    private static final int RING_CAPACITY = 1024;
+
+    /** Samples from the sensor thread, waiting to be written. */
+    private final SampleRingBuffer mRing = new SampleRingBuffer(RING_CAPACITY, 4);
+
+    /** The orientation of the sample being recorded. Used in the recording thread only. */
+    private final float[] mSample = new float[4];
+
+    /** The trace file, or null if writing to a given stream. */
+    private final File mFile;
+
+    /** The stream where to write the trace. Used in the writer thread only. */
+    private OutputStream mOut;
+
+    /** The trace writer, or null if not opened. Used in the writer thread only. */
+    private OrientationTraceWriter mWriter;
+
+    /** The first error that occurred while recording, or null. Used in the writer thread only. */
+    private IOException mError;
+
+    /** The number of samples written. */
+    private volatile int mCount = 0;
+
+    /** Writes drained samples to the trace. */
+    private final SampleRingBuffer.Sink mSink = new SampleRingBuffer.Sink() {
+        @Override
+        public void accept(long timeNanos, float[] values, int offset) {
+            if (null == mWriter || null != mError) return;
+            try {
+                mWriter.write(timeNanos, values[offset], values[offset + 1], values[offset + 2],
+                        values[offset + 3]);
+            } catch (IOException e) {
+                mError = e;
+            }
+        }
+    };
+
+    /** Opens the trace. */
+    private final Runnable mOpenTask = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                if (null == mOut) {
+                    mOut = new FileOutputStream(mFile);
+                }
+                mWriter = new OrientationTraceWriter(mOut);
+            } catch (IOException e) {
+                mError = e;
+            }
+        }
+    };
+
+    /** Drains the ring buffer to the trace. */
+    private final Runnable mDrainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /** Drains the ring buffer and closes the trace. */
+    private final Callable<Integer> mCloseTask = new Callable<Integer>() {
+        @Override
+        public Integer call() throws IOException {
+            drain();
+            try {
+                if (null != mWriter) {
+                    mWriter.close();
+                } else if (null != mOut) {
+                    mOut.close();
+                }
+            } catch (IOException e) {
+                if (null == mError) {
+                    mError = e;
+                }
+            }
+            if (null != mError) {
+                throw mError;
+            }
+            return mCount;
+        }
+    };
+
+    /** The writer thread, or null if closed. */
+    private ScheduledExecutorService mExecutor;
+
+
+    /**
+     * Constructor. Starts the writer thread, which creates the file.
+     *
+     * @param file The file where to write the trace. Replaced if it exists.
+     */
+    public OrientationRecorder(File file) {
+        this(file, null);
+    }
+
+    /**
+     * Constructor. Starts the writer thread, which writes the file header.
+     *
+     * @param out The stream where to write the trace. Closed when the recorder is closed.
+     */
+    public OrientationRecorder(OutputStream out) {
+        this(null, out);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file The file where to write the trace, or null if writing to a stream.
+     * @param out The stream where to write the trace, or null if writing to a file.
+     */
+    private OrientationRecorder(File file, OutputStream out) {
+        mFile = file;
+        mOut = out;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "OrientationRecorder");
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.execute(mOpenTask);
+        executor.scheduleWithFixedDelay(mDrainTask, DRAIN_INTERVAL_MS, DRAIN_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+        mExecutor = executor;
+    }
+
+    @Override
+    public void onDeviceOrientationChanged(QuatF orientation) {
+        record(System.nanoTime(), orientation);
+    }
+
+    @Override
+    public void onDeviceDisplayRotationChanged(int rotationDegrees) {}
+
+    /**
+     * Record a sample with a given time. Call from one thread only. Never blocks.
+     *
+     * @param timeNanos The time of the sample in nanoseconds, from any monotonic clock.
+     * @param orientation The orientation.
+     */
+    public void record(long timeNanos, QuatF orientation) {
+        mSample[0] = orientation.w;
+        mSample[1] = orientation.x;
+        mSample[2] = orientation.y;
+        mSample[3] = orientation.z;
+        mRing.offer(timeNanos, mSample);
+    }
+
+    /**
+     * Get the number of samples written so far.
+     *
+     * @return the number of samples.
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Get the number of samples dropped because the writer thread fell behind.
+     *
+     * @return the number of dropped samples.
+     */
+    public long getDroppedCount() {
+        return mRing.getDroppedCount();
+    }
+
+    /**
+     * Stop recording; write the remaining samples and close the trace in the writer thread.
+     *
+     * @return a future for the number of samples written, or for the error if writing failed;
+     * null if the recorder was already closed.
+     */
+    public synchronized Future<Integer> close() {
+        if (null == mExecutor) return null;
+        Future<Integer> result = mExecutor.submit(mCloseTask);
+        mExecutor.shutdown();
+        mExecutor = null;
+        return result;
+    }
+
+    /**
+     * Write the samples in the ring buffer to the trace. Called in the writer thread.
+     */
+    private void drain() {
+        mRing.drain(mSink);
+        if (null != mWriter) {
+            mCount = mWriter.getCount();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.sensor;
+
+import java.util.ArrayList;
+
+import fi.finwe.math.QuatF;
+import fi.finwe.orion360.OrionSensorFusion;
+
+/**
+ * Feeds a recorded {@link OrientationTrace} to orientation listeners.
+ * <p/>
+ * The samples are delivered in the calling thread, with the recorded intervals divided by
+ * a speed factor: 1 replays in real time, 10 ten times faster, and 0 as fast as possible,
+ * which is what benchmarks and regression tests usually want. The listeners get the same
+ * quaternion instance for every sample, like from the sensor fusion, so they must copy it
+ * if they keep it.
+ * <p/>
+ * This class does not depend on the Android framework and can be used on a desktop JVM.
+ */
+public class OrientationReplayer {
+
+    /** Remaining wait below which the replayer yields instead of sleeping, in nanoseconds. */
+    private static final long SPIN_THRESHOLD_NANOS = 1000000;
+
+    /** The trace to replay. */
+    private final OrientationTrace mTrace;
+
+    /** The listeners. */
+    private final ArrayList<OrionSensorFusion.Listener> mListeners = new ArrayList<>();
+
+    /** The quaternion passed to the listeners, reused for every sample. */
+    private final QuatF mOrientation = new QuatF(1.0f, 0.0f, 0.0f, 0.0f);
+
+    /** The replay speed factor, or 0 for no delays. */
+    private float mSpeed = 1.0f;
+
+
+    /**
+     * Constructor.
+     *
+     * @param trace The trace to replay.
+     */
+    public OrientationReplayer(OrientationTrace trace) {
+        mTrace = trace;
+    }
+
+    /**
+     * Add a listener.
+     *
+     * @param listener The listener.
+     */
+    public void addListener(OrionSensorFusion.Listener listener) {
+        mListeners.add(listener);
+    }
+
+    /**
+     * Remove a listener.
+     *
+     * @param listener The listener.
+     */
+    public void removeListener(OrionSensorFusion.Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Set the replay speed.
+     *
+     * @param speed The speed factor, 1 for real time, or 0 for no delays.
+     */
+    public void setSpeed(float speed) {
+        mSpeed = Math.max(0.0f, speed);
+    }
+
+    /**
+     * Replay the whole trace. Blocks until all samples have been delivered.
+     *
+     * @return the number of samples delivered.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public int run() throws InterruptedException {
+        return run(0, mTrace.size());
+    }
+
+    /**
+     * Replay a range of samples. Blocks until all samples have been delivered.
+     *
+     * @param from The index of the first sample.
+     * @param to The index after the last sample.
+     * @return the number of samples delivered.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public int run(int from, int to) throws InterruptedException {
+        if (from >= to) return 0;
+        long startNanos = System.nanoTime();
+        long firstTraceNanos = mTrace.getTimeNanos(from);
+        for (int i = from; i < to; i++) {
+            if (mSpeed > 0.0f) {
+                long due = startNanos
+                        + (long) ((mTrace.getTimeNanos(i) - firstTraceNanos) / mSpeed);
+                waitUntil(due);
+            } else if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            mTrace.getOrientation(i, mOrientation);
+            for (int j = 0; j < mListeners.size(); j++) {
+                mListeners.get(j).onDeviceOrientationChanged(mOrientation);
+            }
+        }
+        return to - from;
+    }
+
+    /**
+     * Wait until System.nanoTime() reaches a given time.
+     */
+    private static void waitUntil(long dueNanos) throws InterruptedException {
+        while (true) {
+            long remaining = dueNanos - System.nanoTime();
+            if (remaining <= 0) return;
+            if (remaining > SPIN_THRESHOLD_NANOS) {
+                Thread.sleep(remaining / 1000000, (int) (remaining % 1000000));
+            } else {
+                Thread.yield();
+                if (Thread.interrupted()) throw new InterruptedException();
+            }
+        }
+    }
+}
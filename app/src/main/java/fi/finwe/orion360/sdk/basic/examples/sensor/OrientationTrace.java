@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.sensor;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import fi.finwe.math.QuatF;
+
+/**
+ * A recorded stream of device orientations with timestamps, kept in memory.
+ * <p/>
+ * Traces are recorded on a device with {@link OrientationRecorder}, and fed back to
+ * orientation listeners with {@link OrientationReplayer}, which makes features that react
+ * to device movement testable and measurable on a desktop JVM without a device.
+ * <p/>
+ * File format, all values big-endian:
+ * <pre>
+ * int   magic 'ORNT'
+ * int   version (1)
+ * then for each sample, 20 bytes:
+ * int   time since the previous sample in microseconds (0 for the first sample)
+ * float w, x, y, z of the orientation quaternion
+ * </pre>
+ * A partial sample at the end of a file, e.g. after the app was killed while recording,
+ * is ignored.
+ * <p/>
+ * This class does not depend on the Android framework and can be used on a desktop JVM.
+ */
+public class OrientationTrace {
+
+    /** The magic number at the start of a trace file. */
+    public static final int MAGIC = 0x4F524E54;
+
+    /** The file format version. */
+    public static final int VERSION = 1;
+
+    /** Initial capacity of the arrays. */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /** The sample times in nanoseconds, relative to the first sample. */
+    private long[] mTimes = new long[INITIAL_CAPACITY];
+
+    /** The quaternion components of the samples. */
+    private float[] mW = new float[INITIAL_CAPACITY], mX = new float[INITIAL_CAPACITY],
+            mY = new float[INITIAL_CAPACITY], mZ = new float[INITIAL_CAPACITY];
+
+    /** The number of samples. */
+    private int mSize = 0;
+
+    /** The absolute time of the first sample, used for making the times relative. */
+    private long mFirstTimeNanos = 0;
+
+
+    /**
+     * Read a trace from a stream.
+     *
+     * @param in The stream. Not closed by this method.
+     * @return the trace.
+     * @throws IOException if reading fails, or the stream is not a supported trace file.
+     */
+    public static OrientationTrace read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not an orientation trace");
+        }
+        int version = data.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported orientation trace version " + version);
+        }
+        OrientationTrace trace = new OrientationTrace();
+        long timeMicros = 0;
+        while (true) {
+            try {
+                timeMicros += data.readInt();
+                float w = data.readFloat();
+                float x = data.readFloat();
+                float y = data.readFloat();
+                float z = data.readFloat();
+                trace.add(timeMicros * 1000, w, x, y, z);
+            } catch (EOFException e) {
+                break;
+            }
+        }
+        return trace;
+    }
+
+    /**
+     * Write the trace to a stream.
+     *
+     * @param out The stream. Not closed by this method, but flushed.
+     * @throws IOException if writing fails.
+     */
+    public void write(OutputStream out) throws IOException {
+        OrientationTraceWriter writer = new OrientationTraceWriter(out);
+        for (int i = 0; i < mSize; i++) {
+            writer.write(mTimes[i], mW[i], mX[i], mY[i], mZ[i]);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Add a sample. Samples must be added in time order.
+     *
+     * @param timeNanos The time of the sample in nanoseconds, from any monotonic clock.
+     * @param w The w component of the orientation quaternion.
+     * @param x The x component of the orientation quaternion.
+     * @param y The y component of the orientation quaternion.
+     * @param z The z component of the orientation quaternion.
+     */
+    public void add(long timeNanos, float w, float x, float y, float z) {
+        if (mSize == 0) {
+            mFirstTimeNanos = timeNanos;
+        }
+        if (mSize == mTimes.length) {
+            int capacity = 2 * mSize;
+            mTimes = Arrays.copyOf(mTimes, capacity);
+            mW = Arrays.copyOf(mW, capacity);
+            mX = Arrays.copyOf(mX, capacity);
+            mY = Arrays.copyOf(mY, capacity);
+            mZ = Arrays.copyOf(mZ, capacity);
+        }
+        mTimes[mSize] = timeNanos - mFirstTimeNanos;
+        mW[mSize] = w;
+        mX[mSize] = x;
+        mY[mSize] = y;
+        mZ[mSize] = z;
+        mSize++;
+    }
+
+    /**
+     * Get the number of samples.
+     *
+     * @return the number of samples.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Get the duration of the trace, from the first sample to the last.
+     *
+     * @return the duration in nanoseconds.
+     */
+    public long getDurationNanos() {
+        return mSize == 0 ? 0 : mTimes[mSize - 1];
+    }
+
+    /**
+     * Get the time of a sample, relative to the first sample.
+     *
+     * @param index The index of the sample.
+     * @return the time in nanoseconds.
+     */
+    public long getTimeNanos(int index) {
+        return mTimes[index];
+    }
+
+    /**
+     * Copy the orientation of a sample to a quaternion.
+     *
+     * @param index The index of the sample.
+     * @param out The quaternion where to copy the orientation.
+     * @return the out quaternion.
+     */
+    public QuatF getOrientation(int index, QuatF out) {
+        out.w = mW[index];
+        out.x = mX[index];
+        out.y = mY[index];
+        out.z = mZ[index];
+        return out;
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.sensor;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes orientation samples to a stream in the {@link OrientationTrace} file format.
+ * <p/>
+ * Samples are written as they arrive, so a trace of any length can be recorded without
+ * keeping it in memory. Writes are buffered; call {@link #close()} when done. Not thread safe.
+ * <p/>
+ * This class does not depend on the Android framework and can be used on a desktop JVM.
+ */
+public class OrientationTraceWriter implements Closeable {
+
+    /** Size of the write buffer, in bytes. */
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    /** The output. */
+    private final DataOutputStream mOut;
+
+    /** The time of the previous sample in microseconds, or -1 before the first sample. */
+    private long mPreviousMicros = -1;
+
+    /** The number of samples written. */
+    private int mCount = 0;
+
+
+    /**
+     * Constructor. Writes the file header.
+     *
+     * @param out The stream where to write the trace. Closed when the writer is closed.
+     * @throws IOException if writing fails.
+     */
+    public OrientationTraceWriter(OutputStream out) throws IOException {
+        mOut = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        mOut.writeInt(OrientationTrace.MAGIC);
+        mOut.writeInt(OrientationTrace.VERSION);
+    }
+
+    /**
+     * Write a sample.
+     *
+     * @param timeNanos The time of the sample in nanoseconds, from any monotonic clock.
+     * @param w The w component of the orientation quaternion.
+     * @param x The x component of the orientation quaternion.
+     * @param y The y component of the orientation quaternion.
+     * @param z The z component of the orientation quaternion.
+     * @throws IOException if writing fails.
+     */
+    public void write(long timeNanos, float w, float x, float y, float z) throws IOException {
+
+        // Times are stored as deltas; deriving them from the absolute microseconds keeps
+        // rounding errors from accumulating over a long trace.
+        long micros = timeNanos / 1000;
+        long delta = mPreviousMicros < 0 ? 0 : micros - mPreviousMicros;
+        mOut.writeInt((int) Math.max(0, Math.min(Integer.MAX_VALUE, delta)));
+        mOut.writeFloat(w);
+        mOut.writeFloat(x);
+        mOut.writeFloat(y);
+        mOut.writeFloat(z);
+        mPreviousMicros = micros;
+        mCount++;
+    }
+
+    /**
+     * Get the number of samples written.
+     *
+     * @return the number of samples.
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Write the buffered samples to the stream.
+     *
+     * @throws IOException if writing fails.
+     */
+    public void flush() throws IOException {
+        mOut.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mOut.close();
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.sensor;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free ring buffer of samples, for one producer thread and one consumer thread.
+ * <p/>
+ * Each sample is a long stamp (e.g. a time or a video position) and a fixed number of float
+ * values, for example the components of an orientation quaternion or of a gaze vector. The
+ * values of each sample are stored next to each other in one preallocated array.
+ * <p/>
+ * The producer (e.g. the sensor thread) offers samples, and the consumer (e.g. a writer
+ * thread) drains them. Offering a sample copies it to the arrays and publishes the new tail
+ * with an ordered store; it never blocks, locks or allocates. When the consumer falls behind
+ * and the buffer is full, new samples are dropped and counted instead.
+ * <p/>
+ * This class has no Android dependencies and can be tested on a desktop JVM.
+ */
+public class SampleRingBuffer {
+
+    /** Receives drained samples. */
+    public interface Sink {
+
+        /**
+         * Called for each drained sample.
+         *
+         * @param stamp The stamp of the sample.
+         * @param values The array that holds the values of the sample. Valid only during
+         *               the call.
+         * @param offset The index of the first value of the sample in the array.
+         */
+        void accept(long stamp, float[] values, int offset);
+    }
+
+    /** Mask for wrapping sequence numbers to array indices. */
+    private final int mMask;
+
+    /** The number of values per sample. */
+    private final int mColumns;
+
+    /** The stamps of the samples. */
+    private final long[] mStamps;
+
+    /** The values of the samples, mColumns per sample. */
+    private final float[] mValues;
+
+    /** Sequence number of the next sample to drain; written by the consumer only. */
+    private final AtomicLong mHead = new AtomicLong();
+
+    /** Sequence number of the next sample to offer; written by the producer only. */
+    private final AtomicLong mTail = new AtomicLong();
+
+    /** The producer's copy of the head, refreshed only when the buffer seems full. */
+    private long mCachedHead = 0;
+
+    /** The number of dropped samples; written by the producer only. */
+    private volatile long mDropped = 0;
+
+
+    /**
+     * Constructor.
+     *
+     * @param capacity The minimum capacity, rounded up to a power of two.
+     * @param columns The number of values per sample.
+     */
+    public SampleRingBuffer(int capacity, int columns) {
+        if (columns < 1) {
+            throw new IllegalArgumentException("At least one value per sample is needed");
+        }
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mMask = size - 1;
+        mColumns = columns;
+        mStamps = new long[size];
+        mValues = new float[size * columns];
+    }
+
+    /**
+     * Get the capacity.
+     *
+     * @return the number of samples that fit in the buffer.
+     */
+    public int getCapacity() {
+        return mMask + 1;
+    }
+
+    /**
+     * Get the number of values per sample.
+     *
+     * @return the number of values.
+     */
+    public int getColumnCount() {
+        return mColumns;
+    }
+
+    /**
+     * Offer a sample. Call from the producer thread only.
+     *
+     * @param stamp The stamp of the sample.
+     * @param values The values of the sample; the first getColumnCount() elements are copied,
+     *               so the caller can reuse the array.
+     * @return true if the sample was stored, false if it was dropped because the buffer is full.
+     */
+    public boolean offer(long stamp, float[] values) {
+        long tail = mTail.get();
+        if (tail - mCachedHead > mMask) {
+            mCachedHead = mHead.get();
+            if (tail - mCachedHead > mMask) {
+                mDropped++;
+                return false;
+            }
+        }
+        int index = (int) tail & mMask;
+        mStamps[index] = stamp;
+        System.arraycopy(values, 0, mValues, index * mColumns, mColumns);
+
+        // The ordered store publishes the sample to the consumer after the writes above.
+        mTail.lazySet(tail + 1);
+        return true;
+    }
+
+    /**
+     * Drain all available samples. Call from the consumer thread only.
+     *
+     * @param sink The sink that receives the samples.
+     * @return the number of samples drained.
+     */
+    public int drain(Sink sink) {
+        long head = mHead.get();
+        long tail = mTail.get();
+        for (long i = head; i < tail; i++) {
+            int index = (int) i & mMask;
+            sink.accept(mStamps[index], mValues, index * mColumns);
+        }
+
+        // Release the slots to the producer only after they have been read.
+        mHead.lazySet(tail);
+        return (int) (tail - head);
+    }
+
+    /**
+     * Get the number of samples dropped because the buffer was full.
+     *
+     * @return the number of dropped samples.
+     */
+    public long getDroppedCount() {
+        return mDropped;
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.tag;
+
+import fi.finwe.math.QuatF;
+import fi.finwe.math.Vec3F;
+import fi.finwe.orion360.OrionVideoView;
+import fi.finwe.orion360.sdk.basic.examples.animation.TagAnimationScheduler;
+
+/**
+ * Batches the tag property updates of a video view, and flushes them once per frame.
+ * <p/>
+ * Use the setters of this class in place of the corresponding video view methods. The first
+ * change after a flush posts one flush to the {@link TagAnimationScheduler}, to run in the
+ * next frame right after the tag animations, so all changes made in the UI thread during
+ * a frame, including those made by the animations, reach the video view together. Redundant
+ * writes are merged (the last value wins), and values that equal those already applied
+ * are skipped, see {@link TagChanges}.
+ * <p/>
+ * Tags must still be created directly with the video view. All methods must be called
+ * from the main thread.
+ */
+public class TagBatch implements Runnable {
+
+    /** Tag for logging. */
+    public static final String TAG = TagBatch.class.getSimpleName();
+
+    /** The video view where the changes are applied. */
+    private final OrionVideoView mOrionVideoView;
+
+    /** The recorded changes. */
+    private final TagChanges mChanges = new TagChanges();
+
+    /** The rotation that is passed to the video view, reused at every flush. */
+    private final QuatF mRotation = new QuatF(1.0f, 0.0f, 0.0f, 0.0f);
+
+    /** Applies the flushed changes to the video view. */
+    private final TagChanges.Target mTarget = new TagChanges.Target() {
+
+        @Override
+        public void setTagLocation(int index, float x, float y, float z) {
+            mOrionVideoView.setTagLocation(index, x, y, z);
+        }
+
+        @Override
+        public void setTagScale(int index, float x, float y) {
+            mOrionVideoView.setTagScale(index, x, y);
+        }
+
+        @Override
+        public void setTagAlpha(int index, float alpha) {
+            mOrionVideoView.setTagAlpha(index, alpha);
+        }
+
+        @Override
+        public void setTagRotation(int index, float w, float x, float y, float z) {
+            mRotation.w = w;
+            mRotation.x = x;
+            mRotation.y = y;
+            mRotation.z = z;
+            mOrionVideoView.setTagRotation(index, mRotation);
+        }
+    };
+
+    /** Flag for indicating whether a flush has been posted. */
+    private boolean mFlushPosted = false;
+
+
+    /**
+     * Constructor.
+     *
+     * @param view The video view where the changes are applied.
+     */
+    public TagBatch(OrionVideoView view) {
+        mOrionVideoView = view;
+    }
+
+    /**
+     * Set the location of a tag.
+     *
+     * @param index The tag index.
+     * @param x The x coordinate of the location.
+     * @param y The y coordinate of the location.
+     * @param z The z coordinate of the location.
+     */
+    public void setTagLocation(int index, float x, float y, float z) {
+        mChanges.setLocation(index, x, y, z);
+        postFlush();
+    }
+
+    /**
+     * Set the location of a tag.
+     *
+     * @param index The tag index.
+     * @param location The location.
+     */
+    public void setTagLocation(int index, Vec3F location) {
+        setTagLocation(index, location.x, location.y, location.z);
+    }
+
+    /**
+     * Set the scale of a tag.
+     *
+     * @param index The tag index.
+     * @param x The horizontal scale.
+     * @param y The vertical scale.
+     */
+    public void setTagScale(int index, float x, float y) {
+        mChanges.setScale(index, x, y);
+        postFlush();
+    }
+
+    /**
+     * Set the alpha of a tag.
+     *
+     * @param index The tag index.
+     * @param alpha The alpha value.
+     */
+    public void setTagAlpha(int index, float alpha) {
+        mChanges.setAlpha(index, alpha);
+        postFlush();
+    }
+
+    /**
+     * Set the rotation of a tag.
+     *
+     * @param index The tag index.
+     * @param rotation The rotation.
+     */
+    public void setTagRotation(int index, QuatF rotation) {
+        mChanges.setRotation(index, rotation.w, rotation.x, rotation.y, rotation.z);
+        postFlush();
+    }
+
+    /**
+     * Apply all pending changes to the video view now.
+     */
+    public void flush() {
+        mChanges.flush(mTarget);
+    }
+
+    /**
+     * Drop all pending changes and the posted flush, e.g. when the video view is destroyed.
+     */
+    public void cancel() {
+        mChanges.clear();
+        if (mFlushPosted) {
+            TagAnimationScheduler.getInstance().removeAfterAnimations(this);
+            mFlushPosted = false;
+        }
+    }
+
+    @Override
+    public void run() {
+        mFlushPosted = false;
+        flush();
+    }
+
+    /**
+     * Post a flush for the next frame, unless one is already posted.
+     */
+    private void postFlush() {
+        if (mFlushPosted) return;
+        mFlushPosted = true;
+        TagAnimationScheduler.getInstance().postAfterAnimations(this);
+    }
+}
@@ -0,0 +1,314 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.tag;
+
+import java.util.Arrays;
+
+/**
+ * Records tag property changes and applies them together, once per property and tag.
+ * <p/>
+ * Each setter only stores the new value and marks the property dirty; writing the same
+ * property again before a flush replaces the value, so the last write wins. {@link #flush}
+ * then applies the dirty properties to a {@link Target}, tag by tag in the order the tags
+ * were first changed. Values equal to those applied in the previous flush are skipped, so
+ * that for example hiding already hidden tags costs nothing.
+ * <p/>
+ * The location and the rotation of a tag are two ways to set its transform: the rotation
+ * also places the tag on the sphere, and setting the location resets the rotation. Hence
+ * they replace each other, and only the one written last is applied.
+ * <p/>
+ * Tags are identified by their non-negative tag indices, which are used as array indices
+ * internally. Does not allocate memory once the arrays have grown to the largest tag index.
+ * Not thread safe.
+ * <p/>
+ * This class has no Android dependencies and can be tested on a desktop JVM.
+ */
+public class TagChanges {
+
+    /** Receives the changes at flush. */
+    public interface Target {
+
+        /**
+         * Set the location of a tag.
+         *
+         * @param index The tag index.
+         * @param x The x coordinate of the location.
+         * @param y The y coordinate of the location.
+         * @param z The z coordinate of the location.
+         */
+        void setTagLocation(int index, float x, float y, float z);
+
+        /**
+         * Set the scale of a tag.
+         *
+         * @param index The tag index.
+         * @param x The horizontal scale.
+         * @param y The vertical scale.
+         */
+        void setTagScale(int index, float x, float y);
+
+        /**
+         * Set the alpha of a tag.
+         *
+         * @param index The tag index.
+         * @param alpha The alpha value.
+         */
+        void setTagAlpha(int index, float alpha);
+
+        /**
+         * Set the rotation of a tag.
+         *
+         * @param index The tag index.
+         * @param w The w component of the rotation quaternion.
+         * @param x The x component of the rotation quaternion.
+         * @param y The y component of the rotation quaternion.
+         * @param z The z component of the rotation quaternion.
+         */
+        void setTagRotation(int index, float w, float x, float y, float z);
+    }
+
+    /** Property flag for the location. */
+    private static final int LOCATION = 1;
+
+    /** Property flag for the scale. */
+    private static final int SCALE = 1 << 1;
+
+    /** Property flag for the alpha. */
+    private static final int ALPHA = 1 << 2;
+
+    /** Property flag for the rotation. */
+    private static final int ROTATION = 1 << 3;
+
+    /** Number of floats stored per tag. */
+    private static final int STRIDE = 10;
+
+    /** Offsets of the properties within the floats of a tag. */
+    private static final int OFFSET_LOCATION = 0, OFFSET_SCALE = 3, OFFSET_ALPHA = 5,
+            OFFSET_ROTATION = 6;
+
+    /** The pending values, STRIDE floats per tag. */
+    private float[] mPending = new float[0];
+
+    /** The values applied in previous flushes, STRIDE floats per tag. */
+    private float[] mApplied = new float[0];
+
+    /** The dirty properties of each tag. */
+    private int[] mDirty = new int[0];
+
+    /** The properties of each tag that have been applied at least once. */
+    private int[] mKnown = new int[0];
+
+    /** The tags with dirty properties, in the order they were first changed. */
+    private int[] mDirtyTags = new int[0];
+
+    /** The number of tags with dirty properties. */
+    private int mDirtyCount = 0;
+
+
+    /**
+     * Record a new location for a tag.
+     *
+     * @param index The tag index.
+     * @param x The x coordinate of the location.
+     * @param y The y coordinate of the location.
+     * @param z The z coordinate of the location.
+     */
+    public void setLocation(int index, float x, float y, float z) {
+        int base = mark(index, LOCATION, ROTATION) + OFFSET_LOCATION;
+        mPending[base] = x;
+        mPending[base + 1] = y;
+        mPending[base + 2] = z;
+    }
+
+    /**
+     * Record a new scale for a tag.
+     *
+     * @param index The tag index.
+     * @param x The horizontal scale.
+     * @param y The vertical scale.
+     */
+    public void setScale(int index, float x, float y) {
+        int base = mark(index, SCALE, 0) + OFFSET_SCALE;
+        mPending[base] = x;
+        mPending[base + 1] = y;
+    }
+
+    /**
+     * Record a new alpha for a tag.
+     *
+     * @param index The tag index.
+     * @param alpha The alpha value.
+     */
+    public void setAlpha(int index, float alpha) {
+        int base = mark(index, ALPHA, 0) + OFFSET_ALPHA;
+        mPending[base] = alpha;
+    }
+
+    /**
+     * Record a new rotation for a tag.
+     *
+     * @param index The tag index.
+     * @param w The w component of the rotation quaternion.
+     * @param x The x component of the rotation quaternion.
+     * @param y The y component of the rotation quaternion.
+     * @param z The z component of the rotation quaternion.
+     */
+    public void setRotation(int index, float w, float x, float y, float z) {
+        int base = mark(index, ROTATION, LOCATION) + OFFSET_ROTATION;
+        mPending[base] = w;
+        mPending[base + 1] = x;
+        mPending[base + 2] = y;
+        mPending[base + 3] = z;
+    }
+
+    /**
+     * Tells whether there are changes waiting for a flush.
+     *
+     * @return true if there are pending changes, else false.
+     */
+    public boolean isDirty() {
+        return mDirtyCount > 0;
+    }
+
+    /**
+     * Forget that values have been applied, so that the next flush applies all changes
+     * even if they equal the previous values. Use when the target has been reset.
+     */
+    public void invalidate() {
+        Arrays.fill(mKnown, 0);
+    }
+
+    /**
+     * Drop all pending changes.
+     */
+    public void clear() {
+        for (int i = 0; i < mDirtyCount; i++) {
+            mDirty[mDirtyTags[i]] = 0;
+        }
+        mDirtyCount = 0;
+    }
+
+    /**
+     * Apply all pending changes to a target.
+     *
+     * @param target The target.
+     * @return the number of property writes made to the target.
+     */
+    public int flush(Target target) {
+        int writes = 0;
+
+        // The target may record new changes while applying these; they wait for the next flush.
+        int count = mDirtyCount;
+        for (int i = 0; i < count; i++) {
+            int index = mDirtyTags[i];
+            int dirty = mDirty[index];
+            mDirty[index] = 0;
+            int base = index * STRIDE;
+            if ((dirty & LOCATION) != 0 && apply(index, LOCATION, base + OFFSET_LOCATION, 3)) {
+                target.setTagLocation(index, mPending[base + OFFSET_LOCATION],
+                        mPending[base + OFFSET_LOCATION + 1],
+                        mPending[base + OFFSET_LOCATION + 2]);
+                writes++;
+            }
+            if ((dirty & SCALE) != 0 && apply(index, SCALE, base + OFFSET_SCALE, 2)) {
+                target.setTagScale(index, mPending[base + OFFSET_SCALE],
+                        mPending[base + OFFSET_SCALE + 1]);
+                writes++;
+            }
+            if ((dirty & ALPHA) != 0 && apply(index, ALPHA, base + OFFSET_ALPHA, 1)) {
+                target.setTagAlpha(index, mPending[base + OFFSET_ALPHA]);
+                writes++;
+            }
+            if ((dirty & ROTATION) != 0 && apply(index, ROTATION, base + OFFSET_ROTATION, 4)) {
+                target.setTagRotation(index, mPending[base + OFFSET_ROTATION],
+                        mPending[base + OFFSET_ROTATION + 1],
+                        mPending[base + OFFSET_ROTATION + 2],
+                        mPending[base + OFFSET_ROTATION + 3]);
+                writes++;
+            }
+        }
+
+        // Keep the changes that were recorded during the flush.
+        System.arraycopy(mDirtyTags, count, mDirtyTags, 0, mDirtyCount - count);
+        mDirtyCount -= count;
+        return writes;
+    }
+
+    /**
+     * Mark a property of a tag dirty, and drop a pending property that it replaces.
+     *
+     * @return the index of the first float of the tag.
+     */
+    private int mark(int index, int property, int replaced) {
+        if (index >= mDirty.length) {
+            grow(index + 1);
+        }
+        if (mDirty[index] == 0) {
+            mDirtyTags[mDirtyCount++] = index;
+        }
+        mDirty[index] = (mDirty[index] & ~replaced) | property;
+        return index * STRIDE;
+    }
+
+    /**
+     * Copy a pending value to the applied values, unless it equals the applied value.
+     *
+     * @return true if the value has to be applied, else false.
+     */
+    private boolean apply(int index, int property, int offset, int length) {
+        boolean changed = (mKnown[index] & property) == 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (mApplied[i] != mPending[i]) {
+                changed = true;
+                mApplied[i] = mPending[i];
+            }
+        }
+        mKnown[index] |= property;
+
+        // Applying the location changes the rotation, and vice versa.
+        if (property == LOCATION) mKnown[index] &= ~ROTATION;
+        if (property == ROTATION) mKnown[index] &= ~LOCATION;
+        return changed;
+    }
+
+    /**
+     * Grow the arrays for the given number of tags.
+     */
+    private void grow(int tagCount) {
+        int capacity = Math.max(tagCount, 2 * mDirty.length);
+        mPending = Arrays.copyOf(mPending, capacity * STRIDE);
+        mApplied = Arrays.copyOf(mApplied, capacity * STRIDE);
+        mDirty = Arrays.copyOf(mDirty, capacity);
+        mKnown = Arrays.copyOf(mKnown, capacity);
+
+        // A tag can be listed twice while flushing: once for the flush, once for new changes.
+        mDirtyTags = Arrays.copyOf(mDirtyTags, 2 * capacity);
+    }
+}
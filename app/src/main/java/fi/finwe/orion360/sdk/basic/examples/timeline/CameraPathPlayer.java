@@ -0,0 +1,290 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.timeline;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+import fi.finwe.orion360.sdk.basic.examples.math.MutableQuatF;
+
+/**
+ * Plays a camera path track written by {@link CameraPathWriter}, by video time.
+ * <p/>
+ * The track is not loaded whole: the player keeps a window of samples in a preallocated
+ * buffer, and reads the next window from the file when the video time moves outside of it.
+ * Sampling blends the two samples around the video time, and does not allocate memory.
+ * <p/>
+ * The view direction is available as a rotation, and as yaw and pitch angles that match the
+ * angles of the keyframes. Not thread safe.
+ * <p/>
+ * This class has no Android dependencies and can be tested on a desktop JVM.
+ */
+public class CameraPathPlayer {
+
+    /** Default number of samples in the window, about two minutes at 30 samples per second. */
+    public static final int DEFAULT_WINDOW_SAMPLES = 4096;
+
+    /** Number of floats in a sample. */
+    private static final int SAMPLE_FLOATS = CameraPathWriter.SAMPLE_BYTES / 4;
+
+    /** The track file. */
+    private final RandomAccessFile mFile;
+
+    /** The channel for reading the track file. */
+    private final FileChannel mChannel;
+
+    /** The buffer for reading a window of samples. */
+    private final ByteBuffer mBuffer;
+
+    /** The samples of the window, a view to the buffer. */
+    private final FloatBuffer mWindow;
+
+    /** The time of the first sample, in milliseconds. */
+    private final int mStartMs;
+
+    /** The sample interval, in milliseconds. */
+    private final int mIntervalMs;
+
+    /** The number of samples in the track. */
+    private final long mSampleCount;
+
+    /** The index of the first sample in the window. */
+    private long mWindowStart = 0;
+
+    /** The number of samples in the window. */
+    private int mWindowSize = 0;
+
+    /** The sampled view rotation. */
+    private float mW = 1.0f, mX, mY, mZ;
+
+    /** The sampled field of view, in degrees. */
+    private float mFov;
+
+
+    /**
+     * Constructor.
+     *
+     * @param file The track file.
+     * @throws IOException if the file cannot be opened or is not a camera path track.
+     */
+    public CameraPathPlayer(File file) throws IOException {
+        this(file, DEFAULT_WINDOW_SAMPLES);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file The track file.
+     * @param windowSamples The number of samples to keep in memory, at least 2.
+     * @throws IOException if the file cannot be opened or is not a camera path track.
+     */
+    public CameraPathPlayer(File file, int windowSamples) throws IOException {
+        mFile = new RandomAccessFile(file, "r");
+        try {
+            if (mFile.readInt() != CameraPathWriter.MAGIC) {
+                throw new IOException("Not a camera path track");
+            }
+            int version = mFile.readInt();
+            if (version != CameraPathWriter.VERSION) {
+                throw new IOException("Unsupported camera path version " + version);
+            }
+            mStartMs = mFile.readInt();
+            mIntervalMs = mFile.readInt();
+            if (mIntervalMs <= 0) {
+                throw new IOException("Invalid sample interval " + mIntervalMs);
+            }
+        } catch (IOException e) {
+            mFile.close();
+            throw e;
+        }
+        mSampleCount = (mFile.length() - CameraPathWriter.HEADER_BYTES)
+                / CameraPathWriter.SAMPLE_BYTES;
+        mChannel = mFile.getChannel();
+        mBuffer = ByteBuffer.allocateDirect(Math.max(2, windowSamples)
+                * CameraPathWriter.SAMPLE_BYTES);
+        mWindow = mBuffer.asFloatBuffer();
+    }
+
+    /**
+     * Get the time of the first sample.
+     *
+     * @return the time in milliseconds.
+     */
+    public int getStartTime() {
+        return mStartMs;
+    }
+
+    /**
+     * Get the time of the last sample.
+     *
+     * @return the time in milliseconds.
+     */
+    public long getEndTime() {
+        return mStartMs + Math.max(0, mSampleCount - 1) * mIntervalMs;
+    }
+
+    /**
+     * Tells whether the track covers a video time.
+     *
+     * @param timeMs The video time, in milliseconds.
+     * @return true if the time is within the track, else false.
+     */
+    public boolean contains(long timeMs) {
+        return mSampleCount > 0 && timeMs >= mStartMs && timeMs <= getEndTime();
+    }
+
+    /**
+     * Sample the track at a video time. Times outside of the track give the first or the last
+     * sample. Use the getters to read the result.
+     *
+     * @param timeMs The video time, in milliseconds.
+     * @return true if the track has samples, else false.
+     * @throws IOException if reading the track fails.
+     */
+    public boolean sample(long timeMs) throws IOException {
+        if (mSampleCount == 0) return false;
+
+        long offset = Math.max(0, timeMs - mStartMs);
+        long index = Math.min(mSampleCount - 1, offset / mIntervalMs);
+        float fraction = index < mSampleCount - 1
+                ? (float) (offset - index * mIntervalMs) / mIntervalMs : 0.0f;
+        long next = Math.min(mSampleCount - 1, index + 1);
+        if (index < mWindowStart || next >= mWindowStart + mWindowSize) {
+            readWindow(index);
+        }
+
+        // The samples are close together, so a normalized linear blend is as good as slerp.
+        int a = (int) (index - mWindowStart) * SAMPLE_FLOATS;
+        int b = (int) (next - mWindowStart) * SAMPLE_FLOATS;
+        float bw = mWindow.get(b), bx = mWindow.get(b + 1);
+        float by = mWindow.get(b + 2), bz = mWindow.get(b + 3);
+        float aw = mWindow.get(a), ax = mWindow.get(a + 1);
+        float ay = mWindow.get(a + 2), az = mWindow.get(a + 3);
+        if (aw * bw + ax * bx + ay * by + az * bz < 0.0f) {
+            bw = -bw;
+            bx = -bx;
+            by = -by;
+            bz = -bz;
+        }
+        float w = aw + fraction * (bw - aw);
+        float x = ax + fraction * (bx - ax);
+        float y = ay + fraction * (by - ay);
+        float z = az + fraction * (bz - az);
+        float norm = (float) Math.sqrt(w * w + x * x + y * y + z * z);
+        mW = w / norm;
+        mX = x / norm;
+        mY = y / norm;
+        mZ = z / norm;
+        float fovA = mWindow.get(a + 4);
+        mFov = fovA + fraction * (mWindow.get(b + 4) - fovA);
+        return true;
+    }
+
+    /**
+     * Get the sampled view rotation, see {@link CameraPathWriter} for the convention.
+     *
+     * @param out The quaternion where to write the rotation.
+     * @return the out quaternion.
+     */
+    public MutableQuatF getRotation(MutableQuatF out) {
+        return out.set(mW, mX, mY, mZ);
+    }
+
+    /**
+     * Get the yaw angle of the sampled view direction.
+     *
+     * @return the yaw angle in degrees, in [-180, 180].
+     */
+    public float getYaw() {
+
+        // The front direction (0, 0, -1) rotated by the view rotation; yaw is measured
+        // towards the right axis (+x), as Vec3F.getYaw().
+        float dx = -2 * (mW * mY + mZ * mX);
+        float dz = -1 + 2 * (mX * mX + mY * mY);
+        return (float) Math.toDegrees(Math.atan2(dx, -dz));
+    }
+
+    /**
+     * Get the pitch angle of the sampled view direction.
+     *
+     * @return the pitch angle in degrees, in [-90, 90].
+     */
+    public float getPitch() {
+        float dy = 2 * (mW * mX - mZ * mY);
+        return (float) Math.toDegrees(Math.asin(Math.max(-1.0f, Math.min(1.0f, dy))));
+    }
+
+    /**
+     * Get the sampled field of view.
+     *
+     * @return the field of view in degrees.
+     */
+    public float getFov() {
+        return mFov;
+    }
+
+    /**
+     * Close the track file.
+     *
+     * @throws IOException if closing fails.
+     */
+    public void close() throws IOException {
+        mFile.close();
+    }
+
+    /**
+     * Read a window of samples from the track file.
+     *
+     * @param index The index of the sample that is needed.
+     * @throws IOException if reading fails.
+     */
+    private void readWindow(long index) throws IOException {
+        int capacity = mBuffer.capacity() / CameraPathWriter.SAMPLE_BYTES;
+
+        // Keep a quarter of the window behind the sample, for small steps backwards.
+        long start = Math.max(0, Math.min(index - capacity / 4, mSampleCount - capacity));
+        int count = (int) Math.min(capacity, mSampleCount - start);
+        mBuffer.clear();
+        mBuffer.limit(count * CameraPathWriter.SAMPLE_BYTES);
+        long position = CameraPathWriter.HEADER_BYTES + start * CameraPathWriter.SAMPLE_BYTES;
+        while (mBuffer.hasRemaining()) {
+            int read = mChannel.read(mBuffer, position + mBuffer.position());
+            if (read < 0) {
+                throw new IOException("Camera path track ended unexpectedly");
+            }
+        }
+        mWindowStart = start;
+        mWindowSize = count;
+    }
+}
@@ -0,0 +1,341 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.timeline;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.Locale;
+
+import fi.finwe.orion360.sdk.basic.examples.math.MutableQuatF;
+
+/**
+ * Bakes camera path keyframes into a camera path track, see {@link CameraPathPlayer}.
+ * <p/>
+ * A keyframe sets the yaw and pitch angles of the view direction and the field of view at
+ * a video time, and an easing for the transition from the previous keyframe. The writer
+ * converts the angles to quaternions, interpolates between consecutive keyframes with
+ * spherical linear interpolation along the eased curve, and writes the result as samples
+ * at a fixed interval. This way the player only needs to blend two adjacent samples, and the
+ * costly slerp and easing math is done once when the track is created.
+ * <p/>
+ * Keyframes are consumed as they are added and only the previous one is kept in memory,
+ * so tracks of any length can be written. Keyframe times must increase.
+ * <p/>
+ * Track format, all values big-endian:
+ * <pre>
+ * int   magic 'CPTH'
+ * int   version (1)
+ * int   time of the first sample in milliseconds
+ * int   sample interval in milliseconds
+ * then for each sample, 20 bytes:
+ * float w, x, y, z of the view rotation, which turns the front direction (0, 0, -1)
+ *       to the view direction, see {@link #getViewRotation(float, float, MutableQuatF)}
+ * float field of view, in degrees
+ * </pre>
+ * The number of samples follows from the file length.
+ * <p/>
+ * Yaw and pitch follow the conventions of Vec3F, like everywhere in the examples: yaw is
+ * the angle around the up axis measured from the front axis towards the right axis (+x),
+ * and pitch is the angle above the horizon.
+ * <p/>
+ * This class has no Android dependencies and can be tested on a desktop JVM.
+ */
+public class CameraPathWriter {
+
+    /** Magic number of the track format, 'CPTH'. */
+    public static final int MAGIC = 0x43505448;
+
+    /** Version of the track format. */
+    public static final int VERSION = 1;
+
+    /** Length of the track header, in bytes. */
+    public static final int HEADER_BYTES = 16;
+
+    /** Length of a sample, in bytes. */
+    public static final int SAMPLE_BYTES = 20;
+
+    /** Easing that moves at a constant rate. */
+    public static final int EASING_LINEAR = 0;
+
+    /** Easing that starts and ends slowly. */
+    public static final int EASING_EASE_IN_OUT = 1;
+
+    /** Easing that holds the previous keyframe and jumps at the keyframe time, like a cut. */
+    public static final int EASING_HOLD = 2;
+
+    /** The output. */
+    private final DataOutputStream mOut;
+
+    /** The sample interval, in milliseconds. */
+    private final int mIntervalMs;
+
+    /** The number of keyframes written. */
+    private int mKeyframeCount = 0;
+
+    /** The time of the first keyframe, in milliseconds. */
+    private int mStartMs;
+
+    /** The number of samples written. */
+    private long mSampleCount = 0;
+
+    /** The time of the previous keyframe, in milliseconds. */
+    private int mPreviousTimeMs;
+
+    /** The view rotation of the previous keyframe. */
+    private float mPreviousW, mPreviousX, mPreviousY, mPreviousZ;
+
+    /** The field of view of the previous keyframe. */
+    private float mPreviousFov;
+
+    /** Scratch rotation of the current keyframe. */
+    private final MutableQuatF mRotation = new MutableQuatF();
+
+
+    /**
+     * Constructor.
+     *
+     * @param out The stream where to write the track. Closed by {@link #close()}.
+     * @param intervalMs The sample interval, in milliseconds, e.g. 33 for 30 samples per
+     *                   second.
+     */
+    public CameraPathWriter(OutputStream out, int intervalMs) {
+        if (intervalMs <= 0) {
+            throw new IllegalArgumentException("Invalid sample interval: " + intervalMs);
+        }
+        mOut = new DataOutputStream(new BufferedOutputStream(out));
+        mIntervalMs = intervalMs;
+    }
+
+    /**
+     * Bake keyframes from text into a track. Each line has a keyframe: the time in
+     * milliseconds, yaw, pitch and field of view in degrees, and optionally the easing
+     * 'linear', 'ease' (the default) or 'hold', separated by white space. Empty lines and
+     * lines starting with '#' are skipped. Closes the output, but not the input.
+     *
+     * @param keyframes The keyframe text.
+     * @param out The stream where to write the track.
+     * @param intervalMs The sample interval, in milliseconds.
+     * @return the number of keyframes.
+     * @throws IOException if reading or writing fails, or the text is invalid.
+     */
+    public static int bake(Reader keyframes, OutputStream out, int intervalMs)
+            throws IOException {
+        CameraPathWriter writer = new CameraPathWriter(out, intervalMs);
+        try {
+            BufferedReader reader = new BufferedReader(keyframes);
+            int lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] fields = line.split("\\s+");
+                if (fields.length < 4 || fields.length > 5) {
+                    throw new IOException("Invalid keyframe at line " + lineNumber);
+                }
+                int easing = EASING_EASE_IN_OUT;
+                if (fields.length == 5) {
+                    easing = parseEasing(fields[4]);
+                    if (easing < 0) {
+                        throw new IOException("Invalid easing at line " + lineNumber);
+                    }
+                }
+                try {
+                    writer.addKeyframe(Integer.parseInt(fields[0]),
+                            Float.parseFloat(fields[1]), Float.parseFloat(fields[2]),
+                            Float.parseFloat(fields[3]), easing);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Invalid keyframe at line " + lineNumber, e);
+                }
+            }
+            return writer.getKeyframeCount();
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Get the number of keyframes written.
+     *
+     * @return the number of keyframes.
+     */
+    public int getKeyframeCount() {
+        return mKeyframeCount;
+    }
+
+    /**
+     * Get the number of samples written.
+     *
+     * @return the number of samples.
+     */
+    public long getSampleCount() {
+        return mSampleCount;
+    }
+
+    /**
+     * Add a keyframe, and write the samples up to it.
+     *
+     * @param timeMs The video time, in milliseconds; must be after the previous keyframe.
+     * @param yawDeg The yaw angle of the view direction, in degrees.
+     * @param pitchDeg The pitch angle of the view direction, in degrees.
+     * @param fovDeg The field of view, in degrees.
+     * @param easing The easing from the previous keyframe, e.g. {@link #EASING_EASE_IN_OUT}.
+     * @throws IOException if writing fails.
+     */
+    public void addKeyframe(int timeMs, float yawDeg, float pitchDeg, float fovDeg, int easing)
+            throws IOException {
+        if (mKeyframeCount > 0 && timeMs <= mPreviousTimeMs) {
+            throw new IllegalArgumentException("Keyframe times must increase: " + timeMs);
+        }
+
+        MutableQuatF rotation = getViewRotation(yawDeg, pitchDeg, mRotation);
+        float w = rotation.w, x = rotation.x, y = rotation.y, z = rotation.z;
+
+        if (mKeyframeCount == 0) {
+            mStartMs = timeMs;
+            mOut.writeInt(MAGIC);
+            mOut.writeInt(VERSION);
+            mOut.writeInt(timeMs);
+            mOut.writeInt(mIntervalMs);
+            writeSample(w, x, y, z, fovDeg);
+        } else {
+
+            // Take the short way around, e.g. from yaw 170 to -170 through 180.
+            float dot = mPreviousW * w + mPreviousX * x + mPreviousY * y + mPreviousZ * z;
+            if (dot < 0.0f) {
+                w = -w;
+                x = -x;
+                y = -y;
+                z = -z;
+                dot = -dot;
+            }
+            double theta = Math.acos(Math.min(1.0f, dot));
+            double sin = Math.sin(theta);
+            float span = timeMs - mPreviousTimeMs;
+            long sample;
+            while ((sample = mStartMs + mSampleCount * mIntervalMs) <= timeMs) {
+                float fraction = ease((sample - mPreviousTimeMs) / span, easing);
+                float a = 1.0f - fraction, b = fraction;
+                if (sin > 1e-4) {
+                    a = (float) (Math.sin((1.0f - fraction) * theta) / sin);
+                    b = (float) (Math.sin(fraction * theta) / sin);
+                }
+                writeSample(a * mPreviousW + b * w, a * mPreviousX + b * x,
+                        a * mPreviousY + b * y, a * mPreviousZ + b * z,
+                        mPreviousFov + fraction * (fovDeg - mPreviousFov));
+            }
+        }
+
+        mKeyframeCount++;
+        mPreviousTimeMs = timeMs;
+        mPreviousW = w;
+        mPreviousX = x;
+        mPreviousY = y;
+        mPreviousZ = z;
+        mPreviousFov = fovDeg;
+    }
+
+    /**
+     * Get the rotation that turns the front direction (0, 0, -1) to a view direction: a
+     * rotation around the x axis by the pitch angle, then around the y axis by minus the yaw
+     * angle, since a positive rotation around the up axis turns the front to the left.
+     *
+     * @param yawDeg The yaw angle of the view direction, in degrees, as Vec3F.getYaw().
+     * @param pitchDeg The pitch angle of the view direction, in degrees, as Vec3F.getPitch().
+     * @param out The quaternion where to write the rotation.
+     * @return the out quaternion.
+     */
+    public static MutableQuatF getViewRotation(float yawDeg, float pitchDeg, MutableQuatF out) {
+
+        // Compose the rotations from half angles, without allocating.
+        double yaw = -Math.toRadians(yawDeg) / 2;
+        double pitch = Math.toRadians(pitchDeg) / 2;
+        float cy = (float) Math.cos(yaw), sy = (float) Math.sin(yaw);
+        float cp = (float) Math.cos(pitch), sp = (float) Math.sin(pitch);
+        return out.set(cy * cp, cy * sp, sy * cp, -sy * sp);
+    }
+
+    /**
+     * Flush and close the output.
+     *
+     * @throws IOException if writing fails.
+     */
+    public void close() throws IOException {
+        mOut.close();
+    }
+
+    /**
+     * Apply an easing to a fraction of a transition.
+     *
+     * @param fraction The fraction of time, in [0, 1].
+     * @param easing The easing.
+     * @return the fraction of the transition.
+     */
+    static float ease(float fraction, int easing) {
+        switch (easing) {
+            case EASING_LINEAR:
+                return fraction;
+            case EASING_HOLD:
+                return fraction < 1.0f ? 0.0f : 1.0f;
+            default:
+                return (float) (Math.cos((fraction + 1) * Math.PI) / 2.0) + 0.5f;
+        }
+    }
+
+    /**
+     * Parse the name of an easing.
+     *
+     * @param name The name.
+     * @return the easing, or -1 if the name is unknown.
+     */
+    private static int parseEasing(String name) {
+        String lower = name.toLowerCase(Locale.US);
+        if (lower.equals("linear")) return EASING_LINEAR;
+        if (lower.equals("ease")) return EASING_EASE_IN_OUT;
+        if (lower.equals("hold")) return EASING_HOLD;
+        return -1;
+    }
+
+    /**
+     * Write a sample.
+     */
+    private void writeSample(float w, float x, float y, float z, float fov) throws IOException {
+        mOut.writeFloat(w);
+        mOut.writeFloat(x);
+        mOut.writeFloat(y);
+        mOut.writeFloat(z);
+        mOut.writeFloat(fov);
+        mSampleCount++;
+    }
+}
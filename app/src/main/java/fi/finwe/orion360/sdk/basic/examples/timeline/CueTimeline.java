@@ -0,0 +1,248 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.timeline;
+
+import java.util.Arrays;
+
+/**
+ * A timeline of cues, such as the cuts of a director's cut, indexed by video position.
+ * <p/>
+ * Cues are kept sorted by time in primitive arrays, and looked up with binary search.
+ * The timeline remembers the last playback position it was advanced to; advancing it to a new
+ * position reports the cues that were crossed, in the order they were crossed: forwards in
+ * normal playback, and backwards when the position moves back. Seeking instead jumps to the
+ * new position without reporting the cues in between, and returns the cue that is in effect
+ * there. {@link #getTimeToNextCue(int)} tells how long to wait for the next cue, so that the
+ * caller can schedule its next position check exactly instead of polling at a fixed rate.
+ * <p/>
+ * Cues are not removed when they fire, so they fire again when the position crosses them again.
+ * Not thread safe.
+ * <p/>
+ * This class has no Android dependencies and can be tested on a desktop JVM.
+ */
+public class CueTimeline {
+
+    /** Receives crossed cues. */
+    public interface Listener {
+
+        /**
+         * Called when the playback position crosses a cue. Must not modify the timeline.
+         *
+         * @param timeline The timeline.
+         * @param index The index of the cue.
+         * @param forward true if the position moved forwards past the cue, false if it moved
+         *                backwards past it.
+         */
+        void onCue(CueTimeline timeline, int index, boolean forward);
+    }
+
+    /** The position before any cue, where the timeline starts. */
+    public static final int START = Integer.MIN_VALUE;
+
+    /** The times of the cues, in milliseconds. */
+    private int[] mTimes = new int[16];
+
+    /** The values of the cues. */
+    private float[] mValues = new float[16];
+
+    /** The number of cues. */
+    private int mSize = 0;
+
+    /** Whether the cues are sorted by time. */
+    private boolean mSorted = true;
+
+    /** The last position the timeline was advanced or sought to, in milliseconds. */
+    private int mPosition = START;
+
+
+    /**
+     * Add a cue. Cues can be added in any order; cues with equal times keep their order.
+     *
+     * @param timeMs The time of the cue, in milliseconds.
+     * @param value The value of the cue, e.g. a yaw angle.
+     */
+    public void add(int timeMs, float value) {
+        if (mSize == mTimes.length) {
+            mTimes = Arrays.copyOf(mTimes, 2 * mSize);
+            mValues = Arrays.copyOf(mValues, 2 * mSize);
+        }
+        if (mSize > 0 && timeMs < mTimes[mSize - 1]) {
+            mSorted = false;
+        }
+        mTimes[mSize] = timeMs;
+        mValues[mSize] = value;
+        mSize++;
+    }
+
+    /**
+     * Remove all cues, and return to the start.
+     */
+    public void clear() {
+        mSize = 0;
+        mSorted = true;
+        mPosition = START;
+    }
+
+    /**
+     * Get the number of cues.
+     *
+     * @return the number of cues.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Get the time of a cue.
+     *
+     * @param index The index of the cue, in time order.
+     * @return the time in milliseconds.
+     */
+    public int getTime(int index) {
+        ensureSorted();
+        return mTimes[index];
+    }
+
+    /**
+     * Get the value of a cue.
+     *
+     * @param index The index of the cue, in time order.
+     * @return the value.
+     */
+    public float getValue(int index) {
+        ensureSorted();
+        return mValues[index];
+    }
+
+    /**
+     * Get the last position the timeline was advanced or sought to.
+     *
+     * @return the position in milliseconds, or {@link #START}.
+     */
+    public int getPosition() {
+        return mPosition;
+    }
+
+    /**
+     * Get the cue that is in effect at a position, i.e. the last cue at or before it.
+     *
+     * @param positionMs The position, in milliseconds.
+     * @return the index of the cue, or -1 if there are no cues at or before the position.
+     */
+    public int getActiveIndex(int positionMs) {
+        return countUpTo(positionMs) - 1;
+    }
+
+    /**
+     * Get the time from a position to the next cue after it.
+     *
+     * @param positionMs The position, in milliseconds.
+     * @return the time in milliseconds, or -1 if there are no cues after the position.
+     */
+    public int getTimeToNextCue(int positionMs) {
+        int next = countUpTo(positionMs);
+        return next < mSize ? mTimes[next] - positionMs : -1;
+    }
+
+    /**
+     * Advance the timeline to a new position, and report the cues crossed on the way.
+     * Cues at the old position are not reported, cues at the new position are.
+     *
+     * @param positionMs The new position, in milliseconds.
+     * @param listener The listener that receives the crossed cues.
+     * @return the number of cues crossed.
+     */
+    public int advance(int positionMs, Listener listener) {
+        int from = countUpTo(mPosition);
+        int to = countUpTo(positionMs);
+        mPosition = positionMs;
+        for (int i = from; i < to; i++) {
+            listener.onCue(this, i, true);
+        }
+        for (int i = from - 1; i >= to; i--) {
+            listener.onCue(this, i, false);
+        }
+        return Math.abs(to - from);
+    }
+
+    /**
+     * Jump to a new position without reporting the cues in between, e.g. after a seek.
+     *
+     * @param positionMs The new position, in milliseconds.
+     * @return the index of the cue in effect at the new position, or -1 if none.
+     */
+    public int seekTo(int positionMs) {
+        mPosition = positionMs;
+        return getActiveIndex(positionMs);
+    }
+
+    /**
+     * Count the cues at or before a position, which is also the index of the first cue
+     * after it.
+     *
+     * @param positionMs The position, in milliseconds.
+     * @return the number of cues.
+     */
+    private int countUpTo(int positionMs) {
+        ensureSorted();
+        int low = 0;
+        int high = mSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mTimes[mid] <= positionMs) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Sort the cues by time, if cues were added out of order.
+     */
+    private void ensureSorted() {
+        if (mSorted) return;
+
+        // Sort the times together with the original indices, which keeps equal times in order.
+        long[] keys = new long[mSize];
+        for (int i = 0; i < mSize; i++) {
+            keys[i] = ((long) mTimes[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+        float[] values = new float[mValues.length];
+        for (int i = 0; i < mSize; i++) {
+            mTimes[i] = (int) (keys[i] >> 32);
+            values[i] = mValues[(int) keys[i]];
+        }
+        mValues = values;
+        mSorted = true;
+    }
+}
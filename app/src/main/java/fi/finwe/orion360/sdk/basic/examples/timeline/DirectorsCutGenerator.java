@@ -0,0 +1,604 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.timeline;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import fi.finwe.math.QuatF;
+import fi.finwe.orion360.sdk.basic.examples.analytics.GazeHeatmap;
+import fi.finwe.orion360.sdk.basic.examples.math.MutableQuatF;
+import fi.finwe.orion360.sdk.basic.examples.math.MutableVec3F;
+import fi.finwe.orion360.sdk.basic.examples.sensor.OrientationTrace;
+
+/**
+ * Generates a director's cut camera path from recorded viewing sessions.
+ * <p/>
+ * Each session is an {@link OrientationTrace} recorded while watching the video from the
+ * start, so trace time is video time. The generator works in three steps:
+ * <ol>
+ * <li>Every session votes once per time bucket, with its mean gaze direction during the
+ * bucket, into a {@link GazeHeatmap}. Sessions are processed in parallel and the partial
+ * heatmaps are merged.</li>
+ * <li>For each bucket, the dominant direction is the densest 3x3 neighbourhood of cells,
+ * refined to the weighted centroid of its directions. Looking at the mean of all gaze
+ * directions instead would point between two groups of viewers looking at different
+ * things. Buckets without votes hold the previous direction.</li>
+ * <li>The per-bucket path is simplified with the Ramer-Douglas-Peucker algorithm: a bucket
+ * becomes a keyframe only if the path deviates from the line between its neighbouring
+ * keyframes by more than a tolerance.</li>
+ * </ol>
+ * The result can be written as keyframe text or baked into a track for
+ * {@link CameraPathPlayer}. Sessions are read one at a time per worker thread, so corpora
+ * larger than memory can be processed.
+ * <p/>
+ * This is an offline tool for a desktop JVM; it uses the fork/join framework, which is
+ * available on Android only from API level 21. It has no Android dependencies.
+ */
+public class DirectorsCutGenerator {
+
+    /** Default duration of a time bucket, in milliseconds. */
+    public static final int DEFAULT_BUCKET_MS = 500;
+
+    /** Default number of heatmap columns, 10 degrees each. */
+    public static final int DEFAULT_COLUMNS = 36;
+
+    /** Default number of heatmap rows, 10 degrees each. */
+    public static final int DEFAULT_ROWS = 18;
+
+    /** Default simplification tolerance, in degrees. */
+    public static final float DEFAULT_TOLERANCE = 5.0f;
+
+    /** Largest yaw change between keyframes, so that the player never turns the long way. */
+    private static final float MAX_KEYFRAME_YAW_STEP = 90.0f;
+
+    /** Number of sessions a worker processes without splitting the work further. */
+    private static final int SESSIONS_PER_TASK = 4;
+
+    /** Number of buckets a worker processes without splitting the work further. */
+    private static final int BUCKETS_PER_TASK = 256;
+
+    /** Source of session traces. */
+    private interface SessionSource {
+
+        /**
+         * Get the trace of a session.
+         *
+         * @param index The index of the session.
+         * @return the trace.
+         * @throws IOException if reading the trace fails.
+         */
+        OrientationTrace get(int index) throws IOException;
+    }
+
+    /**
+     * A generated camera path: keyframes of view direction by video time.
+     */
+    public static class Path {
+
+        /** The times of the keyframes, in milliseconds. */
+        private final int[] mTimes;
+
+        /** The yaw angles of the keyframes, in degrees in [-180, 180]. */
+        private final float[] mYaws;
+
+        /** The pitch angles of the keyframes, in degrees. */
+        private final float[] mPitches;
+
+        /** The number of buckets the path was simplified from. */
+        private final int mBucketCount;
+
+        /**
+         * Constructor.
+         *
+         * @param times The times of the keyframes, in milliseconds.
+         * @param yaws The yaw angles of the keyframes, in degrees.
+         * @param pitches The pitch angles of the keyframes, in degrees.
+         * @param bucketCount The number of buckets the path was simplified from.
+         */
+        Path(int[] times, float[] yaws, float[] pitches, int bucketCount) {
+            mTimes = times;
+            mYaws = yaws;
+            mPitches = pitches;
+            mBucketCount = bucketCount;
+        }
+
+        /** @return the number of keyframes. */
+        public int size() {
+            return mTimes.length;
+        }
+
+        /** @return the number of time buckets the path was simplified from. */
+        public int getBucketCount() {
+            return mBucketCount;
+        }
+
+        /**
+         * @param index The keyframe index.
+         * @return the time of the keyframe, in milliseconds.
+         */
+        public int getTime(int index) {
+            return mTimes[index];
+        }
+
+        /**
+         * @param index The keyframe index.
+         * @return the yaw angle of the keyframe, in degrees.
+         */
+        public float getYaw(int index) {
+            return mYaws[index];
+        }
+
+        /**
+         * @param index The keyframe index.
+         * @return the pitch angle of the keyframe, in degrees.
+         */
+        public float getPitch(int index) {
+            return mPitches[index];
+        }
+
+        /**
+         * Write the keyframes as text, see {@link CameraPathWriter#bake}.
+         *
+         * @param out Where to write the keyframes. Not closed.
+         * @param fovDeg The field of view for all keyframes, in degrees.
+         * @throws IOException if writing fails.
+         */
+        public void writeKeyframes(Writer out, float fovDeg) throws IOException {
+            out.write("# time(ms) yaw pitch fov easing\n");
+            for (int i = 0; i < mTimes.length; i++) {
+                out.write(String.format(Locale.US, "%d %.1f %.1f %.1f linear\n",
+                        mTimes[i], mYaws[i], mPitches[i], fovDeg));
+            }
+            out.flush();
+        }
+
+        /**
+         * Bake the keyframes into a camera path track.
+         *
+         * @param out The stream where to write the track. Closed when done.
+         * @param intervalMs The sample interval, in milliseconds.
+         * @param fovDeg The field of view for all keyframes, in degrees.
+         * @throws IOException if writing fails.
+         */
+        public void bake(OutputStream out, int intervalMs, float fovDeg) throws IOException {
+            CameraPathWriter writer = new CameraPathWriter(out, intervalMs);
+            try {
+                for (int i = 0; i < mTimes.length; i++) {
+                    writer.addKeyframe(mTimes[i], mYaws[i], mPitches[i], fovDeg,
+                            CameraPathWriter.EASING_LINEAR);
+                }
+            } finally {
+                writer.close();
+            }
+        }
+    }
+
+    /** The pool that runs the work. */
+    private final ForkJoinPool mPool;
+
+    /** The duration of a time bucket, in milliseconds. */
+    private int mBucketMs = DEFAULT_BUCKET_MS;
+
+    /** The number of heatmap columns. */
+    private int mColumns = DEFAULT_COLUMNS;
+
+    /** The number of heatmap rows. */
+    private int mRows = DEFAULT_ROWS;
+
+    /** The simplification tolerance, in degrees. */
+    private float mTolerance = DEFAULT_TOLERANCE;
+
+
+    /**
+     * Constructor.
+     *
+     * @param pool The pool that runs the work, e.g. new ForkJoinPool() for all processors.
+     */
+    public DirectorsCutGenerator(ForkJoinPool pool) {
+        mPool = pool;
+    }
+
+    /**
+     * Set the duration of a time bucket. Longer buckets need fewer sessions for a stable
+     * result, but follow quick changes less closely.
+     *
+     * @param bucketMs The duration, in milliseconds.
+     */
+    public void setBucketDuration(int bucketMs) {
+        mBucketMs = Math.max(1, bucketMs);
+    }
+
+    /**
+     * Set the resolution of the direction histogram.
+     *
+     * @param columns The number of columns, covering 360 degrees of yaw.
+     * @param rows The number of rows, covering 180 degrees of pitch.
+     */
+    public void setResolution(int columns, int rows) {
+        mColumns = Math.max(3, columns);
+        mRows = Math.max(3, rows);
+    }
+
+    /**
+     * Set the simplification tolerance: how far the simplified path may deviate from the
+     * dominant directions.
+     *
+     * @param toleranceDeg The tolerance, in degrees.
+     */
+    public void setTolerance(float toleranceDeg) {
+        mTolerance = Math.max(0.0f, toleranceDeg);
+    }
+
+    /**
+     * Generate a path from session trace files.
+     *
+     * @param files The trace files, one per session.
+     * @return the path.
+     * @throws IOException if reading a trace fails.
+     */
+    public Path generate(final List<File> files) throws IOException {
+        return generate(files.size(), new SessionSource() {
+            @Override
+            public OrientationTrace get(int index) throws IOException {
+                InputStream in = new BufferedInputStream(new FileInputStream(files.get(index)));
+                try {
+                    return OrientationTrace.read(in);
+                } finally {
+                    in.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Generate a path from session traces in memory.
+     *
+     * @param traces The traces, one per session.
+     * @return the path.
+     */
+    public Path generateFromTraces(final List<OrientationTrace> traces) {
+        try {
+            return generate(traces.size(), new SessionSource() {
+                @Override
+                public OrientationTrace get(int index) {
+                    return traces.get(index);
+                }
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Generate a path from sessions.
+     */
+    private Path generate(int sessionCount, SessionSource source) throws IOException {
+        GazeHeatmap votes;
+        try {
+            votes = mPool.invoke(new VoteTask(source, 0, sessionCount));
+        } catch (VoteFailure e) {
+            throw e.error;
+        }
+
+        int buckets = votes.getBucketCount();
+        float[] yaws = new float[buckets];
+        float[] pitches = new float[buckets];
+        boolean[] found = new boolean[buckets];
+        mPool.invoke(new DominantTask(votes, yaws, pitches, found, 0, buckets));
+
+        // Fill buckets without votes from the previous bucket, and the leading ones from
+        // the first bucket with votes.
+        int first = 0;
+        while (first < buckets && !found[first]) first++;
+        if (first == buckets) {
+            return new Path(new int[0], new float[0], new float[0], 0);
+        }
+        for (int i = 0; i < buckets; i++) {
+            if (!found[i]) {
+                int from = i < first ? first : i - 1;
+                yaws[i] = yaws[from];
+                pitches[i] = pitches[from];
+            }
+        }
+
+        // Unwrap the yaw angles, so that the path is continuous across +-180 degrees.
+        for (int i = 1; i < buckets; i++) {
+            float step = yaws[i] - yaws[i - 1];
+            step -= 360.0f * Math.round(step / 360.0f);
+            yaws[i] = yaws[i - 1] + step;
+        }
+
+        boolean[] keep = simplify(yaws, pitches, mTolerance);
+        int count = 0;
+        for (boolean k : keep) if (k) count++;
+        int[] times = new int[count];
+        float[] keyYaws = new float[count];
+        float[] keyPitches = new float[count];
+        int index = 0;
+        for (int i = 0; i < buckets; i++) {
+            if (!keep[i]) continue;
+            times[index] = i * mBucketMs + mBucketMs / 2;
+            float yaw = yaws[i] - 360.0f * Math.round(yaws[i] / 360.0f);
+            keyYaws[index] = yaw;
+            keyPitches[index] = pitches[i];
+            index++;
+        }
+        return new Path(times, keyYaws, keyPitches, buckets);
+    }
+
+    /**
+     * Select the points to keep with the Ramer-Douglas-Peucker algorithm, using an explicit
+     * stack instead of recursion, as paths can have many thousands of points.
+     *
+     * @param yaws The unwrapped yaw angles of the points, in degrees.
+     * @param pitches The pitch angles of the points, in degrees.
+     * @param tolerance The largest allowed deviation, in degrees.
+     * @return for each point, whether to keep it.
+     */
+    static boolean[] simplify(float[] yaws, float[] pitches, float tolerance) {
+        int count = yaws.length;
+        boolean[] keep = new boolean[count];
+        if (count == 0) return keep;
+        keep[0] = true;
+        keep[count - 1] = true;
+
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = count - 1;
+        while (top > 0) {
+            int end = stack[--top];
+            int start = stack[--top];
+            if (end - start < 2) continue;
+
+            // Find the point farthest from the line between the ends, at the same time.
+            float maxDistance = -1.0f;
+            int farthest = -1;
+            for (int i = start + 1; i < end; i++) {
+                float t = (float) (i - start) / (end - start);
+                float yaw = yaws[start] + t * (yaws[end] - yaws[start]);
+                float pitch = pitches[start] + t * (pitches[end] - pitches[start]);
+                float dy = (yaws[i] - yaw) * (float) Math.cos(Math.toRadians(pitches[i]));
+                float dp = pitches[i] - pitch;
+                float distance = dy * dy + dp * dp;
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    farthest = i;
+                }
+            }
+
+            // Keep splitting while the deviation is too large, or the ends are so far apart
+            // in yaw that the player could turn the wrong way between them.
+            if (maxDistance > tolerance * tolerance
+                    || Math.abs(yaws[end] - yaws[start]) > MAX_KEYFRAME_YAW_STEP) {
+                keep[farthest] = true;
+                if (top + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, 2 * stack.length);
+                }
+                stack[top++] = start;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = end;
+            }
+        }
+        return keep;
+    }
+
+    /** Carries an IOException out of a fork/join task. */
+    private static class VoteFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        /** The failure. */
+        final IOException error;
+
+        VoteFailure(IOException error) {
+            super(error);
+            this.error = error;
+        }
+    }
+
+    /**
+     * Collects the votes of a range of sessions into a heatmap, splitting the range between
+     * workers.
+     */
+    private class VoteTask extends RecursiveTask<GazeHeatmap> {
+        private static final long serialVersionUID = 1L;
+
+        /** The sessions. */
+        private final SessionSource mSource;
+
+        /** The range of sessions, from inclusive to exclusive. */
+        private final int mFrom, mTo;
+
+        VoteTask(SessionSource source, int from, int to) {
+            mSource = source;
+            mFrom = from;
+            mTo = to;
+        }
+
+        @Override
+        protected GazeHeatmap compute() {
+            if (mTo - mFrom > SESSIONS_PER_TASK) {
+                int middle = (mFrom + mTo) >>> 1;
+                VoteTask left = new VoteTask(mSource, mFrom, middle);
+                left.fork();
+                GazeHeatmap right = new VoteTask(mSource, middle, mTo).compute();
+                GazeHeatmap result = left.join();
+                result.merge(right);
+                return result;
+            }
+
+            GazeHeatmap heatmap = new GazeHeatmap(mColumns, mRows, mBucketMs);
+            QuatF orientation = new QuatF(1.0f, 0.0f, 0.0f, 0.0f);
+            MutableQuatF inverse = new MutableQuatF();
+            MutableVec3F gaze = new MutableVec3F();
+            for (int session = mFrom; session < mTo; session++) {
+                OrientationTrace trace;
+                try {
+                    trace = mSource.get(session);
+                } catch (IOException e) {
+                    throw new VoteFailure(e);
+                }
+
+                // Average the gaze directions over each bucket, and vote once per bucket.
+                int bucket = -1;
+                float sumX = 0.0f, sumY = 0.0f, sumZ = 0.0f;
+                for (int i = 0; i < trace.size(); i++) {
+                    int sampleBucket = (int) (trace.getTimeNanos(i) / 1000000L / mBucketMs);
+                    if (sampleBucket != bucket) {
+                        vote(heatmap, bucket, sumX, sumY, sumZ);
+                        bucket = sampleBucket;
+                        sumX = sumY = sumZ = 0.0f;
+                    }
+                    inverse.set(trace.getOrientation(i, orientation)).conjugate();
+                    gaze.set(0.0f, 0.0f, -1.0f).rotate(inverse);
+                    sumX += gaze.x;
+                    sumY += gaze.y;
+                    sumZ += gaze.z;
+                }
+                vote(heatmap, bucket, sumX, sumY, sumZ);
+            }
+            return heatmap;
+        }
+
+        /**
+         * Add the vote of a session for a bucket.
+         */
+        private void vote(GazeHeatmap heatmap, int bucket, float x, float y, float z) {
+            float length = (float) Math.sqrt(x * x + y * y + z * z);
+            if (bucket < 0 || length < 1e-6f) return;
+            heatmap.add(bucket * mBucketMs, x / length, y / length, z / length);
+        }
+    }
+
+    /**
+     * Finds the dominant direction of each bucket in a range, splitting the range between
+     * workers.
+     */
+    private class DominantTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        /** The votes. */
+        private final GazeHeatmap mVotes;
+
+        /** The dominant yaw and pitch angles of the buckets, in degrees. */
+        private final float[] mYaws, mPitches;
+
+        /** Whether each bucket has votes. */
+        private final boolean[] mFound;
+
+        /** The range of buckets, from inclusive to exclusive. */
+        private final int mFrom, mTo;
+
+        DominantTask(GazeHeatmap votes, float[] yaws, float[] pitches, boolean[] found,
+                     int from, int to) {
+            mVotes = votes;
+            mYaws = yaws;
+            mPitches = pitches;
+            mFound = found;
+            mFrom = from;
+            mTo = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (mTo - mFrom > BUCKETS_PER_TASK) {
+                int middle = (mFrom + mTo) >>> 1;
+                invokeAll(new DominantTask(mVotes, mYaws, mPitches, mFound, mFrom, middle),
+                        new DominantTask(mVotes, mYaws, mPitches, mFound, middle, mTo));
+                return;
+            }
+            for (int bucket = mFrom; bucket < mTo; bucket++) {
+                findDominant(bucket);
+            }
+        }
+
+        /**
+         * Find the dominant direction of a bucket.
+         */
+        private void findDominant(int bucket) {
+            int columns = mVotes.getWidth();
+            int rows = mVotes.getHeight();
+
+            // Find the densest 3x3 neighbourhood; yaw wraps around, pitch does not.
+            int best = 0, bestColumn = 0, bestRow = 0;
+            for (int row = 0; row < rows; row++) {
+                for (int column = 0; column < columns; column++) {
+                    if (mVotes.getCount(bucket, column, row) == 0) continue;
+                    int sum = 0;
+                    for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); r++) {
+                        for (int c = column - 1; c <= column + 1; c++) {
+                            sum += mVotes.getCount(bucket, (c + columns) % columns, r);
+                        }
+                    }
+                    if (sum > best) {
+                        best = sum;
+                        bestColumn = column;
+                        bestRow = row;
+                    }
+                }
+            }
+            if (best == 0) return;
+
+            // Refine to the centroid of the cell centers in the neighbourhood. The yaw of the
+            // columns follows the convention of the keyframes, see GazeHeatmap.getYaw().
+            double x = 0, y = 0, z = 0;
+            for (int r = Math.max(0, bestRow - 1); r <= Math.min(rows - 1, bestRow + 1); r++) {
+                double pitch = Math.PI / 2 - (r + 0.5) * Math.PI / rows;
+                for (int c = bestColumn - 1; c <= bestColumn + 1; c++) {
+                    int column = (c + columns) % columns;
+                    int count = mVotes.getCount(bucket, column, r);
+                    if (count == 0) continue;
+                    double yaw = (column + 0.5) * 2 * Math.PI / columns - Math.PI;
+                    x += count * Math.cos(pitch) * Math.sin(yaw);
+                    y += count * Math.sin(pitch);
+                    z -= count * Math.cos(pitch) * Math.cos(yaw);
+                }
+            }
+            mYaws[bucket] = (float) Math.toDegrees(GazeHeatmap.getYaw(x, z));
+            mPitches[bucket] = (float) Math.toDegrees(
+                    Math.atan2(y, Math.sqrt(x * x + z * z)));
+            mFound[bucket] = true;
+        }
+    }
+}
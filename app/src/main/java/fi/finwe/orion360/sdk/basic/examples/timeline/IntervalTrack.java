@@ -0,0 +1,584 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.timeline;
+
+import java.util.Arrays;
+
+/**
+ * A timed metadata track of items that are active during time windows of the video, such as
+ * hotspots or overlays that are shown only during parts of a tour.
+ * <p/>
+ * Each item has a window [start, end) in video position, and an int value such as a hotspot
+ * slot. The track remembers the position it was last updated to and which items are active
+ * there; updating it to a new position reports only the items that became active or inactive.
+ * <p/>
+ * For continuous playback the update sweeps the window starts and ends between the previous
+ * and the new position from arrays sorted by time, found with binary search. For seeks that
+ * cross more window edges than there are active items, the items active at the new position
+ * are instead found with a stabbing query into a centered interval tree, and compared with
+ * the previous set. Either way an update costs O(log n + changes), even with tens of thousands
+ * of items. {@link #getTimeToNextChange(int)} tells when the set changes next, so that the
+ * caller can schedule its next update exactly instead of polling at a fixed rate.
+ * <p/>
+ * Items are identified by the index returned from {@link #add(int, int, int)}. The sorted
+ * arrays and the tree are built on the first update after items have been added.
+ * Not thread safe.
+ * <p/>
+ * This class has no Android dependencies and can be tested on a desktop JVM.
+ */
+public class IntervalTrack {
+
+    /** Receives changes to the set of active items. */
+    public interface Listener {
+
+        /**
+         * Called when an item becomes active or inactive. Must not modify the track.
+         *
+         * @param track The track.
+         * @param item The index of the item.
+         * @param active true if the item became active, false if it became inactive.
+         */
+        void onChange(IntervalTrack track, int item, boolean active);
+    }
+
+    /** The position before the first update, where no item is active. */
+    public static final int START = Integer.MIN_VALUE;
+
+    /** Number of window edges above the active count that are still swept, not queried. */
+    private static final int SWEEP_SLACK = 32;
+
+    /** The start times of the items, in milliseconds. */
+    private int[] mStarts = new int[16];
+
+    /** The end times of the items, exclusive, in milliseconds. */
+    private int[] mEnds = new int[16];
+
+    /** The values of the items. */
+    private int[] mValues = new int[16];
+
+    /** The number of items. */
+    private int mSize = 0;
+
+    /** Whether the sorted arrays and the tree are up to date. */
+    private boolean mBuilt = true;
+
+    /** The items sorted by start time, and their start times. */
+    private int[] mByStart = new int[0], mStartTimes = new int[0];
+
+    /** The items sorted by end time, and their end times. */
+    private int[] mByEnd = new int[0], mEndTimes = new int[0];
+
+    /** The center time of each tree node. */
+    private int[] mNodeCenter = new int[0];
+
+    /** The child nodes of each tree node, or -1. */
+    private int[] mNodeLeft = new int[0], mNodeRight = new int[0];
+
+    /** The range of each tree node in mNodeStartOrder and mNodeEndOrder. */
+    private int[] mNodeFrom = new int[0], mNodeTo = new int[0];
+
+    /** The items that contain the center of their node, by ascending start per node. */
+    private int[] mNodeStartOrder = new int[0];
+
+    /** The items that contain the center of their node, by descending end per node. */
+    private int[] mNodeEndOrder = new int[0];
+
+    /** The number of tree nodes, and the number of items stored in them. */
+    private int mNodeCount, mNodeItemCount;
+
+    /** The root node, or -1 if the tree is empty. */
+    private int mRoot = -1;
+
+    /** The last position the track was updated to, in milliseconds. */
+    private int mPosition = START;
+
+    /** Whether the active items must be found with a query at the next update. */
+    private boolean mQueryNeeded = true;
+
+    /** The active items, in no particular order. */
+    private int[] mActive = new int[16];
+
+    /** The index of each item in mActive, or -1 if not active. */
+    private int[] mActiveIndex = new int[16];
+
+    /** The number of active items. */
+    private int mActiveCount = 0;
+
+    /** Scratch array for query results. */
+    private int[] mQuery = new int[16];
+
+    /** The query generation at which each item was last found by a query. */
+    private int[] mFound = new int[16];
+
+    /** The current query generation. */
+    private int mGeneration = 0;
+
+
+    /**
+     * Add an item.
+     *
+     * @param startMs The start of the window, in milliseconds.
+     * @param endMs The end of the window, exclusive, in milliseconds.
+     * @param value The value of the item, e.g. a hotspot slot.
+     * @return the index of the item.
+     */
+    public int add(int startMs, int endMs, int value) {
+        if (mSize == mStarts.length) {
+            int capacity = 2 * mSize;
+            mStarts = Arrays.copyOf(mStarts, capacity);
+            mEnds = Arrays.copyOf(mEnds, capacity);
+            mValues = Arrays.copyOf(mValues, capacity);
+            mActive = Arrays.copyOf(mActive, capacity);
+            mActiveIndex = Arrays.copyOf(mActiveIndex, capacity);
+            mFound = Arrays.copyOf(mFound, capacity);
+        }
+        int item = mSize++;
+        mStarts[item] = startMs;
+        mEnds[item] = endMs;
+        mValues[item] = value;
+        mActiveIndex[item] = -1;
+        mFound[item] = mGeneration - 1;
+        mBuilt = false;
+
+        // The new item may cover the current position.
+        mQueryNeeded = true;
+        return item;
+    }
+
+    /**
+     * Remove all items, and return to the start.
+     */
+    public void clear() {
+        mSize = 0;
+        mActiveCount = 0;
+        mBuilt = false;
+        mPosition = START;
+        mQueryNeeded = true;
+    }
+
+    /**
+     * Forget the active items without reporting them, and return to the start, e.g. after
+     * the caller has hidden everything.
+     */
+    public void reset() {
+        for (int i = 0; i < mActiveCount; i++) {
+            mActiveIndex[mActive[i]] = -1;
+        }
+        mActiveCount = 0;
+        mPosition = START;
+        mQueryNeeded = true;
+    }
+
+    /**
+     * Get the number of items.
+     *
+     * @return the number of items.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Get the start of the window of an item.
+     *
+     * @param item The index of the item.
+     * @return the start time, in milliseconds.
+     */
+    public int getStart(int item) {
+        return mStarts[item];
+    }
+
+    /**
+     * Get the end of the window of an item.
+     *
+     * @param item The index of the item.
+     * @return the end time, exclusive, in milliseconds.
+     */
+    public int getEnd(int item) {
+        return mEnds[item];
+    }
+
+    /**
+     * Get the value of an item.
+     *
+     * @param item The index of the item.
+     * @return the value.
+     */
+    public int getValue(int item) {
+        return mValues[item];
+    }
+
+    /**
+     * Tells whether an item is active at the last updated position.
+     *
+     * @param item The index of the item.
+     * @return true if active, else false.
+     */
+    public boolean isActive(int item) {
+        return mActiveIndex[item] >= 0;
+    }
+
+    /**
+     * Get the number of active items.
+     *
+     * @return the number of active items.
+     */
+    public int getActiveCount() {
+        return mActiveCount;
+    }
+
+    /**
+     * Get the last position the track was updated to.
+     *
+     * @return the position in milliseconds, or {@link #START}.
+     */
+    public int getPosition() {
+        return mPosition;
+    }
+
+    /**
+     * Find the items whose windows contain a position, without changing the active items.
+     *
+     * @param positionMs The position, in milliseconds.
+     * @param out Array where to write the indices of the items found.
+     * @return the number of items found, which may be more than written if out is too short.
+     */
+    public int query(int positionMs, int[] out) {
+        ensureBuilt();
+        int found = 0;
+        int node = mRoot;
+        while (node >= 0) {
+            int from = mNodeFrom[node], to = mNodeTo[node];
+            if (positionMs < mNodeCenter[node]) {
+
+                // All items here end after the center, so they contain the position if they
+                // start at or before it.
+                for (int i = from; i < to; i++) {
+                    int item = mNodeStartOrder[i];
+                    if (mStarts[item] > positionMs) break;
+                    if (found < out.length) out[found] = item;
+                    found++;
+                }
+                node = mNodeLeft[node];
+            } else {
+
+                // All items here start at or before the center, so they contain the position
+                // if they end after it.
+                for (int i = from; i < to; i++) {
+                    int item = mNodeEndOrder[i];
+                    if (mEnds[item] <= positionMs) break;
+                    if (found < out.length) out[found] = item;
+                    found++;
+                }
+                node = mNodeRight[node];
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Update the track to a new position, reporting the items that became inactive and then
+     * the items that became active.
+     *
+     * @param positionMs The new position, in milliseconds.
+     * @param listener The listener that receives the changes.
+     */
+    public void update(int positionMs, Listener listener) {
+        ensureBuilt();
+        int previous = mPosition;
+        mPosition = positionMs;
+        if (!mQueryNeeded && positionMs == previous) {
+            return;
+        }
+
+        // Sweep the window edges in between, unless there are many more of them than there
+        // are items to compare with a query.
+        if (!mQueryNeeded) {
+            int low = Math.min(previous, positionMs);
+            int high = Math.max(previous, positionMs);
+            int startFrom = upperBound(mStartTimes, low), startTo = upperBound(mStartTimes, high);
+            int endFrom = upperBound(mEndTimes, low), endTo = upperBound(mEndTimes, high);
+            if (startTo - startFrom + endTo - endFrom <= mActiveCount + SWEEP_SLACK) {
+                if (positionMs > previous) {
+                    sweepForward(positionMs, startFrom, startTo, endFrom, endTo, listener);
+                } else {
+                    sweepBackward(positionMs, startFrom, startTo, endFrom, endTo, listener);
+                }
+                return;
+            }
+        }
+        mQueryNeeded = false;
+        jumpTo(positionMs, listener);
+    }
+
+    /**
+     * Get the time until the set of active items changes next.
+     *
+     * @param positionMs The current position, in milliseconds.
+     * @return the time in milliseconds, or -1 if nothing changes after the position.
+     */
+    public int getTimeToNextChange(int positionMs) {
+        ensureBuilt();
+        int next = Integer.MAX_VALUE;
+        int start = upperBound(mStartTimes, positionMs);
+        if (start < mStartTimes.length) {
+            next = mStartTimes[start];
+        }
+        int end = upperBound(mEndTimes, positionMs);
+        if (end < mEndTimes.length) {
+            next = Math.min(next, mEndTimes[end]);
+        }
+        return next == Integer.MAX_VALUE ? -1 : next - positionMs;
+    }
+
+    /**
+     * Apply the window edges crossed when moving forwards. Items leave at their end time
+     * and enter at their start time.
+     */
+    private void sweepForward(int position, int startFrom, int startTo, int endFrom, int endTo,
+                              Listener listener) {
+        for (int i = endFrom; i < endTo; i++) {
+            int item = mByEnd[i];
+            if (mActiveIndex[item] >= 0) {
+                deactivate(item, listener);
+            }
+        }
+        for (int i = startFrom; i < startTo; i++) {
+            int item = mByStart[i];
+            if (mEnds[item] > position && mActiveIndex[item] < 0) {
+                activate(item, listener);
+            }
+        }
+    }
+
+    /**
+     * Apply the window edges crossed when moving backwards. Items that start after the new
+     * position leave, and items that end after it but start at or before it enter.
+     */
+    private void sweepBackward(int position, int startFrom, int startTo, int endFrom, int endTo,
+                               Listener listener) {
+        for (int i = startTo - 1; i >= startFrom; i--) {
+            int item = mByStart[i];
+            if (mActiveIndex[item] >= 0) {
+                deactivate(item, listener);
+            }
+        }
+        for (int i = endTo - 1; i >= endFrom; i--) {
+            int item = mByEnd[i];
+            if (mStarts[item] <= position && mActiveIndex[item] < 0) {
+                activate(item, listener);
+            }
+        }
+    }
+
+    /**
+     * Find the items active at a position with a query, and report the difference to the
+     * previously active items.
+     */
+    private void jumpTo(int position, Listener listener) {
+        int found = query(position, mQuery);
+        if (found > mQuery.length) {
+            mQuery = new int[Math.max(found, 2 * mQuery.length)];
+            query(position, mQuery);
+        }
+        int generation = ++mGeneration;
+        for (int i = 0; i < found; i++) {
+            mFound[mQuery[i]] = generation;
+        }
+        for (int i = mActiveCount - 1; i >= 0; i--) {
+            int item = mActive[i];
+            if (mFound[item] != generation) {
+                deactivate(item, listener);
+            }
+        }
+        for (int i = 0; i < found; i++) {
+            int item = mQuery[i];
+            if (mActiveIndex[item] < 0) {
+                activate(item, listener);
+            }
+        }
+    }
+
+    /**
+     * Mark an item active, and report it.
+     */
+    private void activate(int item, Listener listener) {
+        mActiveIndex[item] = mActiveCount;
+        mActive[mActiveCount++] = item;
+        listener.onChange(this, item, true);
+    }
+
+    /**
+     * Mark an item inactive, and report it.
+     */
+    private void deactivate(int item, Listener listener) {
+        int index = mActiveIndex[item];
+        int last = mActive[--mActiveCount];
+        mActive[index] = last;
+        mActiveIndex[last] = index;
+        mActiveIndex[item] = -1;
+        listener.onChange(this, item, false);
+    }
+
+    /**
+     * Build the sorted arrays and the tree, if items have been added since the last build.
+     */
+    private void ensureBuilt() {
+        if (mBuilt) return;
+        mBuilt = true;
+
+        // Items with empty windows are never active, and are left out.
+        int count = 0;
+        for (int i = 0; i < mSize; i++) {
+            if (mEnds[i] > mStarts[i]) count++;
+        }
+        long[] keys = new long[count];
+        int[] items = new int[count];
+        count = 0;
+        for (int i = 0; i < mSize; i++) {
+            if (mEnds[i] > mStarts[i]) items[count++] = i;
+        }
+
+        mByStart = new int[count];
+        mStartTimes = new int[count];
+        sortBy(mStarts, items, keys, mByStart, mStartTimes);
+        mByEnd = new int[count];
+        mEndTimes = new int[count];
+        sortBy(mEnds, items, keys, mByEnd, mEndTimes);
+
+        // Every node without items of its own has two children, so there are less than
+        // two nodes per item.
+        int nodes = 2 * count;
+        mNodeCenter = new int[nodes];
+        mNodeLeft = new int[nodes];
+        mNodeRight = new int[nodes];
+        mNodeFrom = new int[nodes];
+        mNodeTo = new int[nodes];
+        mNodeStartOrder = new int[count];
+        mNodeEndOrder = new int[count];
+        mNodeCount = 0;
+        mNodeItemCount = 0;
+        mRoot = buildNode(mByStart, count);
+    }
+
+    /**
+     * Sort items by a time, ties in item order.
+     */
+    private static void sortBy(int[] times, int[] items, long[] keys, int[] sortedItems,
+                               int[] sortedTimes) {
+        for (int i = 0; i < items.length; i++) {
+            keys[i] = ((long) times[items[i]] << 32) | items[i];
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < keys.length; i++) {
+            sortedItems[i] = (int) keys[i];
+            sortedTimes[i] = (int) (keys[i] >> 32);
+        }
+    }
+
+    /**
+     * Build a tree node for items sorted by start, recursing to the items that end at or
+     * before its center and the items that start after it.
+     *
+     * @return the node, or -1 if there are no items.
+     */
+    private int buildNode(int[] items, int count) {
+        if (count == 0) return -1;
+
+        // The median of the window edges splits the items that do not contain it in halves;
+        // both parts are always smaller than the whole.
+        int[] edges = new int[2 * count];
+        for (int i = 0; i < count; i++) {
+            edges[2 * i] = mStarts[items[i]];
+            edges[2 * i + 1] = mEnds[items[i]];
+        }
+        Arrays.sort(edges);
+        int center = edges[count - 1];
+
+        int[] left = new int[count], right = new int[count];
+        int leftCount = 0, rightCount = 0;
+        for (int i = 0; i < count; i++) {
+            int item = items[i];
+            if (mEnds[item] <= center) {
+                left[leftCount++] = item;
+            } else if (mStarts[item] > center) {
+                right[rightCount++] = item;
+            }
+        }
+
+        // Items sorted by start stay sorted by start in each part.
+        int node = mNodeCount++;
+        mNodeCenter[node] = center;
+        mNodeFrom[node] = mNodeItemCount;
+        for (int i = 0; i < count; i++) {
+            int item = items[i];
+            if (mStarts[item] <= center && mEnds[item] > center) {
+                mNodeStartOrder[mNodeItemCount++] = item;
+            }
+        }
+        mNodeTo[node] = mNodeItemCount;
+        sortByEndDescending(mNodeFrom[node], mNodeTo[node]);
+        mNodeLeft[node] = buildNode(left, leftCount);
+        mNodeRight[node] = buildNode(right, rightCount);
+        return node;
+    }
+
+    /**
+     * Fill a node range of mNodeEndOrder with the items of the same range of
+     * mNodeStartOrder, by descending end.
+     */
+    private void sortByEndDescending(int from, int to) {
+        long[] keys = new long[to - from];
+        for (int i = from; i < to; i++) {
+            int item = mNodeStartOrder[i];
+            keys[i - from] = ((long) mEnds[item] << 32) | item;
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < keys.length; i++) {
+            mNodeEndOrder[to - 1 - i] = (int) keys[i];
+        }
+    }
+
+    /**
+     * Find the number of sorted times at or before a time.
+     */
+    private static int upperBound(int[] times, int time) {
+        int low = 0, high = times.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
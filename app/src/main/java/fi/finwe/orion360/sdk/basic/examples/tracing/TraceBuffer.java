@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.tracing;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A preallocated ring buffer of trace events, for any number of producer threads.
+ * <p/>
+ * Each event is a timestamp, an event id and three float arguments, stored in preallocated
+ * atomic arrays. Adding an event claims the next sequence number with one atomic increment and
+ * writes the slot in place; it never locks or allocates. When the buffer is full, the oldest
+ * events are overwritten, so the buffer always holds the latest history.
+ * <p/>
+ * Each slot carries the sequence number of the event in it, which a writer replaces with a
+ * marker with compare-and-set before writing the slot. Two writers meet on the same slot only
+ * if the buffer wraps around while one of them is writing; then the other one spins until the
+ * slot is free, and an older event never replaces a newer one. Readers check the sequence
+ * number before and after copying the event, and skip events that were overwritten meanwhile.
+ * <p/>
+ * The event fields are atomic array elements rather than plain fields, because the memory
+ * model lets plain reads be reordered after the second sequence check, and plain writes
+ * before the slot is marked, which would let a reader accept a torn event. Writing them
+ * with lazySet() costs no more than a plain store on most platforms.
+ * <p/>
+ * This class has no Android dependencies and can be tested on a desktop JVM.
+ */
+public class TraceBuffer {
+
+    /** Receives events read from the buffer. */
+    public interface Visitor {
+
+        /**
+         * Called for each event, from the oldest to the newest.
+         *
+         * @param timeNanos The time of the event, in nanoseconds.
+         * @param eventId The event id.
+         * @param a The first argument.
+         * @param b The second argument.
+         * @param c The third argument.
+         */
+        void visit(long timeNanos, int eventId, float a, float b, float c);
+    }
+
+    /** Mask for wrapping sequence numbers to array indices. */
+    private final int mMask;
+
+    /** Number of int fields per event: the id and the raw bits of the three arguments. */
+    private static final int FIELDS = 4;
+
+    /** The times of the events. */
+    private final AtomicLongArray mTimes;
+
+    /** The ids and the arguments of the events, FIELDS per event. */
+    private final AtomicIntegerArray mFields;
+
+    /** Marker for a slot that is being written. */
+    private static final long WRITING = -1;
+
+    /** The sequence number plus one of the event in each slot, 0 if empty, or WRITING. */
+    private final AtomicLongArray mSequences;
+
+    /** Sequence number of the next event. */
+    private final AtomicLong mNext = new AtomicLong();
+
+
+    /**
+     * Constructor.
+     *
+     * @param capacity The minimum capacity, rounded up to a power of two.
+     */
+    public TraceBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mMask = size - 1;
+        mTimes = new AtomicLongArray(size);
+        mFields = new AtomicIntegerArray(size * FIELDS);
+        mSequences = new AtomicLongArray(size);
+    }
+
+    /**
+     * Get the capacity.
+     *
+     * @return the number of events that fit in the buffer.
+     */
+    public int getCapacity() {
+        return mMask + 1;
+    }
+
+    /**
+     * Get the total number of events added, including overwritten ones.
+     *
+     * @return the number of events.
+     */
+    public long getCount() {
+        return mNext.get();
+    }
+
+    /**
+     * Add an event.
+     *
+     * @param timeNanos The time of the event, in nanoseconds.
+     * @param eventId The event id.
+     * @param a The first argument.
+     * @param b The second argument.
+     * @param c The third argument.
+     */
+    public void add(long timeNanos, int eventId, float a, float b, float c) {
+        long sequence = mNext.getAndIncrement();
+        int index = (int) sequence & mMask;
+
+        // Mark the slot as being written before touching it, so that readers and other
+        // writers keep off it.
+        long previous;
+        do {
+            previous = mSequences.get(index);
+        } while (previous == WRITING || !mSequences.compareAndSet(index, previous, WRITING));
+        if (previous > sequence + 1) {
+            // A writer that wrapped around has already stored a newer event here.
+            mSequences.set(index, previous);
+            return;
+        }
+        int field = index * FIELDS;
+        mTimes.lazySet(index, timeNanos);
+        mFields.lazySet(field, eventId);
+        mFields.lazySet(field + 1, Float.floatToRawIntBits(a));
+        mFields.lazySet(field + 2, Float.floatToRawIntBits(b));
+        mFields.lazySet(field + 3, Float.floatToRawIntBits(c));
+        mSequences.lazySet(index, sequence + 1);
+    }
+
+    /**
+     * Read the events in the buffer, from the oldest to the newest. Events added while
+     * reading may or may not be included. Does not remove the events.
+     *
+     * @param visitor The visitor that receives the events.
+     * @return the number of events visited.
+     */
+    public int read(Visitor visitor) {
+        long end = mNext.get();
+        long start = Math.max(0, end - getCapacity());
+        int count = 0;
+        for (long sequence = start; sequence < end; sequence++) {
+            int index = (int) sequence & mMask;
+            if (mSequences.get(index) != sequence + 1) continue;
+            int field = index * FIELDS;
+            long time = mTimes.get(index);
+            int id = mFields.get(field);
+            float a = Float.intBitsToFloat(mFields.get(field + 1));
+            float b = Float.intBitsToFloat(mFields.get(field + 2));
+            float c = Float.intBitsToFloat(mFields.get(field + 3));
+            if (mSequences.get(index) != sequence + 1) continue;
+            visitor.visit(time, id, a, b, c);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Remove all events.
+     */
+    public void clear() {
+        for (int i = 0; i <= mMask; i++) {
+            long sequence = mSequences.get(i);
+            if (sequence != WRITING) {
+                mSequences.compareAndSet(i, sequence, 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,317 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.tracing;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Structured, low-overhead tracing for hot paths such as sensor and buffering callbacks.
+ * <p/>
+ * Logging with Log.d(TAG, "yaw=" + yaw) builds a string on every call, even when nobody
+ * reads the log. Here an event type is defined once, with a level and a format string, and
+ * the hot path records only the event id, a timestamp and up to three float arguments in
+ * a preallocated {@link TraceBuffer}. Events below the current level cost one comparison;
+ * recorded events cost a few array writes; neither allocates. The formatting is done only
+ * when the buffer is dumped, on demand:
+ * <pre>
+ * private static final int EVENT_LOOK_AT =
+ *         Tracer.define(Tracer.DEBUG, "lookAt", "yaw=%.1f pitch=%.1f");
+ * ...
+ * Tracer.event(EVENT_LOOK_AT, yaw, pitch);
+ * </pre>
+ * Binary dump format, all values big-endian:
+ * <pre>
+ * int   magic 'TRCE'
+ * int   version (1)
+ * int   number of event types, then for each: UTF name, UTF format
+ * int   number of events, then for each, 24 bytes:
+ * long  time in nanoseconds
+ * int   event id, an index to the event types
+ * float a, b, c
+ * </pre>
+ * This class has no Android dependencies and can be tested on a desktop JVM.
+ */
+public final class Tracer {
+
+    /** Level for detailed events, e.g. at sensor rate. */
+    public static final int VERBOSE = 2;
+
+    /** Level for debug events. */
+    public static final int DEBUG = 3;
+
+    /** Level for informational events. */
+    public static final int INFO = 4;
+
+    /** Level that disables all events. */
+    public static final int OFF = Integer.MAX_VALUE;
+
+    /** Magic number of the binary dump, 'TRCE'. */
+    public static final int MAGIC = 0x54524345;
+
+    /** Version of the binary dump format. */
+    public static final int VERSION = 1;
+
+    /** Default capacity of the trace buffer. */
+    private static final int CAPACITY = 4096;
+
+    /** The buffer where the events are recorded. */
+    private static final TraceBuffer sBuffer = new TraceBuffer(CAPACITY);
+
+    /** The names of the event types. */
+    private static String[] sNames = new String[16];
+
+    /** The format strings of the event types. */
+    private static String[] sFormats = new String[16];
+
+    /** The levels of the event types. */
+    private static int[] sLevels = new int[16];
+
+    /** Whether each event type is enabled at the current level. */
+    private static volatile boolean[] sEnabled = new boolean[16];
+
+    /** The number of event types. */
+    private static int sCount = 0;
+
+    /** The current level; everything is recorded by default, as the buffer is bounded. */
+    private static int sLevel = VERBOSE;
+
+
+    private Tracer() {}
+
+    /**
+     * Define an event type. Call once per event type, typically to initialize a static
+     * final field.
+     *
+     * @param level The level of the event type.
+     * @param name The name of the event type.
+     * @param format The format string for the arguments, as in String.format().
+     * @return the event id.
+     */
+    public static synchronized int define(int level, String name, String format) {
+        if (sCount == sNames.length) {
+            int capacity = 2 * sCount;
+            sNames = Arrays.copyOf(sNames, capacity);
+            sFormats = Arrays.copyOf(sFormats, capacity);
+            sLevels = Arrays.copyOf(sLevels, capacity);
+        }
+        int id = sCount++;
+        sNames[id] = name;
+        sFormats[id] = format;
+        sLevels[id] = level;
+        updateEnabled();
+        return id;
+    }
+
+    /**
+     * Set the level. Events below the level are not recorded.
+     *
+     * @param level The level, e.g. {@link #DEBUG}, or {@link #OFF}.
+     */
+    public static synchronized void setLevel(int level) {
+        sLevel = level;
+        updateEnabled();
+    }
+
+    /**
+     * Get the level.
+     *
+     * @return the level.
+     */
+    public static synchronized int getLevel() {
+        return sLevel;
+    }
+
+    /**
+     * Tells whether an event type is recorded at the current level. Use to skip computing
+     * arguments that are expensive.
+     *
+     * @param eventId The event id.
+     * @return true if the event type is enabled, else false.
+     */
+    public static boolean isEnabled(int eventId) {
+        return sEnabled[eventId];
+    }
+
+    /**
+     * Record an event without arguments.
+     *
+     * @param eventId The event id.
+     */
+    public static void event(int eventId) {
+        event(eventId, 0.0f, 0.0f, 0.0f);
+    }
+
+    /**
+     * Record an event with one argument.
+     *
+     * @param eventId The event id.
+     * @param a The argument.
+     */
+    public static void event(int eventId, float a) {
+        event(eventId, a, 0.0f, 0.0f);
+    }
+
+    /**
+     * Record an event with two arguments.
+     *
+     * @param eventId The event id.
+     * @param a The first argument.
+     * @param b The second argument.
+     */
+    public static void event(int eventId, float a, float b) {
+        event(eventId, a, b, 0.0f);
+    }
+
+    /**
+     * Record an event with three arguments.
+     *
+     * @param eventId The event id.
+     * @param a The first argument.
+     * @param b The second argument.
+     * @param c The third argument.
+     */
+    public static void event(int eventId, float a, float b, float c) {
+        if (sEnabled[eventId]) {
+            sBuffer.add(System.nanoTime(), eventId, a, b, c);
+        }
+    }
+
+    /**
+     * Remove all recorded events.
+     */
+    public static void clear() {
+        sBuffer.clear();
+    }
+
+    /**
+     * Dump the recorded events as text, one line per event.
+     *
+     * @param out Where to append the text.
+     * @return the number of events dumped.
+     * @throws IOException if appending fails.
+     */
+    public static int dump(final Appendable out) throws IOException {
+        final String[] names;
+        final String[] formats;
+        synchronized (Tracer.class) {
+            names = Arrays.copyOf(sNames, sCount);
+            formats = Arrays.copyOf(sFormats, sCount);
+        }
+        final StringBuilder line = new StringBuilder();
+        final IOException[] error = new IOException[1];
+        int count = sBuffer.read(new TraceBuffer.Visitor() {
+            @Override
+            public void visit(long timeNanos, int eventId, float a, float b, float c) {
+                if (error[0] != null) return;
+                line.setLength(0);
+                line.append(String.format(Locale.US, "%d.%06d ", timeNanos / 1000000000L,
+                        timeNanos / 1000 % 1000000));
+                line.append(names[eventId]).append(' ');
+                line.append(String.format(Locale.US, formats[eventId], a, b, c));
+                line.append('\n');
+                try {
+                    out.append(line);
+                } catch (IOException e) {
+                    error[0] = e;
+                }
+            }
+        });
+        if (error[0] != null) {
+            throw error[0];
+        }
+        return count;
+    }
+
+    /**
+     * Dump the recorded events in the binary format.
+     *
+     * @param out The stream where to write the events. Not closed.
+     * @return the number of events written.
+     * @throws IOException if writing fails.
+     */
+    public static int write(OutputStream out) throws IOException {
+        final DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        synchronized (Tracer.class) {
+            data.writeInt(sCount);
+            for (int i = 0; i < sCount; i++) {
+                data.writeUTF(sNames[i]);
+                data.writeUTF(sFormats[i]);
+            }
+        }
+
+        // Copy the events first; the count is written before them.
+        final TraceBuffer snapshot = new TraceBuffer(sBuffer.getCapacity());
+        int count = sBuffer.read(new TraceBuffer.Visitor() {
+            @Override
+            public void visit(long timeNanos, int eventId, float a, float b, float c) {
+                snapshot.add(timeNanos, eventId, a, b, c);
+            }
+        });
+        data.writeInt(count);
+        final IOException[] error = new IOException[1];
+        snapshot.read(new TraceBuffer.Visitor() {
+            @Override
+            public void visit(long timeNanos, int eventId, float a, float b, float c) {
+                if (error[0] != null) return;
+                try {
+                    data.writeLong(timeNanos);
+                    data.writeInt(eventId);
+                    data.writeFloat(a);
+                    data.writeFloat(b);
+                    data.writeFloat(c);
+                } catch (IOException e) {
+                    error[0] = e;
+                }
+            }
+        });
+        if (error[0] != null) {
+            throw error[0];
+        }
+        data.flush();
+        return count;
+    }
+
+    /**
+     * Update the enabled flags after the level or the event types have changed.
+     */
+    private static void updateEnabled() {
+        boolean[] enabled = new boolean[sNames.length];
+        for (int i = 0; i < sCount; i++) {
+            enabled[i] = sLevels[i] >= sLevel;
+        }
+        sEnabled = enabled;
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.analytics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for {@link GazeCollector}.
+ */
+public class GazeCollectorTest {
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("gaze", ".heatmap");
+        assertEquals(true, mFile.delete());
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void flush_accumulatesSessionsInFile() throws Exception {
+        GazeCollector first = new GazeCollector(8, 4, 1000, mFile);
+        first.start();
+        for (int i = 0; i < 100; i++) {
+            first.record(i * 10, 0.0f, 0.0f, -1.0f);
+        }
+        assertEquals(Long.valueOf(100), first.flush().get());
+
+        // A flush without new samples leaves the file as it is.
+        assertEquals(Long.valueOf(0), first.flush().get());
+        for (int i = 0; i < 50; i++) {
+            first.record(1500, 1.0f, 0.0f, 0.0f);
+        }
+        assertEquals(Long.valueOf(50), first.stop().get());
+        assertNull(first.stop());
+
+        // A second session merges into the same file.
+        GazeCollector second = new GazeCollector(8, 4, 1000, mFile);
+        second.start();
+        for (int i = 0; i < 25; i++) {
+            second.record(0, 0.0f, 0.0f, -1.0f);
+        }
+        assertEquals(Long.valueOf(25), second.stop().get());
+
+        GazeHeatmap heatmap = read();
+        assertEquals(175, heatmap.getTotal());
+        assertEquals(125, heatmap.getCount(0, 4, 2));
+        assertEquals(50, heatmap.getCount(1, 6, 2));
+        assertFalse(new File(mFile.getPath() + ".tmp").exists());
+    }
+
+    private GazeHeatmap read() throws IOException {
+        FileInputStream in = new FileInputStream(mFile);
+        try {
+            return GazeHeatmap.read(in);
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.analytics;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link GazeHeatmap}.
+ */
+public class GazeHeatmapTest {
+
+    @Test
+    public void add_binsDirectionsLikeEquirectangularFrame() {
+        GazeHeatmap heatmap = new GazeHeatmap(36, 18, 1000);
+
+        // Front is in the middle, up in the top row, left of front to the left.
+        assertEquals(18, heatmap.getColumn(0.0f, -1.0f));
+        assertEquals(9, heatmap.getRow(0.0f));
+        assertEquals(0, heatmap.getRow(1.0f));
+        assertEquals(17, heatmap.getRow(-1.0f));
+        assertEquals(9, heatmap.getColumn(-1.0f, 0.0f));
+        assertEquals(27, heatmap.getColumn(1.0f, 0.0f));
+        assertEquals(35, heatmap.getColumn(0.0f, 1.0f));
+
+        heatmap.add(2500, 0.0f, 0.0f, -1.0f);
+        heatmap.add(2999, 0.0f, 0.0f, -1.0f);
+        heatmap.add(-5, 0.0f, 1.0f, 0.0f);
+        assertEquals(3, heatmap.getBucketCount());
+        assertEquals(2, heatmap.getCount(2, 18, 9));
+        assertEquals(1, heatmap.getCount(0, heatmap.getColumn(0.0f, 0.0f), 0));
+        assertEquals(0, heatmap.getCount(1, 18, 9));
+        assertEquals(3, heatmap.getTotal());
+    }
+
+    @Test
+    public void merge_addsCounts() {
+        GazeHeatmap a = new GazeHeatmap(8, 4, 1000);
+        GazeHeatmap b = new GazeHeatmap(8, 4, 1000);
+        a.add(0, 0.0f, 0.0f, -1.0f);
+        b.add(0, 0.0f, 0.0f, -1.0f);
+        b.add(7000, 1.0f, 0.0f, 0.0f);
+
+        a.merge(b);
+        assertEquals(3, a.getTotal());
+        assertEquals(8, a.getBucketCount());
+        assertEquals(2, a.getCount(0, 4, 2));
+
+        try {
+            a.merge(new GazeHeatmap(8, 4, 500));
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void write_roundTripsSparseBuckets() throws IOException {
+        GazeHeatmap heatmap = new GazeHeatmap(8, 4, 1000);
+        heatmap.add(0, 0.0f, 0.0f, -1.0f);
+        heatmap.add(60000, 0.0f, -1.0f, 0.0f);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        heatmap.write(out);
+
+        // Header, and two stored buckets out of 61.
+        assertEquals(6 * 4 + 2 * (4 + 8 * 4 * 4), out.size());
+
+        GazeHeatmap copy = GazeHeatmap.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(2, copy.getTotal());
+        assertEquals(61, copy.getBucketCount());
+        assertEquals(1, copy.getCount(60, heatmap.getColumn(0.0f, 0.0f), 3));
+    }
+
+    @Test
+    public void read_rejectsOversizedCountsBeforeAllocating() throws IOException {
+        assertCorrupted(header(8, 4, 1000, Integer.MAX_VALUE));
+        assertCorrupted(header(100000, 100000, 1000, 1));
+
+        // A huge or repeated bucket index.
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(header(8, 4, 1000, 1));
+        data.writeInt(Integer.MAX_VALUE);
+        assertCorrupted(out.toByteArray());
+
+        out.reset();
+        data.write(header(1, 1, 1000, 2));
+        data.writeInt(3);
+        data.writeInt(1);
+        data.writeInt(3);
+        data.writeInt(1);
+        assertCorrupted(out.toByteArray());
+    }
+
+    /**
+     * Create a heatmap file header.
+     */
+    private static byte[] header(int width, int height, int bucketMs, int stored)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(GazeHeatmap.MAGIC);
+        data.writeInt(GazeHeatmap.VERSION);
+        data.writeInt(width);
+        data.writeInt(height);
+        data.writeInt(bucketMs);
+        data.writeInt(stored);
+        return out.toByteArray();
+    }
+
+    /**
+     * Assert that reading a heatmap file fails as corrupted.
+     */
+    private static void assertCorrupted(byte[] file) {
+        try {
+            GazeHeatmap.read(new ByteArrayInputStream(file));
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertEquals("Corrupted gaze heatmap", e.getMessage());
+        }
+    }
+}
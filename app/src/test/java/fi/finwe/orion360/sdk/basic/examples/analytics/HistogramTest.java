@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.analytics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link Histogram}.
+ */
+public class HistogramTest {
+
+    @Test
+    public void record_countsValuesIntoBuckets() {
+        Histogram histogram = new Histogram(new int[] { 10, 20, 30 });
+        histogram.record(0);
+        histogram.record(10);
+        histogram.record(11);
+        histogram.record(30);
+        histogram.record(31);
+        histogram.record(-5);
+        assertEquals(4, histogram.getBucketCount());
+        assertEquals(3, histogram.getBucketCount(0));
+        assertEquals(1, histogram.getBucketCount(1));
+        assertEquals(1, histogram.getBucketCount(2));
+        assertEquals(1, histogram.getBucketCount(3));
+        assertEquals(6, histogram.getCount());
+        assertEquals(82, histogram.getSum());
+        assertEquals(0, histogram.getMin());
+        assertEquals(31, histogram.getMax());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsUnsortedBounds() {
+        new Histogram(new int[] { 10, 10 });
+    }
+
+    @Test
+    public void getPercentile_isZeroWhenEmpty() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getPercentile(95));
+        assertEquals(0, histogram.getMax());
+        assertEquals(0.0, histogram.getMean(), 0.0);
+    }
+
+    @Test
+    public void getPercentile_isWithinBucketWidth() {
+        Random random = new Random(5);
+        Histogram histogram = new Histogram();
+        long[] values = new long[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) (200 * Math.exp(random.nextGaussian()));
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (double percent : new double[] { 50, 90, 95, 99 }) {
+            long exact = values[(int) Math.ceil(percent / 100 * values.length) - 1];
+            long estimate = histogram.getPercentile(percent);
+            assertTrue(percent + ": " + estimate + " vs " + exact,
+                    Math.abs(estimate - exact) <= 0.25 * exact + 10);
+        }
+        assertEquals(values[values.length - 1], histogram.getPercentile(100));
+    }
+
+    @Test
+    public void merge_addsCounts() {
+        Histogram a = new Histogram();
+        Histogram b = new Histogram();
+        a.record(100);
+        b.record(5000);
+        b.record(7);
+        a.merge(b);
+        assertEquals(3, a.getCount());
+        assertEquals(7, a.getMin());
+        assertEquals(5000, a.getMax());
+        assertEquals(5107, a.getSum());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void merge_rejectsDifferentBuckets() {
+        new Histogram().merge(new Histogram(new int[] { 1 }));
+    }
+}
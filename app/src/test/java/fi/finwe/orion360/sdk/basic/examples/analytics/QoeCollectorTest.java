@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.analytics;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link QoeCollector} and {@link QoeFileSink}.
+ */
+public class QoeCollectorTest {
+
+    /** Collects the exported keys. */
+    private static class KeySink implements QoeCollector.Sink {
+        final List<String> keys = new ArrayList<>();
+
+        @Override
+        public void export(String key, QoeCollector.Stats stats) {
+            keys.add(key);
+        }
+    }
+
+    @Test
+    public void startup_recordsPrepareAndFirstFrame() {
+        QoeCollector collector = new QoeCollector();
+        collector.setDimensions("1280x640", "WIFI");
+        collector.onPrepareStarted(1000);
+        collector.onBufferingStarted(1100);
+        collector.onPrepared(1800);
+        collector.onBufferingStopped(2000);
+        collector.onFirstFrame(2500);
+        collector.onFirstFrame(9000);
+
+        QoeCollector.Stats stats = collector.getStats("1280x640/WIFI");
+        assertEquals(1, stats.sessions);
+        assertEquals(1, stats.prepare.getCount());
+        assertEquals(800, stats.prepare.getMax());
+        assertEquals(1, stats.firstFrame.getCount());
+        assertEquals(1500, stats.firstFrame.getMax());
+
+        // Buffering before the first frame is startup, not a rebuffer.
+        assertEquals(0, stats.getRebufferCount());
+    }
+
+    @Test
+    public void rebuffers_areCountedAndTimed() {
+        QoeCollector collector = new QoeCollector();
+        collector.onPrepareStarted(0);
+        collector.onPrepared(100);
+        collector.onFirstFrame(200);
+        collector.onBufferingStarted(1000);
+        collector.onBufferingStarted(1100);
+        collector.onBufferingStopped(1400);
+        collector.onBufferingStarted(5000);
+        collector.onPaused(5250);
+        collector.onBufferingStopped(6000);
+
+        QoeCollector.Stats stats = collector.getStats(collector.getKey());
+        assertEquals(2, stats.getRebufferCount());
+        assertEquals(650, stats.stall.getSum());
+        assertEquals(400, stats.stall.getMax());
+    }
+
+    @Test
+    public void seeks_recordLatencyAndDoNotCountAsRebuffers() {
+        QoeCollector collector = new QoeCollector();
+        collector.onPrepareStarted(0);
+        collector.onFirstFrame(200);
+        collector.onSeekStarted(1000);
+        collector.onBufferingStarted(1010);
+        collector.onBufferingStopped(1300);
+        collector.onSeekCompleted(1350);
+        collector.onSeekCompleted(2000);
+
+        QoeCollector.Stats stats = collector.getStats(collector.getKey());
+        assertEquals(1, stats.seek.getCount());
+        assertEquals(350, stats.seek.getMax());
+        assertEquals(0, stats.getRebufferCount());
+    }
+
+    @Test
+    public void sessions_areAggregatedPerDimension() {
+        QoeCollector collector = new QoeCollector();
+        collector.setDimensions("1280x640", "WIFI");
+        collector.onPrepareStarted(0);
+        collector.onFirstFrame(300);
+        collector.onSessionEnded(1000);
+
+        collector.setDimensions("1280x640", "MOBILE");
+        collector.onPrepareStarted(2000);
+        collector.onError(2500);
+
+        collector.setDimensions("1280x640", "WIFI");
+        collector.onPrepareStarted(3000);
+        collector.onFirstFrame(3500);
+
+        QoeCollector.Stats wifi = collector.getStats("1280x640/WIFI");
+        assertEquals(2, wifi.sessions);
+        assertEquals(2, wifi.firstFrame.getCount());
+        assertEquals(0, wifi.abandoned);
+
+        QoeCollector.Stats mobile = collector.getStats("1280x640/MOBILE");
+        assertEquals(1, mobile.sessions);
+        assertEquals(1, mobile.errors);
+        assertEquals(1, mobile.abandoned);
+        assertEquals(0, mobile.firstFrame.getCount());
+    }
+
+    @Test
+    public void flush_exportsAndStartsAnew() throws IOException {
+        QoeCollector collector = new QoeCollector();
+        collector.setDimensions(null, "WIFI");
+        collector.onPrepareStarted(0);
+        KeySink sink = new KeySink();
+        collector.flush(sink);
+        assertEquals("[unknown/WIFI]", sink.keys.toString());
+
+        // The current session continues in the new aggregates.
+        collector.onFirstFrame(400);
+        QoeCollector.Stats stats = collector.getStats("unknown/WIFI");
+        assertEquals(0, stats.sessions);
+        assertEquals(1, stats.firstFrame.getCount());
+
+        collector.onSessionEnded(500);
+        sink.keys.clear();
+        collector.flush(sink);
+        collector.flush(sink);
+        assertEquals("[unknown/WIFI]", sink.keys.toString());
+        assertNull(collector.getStats("unknown/WIFI"));
+    }
+
+    @Test
+    public void fileSink_appendsJsonLines() throws IOException {
+        File file = File.createTempFile("qoe", ".jsonl");
+        file.deleteOnExit();
+        QoeCollector collector = new QoeCollector();
+        collector.setDimensions("1920x960", "W\"IFI");
+        collector.onPrepareStarted(0);
+        collector.onPrepared(250);
+        collector.onFirstFrame(700);
+        collector.flush(new QoeFileSink(file, 42));
+        collector.flush(new QoeFileSink(file, 43));
+
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line = reader.readLine();
+            assertTrue(line, line.startsWith("{\"time\":42,\"key\":\"1920x960/W\\\"IFI\","));
+            assertTrue(line, line.contains("\"sessions\":1,"));
+            assertTrue(line, line.contains("\"prepare\":{\"count\":1,\"mean\":250,\"p50\":250,"));
+            assertTrue(line, line.endsWith("}}"));
+            line = reader.readLine();
+            assertTrue(line, line.startsWith("{\"time\":43,"));
+            assertNull(reader.readLine());
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.animation;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link TagAnimation} and {@link TagAnimationList}.
+ */
+public class TagAnimationListTest {
+
+    /** Animation that records its values and callbacks. */
+    private static class RecordingAnimation extends TagAnimation {
+        final List<String> events = new ArrayList<>();
+        float value = Float.NaN;
+
+        RecordingAnimation(float from, float to, long durationMs) {
+            super(from, to, durationMs);
+            setInterpolator(INTERPOLATOR_LINEAR);
+        }
+
+        @Override
+        protected void onUpdate(float value) {
+            this.value = value;
+        }
+
+        @Override
+        protected void onStart() {
+            events.add("start");
+        }
+
+        @Override
+        protected void onEnd() {
+            events.add("end");
+        }
+
+        @Override
+        protected void onCancel() {
+            events.add("cancel");
+        }
+    }
+
+    @Test
+    public void tick_advancesFromFirstFrameToEnd() {
+        TagAnimationList list = new TagAnimationList();
+        RecordingAnimation animation = new RecordingAnimation(0.0f, 10.0f, 100);
+        list.start(animation);
+
+        assertTrue(list.tick(1000));
+        assertEquals(0.0f, animation.value, 1e-6f);
+        assertTrue(list.tick(1050));
+        assertEquals(5.0f, animation.value, 1e-6f);
+
+        // The last frame lands exactly on the end value, even if it is late.
+        assertFalse(list.tick(1130));
+        assertEquals(10.0f, animation.value, 1e-6f);
+        assertFalse(animation.isRunning());
+        assertEquals("[start, end]", animation.events.toString());
+    }
+
+    @Test
+    public void tick_repeatsInReverse() {
+        TagAnimationList list = new TagAnimationList();
+        RecordingAnimation animation = new RecordingAnimation(0.0f, 10.0f, 100);
+        animation.setRepeatCount(1).setRepeatMode(TagAnimation.REVERSE);
+        list.start(animation);
+
+        list.tick(0);
+        list.tick(125);
+        assertEquals(7.5f, animation.value, 1e-6f);
+        assertFalse(list.tick(250));
+        assertEquals(0.0f, animation.value, 1e-6f);
+    }
+
+    @Test
+    public void tick_runsInfiniteAnimationsUntilCanceled() {
+        TagAnimationList list = new TagAnimationList();
+        RecordingAnimation animation = new RecordingAnimation(0.0f, 10.0f, 100);
+        animation.setRepeatCount(TagAnimation.INFINITE);
+        list.start(animation);
+
+        list.tick(0);
+        assertTrue(list.tick(100000 + 30));
+        assertEquals(3.0f, animation.value, 1e-3f);
+
+        list.cancel(animation);
+        list.cancel(animation);
+        assertFalse(list.hasRunning());
+        assertFalse(list.tick(100100));
+        assertEquals("[start, cancel]", animation.events.toString());
+    }
+
+    @Test
+    public void tick_supportsChainingFromCallbacks() {
+        final TagAnimationList list = new TagAnimationList();
+        final RecordingAnimation second = new RecordingAnimation(1.0f, 0.0f, 100);
+        RecordingAnimation first = new RecordingAnimation(0.0f, 1.0f, 100) {
+            @Override
+            protected void onEnd() {
+                super.onEnd();
+                list.start(second);
+            }
+        };
+        list.start(first);
+
+        list.tick(0);
+        assertTrue(list.tick(100));
+        assertEquals("[start, end]", first.events.toString());
+        assertTrue(second.isRunning());
+
+        // The chained animation starts at the next frame.
+        list.tick(116);
+        assertEquals(1.0f, second.value, 1e-6f);
+        assertFalse(list.tick(216));
+        assertEquals(0.0f, second.value, 1e-6f);
+    }
+
+    @Test
+    public void start_restartsRunningAnimation() {
+        TagAnimationList list = new TagAnimationList();
+        RecordingAnimation animation = new RecordingAnimation(0.0f, 10.0f, 100);
+        list.start(animation);
+        list.tick(0);
+        list.tick(80);
+        list.start(animation);
+        list.tick(90);
+        assertEquals(0.0f, animation.value, 1e-6f);
+        assertTrue(list.tick(140));
+        assertEquals(5.0f, animation.value, 1e-6f);
+    }
+
+    @Test
+    public void tick_handlesManyAnimations() {
+        TagAnimationList list = new TagAnimationList();
+        RecordingAnimation[] animations = new RecordingAnimation[500];
+        for (int i = 0; i < animations.length; i++) {
+            animations[i] = new RecordingAnimation(0.0f, 1.0f, 10 * (i + 1));
+            list.start(animations[i]);
+        }
+        list.tick(0);
+        list.tick(2500);
+        int running = 0;
+        for (RecordingAnimation animation : animations) {
+            if (animation.isRunning()) running++;
+        }
+        assertEquals(250, running);
+        assertEquals(0.5f, animations[499].value, 1e-6f);
+    }
+
+    @Test
+    public void accelerateDecelerate_matchesValueAnimatorDefault() {
+        TagAnimationList list = new TagAnimationList();
+        RecordingAnimation animation = new RecordingAnimation(0.0f, 1.0f, 100);
+        animation.setInterpolator(TagAnimation.INTERPOLATOR_ACCELERATE_DECELERATE);
+        list.start(animation);
+        list.tick(0);
+        list.tick(25);
+        assertEquals((float) (Math.cos(1.25 * Math.PI) / 2 + 0.5), animation.value, 1e-6f);
+        list.tick(50);
+        assertEquals(0.5f, animation.value, 1e-6f);
+    }
+}
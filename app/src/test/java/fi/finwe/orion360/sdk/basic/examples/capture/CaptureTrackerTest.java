@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.capture;
+
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link CaptureTracker}, the bookkeeping of {@link CaptureSession}.
+ */
+public class CaptureTrackerTest {
+
+    /** Directory for the frames. */
+    private static final String DIRECTORY = "frames";
+
+    @Test
+    public void onCaptured_namesFramesSequentiallyWithPrefix() {
+        CaptureTracker tracker = new CaptureTracker(3, DIRECTORY, "20161230120000_Burst");
+        tracker.start(0);
+        tracker.onRequested();
+        assertEquals(DIRECTORY + File.separator + "20161230120000_Burst_00001.jpg",
+                tracker.onCaptured("jpg", 10));
+        tracker.onRequested();
+        assertEquals(DIRECTORY + File.separator + "20161230120000_Burst_00002.jpg",
+                tracker.onCaptured("jpg", 210));
+    }
+
+    @Test
+    public void onCaptured_sessionsWithDifferentPrefixesDoNotCollide() {
+        CaptureTracker first = new CaptureTracker(1, DIRECTORY, "20161230120000_Burst");
+        CaptureTracker second = new CaptureTracker(1, DIRECTORY, "20161230120010_Burst");
+        first.onRequested();
+        second.onRequested();
+        assertNotEquals(first.onCaptured("jpg", 0), second.onCaptured("jpg", 0));
+    }
+
+    @Test
+    public void statistics_countSkippedAndEncoderDroppedFrames() {
+        CaptureTracker tracker = new CaptureTracker(4, DIRECTORY, "Burst");
+        tracker.start(0);
+
+        tracker.onRequested();
+        String first = tracker.onCaptured("jpg", 0);
+        tracker.onRequested();
+        tracker.onSkipped();
+        tracker.onRequested();
+        String third = tracker.onCaptured("jpg", 400);
+        tracker.onRequested();
+        tracker.onCaptureFailed();
+        assertTrue(tracker.isAllRequested());
+        assertTrue(tracker.hasPendingFrames());
+        assertTrue(tracker.isPending(third));
+        assertFalse(tracker.isPending(DIRECTORY + File.separator + "Earlier_00001.jpg"));
+
+        tracker.onSaved(first, 50, 100);
+        tracker.onDropped(third);
+        assertFalse(tracker.hasPendingFrames());
+        assertFalse(tracker.isPending(first));
+
+        CaptureSession.Statistics statistics = tracker.getStatistics(1000);
+        assertEquals(4, statistics.requestedFrames);
+        assertEquals(2, statistics.capturedFrames);
+        assertEquals(1, statistics.savedFrames);
+        assertEquals(2, statistics.droppedFrames);
+        assertEquals(1, statistics.failedFrames);
+        assertEquals(50.0f, statistics.averageEncodeMs, 0.0f);
+        assertEquals(100.0f, statistics.averageLatencyMs, 0.0f);
+        assertEquals(100, statistics.maxLatencyMs);
+    }
+
+    @Test
+    public void statistics_measureRateFromFirstToLastCapture() {
+        CaptureTracker tracker = new CaptureTracker(5, DIRECTORY, "Burst");
+        tracker.start(1000);
+        for (int i = 0; i < 5; i++) {
+            tracker.onRequested();
+            tracker.onCaptured("jpg", 1050 + i * 200);
+        }
+
+        // Draining the encoders after the last capture does not lower the rate.
+        CaptureSession.Statistics statistics = tracker.getStatistics(5000);
+        assertEquals(4000, statistics.elapsedMs);
+        assertEquals(5.0f, statistics.achievedFps, 0.001f);
+    }
+
+    @Test
+    public void statistics_rateIsZeroUntilTwoFramesCaptured() {
+        CaptureTracker tracker = new CaptureTracker(5, DIRECTORY, "Burst");
+        tracker.start(0);
+        assertEquals(0.0f, tracker.getStatistics(100).achievedFps, 0.0f);
+        tracker.onRequested();
+        tracker.onCaptured("jpg", 50);
+        assertEquals(0.0f, tracker.getStatistics(100).achievedFps, 0.0f);
+    }
+
+    @Test
+    public void getRequestTime_isRelativeToStart() {
+        CaptureTracker tracker = new CaptureTracker(5, DIRECTORY, "Burst");
+        tracker.start(1000);
+        assertEquals(1000, tracker.getRequestTime(0, 200));
+        assertEquals(1600, tracker.getRequestTime(3, 200));
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.capture;
+
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link EquirectangularStitcher}.
+ * <p/>
+ * The tests render synthetic tiles of a scene whose color is a smooth function of the direction,
+ * stitch them, and compare the panorama to the scene.
+ */
+public class EquirectangularStitcherTest {
+
+    /** Viewport size and field of view of the synthetic tiles. */
+    private static final int TILE_WIDTH = 320, TILE_HEIGHT = 180;
+    private static final float TILE_HFOV = 90.0f;
+
+    /** Vertical field of view of the synthetic tiles. */
+    private static final float TILE_VFOV = (float) Math.toDegrees(2 * Math.atan(
+            Math.tan(Math.toRadians(TILE_HFOV / 2)) * TILE_HEIGHT / TILE_WIDTH));
+
+    /** Panorama size. */
+    private static final int WIDTH = 720, HEIGHT = 360;
+
+    @Test
+    public void render_gridOfTiles_reproducesScene() {
+        int[] out = new int[WIDTH * HEIGHT];
+        createStitcher().render(out, WIDTH, HEIGHT);
+
+        int maxError = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                double longitude = ((x + 0.5) / WIDTH - 0.5) * 2 * Math.PI;
+                double latitude = (0.5 - (y + 0.5) / HEIGHT) * Math.PI;
+                int expected = scene((float) (Math.cos(latitude) * Math.sin(longitude)),
+                        (float) Math.sin(latitude),
+                        (float) (Math.cos(latitude) * Math.cos(longitude)));
+                maxError = Math.max(maxError, maxChannelDifference(expected, out[y * WIDTH + x]));
+            }
+        }
+        assertTrue("max error " + maxError, maxError <= 2);
+    }
+
+    @Test
+    public void render_parallel_matchesSequential() {
+        EquirectangularStitcher stitcher = createStitcher();
+        int[] sequential = new int[WIDTH * HEIGHT];
+        stitcher.render(sequential, WIDTH, HEIGHT);
+        int[] parallel = new int[WIDTH * HEIGHT];
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            stitcher.render(parallel, WIDTH, HEIGHT, pool);
+        } finally {
+            pool.shutdown();
+        }
+        assertArrayEquals(sequential, parallel);
+    }
+
+    @Test
+    public void render_singleFrontTile_coversOnlyItsViewport() {
+        EquirectangularStitcher stitcher = new EquirectangularStitcher();
+        stitcher.addTile(renderTile(0.0f, 0.0f));
+        int[] out = new int[WIDTH * HEIGHT];
+        stitcher.render(out, WIDTH, HEIGHT);
+
+        // The center of the panorama is covered, the back and the poles are not.
+        assertTrue(out[HEIGHT / 2 * WIDTH + WIDTH / 2] != 0xFF000000);
+        assertEquals(0xFF000000, out[HEIGHT / 2 * WIDTH]);
+        assertEquals(0xFF000000, out[WIDTH / 2]);
+        assertEquals(0xFF000000, out[(HEIGHT - 1) * WIDTH + WIDTH / 2]);
+    }
+
+    @Test
+    public void createGrid_includesPolesAndFullCircles() {
+        float[][] grid = EquirectangularStitcher.createGrid(TILE_HFOV, TILE_VFOV, 0.2f);
+        assertEquals(90.0f, grid[0][1], 0.0f);
+        assertEquals(-90.0f, grid[grid.length - 1][1], 0.0f);
+        assertTrue(grid.length > 10 && grid.length < 40);
+    }
+
+    /**
+     * Create a stitcher with tiles rendered over the default grid.
+     */
+    private static EquirectangularStitcher createStitcher() {
+        EquirectangularStitcher stitcher = new EquirectangularStitcher();
+        for (float[] orientation : EquirectangularStitcher.createGrid(TILE_HFOV, TILE_VFOV,
+                0.2f)) {
+            stitcher.addTile(renderTile(orientation[0], orientation[1]));
+        }
+        return stitcher;
+    }
+
+    /**
+     * Render a synthetic rectilinear tile of the scene, as a viewport screenshot would be.
+     */
+    private static EquirectangularStitcher.Tile renderTile(float yawDeg, float pitchDeg) {
+        float[][] basis = EquirectangularStitcher.getBasis(yawDeg, pitchDeg);
+        float[] f = basis[0], r = basis[1], u = basis[2];
+        double focalLength = 0.5 * TILE_WIDTH / Math.tan(Math.toRadians(TILE_HFOV / 2));
+        int[] pixels = new int[TILE_WIDTH * TILE_HEIGHT];
+        for (int y = 0; y < TILE_HEIGHT; y++) {
+            for (int x = 0; x < TILE_WIDTH; x++) {
+                double xc = (x + 0.5 - 0.5 * TILE_WIDTH) / focalLength;
+                double yc = (0.5 * TILE_HEIGHT - y - 0.5) / focalLength;
+                double vx = f[0] + xc * r[0] + yc * u[0];
+                double vy = f[1] + xc * r[1] + yc * u[1];
+                double vz = f[2] + xc * r[2] + yc * u[2];
+                double length = Math.sqrt(vx * vx + vy * vy + vz * vz);
+                pixels[y * TILE_WIDTH + x] = scene((float) (vx / length),
+                        (float) (vy / length), (float) (vz / length));
+            }
+        }
+        return new EquirectangularStitcher.Tile(pixels, TILE_WIDTH, TILE_HEIGHT, TILE_HFOV,
+                f, r, u);
+    }
+
+    /**
+     * The color of the synthetic scene in the given direction.
+     */
+    private static int scene(float x, float y, float z) {
+        int red = Math.round(128 + 100 * x);
+        int green = Math.round(128 + 100 * y);
+        int blue = Math.round(128 + 100 * z);
+        return 0xFF000000 | (red << 16) | (green << 8) | blue;
+    }
+
+    /**
+     * Get the largest difference between the color channels of two pixels.
+     */
+    private static int maxChannelDifference(int a, int b) {
+        int max = 0;
+        for (int shift = 0; shift <= 16; shift += 8) {
+            max = Math.max(max, Math.abs(((a >> shift) & 0xFF) - ((b >> shift) & 0xFF)));
+        }
+        return max;
+    }
+}
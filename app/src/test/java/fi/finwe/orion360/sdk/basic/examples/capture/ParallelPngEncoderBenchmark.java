@@ -0,0 +1,247 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.capture;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ * JVM benchmark for screenshot output formats: encode time and file size.
+ * <p/>
+ * Compares {@link ParallelPngEncoder} with different thread counts and compression levels to
+ * the JDK's single-threaded PNG encoder (the same zlib deflate that Bitmap.compress() uses for
+ * PNG) and to JPEG. WebP has no encoder in the JDK and is not included.
+ * <p/>
+ * The images are real 360 video frames: the test images in the app's assets, as is and upscaled
+ * to 4K, plus any PNG/JPEG captures found in the directory given as the first argument (for
+ * example screenshots pulled from a device). Run main() from the IDE, with the app module as
+ * the working directory.
+ */
+public class ParallelPngEncoderBenchmark {
+
+    /** Directory of the test images, relative to the app module. */
+    private static final String ASSETS_DIR = "src/main/assets";
+
+    /** Number of untimed warm-up rounds per configuration. */
+    private static final int WARM_UP_ROUNDS = 2;
+
+    /** Number of timed rounds per configuration. */
+    private static final int ROUNDS = 5;
+
+    /** An image to encode. */
+    private static class Frame {
+        final String mName;
+        final BufferedImage mImage;
+        final int[] mPixels;
+
+        Frame(String name, BufferedImage image) {
+            mName = name;
+            mImage = image;
+            mPixels = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0,
+                    image.getWidth());
+        }
+    }
+
+    /** An encoder configuration to be measured. */
+    private interface Encoder {
+        String getName();
+        byte[] encode(Frame frame) throws IOException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<Frame> frames = new ArrayList<>();
+        File assets = new File(ASSETS_DIR);
+        if (!assets.isDirectory()) {
+            assets = new File("app", ASSETS_DIR);
+        }
+        BufferedImage asset = ImageIO.read(new File(assets, "Orion360_test_image_1920x960.jpg"));
+        frames.add(new Frame("asset 1920x960", asset));
+        frames.add(new Frame("asset upscaled 3840x1920", scale(asset, 3840, 1920)));
+        if (args.length > 0) {
+            File[] files = new File(args[0]).listFiles();
+            if (null != files) {
+                for (File file : files) {
+                    BufferedImage image = ImageIO.read(file);
+                    if (null != image) {
+                        frames.add(new Frame(file.getName(), toRgb(image)));
+                    }
+                }
+            }
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<Encoder> encoders = new ArrayList<>();
+        encoders.add(imageIo("png"));
+        Set<Integer> threadCounts = new TreeSet<>(Arrays.asList(1, 2, 4, cores));
+        for (int level : new int[] { 1, 6 }) {
+            for (int threads : threadCounts) {
+                encoders.add(parallelPng(threads, level));
+            }
+        }
+        encoders.add(jpeg(0.9f));
+
+        System.out.println("Cores: " + cores);
+        for (Frame frame : frames) {
+            System.out.println();
+            System.out.println(frame.mName);
+            System.out.println(String.format(Locale.US, "  %-28s %10s %12s",
+                    "encoder", "time ms", "size KB"));
+            for (Encoder encoder : encoders) {
+                measure(encoder, frame);
+            }
+        }
+    }
+
+    /**
+     * Measure the median encode time and the output size of one configuration.
+     */
+    private static void measure(Encoder encoder, Frame frame) throws IOException {
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            encoder.encode(frame);
+        }
+        long[] times = new long[ROUNDS];
+        int size = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            size = encoder.encode(frame).length;
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        System.out.println(String.format(Locale.US, "  %-28s %10.1f %12d",
+                encoder.getName(), times[ROUNDS / 2] / 1e6, size / 1024));
+    }
+
+    /**
+     * Parallel PNG encoder configuration.
+     */
+    private static Encoder parallelPng(final int threads, final int level) {
+        final ParallelPngEncoder encoder = new ParallelPngEncoder(threads, level);
+        return new Encoder() {
+            @Override
+            public String getName() {
+                return "parallel png L" + level + " x" + threads;
+            }
+
+            @Override
+            public byte[] encode(Frame frame) throws IOException {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                boolean hasAlpha = !ParallelPngEncoder.isOpaque(frame.mPixels,
+                        frame.mPixels.length);
+                encoder.encode(frame.mPixels, frame.mImage.getWidth(), frame.mImage.getHeight(),
+                        hasAlpha, out);
+                return out.toByteArray();
+            }
+        };
+    }
+
+    /**
+     * JDK ImageIO encoder configuration with default settings.
+     */
+    private static Encoder imageIo(final String format) {
+        return new Encoder() {
+            @Override
+            public String getName() {
+                return "imageio " + format;
+            }
+
+            @Override
+            public byte[] encode(Frame frame) throws IOException {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                ImageIO.write(frame.mImage, format, out);
+                return out.toByteArray();
+            }
+        };
+    }
+
+    /**
+     * JDK ImageIO JPEG encoder configuration with the given quality.
+     */
+    private static Encoder jpeg(final float quality) {
+        return new Encoder() {
+            @Override
+            public String getName() {
+                return "imageio jpeg q" + Math.round(quality * 100);
+            }
+
+            @Override
+            public byte[] encode(Frame frame) throws IOException {
+                Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+                ImageWriter writer = writers.next();
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(quality);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                MemoryCacheImageOutputStream stream = new MemoryCacheImageOutputStream(out);
+                writer.setOutput(stream);
+                writer.write(null, new IIOImage(frame.mImage, null, null), param);
+                stream.close();
+                writer.dispose();
+                return out.toByteArray();
+            }
+        };
+    }
+
+    /**
+     * Scale an image with bilinear interpolation.
+     */
+    private static BufferedImage scale(BufferedImage image, int width, int height) {
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(image, 0, 0, width, height, null);
+        g.dispose();
+        return scaled;
+    }
+
+    /**
+     * Convert an image to RGB, which all encoders accept.
+     */
+    private static BufferedImage toRgb(BufferedImage image) {
+        return scale(image, image.getWidth(), image.getHeight());
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.capture;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.Adler32;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link ParallelPngEncoder}. Encoded images are decoded with ImageIO and
+ * compared to the originals pixel by pixel.
+ */
+public class ParallelPngEncoderTest {
+
+    @Test
+    public void encode_opaqueImage_decodesToSamePixels() throws Exception {
+        int[] pixels = createImage(640, 480, false);
+        for (int threads : new int[] { 1, 4 }) {
+            assertRoundTrip(pixels, 640, 480, false, threads);
+        }
+    }
+
+    @Test
+    public void encode_translucentImage_decodesToSamePixels() throws Exception {
+        int[] pixels = createImage(300, 200, true);
+        for (int threads : new int[] { 1, 3 }) {
+            assertRoundTrip(pixels, 300, 200, true, threads);
+        }
+    }
+
+    @Test
+    public void encode_oddSizes_decodeToSamePixels() throws Exception {
+        int[][] sizes = { { 1, 1 }, { 1, 1000 }, { 1000, 1 }, { 3000, 97 } };
+        for (int[] size : sizes) {
+            int[] pixels = createImage(size[0], size[1], false);
+            assertRoundTrip(pixels, size[0], size[1], false, 4);
+        }
+    }
+
+    @Test
+    public void encode_parallel_producesSameSizeClassAsSequential() throws Exception {
+        int width = 1920, height = 960;
+        int[] pixels = createImage(width, height, false);
+        int sequential = encode(pixels, width, height, false, 1).length;
+        int parallel = encode(pixels, width, height, false, 4).length;
+
+        // Bands cannot refer to each other's data, but the overhead should stay small.
+        assertTrue("parallel " + parallel + " vs sequential " + sequential,
+                parallel < sequential * 1.05);
+    }
+
+    @Test
+    public void combineAdler32_matchesChecksumOfConcatenation() {
+        byte[] data = new byte[100000];
+        new Random(1).nextBytes(data);
+        for (int split : new int[] { 0, 1, 65521, 70000, data.length }) {
+            Adler32 first = new Adler32();
+            first.update(data, 0, split);
+            Adler32 second = new Adler32();
+            second.update(data, split, data.length - split);
+            Adler32 whole = new Adler32();
+            whole.update(data, 0, data.length);
+            assertEquals(whole.getValue(), ParallelPngEncoder.combineAdler32(
+                    first.getValue(), second.getValue(), data.length - split));
+        }
+    }
+
+    @Test
+    public void isOpaque_detectsAlpha() {
+        int[] pixels = createImage(10, 10, false);
+        assertTrue(ParallelPngEncoder.isOpaque(pixels, pixels.length));
+        pixels[42] &= 0x7FFFFFFF;
+        assertFalse(ParallelPngEncoder.isOpaque(pixels, pixels.length));
+    }
+
+    /**
+     * Encode an image, decode it with ImageIO, and compare the pixels.
+     */
+    private static void assertRoundTrip(int[] pixels, int width, int height, boolean hasAlpha,
+                                        int threads) throws IOException {
+        byte[] png = encode(pixels, width, height, hasAlpha, threads);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        assertNotNull("ImageIO could not decode the PNG", image);
+        assertEquals(width, image.getWidth());
+        assertEquals(height, image.getHeight());
+        int[] decoded = image.getRGB(0, 0, width, height, null, 0, width);
+        for (int i = 0; i < pixels.length; i++) {
+            int expected = hasAlpha ? pixels[i] : pixels[i] | 0xFF000000;
+            if (expected != decoded[i]) {
+                assertEquals("Pixel " + i + " with " + threads + " threads",
+                        Integer.toHexString(expected), Integer.toHexString(decoded[i]));
+            }
+        }
+    }
+
+    /**
+     * Encode an image to a byte array.
+     */
+    private static byte[] encode(int[] pixels, int width, int height, boolean hasAlpha,
+                                 int threads) throws IOException {
+        ParallelPngEncoder encoder = new ParallelPngEncoder(threads, 6);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            encoder.encode(pixels, width, height, hasAlpha, out);
+            return out.toByteArray();
+        } finally {
+            encoder.shutdown();
+        }
+    }
+
+    /**
+     * Create a test image with smooth gradients and some noise, like a video frame.
+     */
+    static int[] createImage(int width, int height, boolean hasAlpha) {
+        Random random = new Random(width * 31 + height);
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = (x * 255 / Math.max(1, width - 1)) ^ random.nextInt(8);
+                int g = (y * 255 / Math.max(1, height - 1)) ^ random.nextInt(8);
+                int b = ((x + y) & 0xFF);
+                int a = hasAlpha ? (x * y) & 0xFF : 0xFF;
+                pixels[y * width + x] = (a << 24) | (r << 16) | (g << 8) | b;
+            }
+        }
+        return pixels;
+    }
+}
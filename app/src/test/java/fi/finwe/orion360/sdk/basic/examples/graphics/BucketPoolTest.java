@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.graphics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link BucketPool}, the bookkeeping of {@link BitmapPool}.
+ */
+public class BucketPoolTest {
+
+    /** An item with a size, standing in for a bitmap. */
+    private static class Item {
+
+        /** The size of the item. */
+        final long mSize;
+
+        Item(long size) {
+            mSize = size;
+        }
+    }
+
+    /** A pool that records the released items. */
+    private static class TestPool extends BucketPool<Item> {
+
+        /** The items released so far. */
+        final List<Item> mReleased = new ArrayList<>();
+
+        TestPool(long maxSize) {
+            super(maxSize);
+        }
+
+        @Override
+        protected long getSize(Item item) {
+            return item.mSize;
+        }
+
+        @Override
+        protected void release(Item item) {
+            mReleased.add(item);
+        }
+    }
+
+    @Test
+    public void poll_missReturnsNullAndCountsMiss() {
+        TestPool pool = new TestPool(1000);
+        assertNull(pool.poll(1));
+        assertEquals(0, pool.getHitCount());
+        assertEquals(1, pool.getMissCount());
+    }
+
+    @Test
+    public void poll_returnsItemOfMatchingKeyOnly() {
+        TestPool pool = new TestPool(1000);
+        pool.poll(1);
+        pool.poll(2);
+        Item item = new Item(100);
+        pool.put(1, item);
+        assertEquals(100, pool.getSize());
+
+        assertNull(pool.poll(2));
+        assertSame(item, pool.poll(1));
+        assertNull(pool.poll(1));
+        assertEquals(0, pool.getSize());
+        assertEquals(1, pool.getHitCount());
+        assertEquals(4, pool.getMissCount());
+    }
+
+    @Test
+    public void put_releasesItemsOfKeysNeverAskedFor() {
+        TestPool pool = new TestPool(1000);
+        Item item = new Item(100);
+        pool.put(1, item);
+        assertEquals(0, pool.getSize());
+        assertEquals(1, pool.mReleased.size());
+        assertSame(item, pool.mReleased.get(0));
+    }
+
+    @Test
+    public void put_releasesItemsLargerThanPool() {
+        TestPool pool = new TestPool(1000);
+        pool.poll(1);
+        pool.put(1, new Item(1001));
+        assertEquals(0, pool.getSize());
+        assertEquals(1, pool.mReleased.size());
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsedBucketAtCap() {
+        TestPool pool = new TestPool(250);
+        pool.poll(1);
+        pool.poll(2);
+        Item first = new Item(100), second = new Item(100), third = new Item(100);
+        pool.put(1, first);
+        pool.put(2, second);
+        assertTrue(pool.mReleased.isEmpty());
+
+        // Bucket 1 is the least recently used one, hence it goes first.
+        pool.put(2, third);
+        assertEquals(200, pool.getSize());
+        assertEquals(1, pool.mReleased.size());
+        assertSame(first, pool.mReleased.get(0));
+        assertNull(pool.poll(1));
+        assertSame(third, pool.poll(2));
+    }
+
+    @Test
+    public void clear_releasesAllAndForgetsKeys() {
+        TestPool pool = new TestPool(1000);
+        pool.poll(1);
+        pool.put(1, new Item(100));
+        pool.clear();
+        assertEquals(0, pool.getSize());
+        assertEquals(1, pool.mReleased.size());
+
+        pool.put(1, new Item(100));
+        assertEquals(0, pool.getSize());
+        assertEquals(2, pool.mReleased.size());
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.hotspot;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link GazeTracker}.
+ */
+public class GazeTrackerTest {
+
+    private GazeTracker mTracker;
+
+    private final List<String> mEvents = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mTracker = new GazeTracker(10.0f);
+        mTracker.setListener(new GazeTracker.Listener() {
+            @Override
+            public void onGazeEnter(int id) {
+                mEvents.add("enter " + id);
+            }
+
+            @Override
+            public void onGazeExit(int id) {
+                mEvents.add("exit " + id);
+            }
+        });
+    }
+
+    @Test
+    public void update_appliesHysteresis() {
+        mTracker.put(1, 0.0f, 0.0f, -1.0f, 5.0f, 7.0f);
+
+        gazeAt(6.0f);
+        assertTrue(mEvents.isEmpty());
+
+        gazeAt(4.0f);
+        assertEquals("enter 1", mEvents.remove(0));
+        assertTrue(mTracker.isFocused(1));
+
+        // Between the in and out angles the focus is kept.
+        gazeAt(6.0f);
+        assertTrue(mEvents.isEmpty());
+
+        gazeAt(8.0f);
+        assertEquals("exit 1", mEvents.remove(0));
+        assertFalse(mTracker.isFocused(1));
+        assertTrue(mEvents.isEmpty());
+    }
+
+    @Test
+    public void update_tracksSeveralTargets() {
+        mTracker.put(1, 0.0f, 0.0f, -1.0f, 5.0f, 7.0f);
+        mTracker.put(2, 0.0f, 0.0f, -1.0f, 10.0f, 12.0f);
+        mTracker.put(3, 0.0f, 0.0f, 1.0f, 10.0f, 12.0f);
+
+        gazeAt(8.0f);
+        assertEquals(1, mEvents.size());
+        assertEquals("enter 2", mEvents.remove(0));
+
+        gazeAt(0.0f);
+        assertEquals("enter 1", mEvents.remove(0));
+        assertTrue(mEvents.isEmpty());
+
+        gazeAt(20.0f);
+        assertEquals(2, mEvents.size());
+        assertTrue(mEvents.contains("exit 1"));
+        assertTrue(mEvents.contains("exit 2"));
+    }
+
+    @Test
+    public void remove_dropsFocusSilently() {
+        mTracker.put(1, 0.0f, 0.0f, -1.0f, 5.0f, 7.0f);
+        gazeAt(0.0f);
+        assertEquals("enter 1", mEvents.remove(0));
+
+        mTracker.remove(1);
+        assertFalse(mTracker.isFocused(1));
+        assertEquals(0, mTracker.size());
+
+        gazeAt(20.0f);
+        gazeAt(0.0f);
+        assertTrue(mEvents.isEmpty());
+    }
+
+    /**
+     * Gaze at the given yaw angle (in degrees) from the front direction (0, 0, -1).
+     */
+    private void gazeAt(float yawDeg) {
+        double yaw = Math.toRadians(yawDeg);
+        mTracker.update((float) Math.sin(yaw), 0.0f, (float) -Math.cos(yaw));
+    }
+}
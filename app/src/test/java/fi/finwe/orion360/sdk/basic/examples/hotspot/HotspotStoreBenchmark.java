@@ -0,0 +1,245 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.hotspot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * JVM benchmark that compares hotspot bulk operations on a list of hotspot objects, as the
+ * InteractiveHotspots example used to store them, and on a {@link HotspotStore} with
+ * a {@link GazeTracker}.
+ * <p/>
+ * Measures a gaze test over all active hotspots and a show pass over all animated hotspots,
+ * at 1k and 10k hotspots. The objects are shuffled in memory before use, as they would be
+ * after a while in a real app where they are created at different times. JMH is not part of
+ * this build, so the rounds are timed with System.nanoTime(); the first ones warm up the JIT.
+ * Run main() from the IDE.
+ */
+public class HotspotStoreBenchmark {
+
+    /** Number of operations per measurement. */
+    private static final int OPERATIONS = 2000;
+
+    /** Number of measurements. */
+    private static final int ROUNDS = 5;
+
+    /** Sink for the results, so that the JIT cannot drop the computation. */
+    private static float sSink;
+
+    /** Vector object, like Vec3F. */
+    private static class Vector {
+        final float x, y, z;
+
+        Vector(float x, float y, float z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+    }
+
+    /** Hotspot object hierarchy, like in the InteractiveHotspots example. */
+    private static class Hotspot {
+        int index;
+        Vector location;
+        Vector scale;
+        float alpha;
+    }
+
+    private static class InteractiveHotspot extends Hotspot {
+        float cosIn, cosOut;
+        boolean active, gazed;
+    }
+
+    private static class AnimatedHotspot extends InteractiveHotspot {
+        boolean visible;
+    }
+
+    private static class Reticle extends Hotspot {}
+
+    public static void main(String[] args) {
+        for (int count : new int[] { 1000, 10000 }) {
+            Random random = new Random(count);
+            List<Hotspot> objects = new ArrayList<>();
+            HotspotStore store = new HotspotStore();
+            GazeTracker tracker = new GazeTracker(10.0f);
+            for (int i = 0; i < count; i++) {
+                double z = 2 * random.nextDouble() - 1;
+                double longitude = 2 * Math.PI * random.nextDouble();
+                double r = Math.sqrt(1 - z * z);
+                float x = (float) (r * Math.cos(longitude));
+                float y = (float) (r * Math.sin(longitude));
+                int kind = i % 10 == 0 ? HotspotStore.KIND_RETICLE : i % 2 == 0
+                        ? HotspotStore.KIND_INTERACTIVE
+                        : HotspotStore.KIND_INTERACTIVE | HotspotStore.KIND_ANIMATED;
+                Hotspot hotspot = kind == HotspotStore.KIND_RETICLE ? new Reticle()
+                        : (kind & HotspotStore.KIND_ANIMATED) != 0 ? new AnimatedHotspot()
+                        : new InteractiveHotspot();
+                hotspot.index = i;
+                hotspot.location = new Vector(x, y, (float) z);
+                hotspot.scale = new Vector(0.1f, 0.1f, 0.0f);
+                hotspot.alpha = 0.9f;
+                if (hotspot instanceof InteractiveHotspot) {
+                    ((InteractiveHotspot) hotspot).cosIn = (float) Math.cos(Math.toRadians(5));
+                    ((InteractiveHotspot) hotspot).cosOut = (float) Math.cos(Math.toRadians(7));
+                    ((InteractiveHotspot) hotspot).active = true;
+                }
+                objects.add(hotspot);
+                int slot = store.add(i, 0.9f, kind);
+                if ((kind & HotspotStore.KIND_INTERACTIVE) != 0) {
+                    tracker.put(slot, x, y, (float) z, 5.0f, 7.0f);
+                }
+            }
+            store.setState(HotspotStore.KIND_INTERACTIVE, HotspotStore.STATE_ACTIVE);
+            shuffleInMemory(objects, random);
+
+            float[][] gazes = new float[256][];
+            for (int i = 0; i < gazes.length; i++) {
+                double yaw = 2 * Math.PI * i / gazes.length;
+                gazes[i] = new float[] { (float) Math.sin(yaw), 0.0f, (float) -Math.cos(yaw) };
+            }
+
+            System.out.println(count + " hotspots:");
+            for (int round = 0; round < ROUNDS; round++) {
+                measureObjects(objects, gazes);
+                measureStore(store, tracker, gazes);
+            }
+        }
+        System.out.println("(sink " + sSink + ")");
+    }
+
+    /**
+     * Time gaze tests and show passes over the object list.
+     */
+    private static void measureObjects(List<Hotspot> objects, float[][] gazes) {
+        long startTime = System.nanoTime();
+        int changes = 0;
+        for (int op = 0; op < OPERATIONS; op++) {
+            float[] gaze = gazes[op & 255];
+            for (int i = 0, n = objects.size(); i < n; i++) {
+                Hotspot hotspot = objects.get(i);
+                if (hotspot instanceof InteractiveHotspot) {
+                    InteractiveHotspot interactive = (InteractiveHotspot) hotspot;
+                    if (!interactive.active) continue;
+                    Vector location = interactive.location;
+                    float dot = location.x * gaze[0] + location.y * gaze[1]
+                            + location.z * gaze[2];
+                    if (interactive.gazed ? dot < interactive.cosOut : dot >= interactive.cosIn) {
+                        interactive.gazed = !interactive.gazed;
+                        changes++;
+                    }
+                }
+            }
+        }
+        long gazeTime = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        for (int op = 0; op < OPERATIONS; op++) {
+            for (int i = 0, n = objects.size(); i < n; i++) {
+                Hotspot hotspot = objects.get(i);
+                if (hotspot instanceof AnimatedHotspot) {
+                    ((AnimatedHotspot) hotspot).visible = true;
+                    sSink += hotspot.alpha * hotspot.scale.x;
+                }
+            }
+        }
+        long showTime = System.nanoTime() - startTime;
+        sSink += changes;
+        print("objects", gazeTime, showTime);
+    }
+
+    /**
+     * Time gaze tests over the tracker and show passes over the store.
+     */
+    private static void measureStore(HotspotStore store, GazeTracker tracker,
+                                     float[][] gazes) {
+        final int[] changes = new int[1];
+        tracker.setListener(new GazeTracker.Listener() {
+            @Override
+            public void onGazeEnter(int id) {
+                changes[0]++;
+            }
+
+            @Override
+            public void onGazeExit(int id) {
+                changes[0]++;
+            }
+        });
+        HotspotStore.TagWriter writer = new HotspotStore.TagWriter() {
+            @Override
+            public void setTagAlpha(int tagIndex, float alpha) {
+                sSink += alpha;
+            }
+        };
+
+        long startTime = System.nanoTime();
+        for (int op = 0; op < OPERATIONS; op++) {
+            float[] gaze = gazes[op & 255];
+            tracker.update(gaze[0], gaze[1], gaze[2]);
+        }
+        long gazeTime = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        for (int op = 0; op < OPERATIONS; op++) {
+            store.show(HotspotStore.KIND_ANIMATED, writer);
+        }
+        long showTime = System.nanoTime() - startTime;
+        sSink += changes[0];
+        print("store", gazeTime, showTime);
+    }
+
+    /**
+     * Recreate the objects in a random order, so that neighbours in the list are not
+     * neighbours in memory, and shuffle the list back to its original order.
+     */
+    private static void shuffleInMemory(List<Hotspot> objects, Random random) {
+        List<Hotspot> order = new ArrayList<>(objects);
+        Collections.shuffle(order, random);
+        List<Object> garbage = new ArrayList<>();
+        for (Hotspot hotspot : order) {
+            hotspot.location = new Vector(hotspot.location.x, hotspot.location.y,
+                    hotspot.location.z);
+            hotspot.scale = new Vector(hotspot.scale.x, hotspot.scale.y, 0.0f);
+            garbage.add(new byte[64 + random.nextInt(256)]);
+        }
+        sSink += garbage.size();
+    }
+
+    /**
+     * Print the results of one measurement.
+     */
+    private static void print(String name, long gazeTime, long showTime) {
+        System.out.println(String.format(Locale.US, "  %-8s gaze %8.1f ns/op   show %8.1f ns/op",
+                name, (double) gazeTime / OPERATIONS, (double) showTime / OPERATIONS));
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.hotspot;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link HotspotStore}.
+ */
+public class HotspotStoreTest {
+
+    @Test
+    public void add_growsAndKeepsSlotOrder() {
+        HotspotStore store = new HotspotStore();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, store.add(1000 + i, 0.5f, 0));
+        }
+        assertEquals(100, store.size());
+        assertEquals(1099, store.getTagIndex(99));
+        assertEquals(0.5f, store.getAlpha(99), 0.0f);
+    }
+
+    @Test
+    public void select_matchesAllFlags() {
+        HotspotStore store = createStore();
+        int[] out = new int[store.size()];
+
+        assertEquals(2, store.select(HotspotStore.KIND_INTERACTIVE, out));
+        assertEquals(1, out[0]);
+        assertEquals(2, out[1]);
+        assertEquals(1, store.select(HotspotStore.KIND_INTERACTIVE
+                | HotspotStore.KIND_ANIMATED, out));
+        assertEquals(2, out[0]);
+        assertEquals(3, store.select(0, out));
+    }
+
+    @Test
+    public void setAndClearState_reportChanges() {
+        HotspotStore store = createStore();
+
+        assertEquals(2, store.setState(HotspotStore.KIND_INTERACTIVE, HotspotStore.STATE_ACTIVE));
+        assertEquals(0, store.setState(HotspotStore.KIND_INTERACTIVE, HotspotStore.STATE_ACTIVE));
+        assertTrue(store.hasFlags(1, HotspotStore.STATE_ACTIVE));
+        assertFalse(store.hasFlags(0, HotspotStore.STATE_ACTIVE));
+
+        assertEquals(2, store.clearState(0, HotspotStore.STATE_ACTIVE));
+        assertFalse(store.hasFlags(1, HotspotStore.STATE_ACTIVE));
+    }
+
+    @Test
+    public void showAndHide_writeAlphas() {
+        HotspotStore store = createStore();
+        final List<String> writes = new ArrayList<>();
+        HotspotStore.TagWriter writer = new HotspotStore.TagWriter() {
+            @Override
+            public void setTagAlpha(int tagIndex, float alpha) {
+                writes.add(tagIndex + "=" + alpha);
+            }
+        };
+
+        assertEquals(3, store.show(0, writer));
+        assertEquals("[10=0.9, 11=0.8, 12=0.7]", writes.toString());
+        assertTrue(store.hasFlags(2, HotspotStore.STATE_VISIBLE));
+
+        writes.clear();
+        assertEquals(1, store.hide(HotspotStore.KIND_ANIMATED, writer));
+        assertEquals("[12=0.0]", writes.toString());
+        assertFalse(store.hasFlags(2, HotspotStore.STATE_VISIBLE));
+        assertTrue(store.hasFlags(1, HotspotStore.STATE_VISIBLE));
+    }
+
+    @Test
+    public void setVisible_writesSingleAlpha() {
+        HotspotStore store = createStore();
+        final List<String> writes = new ArrayList<>();
+        HotspotStore.TagWriter writer = new HotspotStore.TagWriter() {
+            @Override
+            public void setTagAlpha(int tagIndex, float alpha) {
+                writes.add(tagIndex + "=" + alpha);
+            }
+        };
+
+        store.setVisible(1, true, writer);
+        assertEquals("[11=0.8]", writes.toString());
+        assertTrue(store.hasFlags(1, HotspotStore.STATE_VISIBLE));
+        assertFalse(store.hasFlags(0, HotspotStore.STATE_VISIBLE));
+
+        writes.clear();
+        store.setVisible(1, false, writer);
+        assertEquals("[11=0.0]", writes.toString());
+        assertFalse(store.hasFlags(1, HotspotStore.STATE_VISIBLE));
+    }
+
+    /**
+     * Create a store with a reticle and two interactive hotspots, of which one is animated.
+     */
+    private static HotspotStore createStore() {
+        HotspotStore store = new HotspotStore();
+        store.add(10, 0.9f, HotspotStore.KIND_RETICLE);
+        store.add(11, 0.8f, HotspotStore.KIND_INTERACTIVE);
+        store.add(12, 0.7f, HotspotStore.KIND_INTERACTIVE | HotspotStore.KIND_ANIMATED);
+        return store;
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.hotspot;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link SphericalGrid}.
+ */
+public class SphericalGridTest {
+
+    @Test
+    public void query_matchesBruteForce() {
+        Random random = new Random(1);
+        int count = 2000;
+        float[][] points = new float[count][];
+        SphericalGrid grid = new SphericalGrid(10.0f);
+        for (int i = 0; i < count; i++) {
+            points[i] = randomUnitVector(random);
+            grid.put(i, points[i][0], points[i][1], points[i][2]);
+        }
+        assertEquals(count, grid.size());
+
+        int[] out = new int[count];
+        for (int q = 0; q < 500; q++) {
+            float[] direction = randomUnitVector(random);
+            float angle = (float) Math.toRadians(1 + random.nextInt(40));
+            int found = grid.query(direction[0], direction[1], direction[2], angle, out);
+            assertArrayEquals(bruteForce(points, direction, angle), sorted(out, found));
+        }
+    }
+
+    @Test
+    public void query_wrapsAroundLongitudeSeam() {
+        SphericalGrid grid = new SphericalGrid(10.0f);
+
+        // Longitude is atan2(x, z), so the seam is at the -z axis; put points on both sides.
+        float angle = (float) Math.toRadians(2);
+        grid.put(1, (float) Math.sin(angle), 0.0f, (float) -Math.cos(angle));
+        grid.put(2, (float) -Math.sin(angle), 0.0f, (float) -Math.cos(angle));
+
+        int[] out = new int[4];
+        int found = grid.query(0.0f, 0.0f, -1.0f, (float) Math.toRadians(3), out);
+        assertArrayEquals(new int[] { 1, 2 }, sorted(out, found));
+    }
+
+    @Test
+    public void query_coversPoles() {
+        SphericalGrid grid = new SphericalGrid(10.0f);
+        float angle = (float) Math.toRadians(5);
+        for (int i = 0; i < 8; i++) {
+            double longitude = i * Math.PI / 4;
+            grid.put(i, (float) (Math.sin(angle) * Math.sin(longitude)), (float) Math.cos(angle),
+                    (float) (Math.sin(angle) * Math.cos(longitude)));
+        }
+        grid.put(8, 0.0f, -1.0f, 0.0f);
+
+        int[] out = new int[16];
+        assertEquals(8, grid.query(0.0f, 1.0f, 0.0f, (float) Math.toRadians(6), out));
+        assertEquals(0, grid.query(0.0f, 1.0f, 0.0f, (float) Math.toRadians(4), out));
+        assertEquals(1, grid.query(0.0f, -1.0f, 0.0f, (float) Math.toRadians(1), out));
+        assertEquals(8, out[0]);
+    }
+
+    @Test
+    public void putAndRemove_updateIndex() {
+        SphericalGrid grid = new SphericalGrid(10.0f);
+        int[] out = new int[4];
+
+        grid.put(3, 0.0f, 0.0f, 1.0f);
+        assertEquals(1, grid.query(0.0f, 0.0f, 1.0f, 0.1f, out));
+
+        // Moving a point must take it out of its old cell.
+        grid.put(3, 1.0f, 0.0f, 0.0f);
+        assertEquals(1, grid.size());
+        assertEquals(0, grid.query(0.0f, 0.0f, 1.0f, 0.1f, out));
+        assertEquals(1, grid.query(1.0f, 0.0f, 0.0f, 0.1f, out));
+
+        assertTrue(grid.remove(3));
+        assertFalse(grid.remove(3));
+        assertFalse(grid.contains(3));
+        assertEquals(0, grid.query(1.0f, 0.0f, 0.0f, 0.1f, out));
+    }
+
+    private static float[] randomUnitVector(Random random) {
+        double z = 2 * random.nextDouble() - 1;
+        double longitude = 2 * Math.PI * random.nextDouble();
+        double r = Math.sqrt(1 - z * z);
+        return new float[] { (float) (r * Math.cos(longitude)), (float) (r * Math.sin(longitude)),
+                (float) z };
+    }
+
+    private static int[] bruteForce(float[][] points, float[] direction, float angle) {
+        float minDot = (float) Math.cos(angle);
+        int[] ids = new int[points.length];
+        int count = 0;
+        for (int i = 0; i < points.length; i++) {
+            float dot = points[i][0] * direction[0] + points[i][1] * direction[1]
+                    + points[i][2] * direction[2];
+            if (dot >= minDot) ids[count++] = i;
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    private static int[] sorted(int[] ids, int count) {
+        int[] copy = Arrays.copyOf(ids, count);
+        Arrays.sort(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.math;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import fi.finwe.math.QuatF;
+import fi.finwe.math.Vec3F;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link MutableQuatF} and {@link MutableVec3F}. The in-place operations must
+ * give the same results as the immutable QuatF and Vec3F operations that they replace.
+ */
+public class MutableMathTest {
+
+    /** Tolerance for float comparisons. */
+    private static final float EPSILON = 1e-5f;
+
+    /** Random generator with a fixed seed, for repeatable tests. */
+    private final Random mRandom = new Random(42);
+
+    @Test
+    public void multiply_matchesQuatF() {
+        for (int i = 0; i < 100; i++) {
+            QuatF a = randomRotation();
+            QuatF b = randomRotation();
+            assertQuatEquals(a.multiply(b), new MutableQuatF().set(a)
+                    .multiply(new MutableQuatF().set(b)));
+            assertQuatEquals(b.multiply(a), new MutableQuatF().set(a)
+                    .preMultiply(new MutableQuatF().set(b)));
+        }
+    }
+
+    @Test
+    public void multiply_withItself_matchesQuatF() {
+        QuatF a = randomRotation();
+        MutableQuatF m = new MutableQuatF().set(a);
+        assertQuatEquals(a.multiply(a), m.multiply(m));
+    }
+
+    @Test
+    public void axisRotations_matchQuatF() {
+        for (int i = 0; i < 100; i++) {
+            float angle = (mRandom.nextFloat() - 0.5f) * 4.0f * (float) Math.PI;
+            assertQuatEquals(QuatF.fromRotationAxisX(angle),
+                    new MutableQuatF().setRotationAxisX(angle));
+            assertQuatEquals(QuatF.fromRotationAxisY(angle),
+                    new MutableQuatF().setRotationAxisY(angle));
+            assertQuatEquals(QuatF.fromRotationAxisZ(angle),
+                    new MutableQuatF().setRotationAxisZ(angle));
+        }
+    }
+
+    @Test
+    public void conjugate_matchesQuatF() {
+        QuatF a = randomRotation();
+        assertQuatEquals(a.conjugate(), new MutableQuatF().set(a).conjugate());
+    }
+
+    @Test
+    public void rotate_matchesVec3F() {
+        Vec3F[] axes = { Vec3F.AXIS_FRONT, Vec3F.AXIS_RIGHT, Vec3F.AXIS_UP,
+                new Vec3F(0.3f, -0.5f, 0.8f) };
+        for (int i = 0; i < 100; i++) {
+            QuatF q = randomRotation();
+            for (Vec3F axis : axes) {
+                Vec3F expected = axis.rotate(q.conjugate());
+                MutableVec3F actual = new MutableVec3F().set(axis)
+                        .rotate(new MutableQuatF().set(q).conjugate());
+                assertEquals(expected.x, actual.x, EPSILON);
+                assertEquals(expected.y, actual.y, EPSILON);
+                assertEquals(expected.z, actual.z, EPSILON);
+            }
+        }
+    }
+
+    @Test
+    public void yawAndPitch_matchVec3F() {
+        for (int i = 0; i < 100; i++) {
+            Vec3F expected = Vec3F.AXIS_FRONT.rotate(randomRotation());
+            MutableVec3F actual = new MutableVec3F().set(expected);
+            assertEquals(expected.getPitch(), actual.getPitch(), EPSILON);
+
+            // Yaw is undefined when looking straight up or down.
+            if (Math.abs(expected.getPitch()) < 1.5f) {
+                assertEquals(expected.getYaw(), actual.getYaw(), EPSILON);
+            }
+        }
+    }
+
+    @Test
+    public void copyTo_writesComponents() {
+        MutableQuatF q = new MutableQuatF().set(0.5f, 0.5f, -0.5f, 0.5f);
+        QuatF out = q.copyTo(new QuatF(1.0f, 0.0f, 0.0f, 0.0f));
+        assertQuatEquals(new QuatF(0.5f, 0.5f, -0.5f, 0.5f), new MutableQuatF().set(out));
+
+        MutableVec3F v = new MutableVec3F().set(1.0f, 2.0f, 3.0f);
+        Vec3F vOut = v.copyTo(new Vec3F(0.0f, 0.0f, 0.0f));
+        assertEquals(2.0f, vOut.y, 0.0f);
+    }
+
+    /**
+     * Create a random unit quaternion.
+     */
+    private QuatF randomRotation() {
+        float w = (float) mRandom.nextGaussian(), x = (float) mRandom.nextGaussian();
+        float y = (float) mRandom.nextGaussian(), z = (float) mRandom.nextGaussian();
+        float length = (float) Math.sqrt(w * w + x * x + y * y + z * z);
+        return new QuatF(w / length, x / length, y / length, z / length);
+    }
+
+    /**
+     * Assert that two quaternions are equal, within tolerance.
+     */
+    private static void assertQuatEquals(QuatF expected, MutableQuatF actual) {
+        assertEquals(expected.w, actual.w, EPSILON);
+        assertEquals(expected.x, actual.x, EPSILON);
+        assertEquals(expected.y, actual.y, EPSILON);
+        assertEquals(expected.z, actual.z, EPSILON);
+    }
+}
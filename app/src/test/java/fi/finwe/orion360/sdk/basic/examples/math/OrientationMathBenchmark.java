@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.math;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+import fi.finwe.math.QuatF;
+import fi.finwe.math.Vec3F;
+
+/**
+ * JVM benchmark that counts allocations and time per orientation callback, for the nadir patch
+ * auto-rotate math written with immutable QuatF/Vec3F and with the mutable scratch objects.
+ * <p/>
+ * JMH is not part of this build, so allocations are counted with the HotSpot thread allocation
+ * counter around a loop of callbacks. HotSpot's escape analysis can remove some short-lived
+ * allocations that ART on Android does not, so run with -XX:-DoEscapeAnalysis to get numbers
+ * closer to the device. Run main() from the IDE.
+ */
+public class OrientationMathBenchmark {
+
+    /** Number of callbacks per measurement. */
+    private static final int CALLBACKS = 1000000;
+
+    /** Number of measurements; the first ones warm up the JIT. */
+    private static final int ROUNDS = 5;
+
+    /** Sink for the results, so that the JIT cannot drop the computation. */
+    private static float sSink;
+
+    /** A rotation applied to the device orientation at every callback. */
+    private static final QuatF STEP = QuatF.fromRotationAxisY(0.001f)
+            .multiply(QuatF.fromRotationAxisX(0.0007f));
+
+    /** Scratch objects for the mutable variant. */
+    private static final MutableQuatF sInverse = new MutableQuatF();
+    private static final MutableVec3F sGazeAt = new MutableVec3F();
+    private static final MutableQuatF sTotal = new MutableQuatF();
+    private static final MutableQuatF sToNadir = new MutableQuatF()
+            .setRotationAxisX(Vec3F.AXIS_DOWN.getPitch());
+    private static final QuatF sTagRotation = new QuatF(1.0f, 0.0f, 0.0f, 0.0f);
+
+    /** A callback variant to be measured. */
+    private interface Callback {
+        void onDeviceOrientationChanged(QuatF orientation);
+    }
+
+    public static void main(String[] args) {
+        Callback immutable = new Callback() {
+            @Override
+            public void onDeviceOrientationChanged(QuatF orientation) {
+                Vec3F gazeAt = Vec3F.AXIS_FRONT.rotate(orientation.conjugate());
+                float gazeYaw = gazeAt.getYaw();
+                QuatF yawCompensation = QuatF.fromRotationAxisY(-gazeYaw);
+                QuatF toNadir = QuatF.fromRotationAxisX(Vec3F.AXIS_DOWN.getPitch());
+                QuatF total = yawCompensation.multiply(toNadir);
+                sSink += total.w;
+            }
+        };
+        Callback mutable = new Callback() {
+            @Override
+            public void onDeviceOrientationChanged(QuatF orientation) {
+                sInverse.set(orientation).conjugate();
+                sGazeAt.set(Vec3F.AXIS_FRONT).rotate(sInverse);
+                sTotal.setRotationAxisY(-sGazeAt.getYaw()).multiply(sToNadir);
+                sSink += sTotal.copyTo(sTagRotation).w;
+            }
+        };
+
+        for (int round = 0; round < ROUNDS; round++) {
+            measure("immutable QuatF/Vec3F", immutable);
+            measure("mutable scratch objects", mutable);
+        }
+        System.out.println("(sink " + sSink + ")");
+    }
+
+    /**
+     * Run a callback variant and print the allocated bytes and time per callback.
+     */
+    private static void measure(String name, Callback callback) {
+
+        // The orientations are created up front, like the sensor fusion would do.
+        QuatF[] orientations = new QuatF[1024];
+        QuatF orientation = QuatF.IDENTITY;
+        for (int i = 0; i < orientations.length; i++) {
+            orientation = orientation.multiply(STEP);
+            orientations[i] = orientation;
+        }
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long startBytes = threads.getThreadAllocatedBytes(threadId);
+        long startTime = System.nanoTime();
+        for (int i = 0; i < CALLBACKS; i++) {
+            callback.onDeviceOrientationChanged(orientations[i & 1023]);
+        }
+        long time = System.nanoTime() - startTime;
+        long bytes = threads.getThreadAllocatedBytes(threadId) - startBytes;
+        System.out.println(String.format(Locale.US, "%-24s %8.1f bytes/callback %8.1f ns/callback",
+                name, (double) bytes / CALLBACKS, (double) time / CALLBACKS));
+    }
+}
@@ -0,0 +1,339 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.media;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link CachingProxy}.
+ */
+public class CachingProxyTest {
+
+    /** The URL of the test resource. */
+    private static final String URL = "https://example.com/videos/test video.mp4";
+
+    /** The length of the test resource. */
+    private static final int LENGTH = 1000000;
+
+    /** An origin that serves one resource from memory. */
+    private static class FakeOrigin implements CachingProxy.Origin {
+        final byte [] data = new byte[LENGTH];
+        final List<Long> opened = new ArrayList<>();
+        long read;
+
+        FakeOrigin() {
+            for (int i = 0; i < data.length; i++) {
+                data[i] = (byte) (i * 31 + (i >> 8));
+            }
+        }
+
+        @Override
+        public synchronized CachingProxy.Response open(String url, long position)
+                throws IOException {
+            if (!URL.equals(url)) throw new IOException("Not found: " + url);
+            opened.add(position);
+            return new CachingProxy.Response(data.length, "video/mp4",
+                    new ByteArrayInputStream(data, (int) position, data.length - (int) position) {
+                @Override
+                public synchronized int read(byte [] b, int off, int len) {
+                    int count = super.read(b, off, len);
+                    if (count > 0) {
+                        synchronized (FakeOrigin.this) {
+                            read += count;
+                        }
+                    }
+                    return count;
+                }
+            });
+        }
+
+        synchronized long getRead() {
+            return read;
+        }
+    }
+
+    /** The cache directory. */
+    private File directory;
+
+    /** The origin. */
+    private FakeOrigin origin;
+
+    /** The proxy under test. */
+    private CachingProxy proxy;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("caching-proxy").toFile();
+        origin = new FakeOrigin();
+        proxy = new CachingProxy(new RangeCache(directory, 10 * LENGTH), origin);
+        proxy.start();
+    }
+
+    @After
+    public void tearDown() {
+        proxy.stop();
+        File [] files = directory.listFiles();
+        if (null != files) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /** Request a range through the proxy, and return the body. */
+    private byte [] get(String range, int expectedCode) throws IOException {
+        HttpURLConnection connection =
+                (HttpURLConnection) new URL(proxy.getUrl(URL)).openConnection();
+        if (null != range) {
+            connection.setRequestProperty("Range", range);
+        }
+        try {
+            assertEquals(expectedCode, connection.getResponseCode());
+            if (expectedCode >= 400) return null;
+            assertEquals("video/mp4", connection.getContentType());
+            InputStream in = connection.getInputStream();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte [] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, count);
+            }
+            in.close();
+            return out.toByteArray();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /** Get a range of the origin data. */
+    private byte [] expected(int start, int end) {
+        byte [] bytes = new byte[end - start];
+        System.arraycopy(origin.data, start, bytes, 0, bytes.length);
+        return bytes;
+    }
+
+    @Test
+    public void proxiesOnlyNetworkUrls() {
+        assertEquals("file:///sdcard/video.mp4", proxy.getUrl("file:///sdcard/video.mp4"));
+        String url = proxy.getUrl(URL);
+        assertTrue(url, url.matches("http://127\\.0\\.0\\.1:" + proxy.getPort()
+                + "/[0-9a-f]{32}/https%3A%2F%2Fexample.com%2Fvideos%2Ftest\\+video.mp4"));
+    }
+
+    @Test
+    public void rejectsRequestsWithoutToken() throws IOException {
+
+        // Another app on the device that knows the port, but not the token.
+        for (String path : new String [] { "/https%3A%2F%2Fexample.com%2Fvideo.mp4",
+                "/0123456789abcdef0123456789abcdef/https%3A%2F%2Fexample.com%2Fvideo.mp4" }) {
+            HttpURLConnection connection = (HttpURLConnection) new URL(
+                    "http://127.0.0.1:" + proxy.getPort() + path).openConnection();
+            try {
+                assertEquals(403, connection.getResponseCode());
+            } finally {
+                connection.disconnect();
+            }
+        }
+        assertEquals(0, origin.opened.size());
+    }
+
+    @Test
+    public void rejectsMalformedEscapes() throws IOException {
+        String url = proxy.getUrl(URL);
+        HttpURLConnection connection = (HttpURLConnection) new URL(
+                url.substring(0, url.indexOf("https%3A")) + "https%3A%2F%2Fexample.com%2%zz")
+                .openConnection();
+        try {
+            assertEquals(400, connection.getResponseCode());
+        } finally {
+            connection.disconnect();
+        }
+        assertEquals(0, origin.opened.size());
+    }
+
+    @Test
+    public void stopClosesOpenConnections() throws Exception {
+        final CountDownLatch opened = new CountDownLatch(1);
+        final CountDownLatch closed = new CountDownLatch(1);
+        CachingProxy stalling = new CachingProxy(new RangeCache(directory, LENGTH),
+                new CachingProxy.Origin() {
+            @Override
+            public CachingProxy.Response open(String url, long position) {
+                opened.countDown();
+
+                // A body that never delivers data until it is closed.
+                return new CachingProxy.Response(LENGTH, "video/mp4", new InputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        try {
+                            closed.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        throw new IOException("Closed");
+                    }
+
+                    @Override
+                    public void close() {
+                        closed.countDown();
+                    }
+                });
+            }
+        });
+        stalling.start();
+        String url = stalling.getUrl(URL);
+        Socket socket = new Socket("127.0.0.1", stalling.getPort());
+        try {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET " + url.substring(url.indexOf('/', "http://".length()))
+                    + " HTTP/1.1\r\nHost: 127.0.0.1\r\n\r\n").getBytes("ISO-8859-1"));
+            out.flush();
+            assertTrue(opened.await(5, TimeUnit.SECONDS));
+
+            stalling.stop();
+            assertTrue(closed.await(5, TimeUnit.SECONDS));
+            InputStream in = socket.getInputStream();
+            try {
+                while (in.read() >= 0) {
+                    // Skip the response head.
+                }
+            } catch (SocketException e) {
+                // Closed by the proxy.
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void repeatedReadIsServedFromCache() throws IOException {
+        assertArrayEquals(origin.data, get(null, 200));
+        assertEquals(LENGTH, origin.getRead());
+        assertEquals(LENGTH, proxy.getOriginBytes());
+
+        assertArrayEquals(origin.data, get(null, 200));
+        assertArrayEquals(expected(1000, 2000), get("bytes=1000-1999", 206));
+        assertEquals(LENGTH, origin.getRead());
+        assertEquals(1, origin.opened.size());
+        assertEquals(LENGTH + 1000, proxy.getCacheBytes());
+    }
+
+    @Test
+    public void fetchesOnlyTheGaps() throws IOException {
+        assertArrayEquals(expected(0, 200000), get("bytes=0-199999", 206));
+        assertArrayEquals(expected(500000, LENGTH), get("bytes=500000-", 206));
+        long read = origin.getRead();
+        assertEquals(LENGTH - 300000, proxy.getOriginBytes());
+
+        // The whole resource needs only the gap in the middle.
+        assertArrayEquals(origin.data, get("bytes=0-", 206));
+        assertEquals(300000, proxy.getOriginBytes() - (LENGTH - 300000));
+        assertEquals(Long.valueOf(200000), origin.opened.get(origin.opened.size() - 1));
+        assertEquals(LENGTH, proxy.getCacheBytes() + proxy.getOriginBytes() - read);
+    }
+
+    @Test
+    public void readsThroughShortCachedRuns() throws IOException {
+        get("bytes=100000-100999", 206);
+        int opened = origin.opened.size();
+        assertArrayEquals(expected(0, 300000), get("bytes=0-299999", 206));
+
+        // One connection for the whole range, instead of one before and one after the run.
+        assertEquals(opened + 1, origin.opened.size());
+    }
+
+    @Test
+    public void servesSuffixRanges() throws IOException {
+        assertArrayEquals(expected(LENGTH - 100, LENGTH), get("bytes=-100", 206));
+        assertArrayEquals(expected(LENGTH - 100, LENGTH), get("bytes=-100", 206));
+    }
+
+    @Test
+    public void rejectsUnsatisfiableRanges() throws IOException {
+        assertNull(get("bytes=" + LENGTH + "-", 416));
+    }
+
+    @Test
+    public void failsWhenOriginFails() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(
+                proxy.getUrl("https://example.com/missing.mp4")).openConnection();
+        try {
+            connection.getResponseCode();
+        } catch (IOException e) {
+            // Connection closed without a response, as expected.
+            return;
+        } finally {
+            connection.disconnect();
+        }
+        throw new AssertionError("Expected the connection to fail");
+    }
+
+    @Test
+    public void parsesRanges() {
+        assertArrayEquals(new long [] { 100, 199 }, CachingProxy.parseRange("bytes=100-199"));
+        assertArrayEquals(new long [] { 100, -1 }, CachingProxy.parseRange("bytes=100-"));
+        assertArrayEquals(new long [] { -50, -1 }, CachingProxy.parseRange("bytes=-50"));
+        assertArrayEquals(new long [] { 0, 9 }, CachingProxy.parseRange("bytes=0-9,20-29"));
+        assertNull(CachingProxy.parseRange("bytes=200-100"));
+        assertNull(CachingProxy.parseRange("items=0-9"));
+        assertNull(CachingProxy.parseRange(null));
+
+        assertArrayEquals(new long [] { 100, 1000 },
+                CachingProxy.parseContentRange("bytes 100-199/1000"));
+        assertArrayEquals(new long [] { 100, RangeCache.UNKNOWN_LENGTH },
+                CachingProxy.parseContentRange("bytes 100-199/*"));
+        assertNull(CachingProxy.parseContentRange("bytes */1000"));
+    }
+}
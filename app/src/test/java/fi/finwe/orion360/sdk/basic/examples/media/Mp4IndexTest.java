@@ -0,0 +1,291 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.media;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link Mp4Index}.
+ */
+public class Mp4IndexTest {
+
+    /** Build a box from a type and a body. */
+    private static byte [] box(String type, byte [] ... children) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        int size = 8;
+        for (byte [] child : children) size += child.length;
+        out.writeInt(size);
+        out.writeBytes(type);
+        for (byte [] child : children) out.write(child);
+        return bytes.toByteArray();
+    }
+
+    /** Build a full box body from version 0, no flags, and 32-bit values. */
+    private static byte [] ints(int ... values) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (int value : values) out.writeInt(value);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Build a track of ten 100 ms samples, with the given sync sample numbers or without
+     * a sync sample table if null.
+     */
+    private static byte [] track(String handler, int [] syncSamples) throws IOException {
+        byte [] stss = new byte[0];
+        if (null != syncSamples) {
+            int [] body = new int[2 + syncSamples.length];
+            body[1] = syncSamples.length;
+            System.arraycopy(syncSamples, 0, body, 2, syncSamples.length);
+            stss = box("stss", ints(body));
+        }
+        return box("trak", box("mdia",
+                box("mdhd", ints(0, 0, 0, 1000, 1000)),
+                box("hdlr", ints(0, 0), handler.getBytes("US-ASCII"), ints(0, 0, 0)),
+                box("minf", box("stbl",
+                        box("stts", ints(0, 1, 10, 100)),
+                        box("stsc", ints(0, 1, 1, 10, 1)),
+                        box("stsz", ints(0, 50, 10)),
+                        stss,
+                        box("stco", ints(0, 1, 16))))));
+    }
+
+    /** Build a video track with the given sample table boxes. */
+    private static byte [] track(byte [] ... tables) throws IOException {
+        return box("trak", box("mdia",
+                box("mdhd", ints(0, 0, 0, 1000, 1000)),
+                box("hdlr", ints(0, 0), "vide".getBytes("US-ASCII"), ints(0, 0, 0)),
+                box("minf", box("stbl", tables))));
+    }
+
+    /**
+     * Build a video track of ten 100 ms samples with sync samples 1, 4 and 8, the given
+     * composition offset table and the given edit list entries, without an edit list if none.
+     */
+    private static byte [] editedTrack(byte [] ctts, byte [] ... edits) throws IOException {
+        byte [] edts = new byte[0];
+        if (edits.length > 0) {
+            byte [] elst = box("elst", ints(0, edits.length), concat(edits));
+            edts = box("edts", elst);
+        }
+        return box("trak", edts, box("mdia",
+                box("mdhd", ints(0, 0, 0, 1000, 1000)),
+                box("hdlr", ints(0, 0), "vide".getBytes("US-ASCII"), ints(0, 0, 0)),
+                box("minf", box("stbl",
+                        box("stts", ints(0, 1, 10, 100)),
+                        box("stsz", ints(0, 50, 10)),
+                        ctts,
+                        box("stss", ints(0, 3, 1, 4, 8))))));
+    }
+
+    /** Concatenate byte arrays. */
+    private static byte [] concat(byte [] ... parts) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte [] part : parts) {
+            out.write(part);
+        }
+        return out.toByteArray();
+    }
+
+    /** Assert that parsing a file fails with an error message that contains the given text. */
+    private static void assertInvalid(String message, File file) {
+        try {
+            Mp4Index.parse(file);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+
+    /** Write an .mp4 file with the given tracks. */
+    private static File write(byte [] ... tracks) throws IOException {
+        File file = File.createTempFile("mp4index", ".mp4");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(box("ftyp", "isom".getBytes("US-ASCII"), ints(0)));
+            out.write(box("mdat", new byte[500]));
+            out.write(box("moov", tracks));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    @Test
+    public void readsSyncSampleTimesOfVideoTrack() throws IOException {
+        Mp4Index index = Mp4Index.parse(write(track("soun", null),
+                track("vide", new int [] { 1, 4, 8 })));
+        assertEquals(2, index.getTracks().size());
+        assertFalse(index.isFastStart());
+        Mp4Index.Track video = index.getVideoTrack();
+        assertEquals("vide", video.handlerType);
+        assertArrayEquals(new long [] { 0, 300, 700 }, video.getSyncSampleTimesMs());
+    }
+
+    @Test
+    public void everySampleIsSyncWithoutTable() throws IOException {
+        Mp4Index index = Mp4Index.parse(write(track("vide", null)));
+        long [] times = index.getVideoTrack().getSyncSampleTimesMs();
+        assertEquals(10, times.length);
+        assertEquals(900, times[9]);
+    }
+
+    @Test
+    public void skipsInvalidSyncSamples() throws IOException {
+        Mp4Index index = Mp4Index.parse(write(track("vide", new int [] { 0, 3, 2, 11 })));
+        assertArrayEquals(new long [] { 200 }, index.getVideoTrack().getSyncSampleTimesMs());
+    }
+
+    @Test
+    public void noVideoTrack() throws IOException {
+        Mp4Index index = Mp4Index.parse(write(track("soun", null)));
+        assertNull(index.getVideoTrack());
+        assertTrue(index.getMoovSize() > 0);
+    }
+
+    @Test
+    public void resolvesSampleRangesFromTables() throws IOException {
+        Mp4Index index = Mp4Index.parse(write(track(
+                box("stts", ints(0, 1, 10, 100)),
+                box("stsc", ints(0, 1, 1, 5, 1)),
+                box("stsz", ints(0, 0, 10, 10, 20, 30, 40, 50, 60, 70, 80, 90, 100)),
+                box("co64", ints(0, 2, 0, 1000, 0, 5000)))));
+
+        // The first 450 ms are the first five samples, all in the first chunk.
+        assertArrayEquals(new long [] { 1000, 150 }, index.getSampleRanges(450, 0));
+        assertArrayEquals(new long [] { 1000, 150, 5000, 400 }, index.getSampleRanges(2000, 0));
+    }
+
+    @Test
+    public void appliesCompositionOffsetsAndEditList() throws IOException {
+        byte [] ctts = box("ctts", ints(0, 1, 10, 200));
+
+        // Without an edit list the composition offset delays every sample.
+        Mp4Index index = Mp4Index.parse(write(editedTrack(ctts)));
+        assertArrayEquals(new long [] { 200, 500, 900 },
+                index.getVideoTrack().getSyncSampleTimesMs());
+
+        // Usually the edit list starts the presentation from the first composition time.
+        index = Mp4Index.parse(write(editedTrack(ctts, ints(1000, 200, 0x00010000))));
+        assertArrayEquals(new long [] { 0, 300, 700 },
+                index.getVideoTrack().getSyncSampleTimesMs());
+    }
+
+    @Test
+    public void roundsKeyFrameTimesUp() throws IOException {
+
+        // 29.97 fps with a key frame every 15 frames: 500.5 ms, 1001 ms, 1501.5 ms...
+        Mp4Index index = Mp4Index.parse(write(box("trak", box("mdia",
+                box("mdhd", ints(0, 0, 0, 30000, 30030)),
+                box("hdlr", ints(0, 0), "vide".getBytes("US-ASCII"), ints(0, 0, 0)),
+                box("minf", box("stbl",
+                        box("stts", ints(0, 1, 60, 1001)),
+                        box("stsz", ints(0, 50, 60)),
+                        box("stss", ints(0, 4, 1, 16, 31, 46))))))));
+        assertArrayEquals(new long [] { 0, 501, 1001, 1502 },
+                index.getVideoTrack().getSyncSampleTimesMs());
+    }
+
+    @Test
+    public void emptyEditDelaysTrack() throws IOException {
+        byte [] mvhd = box("mvhd", ints(0, 0, 0, 600, 600));
+        byte [] track = editedTrack(new byte[0],
+                ints(300, -1, 0x00010000), ints(1000, 0, 0x00010000));
+        File file = File.createTempFile("mp4index", ".mp4");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(box("moov", mvhd, track));
+        } finally {
+            out.close();
+        }
+
+        // 300 units of the 600 Hz movie timescale is 500 ms.
+        Mp4Index index = Mp4Index.parse(file);
+        assertArrayEquals(new long [] { 500, 800, 1200 },
+                index.getVideoTrack().getSyncSampleTimesMs());
+    }
+
+    @Test
+    public void rejectsTruncatedTables() throws IOException {
+        assertInvalid("Truncated 'stsz'", write(track(box("stsz", ints(0)))));
+        assertInvalid("Truncated 'mdhd'", write(box("trak", box("mdia",
+                box("mdhd", ints(0, 0, 0))))));
+        assertInvalid("Truncated 'stz2'", write(track(box("stz2", ints(0, 8)))));
+    }
+
+    @Test
+    public void rejectsEntryCountsThatDoNotFitInBox() throws IOException {
+        assertInvalid("Invalid entry count 3 in 'stts'",
+                write(track(box("stts", ints(0, 3, 10, 100)))));
+        assertInvalid("Invalid entry count 1000000 in 'stsc'",
+                write(track(box("stsc", ints(0, 1000000, 1, 10, 1)))));
+        assertInvalid("Invalid entry count 10 in 'stsz'",
+                write(track(box("stsz", ints(0, 0, 10, 50, 50)))));
+        assertInvalid("Invalid entry count 4294967295 in 'stco'",
+                write(track(box("stco", ints(0, -1, 16)))));
+        assertInvalid("Invalid entry count 2 in 'co64'",
+                write(track(box("co64", ints(0, 2, 0, 16)))));
+        assertInvalid("Invalid entry count 100 in 'stss'",
+                write(track(box("stss", ints(0, 100, 1, 4)))));
+        assertInvalid("Invalid entry count 2 in 'ctts'",
+                write(track(box("ctts", ints(0, 2, 10, 200)))));
+        assertInvalid("Invalid entry count 9 in 'stz2'",
+                write(track(box("stz2", ints(0, 8, 9, 0x01020304, 0x05060708)))));
+
+        // A constant sample size needs no table.
+        Mp4Index index = Mp4Index.parse(write(track(box("stsz", ints(0, 50, 1000000)))));
+        assertEquals(1000000, index.getVideoTrack().sampleCount);
+    }
+
+    @Test
+    public void rejectsBoxLargerThanParent() throws IOException {
+        byte [] stbl = box("stbl", box("stts", ints(0, 1, 10, 100)));
+        stbl[11] = 100; // The size of 'stts' now exceeds 'stbl'.
+        assertInvalid("Invalid box size 100",
+                write(box("trak", box("mdia", box("minf", stbl)))));
+    }
+}
@@ -0,0 +1,267 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.media;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link RangeCache}.
+ */
+public class RangeCacheTest {
+
+    /** The cache directory. */
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("range-cache").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File [] files = directory.listFiles();
+        if (null != files) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /** Bytes whose values depend on their position in a resource. */
+    private static byte [] bytes(long position, int length) {
+        byte [] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) ((position + i) * 31);
+        }
+        return bytes;
+    }
+
+    /** Write the bytes of a range to an entry. */
+    private static void write(RangeCache.Entry entry, long position, int length)
+            throws IOException {
+        entry.write(position, bytes(position, length), 0, length);
+    }
+
+    @Test
+    public void readsBackSparseRanges() throws IOException {
+        RangeCache cache = new RangeCache(directory, 1 << 20);
+        RangeCache.Entry entry = cache.open("http://example.com/a.mp4");
+        entry.setInfo(100000, "video/mp4");
+        write(entry, 90000, 10000);
+        write(entry, 0, 1000);
+
+        assertEquals(1000, entry.getCachedLength(0));
+        assertEquals(1, entry.getCachedLength(999));
+        assertEquals(0, entry.getCachedLength(1000));
+        assertEquals(90000, entry.getNextCachedPosition(1000));
+        assertEquals(Long.MAX_VALUE, entry.getNextCachedPosition(90000));
+        assertEquals(11000, entry.getCachedBytes());
+
+        byte [] buffer = new byte[2000];
+        assertEquals(500, entry.read(500, buffer, 0, buffer.length));
+        byte [] read = new byte[500];
+        System.arraycopy(buffer, 0, read, 0, 500);
+        assertArrayEquals(bytes(500, 500), read);
+        assertEquals(0, entry.read(50000, buffer, 0, buffer.length));
+        entry.close();
+    }
+
+    @Test
+    public void mergesOverlappingAndTouchingRanges() throws IOException {
+        RangeCache cache = new RangeCache(directory, 1 << 20);
+        RangeCache.Entry entry = cache.open("k");
+        write(entry, 100, 100);
+        write(entry, 300, 100);
+        write(entry, 500, 100);
+        assertEquals(3, entry.getRangeCount());
+
+        // Overlaps the first two and fills the gap between them.
+        write(entry, 150, 200);
+        assertEquals(2, entry.getRangeCount());
+        assertEquals(300, entry.getCachedLength(100));
+        assertEquals(400, entry.getCachedBytes());
+
+        // Touches the end of the merged range.
+        write(entry, 400, 100);
+        assertEquals(1, entry.getRangeCount());
+        assertEquals(500, entry.getCachedLength(100));
+        assertEquals(500, cache.getSize());
+
+        // Already cached.
+        write(entry, 200, 50);
+        assertEquals(500, cache.getSize());
+        entry.close();
+    }
+
+    @Test
+    public void persistsAcrossInstances() throws IOException {
+        RangeCache cache = new RangeCache(directory, 1 << 20);
+        RangeCache.Entry entry = cache.open("http://example.com/a.mp4");
+        entry.setInfo(5000, "video/mp4");
+        write(entry, 1000, 2000);
+        entry.close();
+
+        RangeCache reloaded = new RangeCache(directory, 1 << 20);
+        assertEquals(2000, reloaded.getSize());
+        entry = reloaded.open("http://example.com/a.mp4");
+        assertEquals(5000, entry.getLength());
+        assertEquals("video/mp4", entry.getContentType());
+        assertEquals(2000, entry.getCachedLength(1000));
+        byte [] buffer = new byte[2000];
+        assertEquals(2000, entry.read(1000, buffer, 0, buffer.length));
+        assertArrayEquals(bytes(1000, 2000), buffer);
+        entry.close();
+    }
+
+    @Test
+    public void forgetsRangesOfUnclosedEntries() throws IOException {
+        RangeCache cache = new RangeCache(directory, 1 << 20);
+        RangeCache.Entry entry = cache.open("k");
+        write(entry, 0, 1000);
+
+        // The application dies before the entry is closed.
+        RangeCache reloaded = new RangeCache(directory, 1 << 20);
+        assertEquals(0, reloaded.getSize());
+        assertFalse(reloaded.contains("k"));
+    }
+
+    @Test
+    public void discardsRangesWhenLengthChanges() throws IOException {
+        RangeCache cache = new RangeCache(directory, 1 << 20);
+        RangeCache.Entry entry = cache.open("k");
+        entry.setInfo(5000, null);
+        write(entry, 0, 1000);
+        entry.setInfo(5000, "video/mp4");
+        assertEquals(1000, entry.getCachedBytes());
+        entry.setInfo(6000, null);
+        assertEquals(0, entry.getCachedBytes());
+        assertEquals(0, cache.getSize());
+        assertEquals("video/mp4", entry.getContentType());
+        entry.close();
+    }
+
+    @Test
+    public void deletesIndexWhenRangesAreDiscarded() throws IOException {
+        RangeCache cache = new RangeCache(directory, 1 << 20);
+        RangeCache.Entry entry = cache.open("k");
+        entry.setInfo(5000, null);
+        write(entry, 0, 1000);
+        entry.close();
+
+        // The application dies after the resource has changed, before it is closed.
+        entry = cache.open("k");
+        entry.setInfo(6000, null);
+        RangeCache reloaded = new RangeCache(new File(directory.getPath()), 1 << 20);
+        assertFalse(reloaded.contains("k"));
+        assertEquals(0, reloaded.getSize());
+        entry.close();
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedClosedEntries() throws IOException {
+        RangeCache cache = new RangeCache(directory, 3000);
+        for (String key : new String [] { "a", "b", "c" }) {
+            RangeCache.Entry entry = cache.open(key);
+            write(entry, 0, 1000);
+            entry.close();
+        }
+
+        // Use "a", so that "b" is the least recently used.
+        cache.open("a").close();
+
+        RangeCache.Entry entry = cache.open("d");
+        write(entry, 0, 1000);
+        assertFalse(cache.contains("b"));
+        assertTrue(cache.contains("a"));
+        assertTrue(cache.contains("c"));
+        assertEquals(3000, cache.getSize());
+        entry.close();
+
+        // Order is kept across instances.
+        RangeCache reloaded = new RangeCache(new File(directory.getPath()), 2000);
+        assertFalse(reloaded.contains("c"));
+        assertTrue(reloaded.contains("a"));
+        assertTrue(reloaded.contains("d"));
+    }
+
+    @Test
+    public void doesNotEvictOpenEntries() throws IOException {
+        RangeCache cache = new RangeCache(directory, 1000);
+        RangeCache.Entry a = cache.open("a");
+        write(a, 0, 800);
+        RangeCache.Entry b = cache.open("b");
+        write(b, 0, 800);
+        assertTrue(cache.contains("a"));
+        assertEquals(1600, cache.getSize());
+
+        // Closing "a" lets it go.
+        a.close();
+        assertFalse(cache.contains("a"));
+        assertEquals(800, cache.getSize());
+        b.close();
+        assertTrue(cache.contains("b"));
+    }
+
+    @Test
+    public void clearRemovesFiles() throws IOException {
+        RangeCache cache = new RangeCache(directory, 1 << 20);
+        RangeCache.Entry entry = cache.open("k");
+        write(entry, 0, 1000);
+        entry.close();
+        assertEquals(2, directory.listFiles().length);
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        assertEquals(0, directory.listFiles().length);
+        entry = new RangeCache(directory, 1 << 20).open("k");
+        assertNull(entry.getContentType());
+        entry.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void closedEntryCannotBeWritten() throws IOException {
+        RangeCache cache = new RangeCache(directory, 1 << 20);
+        RangeCache.Entry entry = cache.open("k");
+        entry.close();
+        write(entry, 0, 10);
+    }
+}
@@ -0,0 +1,342 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.playback;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link PlaybackClock}.
+ */
+public class PlaybackClockTest {
+
+    /** A player whose position advances with the fake time while playing. */
+    private class FakePlayer implements PlaybackClock.Source {
+        int position;
+        boolean playing;
+        boolean stalled;
+        long since;
+        int reads;
+
+        int positionAt(long time) {
+            return playing && !stalled ? position + (int) (time - since) : position;
+        }
+
+        void play() {
+            position = positionAt(scheduler.time);
+            since = scheduler.time;
+            playing = true;
+            stalled = false;
+        }
+
+        void pause() {
+            position = positionAt(scheduler.time);
+            since = scheduler.time;
+            playing = false;
+        }
+
+        void stall() {
+            position = positionAt(scheduler.time);
+            since = scheduler.time;
+            stalled = true;
+        }
+
+        @Override
+        public int getPosition() {
+            reads++;
+            return positionAt(scheduler.time);
+        }
+
+        @Override
+        public boolean isPlaying() {
+            return playing;
+        }
+    }
+
+    /** Runs the scheduled task in fake time. */
+    private static class FakeScheduler implements PlaybackClock.Scheduler {
+        long time;
+        Runnable task;
+        long due;
+
+        @Override
+        public long now() {
+            return time;
+        }
+
+        @Override
+        public void schedule(Runnable task, long delayMs) {
+            this.task = task;
+            this.due = time + delayMs;
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+            this.task = null;
+        }
+
+        void advance(long ms) {
+            long end = time + ms;
+            while (null != task && due <= end) {
+                time = due;
+                Runnable run = task;
+                task = null;
+                run.run();
+            }
+            time = end;
+        }
+    }
+
+    /** Records the positions of the callbacks, and the times when they came. */
+    private class Recorder implements PlaybackClock.Listener {
+        final List<Integer> positions = new ArrayList<>();
+        final List<Long> times = new ArrayList<>();
+
+        @Override
+        public void onPosition(PlaybackClock clock, int positionMs) {
+            positions.add(positionMs);
+            times.add(scheduler.time);
+        }
+    }
+
+    private FakeScheduler scheduler;
+    private FakePlayer player;
+    private PlaybackClock clock;
+
+    @Before
+    public void setUp() {
+        scheduler = new FakeScheduler();
+        player = new FakePlayer();
+        clock = new PlaybackClock(player, scheduler);
+    }
+
+    @Test
+    public void getPosition_interpolatesBetweenRareReads() {
+        player.play();
+        assertEquals(0, clock.getPosition());
+        for (int i = 0; i < 100; i++) {
+            scheduler.advance(4);
+            assertEquals(player.positionAt(scheduler.time), clock.getPosition());
+        }
+        assertEquals(1, player.reads);
+        scheduler.advance(100);
+        clock.getPosition();
+        assertEquals(2, player.reads);
+    }
+
+    @Test
+    public void getPosition_holdsWhilePaused() {
+        player.position = 1234;
+        assertEquals(1234, clock.getPosition());
+        scheduler.advance(300);
+        assertEquals(1234, clock.getPosition());
+        assertFalse(clock.isPlaying());
+    }
+
+    @Test
+    public void getPosition_doesNotStepBackOnSmallReadError() {
+        player.play();
+        clock.getPosition();
+        scheduler.advance(PlaybackClock.DEFAULT_SYNC_INTERVAL_MS - 1);
+        clock.getPosition();
+        scheduler.advance(1);
+        player.position -= 30;
+        int before = clock.getPosition();
+        assertEquals(2, player.reads);
+        assertEquals(PlaybackClock.DEFAULT_SYNC_INTERVAL_MS - 1, before);
+        scheduler.advance(10);
+        assertTrue(clock.getPosition() >= before);
+    }
+
+    @Test
+    public void getPosition_followsSeeksAfterInvalidate() {
+        player.play();
+        clock.getPosition();
+        player.position = 50000;
+        player.since = scheduler.time;
+        clock.invalidate();
+        assertEquals(50000, clock.getPosition());
+    }
+
+    @Test
+    public void setRate_scalesInterpolation() {
+        player.play();
+        clock.getPosition();
+        clock.setRate(2.0f);
+        scheduler.advance(100);
+        assertEquals(200, clock.getPosition());
+    }
+
+    @Test
+    public void addThreshold_firesWhenReached() {
+        Recorder recorder = new Recorder();
+        player.play();
+        clock.addThreshold(1500, recorder);
+        scheduler.advance(1499);
+        assertTrue(recorder.positions.isEmpty());
+        scheduler.advance(1);
+        assertEquals(1, recorder.positions.size());
+        assertEquals(1500, (int) recorder.positions.get(0));
+        assertEquals(1500L, (long) recorder.times.get(0));
+
+        // One-shot, and nothing left to wake up for.
+        scheduler.advance(5000);
+        assertEquals(1, recorder.positions.size());
+        assertEquals(null, scheduler.task);
+    }
+
+    @Test
+    public void addThreshold_readsRarelyWhileWaiting() {
+        Recorder recorder = new Recorder();
+        player.play();
+        clock.addThreshold(10000, recorder);
+        scheduler.advance(10000);
+        assertEquals(1, recorder.positions.size());
+        assertTrue("reads " + player.reads,
+                player.reads <= 10000 / PlaybackClock.DEFAULT_SYNC_INTERVAL_MS + 2);
+    }
+
+    @Test
+    public void addThreshold_waitsForConfirmationWhenStalled() {
+        Recorder recorder = new Recorder();
+        player.play();
+        clock.addThreshold(300, recorder);
+        scheduler.advance(100);
+        player.stall();
+
+        // The player still reports playing, but the predicted crossing at 300 is not
+        // confirmed by the read.
+        scheduler.advance(300);
+        assertTrue(recorder.positions.isEmpty());
+
+        // Retries back off instead of reading at every frame.
+        int reads = player.reads;
+        scheduler.advance(2000);
+        assertTrue("reads " + (player.reads - reads), player.reads - reads <= 6);
+
+        // Once playback continues, the threshold is noticed within the sync interval.
+        player.play();
+        long resumed = scheduler.time;
+        scheduler.advance(200 + PlaybackClock.DEFAULT_SYNC_INTERVAL_MS);
+        assertEquals(1, recorder.positions.size());
+        assertTrue(recorder.positions.get(0) >= 300);
+        assertTrue(recorder.times.get(0) - resumed <= 200 + PlaybackClock.DEFAULT_SYNC_INTERVAL_MS);
+    }
+
+    @Test
+    public void addThreshold_firesInOrder() {
+        final List<Integer> order = new ArrayList<>();
+        player.play();
+        for (final int position : new int[] { 300, 100, 200, 100 }) {
+            clock.addThreshold(position, new PlaybackClock.Listener() {
+                @Override
+                public void onPosition(PlaybackClock clock, int positionMs) {
+                    order.add(position);
+                }
+            });
+        }
+        scheduler.advance(400);
+        assertEquals(4, order.size());
+        assertEquals(100, (int) order.get(0));
+        assertEquals(100, (int) order.get(1));
+        assertEquals(200, (int) order.get(2));
+        assertEquals(300, (int) order.get(3));
+    }
+
+    @Test
+    public void addThreshold_canBeAddedFromListener() {
+        final Recorder recorder = new Recorder();
+        player.play();
+        clock.addThreshold(100, new PlaybackClock.Listener() {
+            @Override
+            public void onPosition(PlaybackClock clock, int positionMs) {
+                clock.addThreshold(positionMs + 100, recorder);
+            }
+        });
+        scheduler.advance(200);
+        assertEquals(1, recorder.positions.size());
+        assertEquals(200, (int) recorder.positions.get(0));
+    }
+
+    @Test
+    public void removeListener_cancelsThresholdsAndTickers() {
+        Recorder recorder = new Recorder();
+        player.play();
+        clock.addThreshold(100, recorder);
+        clock.addTicker(50, recorder);
+        clock.removeListener(recorder);
+        assertFalse(clock.hasSubscribers());
+        scheduler.advance(1000);
+        assertTrue(recorder.positions.isEmpty());
+        assertEquals(0, player.reads);
+    }
+
+    @Test
+    public void addTicker_ticksWhilePlaying() {
+        Recorder recorder = new Recorder();
+        player.play();
+        clock.addTicker(500, recorder);
+        scheduler.advance(0);
+        scheduler.advance(2000);
+        assertEquals(5, recorder.positions.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(500 * i, (int) recorder.positions.get(i));
+        }
+    }
+
+    @Test
+    public void addTicker_ticksOnceWhenPausedAndWhenStopping() {
+        Recorder recorder = new Recorder();
+        player.position = 700;
+        clock.addTicker(100, recorder);
+        scheduler.advance(1000);
+        assertEquals(1, recorder.positions.size());
+        assertEquals(700, (int) recorder.positions.get(0));
+
+        player.play();
+        clock.invalidate();
+        scheduler.advance(250);
+        int ticks = recorder.positions.size();
+        assertEquals(4, ticks);
+
+        player.pause();
+        clock.invalidate();
+        scheduler.advance(1000);
+        assertEquals(ticks + 1, recorder.positions.size());
+        assertEquals(950, (int) recorder.positions.get(ticks));
+    }
+}
@@ -0,0 +1,236 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.playback;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link PlayerStateMachine}.
+ */
+public class PlayerStateMachineTest {
+
+    /** The machine under test. */
+    private PlayerStateMachine machine;
+
+    /** Recorded events, as readable strings. */
+    private List<String> events;
+
+    @Before
+    public void setUp() {
+        machine = new PlayerStateMachine();
+        events = new ArrayList<>();
+        machine.addListener(new PlayerStateMachine.Listener() {
+            @Override
+            public void onStateChanged(PlayerStateMachine m, int previous, int state) {
+                events.add(PlayerStateMachine.getStateName(previous) + ">"
+                        + PlayerStateMachine.getStateName(state));
+            }
+
+            @Override
+            public void onFirstFrame(PlayerStateMachine m, int positionMs) {
+                events.add("frame@" + positionMs);
+            }
+        });
+    }
+
+    /** Prepare and start, then show the first frame. */
+    private void startPlaying() {
+        machine.onPrepareStarted();
+        machine.onPrepared();
+        machine.onStarted(0);
+        machine.onFrame(40);
+        events.clear();
+    }
+
+    @Test
+    public void firstFrameAfterPrepareAndStart() {
+        machine.onPrepareStarted();
+        machine.onPrepared();
+        machine.onStarted(0);
+        assertTrue(machine.isWaitingForFrame());
+        assertTrue(machine.isPlaying());
+
+        // Position has not advanced yet.
+        machine.onFrame(0);
+        assertEquals(PlayerStateMachine.STATE_STARTING, machine.getState());
+
+        machine.onFrame(33);
+        assertEquals(PlayerStateMachine.STATE_PLAYING, machine.getState());
+        assertFalse(machine.isWaitingForFrame());
+
+        // State change comes before the first frame.
+        assertEquals("[IDLE>PREPARING, PREPARING>PREPARED, PREPARED>STARTING, "
+                + "STARTING>PLAYING, frame@33]", events.toString());
+
+        // Only one first frame per start.
+        machine.onFrame(66);
+        assertEquals(5, events.size());
+    }
+
+    @Test
+    public void bufferingWhileStartingIsPartOfStart() {
+        machine.onPrepareStarted();
+        machine.onPrepared();
+        machine.onStarted(0);
+        events.clear();
+        machine.onBufferingStarted();
+        assertEquals(PlayerStateMachine.STATE_STARTING, machine.getState());
+
+        // Buffering stopped never comes; the first frame still ends the start.
+        machine.onFrame(10);
+        assertEquals("[STARTING>PLAYING, frame@10]", events.toString());
+    }
+
+    @Test
+    public void bufferingWhilePlayingStalls() {
+        startPlaying();
+        machine.onBufferingStarted();
+        assertEquals(PlayerStateMachine.STATE_STALLED, machine.getState());
+        assertTrue(machine.isPlaying());
+        assertFalse(machine.isWaitingForFrame());
+        machine.onBufferingStopped();
+        assertEquals(PlayerStateMachine.STATE_PLAYING, machine.getState());
+        assertEquals("[PLAYING>STALLED, STALLED>PLAYING]", events.toString());
+    }
+
+    @Test
+    public void seekWhilePlayingWaitsForFrameAtNewPosition() {
+        startPlaying();
+        machine.onSeekStarted();
+        assertEquals(PlayerStateMachine.STATE_SEEKING, machine.getState());
+        machine.onSeekCompleted(5000);
+        assertTrue(machine.isWaitingForFrame());
+
+        // Frames before the new position do not count.
+        machine.onFrame(5000);
+        assertEquals(PlayerStateMachine.STATE_STARTING, machine.getState());
+        machine.onFrame(5020);
+        assertEquals("[PLAYING>SEEKING, SEEKING>STARTING, STARTING>PLAYING, frame@5020]",
+                events.toString());
+    }
+
+    @Test
+    public void seekWhilePausedStaysPaused() {
+        startPlaying();
+        machine.onPaused();
+        machine.onSeekStarted();
+        machine.onSeekCompleted(3000);
+        assertEquals(PlayerStateMachine.STATE_PAUSED, machine.getState());
+        assertEquals("[PLAYING>PAUSED, PAUSED>SEEKING, SEEKING>PAUSED]", events.toString());
+
+        // Resuming waits for the first frame again.
+        machine.onStarted(3000);
+        machine.onFrame(3030);
+        assertEquals(PlayerStateMachine.STATE_PLAYING, machine.getState());
+        assertEquals("frame@3030", events.get(events.size() - 1));
+    }
+
+    @Test
+    public void startAndPauseDuringSeek() {
+        startPlaying();
+        machine.onPaused();
+        machine.onSeekStarted();
+        machine.onStarted(0);
+        assertEquals(PlayerStateMachine.STATE_SEEKING, machine.getState());
+        machine.onSeekCompleted(2000);
+        assertEquals(PlayerStateMachine.STATE_STARTING, machine.getState());
+
+        machine.onSeekStarted();
+        machine.onPaused();
+        machine.onSeekCompleted(4000);
+        assertEquals(PlayerStateMachine.STATE_PAUSED, machine.getState());
+    }
+
+    @Test
+    public void unreportedSeekRestartsStart() {
+        startPlaying();
+        machine.onSeekCompleted(8000);
+        assertEquals(PlayerStateMachine.STATE_STARTING, machine.getState());
+        machine.onFrame(8010);
+        assertEquals(PlayerStateMachine.STATE_PLAYING, machine.getState());
+    }
+
+    @Test
+    public void ignoresEventsOutOfOrder() {
+        machine.onStarted(0);
+        machine.onSeekStarted();
+        machine.onBufferingStarted();
+        machine.onCompleted();
+        machine.onFrame(100);
+        assertEquals(PlayerStateMachine.STATE_IDLE, machine.getState());
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void completedErrorAndReleased() {
+        startPlaying();
+        machine.onCompleted();
+        assertEquals(PlayerStateMachine.STATE_COMPLETED, machine.getState());
+        assertFalse(machine.isPlaying());
+
+        machine.onError();
+        assertEquals(PlayerStateMachine.STATE_ERROR, machine.getState());
+        machine.onStarted(0);
+        machine.onCompleted();
+        assertEquals(PlayerStateMachine.STATE_ERROR, machine.getState());
+
+        machine.onReleased();
+        assertEquals(PlayerStateMachine.STATE_IDLE, machine.getState());
+        assertEquals("[PLAYING>COMPLETED, COMPLETED>ERROR, ERROR>IDLE]", events.toString());
+    }
+
+    @Test
+    public void listenerMayRemoveItselfDuringNotification() {
+        final List<Integer> states = new ArrayList<>();
+        machine.addListener(new PlayerStateMachine.Listener() {
+            @Override
+            public void onStateChanged(PlayerStateMachine m, int previous, int state) {
+                states.add(state);
+                m.removeListener(this);
+            }
+
+            @Override
+            public void onFirstFrame(PlayerStateMachine m, int positionMs) {
+            }
+        });
+        machine.onPrepareStarted();
+        machine.onPrepared();
+        assertEquals(1, states.size());
+        assertEquals(2, events.size());
+    }
+}
@@ -0,0 +1,227 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.playback;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link SeekController}.
+ */
+public class SeekControllerTest {
+
+    /** A scheduler with fake time, that runs due tasks when advanced. */
+    private static class FakeScheduler implements PlaybackClock.Scheduler {
+        final Map<Runnable, Long> tasks = new LinkedHashMap<>();
+        long time;
+
+        @Override
+        public long now() {
+            return time;
+        }
+
+        @Override
+        public void schedule(Runnable task, long delayMs) {
+            tasks.put(task, time + delayMs);
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+            tasks.remove(task);
+        }
+
+        void advance(long ms) {
+            long end = time + ms;
+            while (true) {
+                Runnable next = null;
+                long due = Long.MAX_VALUE;
+                for (Map.Entry<Runnable, Long> entry : tasks.entrySet()) {
+                    if (entry.getValue() < due) {
+                        due = entry.getValue();
+                        next = entry.getKey();
+                    }
+                }
+                if (null == next || due > end) break;
+                tasks.remove(next);
+                time = due;
+                next.run();
+            }
+            time = end;
+        }
+    }
+
+    /** The scheduler. */
+    private FakeScheduler scheduler;
+
+    /** The positions that the player was asked to seek to. */
+    private List<Integer> seeks;
+
+    /** The controller under test. */
+    private SeekController controller;
+
+    @Before
+    public void setUp() {
+        scheduler = new FakeScheduler();
+        scheduler.time = 10000;
+        seeks = new ArrayList<>();
+        controller = new SeekController(new SeekController.Player() {
+            @Override
+            public void seekTo(int positionMs) {
+                seeks.add(positionMs);
+            }
+        }, scheduler);
+    }
+
+    @Test
+    public void snapsToNearestSyncSample() {
+        assertEquals(1234, controller.snap(1234));
+        controller.setSyncSampleTimes(new long [] { 4000, 0, 2000 });
+        assertEquals(0, controller.snap(900));
+        assertEquals(0, controller.snap(1000));
+        assertEquals(2000, controller.snap(1001));
+        assertEquals(2000, controller.snap(2000));
+        assertEquals(2000, controller.snap(2999));
+        assertEquals(4000, controller.snap(3001));
+        assertEquals(4000, controller.snap(60000));
+        controller.setSyncSampleTimes(new long[0]);
+        assertEquals(1234, controller.snap(1234));
+    }
+
+    @Test
+    public void seekWithoutDragIsIssuedAtOnce() {
+        controller.setSyncSampleTimes(new long [] { 0, 1000, 2000 });
+        controller.seekTo(1400);
+        assertEquals("[1000]", seeks.toString());
+        assertTrue(controller.isSeeking());
+        assertEquals(1400, controller.getTargetPosition());
+        controller.onSeekCompleted();
+        assertFalse(controller.isSeeking());
+        assertEquals(-1, controller.getTargetPosition());
+    }
+
+    @Test
+    public void dragCoalescesSeeksWhileOneIsInFlight() {
+        controller.onDragStarted();
+        for (int position = 100; position <= 3000; position += 100) {
+            controller.onDrag(position);
+            scheduler.advance(16);
+        }
+
+        // Only the first position was issued; the rest wait for it to complete.
+        assertEquals("[100]", seeks.toString());
+        assertEquals(3000, controller.getTargetPosition());
+
+        // The latest position is issued when the seek completes.
+        controller.onSeekCompleted();
+        assertEquals("[100, 3000]", seeks.toString());
+        controller.onSeekCompleted();
+
+        controller.onDragStopped(3000);
+        assertEquals("[100, 3000, 3000]", seeks.toString());
+    }
+
+    @Test
+    public void dragSeeksAreThrottled() {
+        controller.onDragStarted();
+        controller.onDrag(1000);
+        controller.onSeekCompleted();
+
+        // Completed quickly, but the next seek of the drag waits for the interval.
+        scheduler.advance(50);
+        controller.onDrag(2000);
+        assertEquals(1, controller.getSeekCount());
+        scheduler.advance(SeekController.DRAG_SEEK_INTERVAL_MS);
+        assertEquals("[1000, 2000]", seeks.toString());
+    }
+
+    @Test
+    public void dragSkipsPositionsThatSnapToTheShownSyncSample() {
+        controller.setSyncSampleTimes(new long [] { 0, 5000, 10000 });
+        controller.onDragStarted();
+        controller.onDrag(4000);
+        controller.onSeekCompleted();
+        scheduler.advance(1000);
+        controller.onDrag(5500);
+        controller.onDrag(6000);
+        scheduler.advance(1000);
+        assertEquals("[5000]", seeks.toString());
+        assertTrue(controller.isSeeking());
+
+        // The final seek is always issued.
+        controller.onDragStopped(6000);
+        assertEquals("[5000, 5000]", seeks.toString());
+    }
+
+    @Test
+    public void finalSeekWaitsForSeekInFlight() {
+        controller.onDragStarted();
+        controller.onDrag(1000);
+        controller.onDrag(1500);
+        controller.onDragStopped(7000);
+        assertEquals("[1000]", seeks.toString());
+        controller.onSeekCompleted();
+        assertEquals("[1000, 7000]", seeks.toString());
+        assertTrue(controller.isSeeking());
+        controller.onSeekCompleted();
+        assertFalse(controller.isSeeking());
+    }
+
+    @Test
+    public void unreportedSeekTimesOut() {
+        controller.seekTo(1000);
+        controller.seekTo(2000);
+        assertEquals("[1000]", seeks.toString());
+        scheduler.advance(SeekController.SEEK_TIMEOUT_MS);
+        assertEquals("[1000, 2000]", seeks.toString());
+        scheduler.advance(SeekController.SEEK_TIMEOUT_MS);
+        assertFalse(controller.isSeeking());
+    }
+
+    @Test
+    public void cancelForgetsPendingSeeks() {
+        controller.onDragStarted();
+        controller.onDrag(1000);
+        controller.onDrag(2000);
+        controller.cancel();
+        assertFalse(controller.isSeeking());
+        controller.onSeekCompleted();
+        scheduler.advance(10 * SeekController.SEEK_TIMEOUT_MS);
+        assertEquals("[1000]", seeks.toString());
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.playback;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link StartupTrace}.
+ */
+public class StartupTraceTest {
+
+    @Test
+    public void recordsElapsedTimeOfEachPhaseOnce() {
+        StartupTrace trace = new StartupTrace();
+        trace.start(1000);
+        assertTrue(trace.mark(StartupTrace.PHASE_LAYOUT, 1016));
+        assertTrue(trace.mark(StartupTrace.PHASE_PREPARED, 1400));
+        assertFalse(trace.mark(StartupTrace.PHASE_PREPARED, 1500));
+        assertTrue(trace.mark(StartupTrace.PHASE_PREVIEW_SET, 1080));
+
+        assertEquals(16, trace.getElapsed(StartupTrace.PHASE_LAYOUT));
+        assertEquals(80, trace.getElapsed(StartupTrace.PHASE_PREVIEW_SET));
+        assertEquals(400, trace.getElapsed(StartupTrace.PHASE_PREPARED));
+        assertEquals(-1, trace.getElapsed(StartupTrace.PHASE_FIRST_FRAME));
+        assertFalse(trace.isComplete());
+        assertEquals("layout=16 ms, previewSet=80 ms, prepared=400 ms, firstFrame=-",
+                trace.toString());
+
+        assertTrue(trace.mark(StartupTrace.PHASE_FIRST_FRAME, 1700));
+        assertTrue(trace.isComplete());
+    }
+
+    @Test
+    public void ignoresPhasesBeforeStart() {
+        StartupTrace trace = new StartupTrace();
+        assertFalse(trace.mark(StartupTrace.PHASE_LAYOUT, 10));
+        assertFalse(trace.isMarked(StartupTrace.PHASE_LAYOUT));
+    }
+
+    @Test
+    public void restartForgetsPreviousPhases() {
+        StartupTrace trace = new StartupTrace();
+        trace.start(0);
+        trace.mark(StartupTrace.PHASE_FIRST_FRAME, 900);
+        trace.start(5000);
+        assertFalse(trace.isMarked(StartupTrace.PHASE_FIRST_FRAME));
+        assertTrue(trace.mark(StartupTrace.PHASE_FIRST_FRAME, 5300));
+        assertEquals(300, trace.getElapsed(StartupTrace.PHASE_FIRST_FRAME));
+    }
+}
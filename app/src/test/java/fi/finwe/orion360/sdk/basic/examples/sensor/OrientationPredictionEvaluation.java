@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.sensor;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Random;
+
+import fi.finwe.orion360.sdk.basic.examples.math.MutableQuatF;
+
+/**
+ * Offline evaluation harness for {@link OrientationPredictor}.
+ * <p/>
+ * Prints the prediction error over a range of look-aheads and smoothing factors, next to the
+ * error of showing the latest sample without prediction. Give the paths of orientation
+ * traces recorded with {@link OrientationRecorder} (e.g. pulled from a device with adb) as
+ * arguments; without arguments, a synthetic trace of head turns with sensor noise is used.
+ * Run main() from the IDE.
+ */
+public class OrientationPredictionEvaluation {
+
+    /** Look-aheads to evaluate, in milliseconds. */
+    private static final int[] LOOK_AHEADS_MS = { 8, 16, 33, 50, 66 };
+
+    /** Smoothing factors to evaluate. */
+    private static final float[] SMOOTHINGS = { 1.0f, 0.5f, 0.25f };
+
+    /** Sample interval of the synthetic trace, in nanoseconds (100 Hz). */
+    private static final long INTERVAL_NANOS = 10000000L;
+
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            evaluate("synthetic", createHeadTurns(60, 0.05f, 1));
+        }
+        for (String path : args) {
+            InputStream in = new BufferedInputStream(new FileInputStream(path));
+            try {
+                evaluate(path, OrientationTrace.read(in));
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Evaluate the predictor on a trace and print the results.
+     *
+     * @param name The name of the trace.
+     * @param trace The trace.
+     */
+    private static void evaluate(String name, OrientationTrace trace) {
+        System.out.println(String.format(Locale.US, "%s: %d samples, %.1f s", name,
+                trace.size(), trace.getDurationNanos() * 1e-9));
+        OrientationPredictor baseline = new OrientationPredictor();
+        baseline.setMaxAngle(0.0f);
+        OrientationPredictor predictor = new OrientationPredictor();
+        for (int lookAheadMs : LOOK_AHEADS_MS) {
+            long lookAhead = lookAheadMs * 1000000L;
+            System.out.println(String.format(Locale.US, "  %2d ms  none       %s",
+                    lookAheadMs, OrientationPredictionEvaluator.evaluate(
+                            trace, baseline, lookAhead)));
+            for (float smoothing : SMOOTHINGS) {
+                predictor.setSmoothing(smoothing);
+                System.out.println(String.format(Locale.US, "         alpha=%.2f %s",
+                        smoothing, OrientationPredictionEvaluator.evaluate(
+                                trace, predictor, lookAhead)));
+            }
+        }
+    }
+
+    /**
+     * Create a synthetic trace of head movement: a slow side-to-side yaw sweep with faster
+     * pitch nods on top, and random sensor noise on every sample.
+     *
+     * @param seconds The duration of the trace.
+     * @param noiseDegrees The standard deviation of the noise, in degrees.
+     * @param seed The random seed.
+     * @return the trace.
+     */
+    static OrientationTrace createHeadTurns(int seconds, float noiseDegrees, long seed) {
+        Random random = new Random(seed);
+        OrientationTrace trace = new OrientationTrace();
+        MutableQuatF q = new MutableQuatF();
+        MutableQuatF pitch = new MutableQuatF();
+        float noise = (float) Math.toRadians(noiseDegrees) / 2;
+        int count = (int) (seconds * 1000000000L / INTERVAL_NANOS);
+        for (int i = 0; i < count; i++) {
+            double t = i * INTERVAL_NANOS * 1e-9;
+            q.setRotationAxisY((float) (Math.toRadians(60) * Math.sin(2 * Math.PI * 0.2 * t)));
+            pitch.setRotationAxisX((float) (Math.toRadians(15) * Math.sin(2 * Math.PI * 0.7 * t)));
+            q.multiply(pitch);
+            float w = q.w;
+            float x = q.x + noise * (float) random.nextGaussian();
+            float y = q.y + noise * (float) random.nextGaussian();
+            float z = q.z + noise * (float) random.nextGaussian();
+            float norm = (float) Math.sqrt(w * w + x * x + y * y + z * z);
+            trace.add(i * INTERVAL_NANOS, w / norm, x / norm, y / norm, z / norm);
+        }
+        return trace;
+    }
+}
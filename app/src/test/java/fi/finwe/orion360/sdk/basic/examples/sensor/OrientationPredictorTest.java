@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.sensor;
+
+import org.junit.Test;
+
+import fi.finwe.math.QuatF;
+import fi.finwe.orion360.sdk.basic.examples.math.MutableQuatF;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link OrientationPredictor} and {@link OrientationPredictionEvaluator}.
+ */
+public class OrientationPredictorTest {
+
+    /** Sample interval, in nanoseconds. */
+    private static final long INTERVAL_NANOS = 10000000L;
+
+    @Test
+    public void predict_extrapolatesConstantRotation() {
+        OrientationPredictor predictor = new OrientationPredictor();
+        predictor.setLookAhead(5 * INTERVAL_NANOS);
+        float step = 0.01f;
+        for (int i = 0; i < 10; i++) {
+            QuatF q = QuatF.fromRotationAxisY(step * i);
+            predictor.addSample(i * INTERVAL_NANOS, q);
+        }
+        assertEquals(1.0f, predictor.getAngularSpeed(), 1e-3f);
+
+        MutableQuatF predicted = predictor.predict(new MutableQuatF());
+        MutableQuatF expected = new MutableQuatF().setRotationAxisY(step * 14);
+        assertEquals(0.0f, OrientationPredictionEvaluator.angleBetween(predicted, expected),
+                0.05f);
+    }
+
+    @Test
+    public void predict_takesShortestPathAcrossHemispheres() {
+        OrientationPredictor predictor = new OrientationPredictor();
+        QuatF q0 = QuatF.fromRotationAxisY(0.01f);
+        QuatF q1 = QuatF.fromRotationAxisY(0.02f);
+        predictor.addSample(0, q0);
+        predictor.addSample(INTERVAL_NANOS, -q1.w, -q1.x, -q1.y, -q1.z);
+        assertEquals(1.0f, predictor.getAngularSpeed(), 1e-3f);
+    }
+
+    @Test
+    public void predict_capsExtrapolatedAngle() {
+        OrientationPredictor predictor = new OrientationPredictor();
+        predictor.setMaxAngle((float) Math.toRadians(10));
+        predictor.addSample(0, QuatF.fromRotationAxisY(0.0f));
+        predictor.addSample(INTERVAL_NANOS, QuatF.fromRotationAxisY(0.5f));
+
+        MutableQuatF predicted = predictor.predict(INTERVAL_NANOS * 100, new MutableQuatF());
+        MutableQuatF last = new MutableQuatF().setRotationAxisY(0.5f);
+        assertEquals(10.0f, OrientationPredictionEvaluator.angleBetween(predicted, last), 0.01f);
+    }
+
+    @Test
+    public void predict_holdsAfterGapAndReset() {
+        OrientationPredictor predictor = new OrientationPredictor();
+        MutableQuatF predicted = new MutableQuatF();
+        assertEquals(1.0f, predictor.predict(predicted).w, 0.0f);
+
+        predictor.addSample(0, QuatF.fromRotationAxisY(0.0f));
+        predictor.addSample(INTERVAL_NANOS, QuatF.fromRotationAxisY(0.1f));
+        assertTrue(predictor.getAngularSpeed() > 0.0f);
+        predictor.addSample(INTERVAL_NANOS * 100, QuatF.fromRotationAxisY(0.2f));
+        assertEquals(0.0f, predictor.getAngularSpeed(), 0.0f);
+
+        predictor.reset();
+        assertTrue(!predictor.hasSample());
+    }
+
+    @Test
+    public void evaluate_predictionBeatsBaselineOnNoisyHeadTurns() {
+        OrientationTrace trace = OrientationPredictionEvaluation.createHeadTurns(20, 0.05f, 7);
+        long lookAhead = 33000000L;
+        OrientationPredictor baseline = new OrientationPredictor();
+        baseline.setMaxAngle(0.0f);
+        OrientationPredictionEvaluator.Result none =
+                OrientationPredictionEvaluator.evaluate(trace, baseline, lookAhead);
+        OrientationPredictionEvaluator.Result predicted =
+                OrientationPredictionEvaluator.evaluate(trace, new OrientationPredictor(),
+                        lookAhead);
+
+        assertEquals(none.count, predicted.count);
+        assertTrue(predicted.mean + " < " + none.mean, predicted.mean < none.mean / 2);
+        assertTrue(predicted.p95 + " < " + none.p95, predicted.p95 < none.p95);
+    }
+}
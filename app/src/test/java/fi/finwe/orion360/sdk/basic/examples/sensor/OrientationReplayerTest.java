@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.sensor;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import fi.finwe.math.QuatF;
+import fi.finwe.math.Vec3F;
+import fi.finwe.orion360.OrionSensorFusion;
+import fi.finwe.orion360.sdk.basic.examples.hotspot.GazeTracker;
+import fi.finwe.orion360.sdk.basic.examples.math.MutableQuatF;
+import fi.finwe.orion360.sdk.basic.examples.math.MutableVec3F;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link OrientationReplayer}, including a gaze selection regression test
+ * driven by a replayed trace.
+ */
+public class OrientationReplayerTest {
+
+    /** Sample interval of the synthetic traces, in nanoseconds (60 Hz). */
+    private static final long INTERVAL_NANOS = 16666667L;
+
+    @Test
+    public void run_deliversSamplesInOrder() throws InterruptedException {
+        OrientationTrace trace = createYawSweep(100, 1.0f);
+        final List<Float> received = new ArrayList<>();
+        OrientationReplayer replayer = new OrientationReplayer(trace);
+        replayer.setSpeed(0.0f);
+        replayer.addListener(new OrionSensorFusion.Listener() {
+            @Override
+            public void onDeviceOrientationChanged(QuatF orientation) {
+                received.add(orientation.y);
+            }
+
+            @Override
+            public void onDeviceDisplayRotationChanged(int rotationDegrees) {}
+        });
+
+        assertEquals(100, replayer.run());
+        assertEquals(100, received.size());
+        QuatF expected = trace.getOrientation(99, new QuatF(1.0f, 0.0f, 0.0f, 0.0f));
+        assertEquals(expected.y, received.get(99), 0.0f);
+        assertEquals(40, replayer.run(10, 50));
+    }
+
+    @Test
+    public void run_followsRecordedTimingAtSpeed() throws InterruptedException {
+
+        // 0.5 seconds of samples replayed 5 times faster should take about 0.1 seconds.
+        OrientationTrace trace = createYawSweep(31, 1.0f);
+        OrientationReplayer replayer = new OrientationReplayer(trace);
+        replayer.setSpeed(5.0f);
+        long start = System.nanoTime();
+        replayer.run();
+        long elapsedMs = (System.nanoTime() - start) / 1000000;
+        assertTrue("elapsed " + elapsedMs, elapsedMs >= 95 && elapsedMs < 500);
+    }
+
+    @Test
+    public void replayedSweep_selectsEveryHotspotOnce() throws InterruptedException {
+
+        // Eight hotspots around the horizon, and a full turn around the vertical axis.
+        final GazeTracker tracker = new GazeTracker(10.0f);
+        for (int i = 0; i < 8; i++) {
+            double yaw = i * Math.PI / 4;
+            tracker.put(i, (float) Math.sin(yaw), 0.0f, (float) -Math.cos(yaw), 5.0f, 7.0f);
+        }
+        final int[] enters = new int[8];
+        final int[] exits = new int[8];
+        tracker.setListener(new GazeTracker.Listener() {
+            @Override
+            public void onGazeEnter(int id) {
+                enters[id]++;
+            }
+
+            @Override
+            public void onGazeExit(int id) {
+                exits[id]++;
+            }
+        });
+
+        // Start a little before the first hotspot and end a little after it, so that it is
+        // passed twice and the others once.
+        OrientationTrace trace = createYawSweep(721, (float) (2 * Math.PI + 0.4));
+        OrientationReplayer replayer = new OrientationReplayer(trace);
+        replayer.setSpeed(0.0f);
+        replayer.addListener(new OrionSensorFusion.Listener() {
+            private final MutableQuatF mInverse = new MutableQuatF();
+            private final MutableVec3F mGaze = new MutableVec3F();
+
+            @Override
+            public void onDeviceOrientationChanged(QuatF orientation) {
+                mInverse.set(orientation).conjugate();
+                mGaze.set(Vec3F.AXIS_FRONT).rotate(mInverse);
+                tracker.update(mGaze.x, mGaze.y, mGaze.z);
+            }
+
+            @Override
+            public void onDeviceDisplayRotationChanged(int rotationDegrees) {}
+        });
+        replayer.run();
+
+        for (int i = 0; i < 8; i++) {
+            assertEquals("hotspot " + i, i == 0 ? 2 : 1, enters[i]);
+            assertEquals("hotspot " + i, enters[i], exits[i]);
+        }
+    }
+
+    /**
+     * Create a trace that turns around the vertical axis at a constant rate.
+     *
+     * @param count The number of samples, at 60 Hz.
+     * @param totalAngle The total angle to turn, in radians, starting from -0.2.
+     */
+    private static OrientationTrace createYawSweep(int count, float totalAngle) {
+        OrientationTrace trace = new OrientationTrace();
+        for (int i = 0; i < count; i++) {
+            QuatF q = QuatF.fromRotationAxisY(-0.2f + totalAngle * i / (count - 1));
+            trace.add(i * INTERVAL_NANOS, q.w, q.x, q.y, q.z);
+        }
+        return trace;
+    }
+}
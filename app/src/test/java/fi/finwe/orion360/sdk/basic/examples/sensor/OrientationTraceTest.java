@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.sensor;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+
+import fi.finwe.math.QuatF;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link OrientationTrace} and {@link OrientationRecorder}.
+ */
+public class OrientationTraceTest {
+
+    @Test
+    public void recorder_writesReadableTrace() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OrientationRecorder recorder = new OrientationRecorder(out);
+        long start = 123456789000L;
+        for (int i = 0; i < 1000; i++) {
+            recorder.record(start + i * 16666667L, QuatF.fromRotationAxisY(0.01f * i));
+        }
+        assertEquals(Integer.valueOf(1000), recorder.close().get());
+        assertEquals(1000, recorder.getCount());
+        assertEquals(0, recorder.getDroppedCount());
+        assertNull(recorder.close());
+
+        // Header and 20 bytes per sample.
+        assertEquals(8 + 1000 * 20, out.size());
+
+        OrientationTrace trace = OrientationTrace.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(1000, trace.size());
+        assertEquals(0, trace.getTimeNanos(0));
+
+        // Times are kept at microsecond precision, without accumulating rounding errors.
+        assertEquals(999 * 16666667L / 1000, trace.getTimeNanos(999) / 1000, 1);
+        QuatF expected = QuatF.fromRotationAxisY(0.01f * 500);
+        QuatF actual = trace.getOrientation(500, new QuatF(1.0f, 0.0f, 0.0f, 0.0f));
+        assertEquals(expected.w, actual.w, 0.0f);
+        assertEquals(expected.y, actual.y, 0.0f);
+    }
+
+    @Test
+    public void recorder_reportsWriteErrorOnClose() throws InterruptedException {
+        OrientationRecorder recorder = new OrientationRecorder(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Disk full");
+            }
+        });
+        recorder.record(0, QuatF.fromRotationAxisY(0.0f));
+        try {
+            recorder.close().get();
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void write_roundTrips() throws IOException {
+        OrientationTrace trace = new OrientationTrace();
+        trace.add(5000000, 1.0f, 0.0f, 0.0f, 0.0f);
+        trace.add(6000000, 0.0f, 1.0f, 0.0f, 0.0f);
+        trace.add(9000000, 0.0f, 0.0f, 0.0f, 1.0f);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        trace.write(out);
+        OrientationTrace copy = OrientationTrace.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(3, copy.size());
+        assertEquals(4000000, copy.getDurationNanos());
+        assertEquals(1000000, copy.getTimeNanos(1));
+        assertEquals(1.0f, copy.getOrientation(2, new QuatF(1.0f, 0.0f, 0.0f, 0.0f)).z, 0.0f);
+    }
+
+    @Test
+    public void read_ignoresPartialLastSample() throws IOException {
+        OrientationTrace trace = new OrientationTrace();
+        trace.add(0, 1.0f, 0.0f, 0.0f, 0.0f);
+        trace.add(1000, 1.0f, 0.0f, 0.0f, 0.0f);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        trace.write(out);
+        byte[] truncated = Arrays.copyOf(out.toByteArray(), out.size() - 7);
+
+        assertEquals(1, OrientationTrace.read(new ByteArrayInputStream(truncated)).size());
+    }
+
+    @Test
+    public void read_rejectsOtherFiles() {
+        try {
+            OrientationTrace.read(new ByteArrayInputStream(new byte[] { 'R', 'I', 'F', 'F',
+                    0, 0, 0, 0 }));
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // Expected.
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.sensor;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link SampleRingBuffer}.
+ */
+public class SampleRingBufferTest {
+
+    @Test
+    public void offer_dropsWhenFull() {
+        SampleRingBuffer ring = new SampleRingBuffer(4, 3);
+        assertEquals(4, ring.getCapacity());
+        float[] sample = { 0.0f, 0.0f, -1.0f };
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i, sample));
+        }
+        assertFalse(ring.offer(4, sample));
+        assertEquals(1, ring.getDroppedCount());
+
+        final int[] sum = new int[1];
+        SampleRingBuffer.Sink sink = new SampleRingBuffer.Sink() {
+            @Override
+            public void accept(long stamp, float[] values, int offset) {
+                sum[0] += stamp;
+            }
+        };
+        assertEquals(4, ring.drain(sink));
+        assertEquals(0 + 1 + 2 + 3, sum[0]);
+
+        // After draining, the slots can be reused and wrap around.
+        for (int i = 0; i < 3; i++) {
+            assertTrue(ring.offer(10, sample));
+        }
+        assertEquals(3, ring.drain(sink));
+        assertEquals(36, sum[0]);
+        assertEquals(0, ring.drain(sink));
+    }
+
+    @Test
+    public void drain_seesEverySampleFromAnotherThread() throws InterruptedException {
+        final SampleRingBuffer ring = new SampleRingBuffer(64, 3);
+        final int count = 200000;
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final long[] offered = new long[2];
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                float[] sample = new float[3];
+                for (int i = 0; i < count; i++) {
+                    sample[0] = i;
+                    sample[1] = -i;
+                    sample[2] = 1.0f;
+                    if (ring.offer(i, sample)) {
+                        offered[0]++;
+                        offered[1] += i;
+                    }
+                }
+                done.set(true);
+            }
+        });
+
+        final long[] drained = new long[2];
+        final boolean[] consistent = { true };
+        SampleRingBuffer.Sink sink = new SampleRingBuffer.Sink() {
+            private long mPrevious = -1;
+
+            @Override
+            public void accept(long stamp, float[] values, int offset) {
+
+                // Each sample must be complete, and the samples must arrive in order.
+                if (values[offset] != stamp || values[offset + 1] != -stamp
+                        || values[offset + 2] != 1.0f || stamp <= mPrevious) {
+                    consistent[0] = false;
+                }
+                mPrevious = stamp;
+                drained[0]++;
+                drained[1] += stamp;
+            }
+        };
+        producer.start();
+        while (!done.get()) {
+            ring.drain(sink);
+        }
+        producer.join();
+        ring.drain(sink);
+
+        assertTrue(consistent[0]);
+        assertEquals(offered[0], drained[0]);
+        assertEquals(offered[1], drained[1]);
+        assertEquals(count, offered[0] + ring.getDroppedCount());
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.tag;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link TagChanges}.
+ */
+public class TagChangesTest {
+
+    private TagChanges mChanges;
+
+    private final List<String> mWrites = new ArrayList<>();
+
+    private final TagChanges.Target mTarget = new TagChanges.Target() {
+        @Override
+        public void setTagLocation(int index, float x, float y, float z) {
+            mWrites.add(index + " location " + x + "," + y + "," + z);
+        }
+
+        @Override
+        public void setTagScale(int index, float x, float y) {
+            mWrites.add(index + " scale " + x + "," + y);
+        }
+
+        @Override
+        public void setTagAlpha(int index, float alpha) {
+            mWrites.add(index + " alpha " + alpha);
+        }
+
+        @Override
+        public void setTagRotation(int index, float w, float x, float y, float z) {
+            mWrites.add(index + " rotation " + w + "," + x + "," + y + "," + z);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        mChanges = new TagChanges();
+    }
+
+    @Test
+    public void flush_appliesLastWriteOnce() {
+        mChanges.setAlpha(3, 0.1f);
+        mChanges.setScale(7, 1.0f, 1.0f);
+        mChanges.setAlpha(3, 0.5f);
+        mChanges.setScale(7, 2.0f, 3.0f);
+        assertTrue(mChanges.isDirty());
+
+        assertEquals(2, mChanges.flush(mTarget));
+        assertEquals("[3 alpha 0.5, 7 scale 2.0,3.0]", mWrites.toString());
+        assertFalse(mChanges.isDirty());
+        assertEquals(0, mChanges.flush(mTarget));
+    }
+
+    @Test
+    public void flush_skipsUnchangedValues() {
+        for (int i = 0; i < 500; i++) {
+            mChanges.setAlpha(i, 0.0f);
+        }
+        assertEquals(500, mChanges.flush(mTarget));
+
+        // Hiding again costs no writes; changing one costs one.
+        for (int i = 0; i < 500; i++) {
+            mChanges.setAlpha(i, 0.0f);
+        }
+        mChanges.setAlpha(42, 1.0f);
+        mWrites.clear();
+        assertEquals(1, mChanges.flush(mTarget));
+        assertEquals("[42 alpha 1.0]", mWrites.toString());
+
+        mChanges.invalidate();
+        mChanges.setAlpha(42, 1.0f);
+        assertEquals(1, mChanges.flush(mTarget));
+    }
+
+    @Test
+    public void locationAndRotation_replaceEachOther() {
+        mChanges.setRotation(1, 0.0f, 0.0f, 1.0f, 0.0f);
+        mChanges.setLocation(1, 0.0f, 0.0f, -1.0f);
+        assertEquals(1, mChanges.flush(mTarget));
+        assertEquals("[1 location 0.0,0.0,-1.0]", mWrites.toString());
+
+        mChanges.setLocation(1, 0.0f, 0.0f, -1.0f);
+        mChanges.setRotation(1, 1.0f, 0.0f, 0.0f, 0.0f);
+        mWrites.clear();
+        assertEquals(1, mChanges.flush(mTarget));
+        assertEquals("[1 rotation 1.0,0.0,0.0,0.0]", mWrites.toString());
+
+        // The rotation changed the location, so the same location must be written again.
+        mChanges.setLocation(1, 0.0f, 0.0f, -1.0f);
+        assertEquals(1, mChanges.flush(mTarget));
+    }
+
+    @Test
+    public void flush_keepsChangesMadeDuringFlush() {
+        TagChanges.Target target = new TagChanges.Target() {
+            @Override
+            public void setTagLocation(int index, float x, float y, float z) {}
+
+            @Override
+            public void setTagScale(int index, float x, float y) {}
+
+            @Override
+            public void setTagAlpha(int index, float alpha) {
+                mWrites.add(index + " alpha " + alpha);
+                if (alpha < 1.0f) {
+                    mChanges.setAlpha(index, alpha + 0.5f);
+                }
+            }
+
+            @Override
+            public void setTagRotation(int index, float w, float x, float y, float z) {}
+        };
+        mChanges.setAlpha(0, 0.0f);
+        mChanges.setAlpha(1, 0.0f);
+        assertEquals(2, mChanges.flush(target));
+        assertTrue(mChanges.isDirty());
+        assertEquals(2, mChanges.flush(target));
+        assertEquals(2, mChanges.flush(target));
+        assertFalse(mChanges.isDirty());
+        assertEquals(6, mWrites.size());
+    }
+
+    @Test
+    public void clear_dropsPendingChanges() {
+        mChanges.setAlpha(5, 1.0f);
+        mChanges.clear();
+        assertFalse(mChanges.isDirty());
+        assertEquals(0, mChanges.flush(mTarget));
+    }
+}
@@ -0,0 +1,223 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.timeline;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+
+import fi.finwe.math.Vec3F;
+import fi.finwe.orion360.sdk.basic.examples.analytics.GazeHeatmap;
+import fi.finwe.orion360.sdk.basic.examples.math.MutableQuatF;
+import fi.finwe.orion360.sdk.basic.examples.math.MutableVec3F;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link CameraPathWriter} and {@link CameraPathPlayer}.
+ */
+public class CameraPathTest {
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("camera", ".camerapath");
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void sample_hitsKeyframes() throws IOException {
+        assertEquals(3, bake("1000 0 0 90\n"
+                + "# comment\n"
+                + "2000 90 30 60 linear\n"
+                + "\n"
+                + "4000 -45 -20 100 ease\n", 10));
+        CameraPathPlayer player = new CameraPathPlayer(mFile);
+        assertEquals(1000, player.getStartTime());
+        assertEquals(4000, player.getEndTime());
+
+        assertTrue(player.sample(1000));
+        assertAngles(player, 0.0f, 0.0f, 90.0f);
+        assertTrue(player.sample(2000));
+        assertAngles(player, 90.0f, 30.0f, 60.0f);
+        assertTrue(player.sample(4000));
+        assertAngles(player, -45.0f, -20.0f, 100.0f);
+
+        // Outside of the track, the first and last samples hold.
+        assertTrue(player.sample(0));
+        assertAngles(player, 0.0f, 0.0f, 90.0f);
+        assertTrue(player.sample(5000));
+        assertAngles(player, -45.0f, -20.0f, 100.0f);
+        player.close();
+    }
+
+    @Test
+    public void sample_followsEasing() throws IOException {
+        bake("0 0 0 90\n"
+                + "1000 90 0 90 linear\n"
+                + "2000 0 0 90 ease\n"
+                + "3000 90 0 90 hold\n", 10);
+        CameraPathPlayer player = new CameraPathPlayer(mFile);
+
+        player.sample(250);
+        assertEquals(22.5f, player.getYaw(), 0.05f);
+        player.sample(1250);
+        assertEquals(90.0f * (1.0f - CameraPathWriter.ease(0.25f,
+                CameraPathWriter.EASING_EASE_IN_OUT)), player.getYaw(), 0.05f);
+        assertTrue(player.getYaw() > 90.0f - 22.5f);
+        player.sample(2990);
+        assertEquals(0.0f, player.getYaw(), 0.05f);
+        player.sample(3000);
+        assertEquals(90.0f, player.getYaw(), 0.05f);
+        player.close();
+    }
+
+    @Test
+    public void rotation_followsYawConventionOfVec3F() throws IOException {
+        bake("0 90 30 90\n", 10);
+        CameraPathPlayer player = new CameraPathPlayer(mFile);
+        player.sample(0);
+
+        // Positive yaw turns towards the right axis, like the gaze heatmap columns.
+        MutableVec3F direction = new MutableVec3F().set(Vec3F.AXIS_FRONT)
+                .rotate(player.getRotation(new MutableQuatF()));
+        assertEquals(Math.cos(Math.toRadians(30)), direction.x, 1e-5f);
+        assertEquals(Math.sin(Math.toRadians(30)), direction.y, 1e-5f);
+        assertEquals(90.0f, Math.toDegrees(direction.getYaw()), 0.01f);
+        assertEquals(30.0f, Math.toDegrees(direction.getPitch()), 0.01f);
+        assertEquals(90.0f, Math.toDegrees(GazeHeatmap.getYaw(direction.x, direction.z)),
+                0.01f);
+        assertEquals(90.0f, player.getYaw(), 0.01f);
+        assertEquals(30.0f, player.getPitch(), 0.01f);
+        player.close();
+    }
+
+    @Test
+    public void sample_takesShortWayAroundAndStaysNormalized() throws IOException {
+        bake("0 170 0 90\n1000 -170 0 90 linear\n", 33);
+        CameraPathPlayer player = new CameraPathPlayer(mFile);
+        player.sample(500);
+        assertEquals(180.0f, Math.abs(player.getYaw()), 0.1f);
+        player.sample(517);
+        MutableQuatF q = player.getRotation(new MutableQuatF());
+        assertEquals(1.0f, q.w * q.w + q.x * q.x + q.y * q.y + q.z * q.z, 1e-5f);
+        player.close();
+    }
+
+    @Test
+    public void sample_streamsLongTrackThroughSmallWindow() throws IOException {
+        CameraPathWriter writer = new CameraPathWriter(new FileOutputStream(mFile), 100);
+        for (int i = 0; i <= 3600; i++) {
+            writer.addKeyframe(i * 1000, (i % 2) * 10.0f, 0.0f, 60.0f + i % 7,
+                    CameraPathWriter.EASING_LINEAR);
+        }
+        writer.close();
+        assertEquals(36001, writer.getSampleCount());
+
+        CameraPathPlayer player = new CameraPathPlayer(mFile, 64);
+        for (int t = 0; t <= 3600000; t += 16) {
+            player.sample(t);
+        }
+        for (int t = 3600000; t >= 0; t -= 1000) {
+            player.sample(t);
+            int i = t / 1000;
+            assertEquals((i % 2) * 10.0f, player.getYaw(), 0.01f);
+            assertEquals(60.0f + i % 7, player.getFov(), 0.001f);
+        }
+        player.sample(1500);
+        assertEquals(5.0f, player.getYaw(), 0.01f);
+        player.close();
+    }
+
+    @Test
+    public void bake_rejectsInvalidKeyframes() throws IOException {
+        try {
+            bake("0 0 0 90\n0 10 0 90\n", 10);
+            fail("Expected an exception for a repeated time");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("line 2"));
+        }
+        try {
+            bake("0 0 0 90 bounce\n", 10);
+            fail("Expected an exception for an unknown easing");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("line 1"));
+        }
+        CameraPathPlayer player = new CameraPathPlayer(createEmptyTrack());
+        assertFalse(player.sample(0));
+        assertFalse(player.contains(0));
+        player.close();
+    }
+
+    /**
+     * Bake keyframe text into the test file.
+     */
+    private int bake(String keyframes, int intervalMs) throws IOException {
+        return CameraPathWriter.bake(new StringReader(keyframes),
+                new FileOutputStream(mFile), intervalMs);
+    }
+
+    /**
+     * Write a track that has a header but no samples.
+     */
+    private File createEmptyTrack() throws IOException {
+        CameraPathWriter writer = new CameraPathWriter(new FileOutputStream(mFile), 10);
+        writer.addKeyframe(0, 0.0f, 0.0f, 90.0f, CameraPathWriter.EASING_LINEAR);
+        writer.close();
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        file.setLength(CameraPathWriter.HEADER_BYTES);
+        file.close();
+        return mFile;
+    }
+
+    /**
+     * Assert the sampled angles.
+     */
+    private static void assertAngles(CameraPathPlayer player, float yaw, float pitch,
+                                     float fov) {
+        assertEquals(yaw, player.getYaw(), 0.01f);
+        assertEquals(pitch, player.getPitch(), 0.01f);
+        assertEquals(fov, player.getFov(), 0.001f);
+    }
+}
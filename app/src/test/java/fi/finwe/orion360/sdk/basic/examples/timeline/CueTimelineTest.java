@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.timeline;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link CueTimeline}.
+ */
+public class CueTimelineTest {
+
+    /** Records the crossed cues as signed times: negative when crossed backwards. */
+    private static class Recorder implements CueTimeline.Listener {
+        final List<Integer> crossed = new ArrayList<>();
+
+        @Override
+        public void onCue(CueTimeline timeline, int index, boolean forward) {
+            crossed.add(forward ? timeline.getTime(index) : -timeline.getTime(index));
+        }
+    }
+
+    @Test
+    public void add_sortsCuesAddedOutOfOrder() {
+        CueTimeline timeline = new CueTimeline();
+        timeline.add(300, 3.0f);
+        timeline.add(100, 1.0f);
+        timeline.add(200, 2.0f);
+        timeline.add(100, 1.5f);
+        assertEquals(4, timeline.size());
+        assertEquals(100, timeline.getTime(0));
+        assertEquals(1.0f, timeline.getValue(0), 0.0f);
+        assertEquals(1.5f, timeline.getValue(1), 0.0f);
+        assertEquals(3.0f, timeline.getValue(3), 0.0f);
+    }
+
+    @Test
+    public void advance_reportsCrossingsInBothDirections() {
+        CueTimeline timeline = createTimeline(100, 200, 300);
+        Recorder recorder = new Recorder();
+
+        assertEquals(0, timeline.advance(50, recorder));
+        assertEquals(2, timeline.advance(200, recorder));
+        assertEquals(0, timeline.advance(250, recorder));
+        assertEquals(1, timeline.advance(150, recorder));
+        assertEquals(2, timeline.advance(350, recorder));
+        assertEquals(3, timeline.advance(0, recorder));
+        assertEquals(listOf(100, 200, -200, 200, 300, -300, -200, -100), recorder.crossed);
+    }
+
+    @Test
+    public void seekTo_skipsCuesAndReturnsActiveCue() {
+        CueTimeline timeline = createTimeline(100, 200, 300);
+        Recorder recorder = new Recorder();
+
+        assertEquals(1, timeline.seekTo(250));
+        assertEquals(250, timeline.getPosition());
+        assertEquals(1, timeline.advance(300, recorder));
+        assertEquals(listOf(300), recorder.crossed);
+        assertEquals(-1, timeline.seekTo(0));
+        assertEquals(2, timeline.seekTo(1000));
+    }
+
+    @Test
+    public void getTimeToNextCue_givesExactWakeUp() {
+        CueTimeline timeline = createTimeline(100, 200, 300);
+        assertEquals(100, timeline.getTimeToNextCue(0));
+        assertEquals(1, timeline.getTimeToNextCue(199));
+        assertEquals(100, timeline.getTimeToNextCue(200));
+        assertEquals(-1, timeline.getTimeToNextCue(300));
+    }
+
+    @Test
+    public void advance_handlesThousandsOfCues() {
+        CueTimeline timeline = new CueTimeline();
+        for (int i = 10000; i > 0; i--) {
+            timeline.add(i * 40, i);
+        }
+        Recorder recorder = new Recorder();
+        int crossed = 0;
+        for (int position = 0; position <= 400000; position += 25) {
+            crossed += timeline.advance(position, recorder);
+        }
+        assertEquals(10000, crossed);
+        assertEquals(9999, timeline.getActiveIndex(400000));
+        assertEquals(10000, timeline.advance(0, recorder));
+        assertEquals(-40, (int) recorder.crossed.get(recorder.crossed.size() - 1));
+    }
+
+    /**
+     * Create a timeline with cues at the given times.
+     */
+    private static CueTimeline createTimeline(int... times) {
+        CueTimeline timeline = new CueTimeline();
+        for (int time : times) {
+            timeline.add(time, time / 100.0f);
+        }
+        return timeline;
+    }
+
+    /**
+     * Create a list of integers.
+     */
+    private static List<Integer> listOf(int... values) {
+        List<Integer> list = new ArrayList<>();
+        for (int value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.timeline;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Command line tool that generates a director's cut camera path track from recorded
+ * viewing sessions, see {@link DirectorsCutGenerator}.
+ * <p/>
+ * Usage: DirectorsCutGeneration output.camerapath session.trace|directory...
+ * <p/>
+ * Directories are searched for .trace files, e.g. the orientation traces recorded by the
+ * SensorFusion example and pulled from devices with adb. The keyframes are written next to
+ * the track, as text, for review and hand editing. Run main() from the IDE or with the test
+ * classpath on a desktop JVM.
+ */
+public class DirectorsCutGeneration {
+
+    /** Sample interval of the track, in milliseconds. */
+    private static final int INTERVAL_MS = 33;
+
+    /** Field of view of the track, in degrees. */
+    private static final float FOV = 90.0f;
+
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: DirectorsCutGeneration output.camerapath "
+                    + "session.trace|directory...");
+            return;
+        }
+        List<File> sessions = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            collect(new File(args[i]), sessions);
+        }
+        Collections.sort(sessions);
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool();
+        DirectorsCutGenerator.Path path = new DirectorsCutGenerator(pool).generate(sessions);
+        pool.shutdown();
+        long elapsedMs = (System.nanoTime() - start) / 1000000L;
+        System.out.println(String.format(Locale.US,
+                "%d sessions, %d buckets -> %d keyframes in %d ms on %d threads",
+                sessions.size(), path.getBucketCount(), path.size(), elapsedMs,
+                pool.getParallelism()));
+
+        path.bake(new FileOutputStream(args[0]), INTERVAL_MS, FOV);
+        Writer keyframes = new OutputStreamWriter(new FileOutputStream(args[0] + ".txt"),
+                "UTF-8");
+        try {
+            path.writeKeyframes(keyframes, FOV);
+        } finally {
+            keyframes.close();
+        }
+    }
+
+    /**
+     * Add a trace file, or the trace files in a directory tree, to a list.
+     */
+    private static void collect(File file, List<File> out) {
+        File[] children = file.listFiles();
+        if (null == children) {
+            out.add(file);
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory() || child.getName().endsWith(".trace")) {
+                collect(child, out);
+            }
+        }
+    }
+}
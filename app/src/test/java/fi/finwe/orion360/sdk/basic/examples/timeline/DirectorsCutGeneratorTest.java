@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.timeline;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import fi.finwe.orion360.sdk.basic.examples.math.MutableQuatF;
+import fi.finwe.orion360.sdk.basic.examples.sensor.OrientationTrace;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link DirectorsCutGenerator}.
+ */
+public class DirectorsCutGeneratorTest {
+
+    /** Duration of the synthetic video, in milliseconds. */
+    private static final int DURATION_MS = 40000;
+
+    @Test
+    public void simplify_keepsCornersOnly() {
+        float[] yaws = new float[21];
+        float[] pitches = new float[21];
+        for (int i = 0; i <= 20; i++) {
+            yaws[i] = i <= 10 ? 4.0f * i : 40.0f;
+            pitches[i] = 0.1f * (i % 2);
+        }
+        boolean[] keep = DirectorsCutGenerator.simplify(yaws, pitches, 1.0f);
+        int count = 0;
+        for (boolean k : keep) if (k) count++;
+        assertEquals(3, count);
+        assertTrue(keep[0] && keep[10] && keep[20]);
+    }
+
+    @Test
+    public void simplify_splitsLargeYawSteps() {
+        float[] yaws = { 0.0f, 100.0f, 200.0f, 300.0f };
+        boolean[] keep = DirectorsCutGenerator.simplify(yaws, new float[4], 10.0f);
+        assertTrue(keep[1] || keep[2]);
+    }
+
+    @Test
+    public void generate_followsMajorityOfViewers() {
+        List<OrientationTrace> sessions = createSessions(40, 0.3f, 1);
+        DirectorsCutGenerator generator = new DirectorsCutGenerator(new ForkJoinPool(4));
+        DirectorsCutGenerator.Path path = generator.generateFromTraces(sessions);
+
+        assertEquals(DURATION_MS / DirectorsCutGenerator.DEFAULT_BUCKET_MS,
+                path.getBucketCount());
+        assertTrue("keyframes: " + path.size(), path.size() < path.getBucketCount() / 4);
+        for (int i = 0; i < path.size(); i++) {
+            int time = path.getTime(i);
+            float error = path.getYaw(i) - targetYaw(time);
+            error -= 360.0f * Math.round(error / 360.0f);
+            assertEquals("yaw at " + time, 0.0f, error, 8.0f);
+            assertEquals("pitch at " + time, targetPitch(time), path.getPitch(i), 8.0f);
+        }
+    }
+
+    @Test
+    public void generate_isIndependentOfParallelism() {
+        List<OrientationTrace> sessions = createSessions(25, 0.2f, 2);
+        DirectorsCutGenerator.Path serial =
+                new DirectorsCutGenerator(new ForkJoinPool(1)).generateFromTraces(sessions);
+        DirectorsCutGenerator.Path parallel =
+                new DirectorsCutGenerator(new ForkJoinPool(8)).generateFromTraces(sessions);
+        assertEquals(serial.size(), parallel.size());
+        for (int i = 0; i < serial.size(); i++) {
+            assertEquals(serial.getTime(i), parallel.getTime(i));
+            assertEquals(serial.getYaw(i), parallel.getYaw(i), 0.0f);
+        }
+    }
+
+    @Test
+    public void generate_readsFilesAndBakesPlayableTrack() throws IOException {
+        List<File> files = new ArrayList<>();
+        File track = File.createTempFile("generated", ".camerapath");
+        try {
+            for (OrientationTrace trace : createSessions(6, 0.0f, 3)) {
+                File file = File.createTempFile("session", ".trace");
+                FileOutputStream out = new FileOutputStream(file);
+                trace.write(out);
+                out.close();
+                files.add(file);
+            }
+            DirectorsCutGenerator.Path path =
+                    new DirectorsCutGenerator(new ForkJoinPool(2)).generate(files);
+            StringWriter text = new StringWriter();
+            path.writeKeyframes(text, 90.0f);
+            assertTrue(text.toString().contains(" linear\n"));
+
+            path.bake(new FileOutputStream(track), 33, 90.0f);
+            CameraPathPlayer player = new CameraPathPlayer(track);
+            assertTrue(player.contains(25000));
+            player.sample(25000);
+            assertEquals(targetYaw(25000), player.getYaw(), 8.0f);
+            player.close();
+        } finally {
+            for (File file : files) file.delete();
+            track.delete();
+        }
+    }
+
+    @Test
+    public void generate_withoutSessionsGivesEmptyPath() {
+        DirectorsCutGenerator.Path path = new DirectorsCutGenerator(new ForkJoinPool(1))
+                .generateFromTraces(new ArrayList<OrientationTrace>());
+        assertEquals(0, path.size());
+        assertFalse(path.getBucketCount() > 0);
+        assertArrayEquals(new boolean[0], DirectorsCutGenerator.simplify(new float[0],
+                new float[0], 1.0f));
+    }
+
+    /**
+     * The direction the director wants to show: a slow pan to the right, then a cut to the
+     * back across the +-180 seam, and a tilt up.
+     */
+    private static float targetYaw(int timeMs) {
+        if (timeMs < 20000) return 120.0f * timeMs / 20000;
+        return timeMs < 30000 ? 170.0f : -170.0f + (timeMs - 30000) / 1000.0f;
+    }
+
+    private static float targetPitch(int timeMs) {
+        return timeMs < 30000 ? 0.0f : 20.0f;
+    }
+
+    /**
+     * Create viewing sessions at 50 Hz where most viewers follow the target direction with
+     * some jitter, and the others look around at random.
+     */
+    private static List<OrientationTrace> createSessions(int count, float wanderers,
+                                                         long seed) {
+        Random random = new Random(seed);
+        List<OrientationTrace> sessions = new ArrayList<>();
+        MutableQuatF q = new MutableQuatF();
+        for (int s = 0; s < count; s++) {
+            boolean wanderer = s < count * wanderers;
+            float offsetYaw = random.nextFloat() * 360.0f;
+            OrientationTrace trace = new OrientationTrace();
+            for (int t = 0; t < DURATION_MS; t += 20) {
+                float yaw = wanderer ? offsetYaw + t / 100.0f
+                        : targetYaw(t) + 3.0f * (float) random.nextGaussian();
+                float p = wanderer ? 0.0f
+                        : targetPitch(t) + 3.0f * (float) random.nextGaussian();
+
+                // The orientation is the inverse of the rotation that turns the front
+                // direction to the gaze direction.
+                CameraPathWriter.getViewRotation(yaw, p, q).conjugate();
+                trace.add(t * 1000000L, q.w, q.x, q.y, q.z);
+            }
+            sessions.add(trace);
+        }
+        return sessions;
+    }
+}
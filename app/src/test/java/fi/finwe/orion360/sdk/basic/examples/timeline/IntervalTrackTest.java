@@ -0,0 +1,223 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.timeline;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link IntervalTrack}.
+ */
+public class IntervalTrackTest {
+
+    /** Records the changes as signed item indices: -(item + 1) when the item became inactive. */
+    private static class Recorder implements IntervalTrack.Listener {
+        final List<Integer> changes = new ArrayList<>();
+
+        @Override
+        public void onChange(IntervalTrack track, int item, boolean active) {
+            changes.add(active ? item + 1 : -(item + 1));
+        }
+    }
+
+    @Test
+    public void update_reportsEntersAndExits() {
+        IntervalTrack track = new IntervalTrack();
+        int a = track.add(100, 200, 7);
+        int b = track.add(150, 300, 8);
+        Recorder recorder = new Recorder();
+
+        track.update(0, recorder);
+        assertTrue(recorder.changes.isEmpty());
+
+        track.update(100, recorder);
+        assertEquals(Arrays.asList(a + 1), recorder.changes);
+        assertEquals(7, track.getValue(a));
+
+        recorder.changes.clear();
+        track.update(200, recorder);
+        assertEquals(Arrays.asList(-(a + 1), b + 1), recorder.changes);
+
+        recorder.changes.clear();
+        track.update(200, recorder);
+        assertTrue(recorder.changes.isEmpty());
+
+        recorder.changes.clear();
+        track.update(300, recorder);
+        assertEquals(Arrays.asList(-(b + 1)), recorder.changes);
+        assertEquals(0, track.getActiveCount());
+    }
+
+    @Test
+    public void update_skipsWindowsJumpedOver() {
+        IntervalTrack track = new IntervalTrack();
+        track.add(100, 200, 0);
+        int b = track.add(150, 1000, 0);
+        Recorder recorder = new Recorder();
+        track.update(0, recorder);
+        track.update(500, recorder);
+        assertEquals(Arrays.asList(b + 1), recorder.changes);
+    }
+
+    @Test
+    public void update_movesBackwards() {
+        IntervalTrack track = new IntervalTrack();
+        int a = track.add(100, 200, 0);
+        int b = track.add(300, 400, 0);
+        Recorder recorder = new Recorder();
+        track.update(350, recorder);
+        recorder.changes.clear();
+        track.update(150, recorder);
+        assertEquals(Arrays.asList(-(b + 1), a + 1), recorder.changes);
+        assertTrue(track.isActive(a));
+        assertFalse(track.isActive(b));
+    }
+
+    @Test
+    public void update_ignoresEmptyWindows() {
+        IntervalTrack track = new IntervalTrack();
+        track.add(100, 100, 0);
+        track.add(200, 150, 0);
+        Recorder recorder = new Recorder();
+        track.update(100, recorder);
+        track.update(175, recorder);
+        assertTrue(recorder.changes.isEmpty());
+        assertEquals(-1, track.getTimeToNextChange(0));
+    }
+
+    @Test
+    public void add_afterUpdateActivatesCoveringItem() {
+        IntervalTrack track = new IntervalTrack();
+        Recorder recorder = new Recorder();
+        track.add(0, 100, 0);
+        track.update(50, recorder);
+        int b = track.add(40, 60, 0);
+        recorder.changes.clear();
+        track.update(55, recorder);
+        assertEquals(Arrays.asList(b + 1), recorder.changes);
+    }
+
+    @Test
+    public void reset_forgetsActiveItemsSilently() {
+        IntervalTrack track = new IntervalTrack();
+        int a = track.add(0, 100, 0);
+        Recorder recorder = new Recorder();
+        track.update(50, recorder);
+        track.reset();
+        assertFalse(track.isActive(a));
+        assertEquals(IntervalTrack.START, track.getPosition());
+        recorder.changes.clear();
+        track.update(60, recorder);
+        assertEquals(Arrays.asList(a + 1), recorder.changes);
+    }
+
+    @Test
+    public void getTimeToNextChange_findsNextEdge() {
+        IntervalTrack track = new IntervalTrack();
+        track.add(100, 500, 0);
+        track.add(200, 300, 0);
+        assertEquals(100, track.getTimeToNextChange(0));
+        assertEquals(100, track.getTimeToNextChange(100));
+        assertEquals(50, track.getTimeToNextChange(250));
+        assertEquals(200, track.getTimeToNextChange(300));
+        assertEquals(-1, track.getTimeToNextChange(500));
+    }
+
+    @Test
+    public void query_matchesBruteForce() {
+        Random random = new Random(11);
+        IntervalTrack track = new IntervalTrack();
+        int[] starts = new int[5000], ends = new int[5000];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = random.nextInt(100000);
+            ends[i] = starts[i] + (random.nextInt(10) == 0 ? 0 : random.nextInt(5000));
+            track.add(starts[i], ends[i], i);
+        }
+        int[] out = new int[starts.length];
+        for (int t = -10; t < 106000; t += 97) {
+            int found = track.query(t, out);
+            boolean[] hit = new boolean[starts.length];
+            for (int i = 0; i < found; i++) {
+                assertFalse(hit[out[i]]);
+                hit[out[i]] = true;
+            }
+            for (int i = 0; i < starts.length; i++) {
+                assertEquals("t=" + t + " item=" + i, starts[i] <= t && t < ends[i], hit[i]);
+            }
+        }
+    }
+
+    @Test
+    public void update_keepsActiveSetInSyncWithPlaybackAndSeeks() {
+        Random random = new Random(3);
+        final IntervalTrack track = new IntervalTrack();
+        int count = 2000;
+        for (int i = 0; i < count; i++) {
+            int start = random.nextInt(60000);
+            track.add(start, start + 1 + random.nextInt(random.nextBoolean() ? 500 : 20000), i);
+        }
+        final boolean[] active = new boolean[count];
+        IntervalTrack.Listener listener = new IntervalTrack.Listener() {
+            @Override
+            public void onChange(IntervalTrack t, int item, boolean becameActive) {
+                assertEquals(!becameActive, active[item]);
+                active[item] = becameActive;
+            }
+        };
+        int position = 0;
+        for (int step = 0; step < 5000; step++) {
+            int r = random.nextInt(20);
+            if (r == 0) {
+                position = random.nextInt(70000);
+            } else if (r == 1) {
+                position = Math.max(0, position - random.nextInt(2000));
+            } else {
+                position += random.nextInt(50);
+            }
+            track.update(position, listener);
+            int expected = 0;
+            for (int i = 0; i < count; i++) {
+                boolean in = track.getStart(i) <= position && position < track.getEnd(i);
+                assertEquals(in, active[i]);
+                assertEquals(in, track.isActive(i));
+                if (in) expected++;
+            }
+            assertEquals(expected, track.getActiveCount());
+        }
+    }
+}
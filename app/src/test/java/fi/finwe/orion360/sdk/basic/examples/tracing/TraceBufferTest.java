@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.tracing;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link TraceBuffer}.
+ */
+public class TraceBufferTest {
+
+    @Test
+    public void read_returnsEventsInOrder() {
+        TraceBuffer buffer = new TraceBuffer(8);
+        for (int i = 0; i < 5; i++) {
+            buffer.add(i * 10, i, i, -i, 0.5f);
+        }
+        final List<Float> values = new ArrayList<>();
+        assertEquals(5, buffer.read(new TraceBuffer.Visitor() {
+            @Override
+            public void visit(long timeNanos, int eventId, float a, float b, float c) {
+                assertEquals(eventId * 10, timeNanos);
+                assertEquals(-a, b, 0.0f);
+                values.add(a);
+            }
+        }));
+        assertEquals(0.0f, values.get(0), 0.0f);
+        assertEquals(4.0f, values.get(4), 0.0f);
+    }
+
+    @Test
+    public void add_overwritesOldestWhenFull() {
+        TraceBuffer buffer = new TraceBuffer(8);
+        assertEquals(8, buffer.getCapacity());
+        for (int i = 0; i < 20; i++) {
+            buffer.add(i, i, 0.0f, 0.0f, 0.0f);
+        }
+        final List<Integer> ids = new ArrayList<>();
+        buffer.read(new TraceBuffer.Visitor() {
+            @Override
+            public void visit(long timeNanos, int eventId, float a, float b, float c) {
+                ids.add(eventId);
+            }
+        });
+        assertEquals(8, ids.size());
+        assertEquals(12, (int) ids.get(0));
+        assertEquals(19, (int) ids.get(7));
+        assertEquals(20, buffer.getCount());
+
+        buffer.clear();
+        assertEquals(0, buffer.read(new TraceBuffer.Visitor() {
+            @Override
+            public void visit(long timeNanos, int eventId, float a, float b, float c) {}
+        }));
+    }
+
+    @Test
+    public void add_fromManyThreadsKeepsEventsConsistent() throws InterruptedException {
+        final TraceBuffer buffer = new TraceBuffer(1024);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 100000; i++) {
+                        buffer.add(i, id, i, 2 * i, id);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+
+        // Read concurrently; every event seen must be intact.
+        final int[] torn = new int[1];
+        TraceBuffer.Visitor check = new TraceBuffer.Visitor() {
+            @Override
+            public void visit(long timeNanos, int eventId, float a, float b, float c) {
+                if (a != timeNanos || b != 2 * a || c != eventId) torn[0]++;
+            }
+        };
+        while (threads[0].isAlive()) {
+            buffer.read(check);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(400000, buffer.getCount());
+        assertEquals(1024, buffer.read(check));
+        assertTrue("torn events: " + torn[0], torn[0] == 0);
+    }
+}
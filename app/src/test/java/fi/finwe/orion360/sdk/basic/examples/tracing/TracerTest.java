@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2016, Finwe Ltd. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package fi.finwe.orion360.sdk.basic.examples.tracing;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link Tracer}.
+ */
+public class TracerTest {
+
+    /** Verbose event type for the tests. */
+    private static final int EVENT_VERBOSE = Tracer.define(Tracer.VERBOSE, "testVerbose", "%.1f");
+
+    /** Info event type for the tests. */
+    private static final int EVENT_INFO = Tracer.define(Tracer.INFO, "testInfo", "a=%.0f b=%.0f");
+
+    @After
+    public void tearDown() {
+        Tracer.setLevel(Tracer.VERBOSE);
+        Tracer.clear();
+    }
+
+    @Test
+    public void event_skipsEventsBelowLevel() throws IOException {
+        Tracer.clear();
+        Tracer.setLevel(Tracer.DEBUG);
+        assertFalse(Tracer.isEnabled(EVENT_VERBOSE));
+        assertTrue(Tracer.isEnabled(EVENT_INFO));
+        Tracer.event(EVENT_VERBOSE, 1.0f);
+        Tracer.event(EVENT_INFO, 2.0f, 3.0f);
+
+        StringBuilder text = new StringBuilder();
+        assertEquals(1, Tracer.dump(text));
+        assertTrue(text.toString(), text.toString().endsWith(" testInfo a=2 b=3\n"));
+
+        Tracer.setLevel(Tracer.OFF);
+        Tracer.event(EVENT_INFO, 4.0f, 5.0f);
+        assertEquals(1, Tracer.dump(new StringBuilder()));
+    }
+
+    @Test
+    public void write_producesBinaryDump() throws IOException {
+        Tracer.clear();
+        Tracer.event(EVENT_VERBOSE, 1.5f);
+        Tracer.event(EVENT_INFO, 2.0f, 3.0f);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, Tracer.write(out));
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(Tracer.MAGIC, in.readInt());
+        assertEquals(Tracer.VERSION, in.readInt());
+        int types = in.readInt();
+        assertTrue(types > EVENT_INFO);
+        for (int i = 0; i < types; i++) {
+            String name = in.readUTF();
+            in.readUTF();
+            if (i == EVENT_VERBOSE) assertEquals("testVerbose", name);
+        }
+        assertEquals(2, in.readInt());
+        long time = in.readLong();
+        assertEquals(EVENT_VERBOSE, in.readInt());
+        assertEquals(1.5f, in.readFloat(), 0.0f);
+        in.readFloat();
+        in.readFloat();
+        assertTrue(in.readLong() >= time);
+        assertEquals(EVENT_INFO, in.readInt());
+        assertEquals(2.0f, in.readFloat(), 0.0f);
+        assertEquals(3.0f, in.readFloat(), 0.0f);
+        in.readFloat();
+        assertEquals(-1, in.read());
+    }
+}